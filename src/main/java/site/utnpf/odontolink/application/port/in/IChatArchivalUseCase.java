@@ -0,0 +1,21 @@
+package site.utnpf.odontolink.application.port.in;
+
+import site.utnpf.odontolink.application.port.in.dto.ChatArchivalResult;
+
+import java.time.Instant;
+
+/**
+ * Puerto de entrada del archivado del chat interno: mueve el historial antiguo de
+ * sesiones inactivas de {@code chat_messages} a chunks comprimidos. La lectura del
+ * historial sigue siendo transparente vía {@link IChatUseCase}.
+ *
+ * @author OdontoLink Team
+ */
+public interface IChatArchivalUseCase {
+
+    /**
+     * Ejecuta una corrida acotada del archivado tomando {@code now} como referencia para
+     * las ventanas de antigüedad e inactividad configuradas.
+     */
+    ChatArchivalResult archiveColdMessages(Instant now);
+}
@@ -1,7 +1,9 @@
 package site.utnpf.odontolink.application.port.in;
 
 import site.utnpf.odontolink.application.port.in.dto.ChatPollResult;
+import site.utnpf.odontolink.application.port.in.dto.ChatSearchResult;
 import site.utnpf.odontolink.application.port.in.dto.ChatSessionView;
+import site.utnpf.odontolink.application.port.in.dto.CursorPagedMessages;
 import site.utnpf.odontolink.application.port.in.dto.PagedMessages;
 import site.utnpf.odontolink.domain.model.ChatMessage;
 import site.utnpf.odontolink.domain.model.ChatSession;
@@ -51,6 +53,29 @@ public interface IChatUseCase {
      */
     PagedMessages getMessagesPaged(Long chatSessionId, User user, int page, int size);
 
+    /**
+     * Historial DESC paginado por keyset ({@code sentAt}, {@code id}). Preferible a
+     * {@link #getMessagesPaged} para "cargar anteriores": el costo por página no depende de
+     * la profundidad y no cuenta la conversación salvo que se pida.
+     *
+     * @param cursor       cursor opaco devuelto en la página anterior; {@code null} para
+     *                     arrancar desde los más recientes
+     * @param includeTotal si {@code true}, agrega el total de mensajes de la sesión
+     */
+    CursorPagedMessages getMessagesByCursor(Long chatSessionId, User user, String cursor, int size, boolean includeTotal);
+
+    /**
+     * Busca mensajes por contenido en el historial del usuario, ordenados por relevancia.
+     *
+     * <p>El alcance lo define {@code ChatPolicyService}: solo sesiones donde el usuario es
+     * participante. Con {@code chatSessionId} se restringe a esa sesión (403 si no es
+     * participante). Cada término del texto debe aparecer, como palabra o prefijo.
+     *
+     * @throws site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException con
+     *         {@code CHAT_SEARCH_QUERY_TOO_SHORT} si ningún término tiene 3+ caracteres.
+     */
+    ChatSearchResult searchMessages(User user, String query, Long chatSessionId, int page, int size);
+
     /**
      * Obtiene la sesión entre paciente y practicante, creándola si no existe pero
      * <b>solo</b> si los dos tienen relación clínica previa (RF27: al menos un appointment
@@ -74,16 +99,46 @@ public interface IChatUseCase {
     ChatSession unblockChatSession(Long chatSessionId, User actor);
 
     /**
-     * Marca como leídos todos los mensajes pendientes de los que el usuario no es sender (CU012).
+     * Marca como leídos los mensajes pendientes de los que el usuario no es sender (CU012).
      * <b>Funciona aunque la sesión esté bloqueada</b>: el lado silenciado igual debe poder cerrar
      * su contador de no-leídos sobre el historial existente.
-     * @return cantidad de mensajes marcados; útil para que el frontend decida si refrescar.
+     *
+     * <p>La escritura es diferida: la confirmación se coalesce en memoria con las demás de la
+     * misma (sesión, receptor) y se aplica en el próximo {@link #flushReadAcknowledgements()}.
+     * El propio receptor ve sus contadores cerrados de inmediato; el sender recibe el read
+     * receipt en el poll siguiente al flush.
+     *
+     * @param upToMessageId último mensaje que el cliente renderizó; {@code null} equivale al
+     *                      último mensaje actual de la sesión
+     * @return cantidad de mensajes que la confirmación cubre; útil para que el frontend
+     *         decida si refrescar.
+     */
+    int markMessagesAsRead(Long chatSessionId, User receiver, Long upToMessageId);
+
+    /**
+     * Aplica en la base las confirmaciones de lectura acumuladas, un UPDATE por
+     * (sesión, receptor). Lo invoca el job periódico y el apagado ordenado; no forma parte
+     * del API HTTP.
+     *
+     * @return cantidad de UPDATEs emitidos.
      */
-    int markMessagesAsRead(Long chatSessionId, User receiver);
+    int flushReadAcknowledgements();
 
     /**
      * Total de mensajes no-leídos sumando todas las sesiones del usuario. Alimenta el badge
      * global de notificaciones (sidebar/AppBar) sin necesidad de iterar el inbox.
+     *
+     * <p>Se sirve desde un contador en memoria por usuario: el COUNT autoritativo solo corre
+     * al cargar el contador y en {@link #reconcileUnreadCounters(Instant)}.
      */
     long getTotalUnreadCount(User user);
+
+    /**
+     * Corrige la deriva de los contadores de no-leídos en memoria contra el COUNT de la
+     * base y descarta los de usuarios que no pidieron el badge desde {@code idleBefore}.
+     * Lo invoca el job periódico; no forma parte del API HTTP.
+     *
+     * @return cantidad de usuarios cuyo contador estaba corrido.
+     */
+    int reconcileUnreadCounters(Instant idleBefore);
 }
@@ -7,6 +7,7 @@ import site.utnpf.odontolink.domain.model.Role;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Puerto de entrada del chatbot institucional (RF29/RF31/RF32/RF34).
@@ -25,15 +26,45 @@ public interface IChatbotInteractionUseCase {
     /**
      * Envia un mensaje al chatbot y devuelve la respuesta enriquecida. Crea
      * sesion si no existe, aplica sanitizacion PII, detecta emergencias,
-     * llama al proveedor (con circuit breaker), persiste el rolling buffer
-     * con cap FIFO y computa el confidence indicator.
+     * llama al proveedor (con circuit breaker), agrega el turno al rolling
+     * buffer y computa el confidence indicator.
      */
     ChatbotInteractionResult sendMessage(ChatbotMessageCommand command);
 
+    /**
+     * Variante de {@link #sendMessage} que reenvia la respuesta del proveedor
+     * a {@code onDelta} fragmento a fragmento mientras se genera. El
+     * resultado devuelto es el mismo que daria {@link #sendMessage}: si el
+     * proveedor falla a mitad del stream se devuelve el fallback y el cliente
+     * debe reemplazar el texto parcial por {@code reply}.
+     *
+     * <p>{@code onDelta} corre en el hilo del caller y no debe lanzar: una
+     * excepcion ahi se trata como falla del proveedor.
+     */
+    ChatbotInteractionResult sendMessageStreaming(ChatbotMessageCommand command, Consumer<String> onDelta);
+
     /**
      * Cierra una sesion borrando su rolling buffer. Idempotente: devuelve sin
      * error si la sesion ya no existe. Valida ownership (ownerUserId match o
      * anonymousToken match) antes de borrar.
      */
     void closeSession(UUID sessionId, Optional<Long> authenticatedUserId, Optional<UUID> anonymousToken);
+
+    /**
+     * Persiste en un solo commit los mensajes que los turnos dejaron en la
+     * ventana conversacional. Si falla, los mensajes vuelven a la cola y la
+     * excepcion se propaga. Lo invoca el job de flush.
+     *
+     * @return cantidad de mensajes persistidos.
+     */
+    int flushConversationWrites();
+
+    /**
+     * Recorta el rolling buffer de todas las sesiones al
+     * {@code conversationBufferSize} vigente y borra mensajes huerfanos. Lo
+     * invoca el job de recorte.
+     *
+     * @return cantidad de mensajes borrados.
+     */
+    int trimConversationBuffers();
 }
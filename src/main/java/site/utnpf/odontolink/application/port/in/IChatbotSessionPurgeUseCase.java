@@ -0,0 +1,19 @@
+package site.utnpf.odontolink.application.port.in;
+
+import site.utnpf.odontolink.application.port.in.dto.ChatbotSessionPurgeResult;
+
+import java.time.Instant;
+
+/**
+ * Puerto de entrada de la purga de sesiones inactivas del chatbot (RF29):
+ * borra las sesiones sin interaccion mas alla del TTL de su tipo (anonima o
+ * autenticada) junto con sus mensajes.
+ */
+public interface IChatbotSessionPurgeUseCase {
+
+    /**
+     * Ejecuta una corrida acotada de la purga tomando {@code now} como
+     * referencia para los TTL configurados.
+     */
+    ChatbotSessionPurgeResult purgeIdleSessions(Instant now);
+}
@@ -1,8 +1,10 @@
 package site.utnpf.odontolink.application.port.in;
 
 import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort.IndexingJobSnapshot;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.ByteRange;
 import site.utnpf.odontolink.domain.model.KnowledgeBaseDocument;
 
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -11,6 +13,10 @@ import java.util.List;
  * <p>Modela el ciclo de vida completo de un documento desde la perspectiva
  * del administrador: alta (FAQ o archivo), lectura, refresco de estado y
  * baja. La indexacion se gatilla de forma transparente tras cada alta/baja.
+ *
+ * <p>Las altas son asincronicas: devuelven el documento en
+ * {@code PENDING_UPLOAD} y el pipeline de ingesta lo avanza en background
+ * ({@link IKnowledgeBaseIngestionUseCase}).
  */
 public interface IKnowledgeBaseAdminUseCase {
 
@@ -19,19 +25,32 @@ public interface IKnowledgeBaseAdminUseCase {
     KnowledgeBaseDocument getDocument(Long id);
 
     /**
-     * Crea un documento FAQ a partir de texto plano. El servicio se encarga
-     * de envolverlo como TXT, subirlo al bucket, registrarlo en el proveedor
-     * y disparar la indexacion.
+     * Crea un documento FAQ a partir de texto plano y encola su ingesta:
+     * el pipeline lo envuelve como TXT, lo sube al bucket, lo registra en el
+     * proveedor y dispara la indexacion.
+     *
+     * @throws site.utnpf.odontolink.domain.exception.DuplicateResourceException
+     *         si otro documento no {@code FAILED} tiene el mismo contenido.
      */
     KnowledgeBaseDocument addFaqDocument(String title, String content);
 
     /**
      * Crea un documento a partir de un archivo subido. {@code contentType}
      * se valida contra la whitelist de tipos soportados por la KB.
+     *
+     * <p>El contenido llega como stream de {@code size} bytes y se copia al
+     * staging sin cargarlo entero en memoria; el upload al bucket lo hace el
+     * pipeline de ingesta. El stream es del caller: el servicio lo lee pero
+     * no lo cierra.
+     *
+     * @throws site.utnpf.odontolink.domain.exception.DuplicateResourceException
+     *         si otro documento no {@code FAILED} tiene el mismo contenido;
+     *         se detecta por el SHA-256 calculado al copiar al staging.
      */
     KnowledgeBaseDocument addFileDocument(String title,
                                           String originalFileName,
-                                          byte[] content,
+                                          InputStream content,
+                                          long size,
                                           String contentType);
 
     /**
@@ -41,16 +60,18 @@ public interface IKnowledgeBaseAdminUseCase {
      * @param title     nuevo titulo (obligatorio).
      * @param content   nuevo contenido para FAQs. Para archivos subidos debe
      *                  llegar {@code null}; mandarlo genera 422 porque los
-     *                  binarios no se editan inline. Para FAQs, si llega
-     *                  distinto del actual, el servicio re-sube los bytes al
-     *                  bucket y dispara reindex del data source asociado.
+     *                  binarios no se editan inline. Para FAQs, si su
+     *                  SHA-256 difiere del actual, el servicio re-sube los bytes al
+     *                  bucket y deja el documento en {@code REINDEX_QUEUED}
+     *                  hasta que sale el indexing job agrupado.
      */
     KnowledgeBaseDocument updateDocument(Long id, String title, String content);
 
     /**
      * Borra el documento, su binario del bucket y su data source remoto. La
      * operacion es idempotente: si el documento ya no existe en alguno de
-     * los tres lados, se sigue adelante.
+     * los tres lados, se sigue adelante. El reindex que saca el documento del
+     * indice se agrupa con los demas pedidos de la ventana.
      */
     void deleteDocument(Long id);
 
@@ -84,10 +105,81 @@ public interface IKnowledgeBaseAdminUseCase {
     /**
      * Descarga el binario asociado al documento. Para FAQs devuelve el
      * {@code inlineContent} serializado como TXT UTF-8. Para archivos
-     * subidos, lee el objeto del bucket Spaces correspondiente.
+     * subidos, lee el objeto del bucket Spaces correspondiente entero en
+     * memoria: para servir archivos por HTTP conviene
+     * {@link #streamDocument}.
      */
     DocumentDownload downloadDocument(Long id);
 
+    /**
+     * Rango pedido por el cliente, con la semantica del header {@code Range}:
+     * {@code (first, null)} desde {@code first} hasta el final,
+     * {@code (null, n)} los ultimos {@code n} bytes y {@code (first, last)}
+     * el rango cerrado.
+     */
+    record RangeRequest(Long first, Long last) {
+
+        /**
+         * Resuelve el pedido contra el tamanio real del documento. Un
+         * {@code last} mas alla del final se recorta, como indica el RFC.
+         *
+         * @return el rango a leer, o {@code null} si no hay bytes que
+         *         satisfagan el pedido.
+         */
+        public ByteRange resolve(long totalSize) {
+            if (totalSize <= 0) {
+                return null;
+            }
+            if (first == null) {
+                if (last == null || last <= 0) {
+                    return null;
+                }
+                return new ByteRange(Math.max(0, totalSize - last), totalSize - 1);
+            }
+            if (first >= totalSize || (last != null && last < first)) {
+                return null;
+            }
+            long end = last == null ? totalSize - 1 : Math.min(last, totalSize - 1);
+            return new ByteRange(first, end);
+        }
+    }
+
+    /**
+     * Resultado de la descarga por stream. Si {@code redirectUrl} no es
+     * {@code null} el cliente tiene que ir a buscar el archivo ahi (URL
+     * prefirmada del bucket) y el resto de los campos no aplica. Si no,
+     * {@code content} trae el documento completo o, con {@code range}, solo
+     * ese tramo; el caller lo cierra.
+     */
+    record DocumentStream(InputStream content, String contentType, String fileName,
+                          long totalSize, ByteRange range, String redirectUrl) {
+
+        public static DocumentStream redirect(String url) {
+            return new DocumentStream(null, null, null, 0, null, url);
+        }
+
+        public boolean isRedirect() {
+            return redirectUrl != null;
+        }
+
+        public long contentLength() {
+            return range == null ? totalSize : range.length();
+        }
+    }
+
+    /**
+     * Descarga el documento sin pasar el binario entero por el heap: los
+     * archivos se leen del bucket a medida que el cliente los consume. Las
+     * FAQs se sirven desde {@code inlineContent}. Si hay descarga directa
+     * configurada y el archivo supera el umbral, devuelve una URL prefirmada
+     * en lugar del contenido.
+     *
+     * @param range rango pedido, o {@code null} para el documento completo.
+     * @throws site.utnpf.odontolink.domain.exception.RangeNotSatisfiableException
+     *         si el rango cae fuera del documento.
+     */
+    DocumentStream streamDocument(Long id, RangeRequest range);
+
     /**
      * Lista paginada de documentos. Soporta filtro opcional por estado para
      * que el frontend pueda mostrar pestanias (p. ej. "fallidos", "indexando").
@@ -0,0 +1,45 @@
+package site.utnpf.odontolink.application.port.in;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Puerto de entrada del pipeline de ingesta de la Knowledge Base (RF33). Lo
+ * usan los workers en background y el job de sincronizacion de estado, no
+ * los controllers.
+ */
+public interface IKnowledgeBaseIngestionUseCase {
+
+    /**
+     * Avanza el documento por las etapas que le faltan (upload -> register
+     * -> {@code REINDEX_QUEUED}), reintentando las fallas transitorias de cada
+     * una, y pide su indexacion al lote en curso. Si una etapa agota los
+     * reintentos el documento queda en {@code FAILED}. Un documento borrado o
+     * ya en {@code INDEXING}/{@code INDEXED}/{@code FAILED} no hace nada.
+     */
+    void ingest(Long documentId);
+
+    /**
+     * Si el lote de indexaciones pedidas ya cumplio su ventana de quietud,
+     * dispara un solo indexing job con todos sus data sources y pasa los
+     * documentos en {@code REINDEX_QUEUED} del lote a {@code INDEXING}.
+     *
+     * @return cantidad de documentos que pasaron a {@code INDEXING}
+     */
+    int flushQueuedReindex();
+
+    /**
+     * Consulta al proveedor el estado de los indexing jobs de todos los
+     * documentos en {@code INDEXING}, una vez por job, y guarda juntos los
+     * que terminaron.
+     *
+     * @return cantidad de documentos que pasaron a {@code INDEXED} o {@code FAILED}
+     */
+    int reconcileIndexingJobs();
+
+    /**
+     * Documentos que quedaron a mitad del pipeline (reinicio de la instancia,
+     * cola llena) sin actualizarse desde {@code olderThan}.
+     */
+    List<Long> findStalledDocumentIds(Instant olderThan);
+}
@@ -0,0 +1,16 @@
+package site.utnpf.odontolink.application.port.in.dto;
+
+/**
+ * Resumen de una corrida del archivado del chat.
+ *
+ * @param sessions         sesiones que movieron al menos un chunk.
+ * @param chunks           chunks creados.
+ * @param messages         mensajes movidos de {@code chat_messages} al tier frío.
+ * @param compressedBytes  bytes de payload escritos (suma de los chunks).
+ */
+public record ChatArchivalResult(int sessions, int chunks, int messages, long compressedBytes) {
+
+    public static ChatArchivalResult empty() {
+        return new ChatArchivalResult(0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,86 @@
+package site.utnpf.odontolink.application.port.in.dto;
+
+import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
+import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.ChatErrorCodes;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Cursor opaco para el historial paginado por keyset ({@code sentAt}, {@code id}).
+ *
+ * <p>Representa la posición del <b>último mensaje entregado</b> en una página DESC: la
+ * página siguiente ("cargar anteriores") son los mensajes estrictamente anteriores a esa
+ * tupla. Al comparar por tupla y no por offset, el costo de cada página es el mismo sin
+ * importar cuán profundo esté el usuario en el historial.
+ *
+ * <p>Se serializa como Base64 URL-safe sin padding de {@code epochSecond.nano:id}. El FE
+ * no debe interpretarlo: el formato puede cambiar sin aviso mientras {@link #decode} siga
+ * aceptando los cursores emitidos por la versión anterior.
+ *
+ * @author OdontoLink Team
+ */
+public final class ChatMessageCursor {
+
+    private final Instant sentAt;
+    private final Long id;
+
+    public ChatMessageCursor(Instant sentAt, Long id) {
+        if (sentAt == null || id == null) {
+            throw new IllegalArgumentException("El cursor requiere sentAt e id.");
+        }
+        this.sentAt = sentAt;
+        this.id = id;
+    }
+
+    public static ChatMessageCursor of(ChatMessage message) {
+        return new ChatMessageCursor(message.getSentAt(), message.getId());
+    }
+
+    /**
+     * Decodifica un cursor emitido por {@link #encode()}. Un cursor malformado es un error
+     * del cliente (lo manipuló o lo truncó), no del servidor: se reporta como 422 con
+     * {@link ChatErrorCodes#CHAT_INVALID_CURSOR}.
+     */
+    public static ChatMessageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            throw invalid();
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int colon = raw.indexOf(':');
+            int dot = raw.indexOf('.');
+            if (dot <= 0 || colon <= dot + 1 || colon == raw.length() - 1) {
+                throw invalid();
+            }
+            long epochSecond = Long.parseLong(raw.substring(0, dot));
+            int nano = Integer.parseInt(raw.substring(dot + 1, colon));
+            long id = Long.parseLong(raw.substring(colon + 1));
+            return new ChatMessageCursor(Instant.ofEpochSecond(epochSecond, nano), id);
+        } catch (IllegalArgumentException | java.time.DateTimeException e) {
+            // NumberFormatException y los errores de Base64 son IllegalArgumentException.
+            throw invalid();
+        }
+    }
+
+    public String encode() {
+        String raw = sentAt.getEpochSecond() + "." + sentAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public Instant getSentAt() {
+        return sentAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    private static InvalidBusinessRuleException invalid() {
+        return new InvalidBusinessRuleException("El cursor de paginación es inválido.",
+                ChatErrorCodes.CHAT_INVALID_CURSOR);
+    }
+}
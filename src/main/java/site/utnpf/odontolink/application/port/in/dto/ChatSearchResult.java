@@ -0,0 +1,44 @@
+package site.utnpf.odontolink.application.port.in.dto;
+
+import site.utnpf.odontolink.domain.model.ChatMessageSearchHit;
+
+import java.util.List;
+
+/**
+ * Página de resultados de la búsqueda en el historial de chat, ordenada por relevancia.
+ *
+ * <p>Sin total: contar todas las coincidencias cuesta tanto como la búsqueda misma, y el
+ * FE solo necesita saber si hay otra página ({@code hasMore}).
+ *
+ * @author OdontoLink Team
+ */
+public class ChatSearchResult {
+
+    private final List<ChatMessageSearchHit> hits;
+    private final int page;
+    private final int size;
+    private final boolean hasMore;
+
+    public ChatSearchResult(List<ChatMessageSearchHit> hits, int page, int size, boolean hasMore) {
+        this.hits = hits;
+        this.page = page;
+        this.size = size;
+        this.hasMore = hasMore;
+    }
+
+    public List<ChatMessageSearchHit> getHits() {
+        return hits;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+}
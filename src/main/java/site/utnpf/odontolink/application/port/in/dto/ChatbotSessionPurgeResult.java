@@ -0,0 +1,34 @@
+package site.utnpf.odontolink.application.port.in.dto;
+
+import java.util.List;
+
+/**
+ * Resumen de una corrida de la purga de sesiones inactivas del chatbot.
+ *
+ * @param batches lotes ejecutados, en orden; cada uno fue una transaccion.
+ */
+public record ChatbotSessionPurgeResult(List<Batch> batches) {
+
+    public ChatbotSessionPurgeResult {
+        batches = List.copyOf(batches);
+    }
+
+    public int sessions() {
+        return batches.stream().mapToInt(Batch::sessions).sum();
+    }
+
+    public int messages() {
+        return batches.stream().mapToInt(Batch::messages).sum();
+    }
+
+    /**
+     * Un lote de la purga.
+     *
+     * @param anonymous {@code true} si borro sesiones anonimas.
+     * @param sessions  sesiones borradas.
+     * @param messages  mensajes borrados de esas sesiones.
+     * @param millis    duracion de la transaccion del lote.
+     */
+    public record Batch(boolean anonymous, int sessions, int messages, long millis) {
+    }
+}
@@ -0,0 +1,71 @@
+package site.utnpf.odontolink.application.port.in.dto;
+
+import site.utnpf.odontolink.domain.model.ChatMessage;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Página del historial navegada por keyset en lugar de offset (CU012).
+ *
+ * <p>Convención del API:
+ * <ul>
+ *   <li>Sin cursor se devuelven los mensajes <b>más recientes</b>; con cursor, los
+ *       estrictamente anteriores a la tupla ({@code sentAt}, {@code id}) que codifica.</li>
+ *   <li>Dentro de la página el orden es <b>DESC por {@code sentAt}</b> con tie-break por
+ *       {@code id DESC}, igual que {@link PagedMessages}.</li>
+ *   <li>{@code nextCursor} es {@code null} cuando no quedan mensajes más antiguos.</li>
+ *   <li>{@code totalElements} es {@code null} salvo que el caller lo pida: contar una
+ *       conversación larga en cada scroll-up es trabajo desperdiciado.</li>
+ *   <li>{@code serverTime} mantiene el mismo contrato de cursor que el wrapper polling.</li>
+ * </ul>
+ *
+ * @author OdontoLink Team
+ */
+public class CursorPagedMessages {
+
+    private final List<ChatMessage> messages;
+    private final int size;
+    private final String nextCursor;
+    private final Long totalElements;
+    private final Instant serverTime;
+
+    public CursorPagedMessages(List<ChatMessage> messages, int size, String nextCursor,
+                               Long totalElements, Instant serverTime) {
+        this.messages = messages;
+        this.size = size;
+        this.nextCursor = nextCursor;
+        this.totalElements = totalElements;
+        this.serverTime = serverTime;
+    }
+
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Total de mensajes de la sesión, o {@code null} si no se solicitó.
+     */
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public Instant getServerTime() {
+        return serverTime;
+    }
+
+    /**
+     * {@code true} si quedan mensajes más antiguos por cargar con {@link #getNextCursor()}.
+     */
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,23 @@
+package site.utnpf.odontolink.application.port.out;
+
+/**
+ * Puerto de salida opcional que convierte una consulta del chatbot en un
+ * embedding, para el tier semantico del cache de respuestas (RF29).
+ *
+ * <p>Si no hay un bean de este puerto el cache trabaja solo con match
+ * exacto sobre el texto normalizado. Con un bean presente, un miss exacto
+ * busca entre las entradas vigentes la de mayor similitud coseno y la usa si
+ * supera el umbral configurado ("como saco turno" / "como pido un turno").
+ *
+ * <p>La implementacion recibe el texto ya sanitizado de PII y normalizado.
+ * Puede ser remota: el cache la invoca fuera de sus locks y, si lanza, trata
+ * la consulta como miss en lugar de cortar el turno.
+ */
+public interface IChatbotQueryEmbeddingPort {
+
+    /**
+     * Embedding de {@code text}. Todas las llamadas deben devolver vectores
+     * de la misma dimension.
+     */
+    float[] embed(String text);
+}
@@ -0,0 +1,82 @@
+package site.utnpf.odontolink.application.port.out;
+
+import java.util.Map;
+
+/**
+ * Puerto de salida para publicar el desglose de latencia de cada turno del
+ * chatbot (RF29).
+ *
+ * <p>El {@code latencyMs} del resultado es un solo numero: no alcanza para
+ * saber si un turno lento se fue en la base, en el scan de PII, en el
+ * descubrimiento de la URL o en el proveedor. El use case mide cada fase y
+ * las entrega juntas al terminar, ya con el {@link Outcome} del turno, para
+ * que cada fase quede etiquetada con el resultado final. La implementacion
+ * (Micrometer) vive en infraestructura.
+ */
+public interface IChatbotTurnMetricsPort {
+
+    /** Implementacion vacia para tests y entornos sin metricas. */
+    IChatbotTurnMetricsPort NOOP = (outcome, totalNanos, phaseNanos) -> { };
+
+    /** Fases medidas de un turno. Una fase que no corrio no aparece. */
+    enum Phase {
+        /** Fase 1 completa: transaccion corta incluido el commit. */
+        PREPARE_TX("prepare_tx"),
+        /** Carga o alta de la sesion (base). */
+        SESSION("session"),
+        PII_SCAN("pii_scan"),
+        EMERGENCY_DETECTION("emergency_detection"),
+        /** Ventana conversacional; lee la base si la sesion no estaba en memoria. */
+        HISTORY("history"),
+        /** Solo cuando el snapshot no tenia URL y hubo que descubrirla. */
+        URL_RESOLUTION("url_resolution"),
+        /** Invocacion del agente, o respuesta desde el cache o el coalescer. */
+        PROVIDER("provider"),
+        /** Banner y calculo del indicador de confianza. */
+        CONFIDENCE("confidence"),
+        /** Fase 3: transaccion corta que registra la respuesta. */
+        RECORD_TX("record_tx");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /** Como termino el turno. */
+    enum Outcome {
+        OK("ok"),
+        /** El proveedor fallo y se respondio el mensaje de fallback. */
+        FALLBACK("fallback"),
+        PII_BLOCKED("pii_blocked"),
+        /** Fallback sin llamar al proveedor: el circuit breaker estaba abierto. */
+        CIRCUIT_OPEN("circuit_open"),
+        /** Fallback sin llamar al proveedor: el limite de concurrencia estaba lleno. */
+        CONCURRENCY_LIMITED("concurrency_limited"),
+        /** El turno termino en excepcion (acceso, sesion inexistente, etc). */
+        REJECTED("rejected");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /**
+     * Registra un turno terminado.
+     *
+     * @param totalNanos duracion del turno completo
+     * @param phaseNanos duracion de cada fase que corrio
+     */
+    void recordTurn(Outcome outcome, long totalNanos, Map<Phase, Long> phaseNanos);
+}
@@ -0,0 +1,16 @@
+package site.utnpf.odontolink.application.port.out;
+
+/**
+ * Cola del pipeline de ingesta de la Knowledge Base (RF33): upload al
+ * bucket, registro del data source e indexacion corren fuera del request.
+ */
+public interface IKnowledgeBaseIngestionQueuePort {
+
+    /**
+     * Encola la ingesta del documento. Si hay una transaccion activa, el
+     * documento se encola recien al commitear, para que el worker lo vea.
+     * Es best-effort: si la cola esta llena el documento queda en su estado
+     * actual y lo retoma el barrido periodico de ingestas demoradas.
+     */
+    void enqueue(Long documentId);
+}
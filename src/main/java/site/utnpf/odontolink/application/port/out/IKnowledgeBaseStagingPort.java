@@ -0,0 +1,35 @@
+package site.utnpf.odontolink.application.port.out;
+
+import java.io.InputStream;
+
+/**
+ * Area de staging de los archivos subidos a la Knowledge Base (RF33).
+ *
+ * <p>El alta de un archivo responde antes de que el binario llegue al
+ * bucket: el stream del request se copia aca y el pipeline de ingesta lo
+ * lee despues desde otro hilo. Cada documento tiene a lo sumo un archivo en
+ * staging, identificado por su id local.
+ */
+public interface IKnowledgeBaseStagingPort {
+
+    /**
+     * Copia {@code size} bytes de {@code content} al staging del documento,
+     * reemplazando lo que hubiera. No cierra el stream.
+     *
+     * @return SHA-256 en hexadecimal de lo copiado, calculado en la misma
+     *         pasada: el alta lo usa para detectar duplicados sin releer.
+     * @throws StorageException si la copia falla o el stream no tiene
+     *                          exactamente {@code size} bytes.
+     */
+    String stage(Long documentId, InputStream content, long size);
+
+    /**
+     * Abre el archivo en staging del documento. El caller cierra el stream.
+     *
+     * @throws StorageException si no hay archivo en staging.
+     */
+    InputStream open(Long documentId);
+
+    /** Borra el archivo en staging del documento, si existe. No falla. */
+    void discard(Long documentId);
+}
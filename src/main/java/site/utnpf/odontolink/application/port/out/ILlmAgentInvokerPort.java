@@ -1,6 +1,7 @@
 package site.utnpf.odontolink.application.port.out;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Puerto de salida para INVOCAR el agente IA (chat completions) (RF29/RF34).
@@ -55,6 +56,30 @@ public interface ILlmAgentInvokerPort {
      */
     AgentInvocationResult invoke(String agentInvocationUrl, List<ChatMessage> messages);
 
+    /**
+     * Variante streaming de {@link #invoke}: entrega cada fragmento de texto a
+     * {@code onDelta} a medida que el proveedor lo genera y, al cerrarse el
+     * stream, devuelve el resultado ensamblado (reply completo + metadata RAG)
+     * con la misma forma que {@link #invoke}.
+     *
+     * <p>La implementacion default no streamea: invoca sincronico y entrega la
+     * respuesta completa como un unico fragmento. Sirve a adapters cuyo
+     * proveedor no soporta chunks.
+     *
+     * @throws site.utnpf.odontolink.domain.exception.LlmProviderException si
+     *         el proveedor falla antes o durante el stream; los fragmentos ya
+     *         entregados no se retractan.
+     */
+    default AgentInvocationResult invokeStreaming(String agentInvocationUrl,
+                                                  List<ChatMessage> messages,
+                                                  Consumer<String> onDelta) {
+        AgentInvocationResult result = invoke(agentInvocationUrl, messages);
+        if (result.reply() != null && !result.reply().isEmpty()) {
+            onDelta.accept(result.reply());
+        }
+        return result;
+    }
+
     /**
      * Resultado de la prueba de alcanzabilidad al endpoint del agente.
      * {@code errorDetail} es null cuando {@code reachable=true}.
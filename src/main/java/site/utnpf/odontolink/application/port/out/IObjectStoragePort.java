@@ -1,5 +1,8 @@
 package site.utnpf.odontolink.application.port.out;
 
+import java.io.InputStream;
+import java.time.Duration;
+
 /**
  * Puerto de salida para almacenamiento de objetos (binarios).
  *
@@ -28,6 +31,29 @@ public interface IObjectStoragePort {
      */
     String upload(String key, byte[] content, String contentType);
 
+    /**
+     * Resultado de una subida por stream: ademas de la URL publica, el
+     * tamanio efectivamente leido y su SHA-256, calculado mientras los bytes
+     * pasaban hacia el storage.
+     */
+    record UploadedObject(String publicUrl, long size, String sha256Hex) {
+    }
+
+    /**
+     * Sube un objeto leyendolo de un stream, sin cargarlo entero en memoria.
+     * Para objetos grandes el adapter puede partirlo en varias partes
+     * (multipart upload); la memoria usada queda acotada por el tamanio de
+     * una parte, no por el del objeto.
+     *
+     * @param content       stream con el contenido; se lee hasta el final
+     *                      pero NO se cierra (es del caller).
+     * @param contentLength cantidad exacta de bytes del stream. Si el stream
+     *                      trae mas o menos, la subida falla y no queda
+     *                      objeto parcial.
+     * @throws StorageException si la operacion falla o el largo no coincide.
+     */
+    UploadedObject upload(String key, InputStream content, long contentLength, String contentType);
+
     /**
      * Borra un objeto del storage. Idempotente: si el objeto no existe la
      * llamada no produce error.
@@ -51,6 +77,50 @@ public interface IObjectStoragePort {
      */
     DownloadedObject download(String key);
 
+    /**
+     * Rango de bytes inclusivo {@code [first, last]} de un objeto, con la
+     * misma semantica que el header HTTP {@code Range}.
+     */
+    record ByteRange(long first, long last) {
+
+        public ByteRange {
+            if (first < 0 || last < first) {
+                throw new IllegalArgumentException("Rango invalido: " + first + "-" + last);
+            }
+        }
+
+        public long length() {
+            return last - first + 1;
+        }
+    }
+
+    /**
+     * Resultado de una descarga por stream. {@code contentLength} es el largo
+     * de lo que trae {@code content} (el del rango, si se pidio uno).
+     */
+    record ObjectStream(InputStream content, String contentType, long contentLength) {
+    }
+
+    /**
+     * Abre un objeto para leerlo de a poco, sin cargarlo entero en memoria.
+     * El caller cierra el stream; cerrarlo antes del final corta la conexion
+     * con el storage en lugar de drenar el resto del objeto.
+     *
+     * @param range rango a leer, o {@code null} para el objeto completo.
+     * @throws StorageException si el objeto no existe o la operacion falla.
+     */
+    ObjectStream openStream(String key, ByteRange range);
+
+    /**
+     * Genera una URL prefirmada de GET valida por {@code ttl}, para que el
+     * cliente descargue directo del storage. La respuesta del storage usa
+     * {@code contentType} y un {@code Content-Disposition} de descarga con
+     * {@code fileName}.
+     *
+     * @throws StorageException si el adapter no tiene firmador configurado.
+     */
+    String presignDownload(String key, Duration ttl, String contentType, String fileName);
+
     /**
      * Construye la URL publica para una clave dada combinando la base
      * publica configurada del bucket con la clave del objeto.
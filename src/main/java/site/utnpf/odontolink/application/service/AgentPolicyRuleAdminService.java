@@ -2,6 +2,7 @@ package site.utnpf.odontolink.application.service;
 
 import org.springframework.transaction.annotation.Transactional;
 import site.utnpf.odontolink.application.port.in.IAgentPolicyRuleAdminUseCase;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
 import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
 import site.utnpf.odontolink.domain.model.AgentPolicyRule;
 import site.utnpf.odontolink.domain.model.AiAgentLifecycle;
@@ -26,11 +27,14 @@ public class AgentPolicyRuleAdminService implements IAgentPolicyRuleAdminUseCase
 
     private final AgentPolicyRuleRepository ruleRepository;
     private final AiAgentConfigurationRepository configRepository;
+    private final ChatbotConfigSnapshotHolder chatbotConfigSnapshot;
 
     public AgentPolicyRuleAdminService(AgentPolicyRuleRepository ruleRepository,
-                                       AiAgentConfigurationRepository configRepository) {
+                                       AiAgentConfigurationRepository configRepository,
+                                       ChatbotConfigSnapshotHolder chatbotConfigSnapshot) {
         this.ruleRepository = ruleRepository;
         this.configRepository = configRepository;
+        this.chatbotConfigSnapshot = chatbotConfigSnapshot;
     }
 
     @Override
@@ -91,6 +95,7 @@ public class AgentPolicyRuleAdminService implements IAgentPolicyRuleAdminUseCase
             if (config.getLifecycle() == AiAgentLifecycle.PUBLISHED) {
                 config.markDraft();
                 configRepository.save(config);
+                chatbotConfigSnapshot.refreshAfterCommit();
             }
         });
     }
@@ -66,6 +66,8 @@ public class AiAgentConfigurationService implements IAiAgentConfigurationUseCase
     private final site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort invokerPort;
     private final AuthenticationFacade authFacade;
     private final site.utnpf.odontolink.application.service.support.SingletonRowBootstrap singletonBootstrap;
+    private final site.utnpf.odontolink.application.service.support.ChatbotResponseCache chatbotResponseCache;
+    private final site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder chatbotConfigSnapshot;
     /** UUID del agente pre-provisto en el dashboard del proveedor. */
     private final String providerAgentUuid;
     /** ENV {@code DIGITALOCEAN_AGENT_INVOCATION_URL}; gana sobre el cache de BD. */
@@ -83,7 +85,9 @@ public class AiAgentConfigurationService implements IAiAgentConfigurationUseCase
                                        AuthenticationFacade authFacade,
                                        site.utnpf.odontolink.application.service.support.SingletonRowBootstrap singletonBootstrap,
                                        String providerAgentUuid,
-                                       String envAgentInvocationUrl) {
+                                       String envAgentInvocationUrl,
+                                       site.utnpf.odontolink.application.service.support.ChatbotResponseCache chatbotResponseCache,
+                                       site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder chatbotConfigSnapshot) {
         this.configRepository = configRepository;
         this.policyRuleRepository = policyRuleRepository;
         this.providerGuardrailRepository = providerGuardrailRepository;
@@ -97,6 +101,8 @@ public class AiAgentConfigurationService implements IAiAgentConfigurationUseCase
         this.singletonBootstrap = singletonBootstrap;
         this.providerAgentUuid = providerAgentUuid;
         this.envAgentInvocationUrl = envAgentInvocationUrl;
+        this.chatbotResponseCache = chatbotResponseCache;
+        this.chatbotConfigSnapshot = chatbotConfigSnapshot;
     }
 
     @Override
@@ -140,18 +146,24 @@ public class AiAgentConfigurationService implements IAiAgentConfigurationUseCase
                 cmd.emergencyBannerText(),
                 cmd.provideCitations(),
                 cmd.showConfidenceIndicator());
-        return configRepository.save(config);
+        AiAgentConfiguration saved = configRepository.save(config);
+        chatbotConfigSnapshot.refreshAfterCommit();
+        return saved;
     }
 
     /**
-     * Limpia el cache de la URL de invocacion del agente para forzar el
-     * siguiente descubrimiento via management API. Util cuando el operador
-     * cambia el deployment en el dashboard de DigitalOcean.
+     * Limpia el cache de la URL de invocacion del agente para forzar un nuevo
+     * descubrimiento via management API. Util cuando el operador cambia el
+     * deployment en el dashboard de DigitalOcean. El redescubrimiento corre
+     * en el refresh post-commit del snapshot del chatbot, no en el turno del
+     * siguiente usuario.
      */
     public AiAgentConfiguration clearAgentInvocationUrlCache() {
         AiAgentConfiguration config = requireConfiguredAgent();
         config.clearAgentInvocationUrlCache();
-        return configRepository.save(config);
+        AiAgentConfiguration saved = configRepository.save(config);
+        chatbotConfigSnapshot.refreshAfterCommit();
+        return saved;
     }
 
     @Override
@@ -166,7 +178,9 @@ public class AiAgentConfigurationService implements IAiAgentConfigurationUseCase
                     AiAgentErrorCodes.AI_AGENT_NOT_PUBLISHED);
         }
         config.markDraft();
-        return configRepository.save(config);
+        AiAgentConfiguration saved = configRepository.save(config);
+        chatbotConfigSnapshot.refreshAfterCommit();
+        return saved;
     }
 
     @Override
@@ -275,6 +289,9 @@ public class AiAgentConfigurationService implements IAiAgentConfigurationUseCase
                     "Publish v" + nextVersion
                             + (usedOverride ? " con override. Requisitos saltados: " + missingCsv : "")));
 
+            // Las respuestas cacheadas del chatbot salieron del prompt anterior.
+            chatbotResponseCache.invalidateAll();
+            chatbotConfigSnapshot.refreshAfterCommit();
             return saved;
         } catch (LlmProviderException ex) {
             log.warn("Falla al publicar la configuracion del agente: {} ({}).",
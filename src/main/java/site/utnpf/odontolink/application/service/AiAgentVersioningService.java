@@ -4,6 +4,7 @@ import org.springframework.transaction.annotation.Transactional;
 import site.utnpf.odontolink.application.port.in.IAiAgentVersioningUseCase;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort.AgentUpdateSpec;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
 import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 import site.utnpf.odontolink.domain.exception.LlmProviderException;
 import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
@@ -36,19 +37,22 @@ public class AiAgentVersioningService implements IAiAgentVersioningUseCase {
     private final ILlmAgentProviderPort llmProvider;
     private final AuthenticationFacade authFacade;
     private final String providerAgentUuid;
+    private final ChatbotConfigSnapshotHolder chatbotConfigSnapshot;
 
     public AiAgentVersioningService(AiAgentConfigurationVersionRepository versionRepository,
                                     AiAgentConfigurationRepository configRepository,
                                     AiAdminAuditEventRepository auditRepository,
                                     ILlmAgentProviderPort llmProvider,
                                     AuthenticationFacade authFacade,
-                                    String providerAgentUuid) {
+                                    String providerAgentUuid,
+                                    ChatbotConfigSnapshotHolder chatbotConfigSnapshot) {
         this.versionRepository = versionRepository;
         this.configRepository = configRepository;
         this.auditRepository = auditRepository;
         this.llmProvider = llmProvider;
         this.authFacade = authFacade;
         this.providerAgentUuid = providerAgentUuid;
+        this.chatbotConfigSnapshot = chatbotConfigSnapshot;
     }
 
     @Override
@@ -117,6 +121,7 @@ public class AiAgentVersioningService implements IAiAgentVersioningUseCase {
             llmProvider.updateAgent(providerAgentUuid, spec);
             config.markPublished(providerAgentUuid, Instant.now());
             configRepository.save(config);
+            chatbotConfigSnapshot.refreshAfterCommit();
         } catch (LlmProviderException ex) {
             config.markPublishFailed(ex.getMessage());
             configRepository.save(config);
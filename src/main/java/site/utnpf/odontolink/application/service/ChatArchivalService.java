@@ -0,0 +1,170 @@
+package site.utnpf.odontolink.application.service;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import site.utnpf.odontolink.application.port.in.IChatArchivalUseCase;
+import site.utnpf.odontolink.application.port.in.dto.ChatArchivalResult;
+import site.utnpf.odontolink.application.service.support.ChatArchiveCodec;
+import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.domain.model.ChatMessageArchiveChunk;
+import site.utnpf.odontolink.domain.repository.ChatMessageArchiveRepository;
+import site.utnpf.odontolink.domain.repository.ChatMessageRepository;
+import site.utnpf.odontolink.domain.repository.ChatSessionRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Archivado del chat interno (CU012): mueve los mensajes antiguos de sesiones inactivas
+ * a chunks comprimidos para que {@code chat_messages} y sus índices entren en el buffer
+ * pool de MySQL.
+ *
+ * <p>Reglas de elegibilidad:
+ * <ul>
+ *   <li>La sesión no tiene mensajes posteriores a {@code now - inactivity} ni
+ *       no-leídos: el tier frío nunca participa de badges ni de read receipts.</li>
+ *   <li>Solo se mueven mensajes con {@code sentAt < now - minAge}. Como los mensajes
+ *       nuevos nacen con {@code sentAt = now}, lo archivado es siempre un prefijo
+ *       cronológico del historial; es lo que permite a {@link ChatService} paginar
+ *       "primero la tabla, después los chunks" sin mezclar.</li>
+ * </ul>
+ *
+ * <p>Las sesiones se recorren por keyset sobre la PK de {@code chat_sessions}, en páginas
+ * de {@code maxSessionsPerRun}: la elegibilidad se evalúa solo sobre los mensajes de cada
+ * página, nunca con un GROUP BY sobre toda la tabla. Una corrida archiva como mucho
+ * {@code maxSessionsPerRun} sesiones y deja el cursor donde quedó; la siguiente sigue
+ * desde ahí y, al llegar al final de la tabla, vuelve a empezar.
+ *
+ * <p>Cada chunk se lee, se inserta y sus mensajes se borran en su propia transacción
+ * corta: los locks duran un chunk y un fallo no deshace lo ya archivado. Si el DELETE no
+ * borra exactamente los ids del chunk (otra instancia archivó en paralelo) se revierte ese
+ * chunk, se aborta la corrida y no quedan duplicados.
+ *
+ * @author OdontoLink Team
+ */
+public class ChatArchivalService implements IChatArchivalUseCase {
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatMessageArchiveRepository archiveRepository;
+    private final TransactionTemplate tx;
+    private final Duration minAge;
+    private final Duration inactivity;
+    private final int chunkSize;
+    private final int maxSessionsPerRun;
+
+    /** Último id de sesión revisado; {@code 0} reinicia el recorrido. */
+    private final AtomicLong sessionCursor = new AtomicLong();
+
+    public ChatArchivalService(ChatMessageRepository chatMessageRepository,
+                               ChatSessionRepository chatSessionRepository,
+                               ChatMessageArchiveRepository archiveRepository,
+                               PlatformTransactionManager transactionManager,
+                               Duration minAge,
+                               Duration inactivity,
+                               int chunkSize,
+                               int maxSessionsPerRun) {
+        if (chunkSize <= 0 || maxSessionsPerRun <= 0) {
+            throw new IllegalArgumentException("chunkSize y maxSessionsPerRun deben ser > 0");
+        }
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatSessionRepository = chatSessionRepository;
+        this.archiveRepository = archiveRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.minAge = minAge;
+        this.inactivity = inactivity;
+        this.chunkSize = chunkSize;
+        this.maxSessionsPerRun = maxSessionsPerRun;
+    }
+
+    @Override
+    public ChatArchivalResult archiveColdMessages(Instant now) {
+        Instant sentBefore = now.minus(minAge);
+        Instant inactiveSince = now.minus(inactivity);
+
+        int sessions = 0;
+        int chunks = 0;
+        int messages = 0;
+        long bytes = 0;
+        while (sessions < maxSessionsPerRun) {
+            List<Long> page = chatSessionRepository.findIdsAfter(sessionCursor.get(), maxSessionsPerRun);
+            if (page.isEmpty()) {
+                sessionCursor.set(0);
+                break;
+            }
+            for (Long sessionId : chatMessageRepository.findArchivableSessionIds(inactiveSince, page)) {
+                if (sessions == maxSessionsPerRun) {
+                    break;
+                }
+                boolean touched = false;
+                ArchivedChunk archived;
+                while ((archived = archiveNextChunk(sessionId, sentBefore, now)) != null) {
+                    touched = true;
+                    chunks++;
+                    messages += archived.messages();
+                    bytes += archived.bytes();
+                    if (archived.messages() < chunkSize) {
+                        break;
+                    }
+                }
+                // El cursor avanza sesión por sesión: si la corrida se corta por el cupo,
+                // la siguiente retoma en la sesión que sigue.
+                sessionCursor.set(sessionId);
+                if (touched) {
+                    sessions++;
+                }
+            }
+            if (sessions < maxSessionsPerRun) {
+                if (page.size() < maxSessionsPerRun) {
+                    sessionCursor.set(0);
+                    break;
+                }
+                sessionCursor.set(page.get(page.size() - 1));
+            }
+        }
+        return new ChatArchivalResult(sessions, chunks, messages, bytes);
+    }
+
+    /**
+     * Archiva el próximo chunk de la sesión en una transacción propia. Devuelve
+     * {@code null} si ya no quedan mensajes archivables.
+     */
+    private ArchivedChunk archiveNextChunk(Long sessionId, Instant sentBefore, Instant now) {
+        return tx.execute(status -> {
+            List<ChatMessage> batch = chatMessageRepository.findInSessionSentBeforeAsc(sessionId, sentBefore, chunkSize);
+            if (batch.isEmpty()) {
+                return null;
+            }
+            ChatMessageArchiveChunk chunk = toChunk(sessionId, batch, now);
+            archiveRepository.save(chunk);
+
+            List<Long> ids = batch.stream().map(ChatMessage::getId).toList();
+            int deleted = chatMessageRepository.deleteByIds(ids);
+            if (deleted != ids.size()) {
+                throw new IllegalStateException("Archivado concurrente detectado en la sesión " + sessionId
+                        + ": se esperaban " + ids.size() + " filas y se borraron " + deleted + ".");
+            }
+            return new ArchivedChunk(batch.size(), chunk.getPayload().length);
+        });
+    }
+
+    private static ChatMessageArchiveChunk toChunk(Long sessionId, List<ChatMessage> ascending, Instant now) {
+        ChatMessage first = ascending.get(0);
+        ChatMessage last = ascending.get(ascending.size() - 1);
+        return new ChatMessageArchiveChunk(
+                sessionId,
+                first.getId(),
+                first.getSentAt(),
+                last.getId(),
+                last.getSentAt(),
+                ascending.size(),
+                ChatArchiveCodec.encode(ascending),
+                now);
+    }
+
+    /** Resultado de la transacción de un chunk. */
+    private record ArchivedChunk(int messages, long bytes) {
+    }
+}
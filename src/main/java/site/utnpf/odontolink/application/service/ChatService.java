@@ -1,21 +1,34 @@
 package site.utnpf.odontolink.application.service;
 
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import site.utnpf.odontolink.application.port.in.IChatUseCase;
 import site.utnpf.odontolink.application.port.in.dto.ChatPollResult;
+import site.utnpf.odontolink.application.port.in.dto.ChatSearchResult;
+import site.utnpf.odontolink.application.port.in.dto.ChatMessageCursor;
 import site.utnpf.odontolink.application.port.in.dto.ChatSessionView;
+import site.utnpf.odontolink.application.port.in.dto.CursorPagedMessages;
 import site.utnpf.odontolink.application.port.in.dto.PagedMessages;
 import site.utnpf.odontolink.application.port.in.dto.ReadReceipt;
+import site.utnpf.odontolink.application.service.support.ChatArchiveReader;
+import site.utnpf.odontolink.application.service.support.ChatReadAcknowledgementBuffer;
+import site.utnpf.odontolink.application.service.support.ChatReadAcknowledgementBuffer.PendingAck;
+import site.utnpf.odontolink.application.service.support.ChatSearchTerms;
+import site.utnpf.odontolink.application.service.support.ChatUnreadCounter;
 import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
 import site.utnpf.odontolink.domain.exception.UnauthorizedOperationException;
 import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.domain.model.ChatMessageSearchHit;
 import site.utnpf.odontolink.domain.model.ChatSession;
 import site.utnpf.odontolink.domain.model.Patient;
 import site.utnpf.odontolink.domain.model.Practitioner;
 import site.utnpf.odontolink.domain.model.Role;
 import site.utnpf.odontolink.domain.model.User;
 import site.utnpf.odontolink.domain.repository.AppointmentRepository;
+import site.utnpf.odontolink.domain.repository.ChatMessageArchiveRepository;
 import site.utnpf.odontolink.domain.repository.ChatMessageRepository;
 import site.utnpf.odontolink.domain.repository.ChatSessionRepository;
 import site.utnpf.odontolink.domain.repository.PatientRepository;
@@ -27,6 +40,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +52,10 @@ import java.util.stream.Collectors;
  * Toda la clase es @Transactional: las operaciones que solo leen se marcan con readOnly
  * para que Hibernate pueda optimizar (flush mode = NEVER).
  *
+ * El historial vive en dos tiers: {@code chat_messages} (caliente) y los chunks
+ * comprimidos de {@link ChatArchivalService} (frío). Lo archivado es siempre anterior a lo
+ * caliente, así que las lecturas agotan primero la tabla y completan desde el archivo.
+ *
  * @author OdontoLink Team
  */
 @Transactional
@@ -45,6 +63,7 @@ public class ChatService implements IChatUseCase {
 
     private static final String CODE_NO_PRIOR_RELATIONSHIP = "CHAT_NO_PRIOR_RELATIONSHIP";
     private static final String CODE_PARTICIPANT_MISMATCH = "CHAT_PARTICIPANT_MISMATCH";
+    private static final String CODE_SEARCH_QUERY_TOO_SHORT = "CHAT_SEARCH_QUERY_TOO_SHORT";
 
     private final ChatSessionRepository chatSessionRepository;
     private final ChatMessageRepository chatMessageRepository;
@@ -58,6 +77,20 @@ public class ChatService implements IChatUseCase {
      * usar paginación explícita ({@code ?page=&size=}).
      */
     private final int initialLoadCap;
+    /**
+     * Confirmaciones de lectura pendientes de aplicar. Compartido con el job de flush; ver
+     * {@link #markMessagesAsRead} y {@link #flushReadAcknowledgements()}.
+     */
+    private final ChatReadAcknowledgementBuffer readAcknowledgementBuffer;
+    private final ChatArchiveReader archiveReader;
+    /**
+     * Badge global de no-leídos en memoria; se ajusta en {@link #sendMessage} y en
+     * {@link #flushReadAcknowledgements()} y se corrige en
+     * {@link #reconcileUnreadCounters(Instant)}.
+     */
+    private final ChatUnreadCounter unreadCounter;
+    /** Transacción propia del flush: los contadores se ajustan recién después del commit. */
+    private final TransactionTemplate tx;
 
     public ChatService(
             ChatSessionRepository chatSessionRepository,
@@ -66,7 +99,11 @@ public class ChatService implements IChatUseCase {
             PractitionerRepository practitionerRepository,
             AppointmentRepository appointmentRepository,
             ChatPolicyService chatPolicyService,
-            int initialLoadCap) {
+            int initialLoadCap,
+            ChatReadAcknowledgementBuffer readAcknowledgementBuffer,
+            ChatMessageArchiveRepository chatMessageArchiveRepository,
+            ChatUnreadCounter unreadCounter,
+            PlatformTransactionManager transactionManager) {
         this.chatSessionRepository = chatSessionRepository;
         this.chatMessageRepository = chatMessageRepository;
         this.patientRepository = patientRepository;
@@ -77,6 +114,10 @@ public class ChatService implements IChatUseCase {
             throw new IllegalArgumentException("initialLoadCap debe ser > 0");
         }
         this.initialLoadCap = initialLoadCap;
+        this.readAcknowledgementBuffer = readAcknowledgementBuffer;
+        this.archiveReader = new ChatArchiveReader(chatMessageArchiveRepository);
+        this.unreadCounter = unreadCounter;
+        this.tx = new TransactionTemplate(transactionManager);
     }
 
     @Override
@@ -100,15 +141,22 @@ public class ChatService implements IChatUseCase {
         // Orden: leemos primero el último mensaje (1 query) y, solo si la sesión pasa el
         // filtro, leemos el unreadCount (otra query); así evitamos N queries de unread
         // cuando el usuario tiene muchas sesiones inactivas frente a un cursor reciente.
+        Map<Long, Long> pendingAcks = readAcknowledgementBuffer.pendingUnreadBySession(user.getId());
         List<ChatSessionView> enriched = new ArrayList<>(rawSessions.size());
         for (ChatSession session : rawSessions) {
             ChatMessage last = chatMessageRepository.findLastMessageInSession(session).orElse(null);
+            if (last == null && since == null) {
+                // Sesión con todo el historial archivado: el preview sale del tier frío.
+                List<ChatMessage> archived = archiveReader.beforeDesc(session, null, null, 1);
+                last = archived.isEmpty() ? null : archived.get(0);
+            }
             if (since != null) {
                 if (last == null || last.getSentAt().isBefore(since)) {
                     continue;
                 }
             }
-            long unread = chatMessageRepository.countUnreadByChatSessionAndReceiver(session, user.getId());
+            long unread = chatMessageRepository.countUnreadByChatSessionAndReceiver(session, user.getId())
+                    - pendingAcks.getOrDefault(session.getId(), 0L);
             enriched.add(new ChatSessionView(session, unread, last));
         }
 
@@ -130,7 +178,12 @@ public class ChatService implements IChatUseCase {
         chatPolicyService.validateMessageSend(chatSession, sender);
 
         ChatMessage newMessage = new ChatMessage(chatSession, sender, content);
-        return chatMessageRepository.save(newMessage);
+        ChatMessage saved = chatMessageRepository.save(newMessage);
+        Long receiverUserId = otherParticipantUserId(chatSession, sender);
+        if (receiverUserId != null) {
+            unreadCounter.increment(receiverUserId);
+        }
+        return saved;
     }
 
     @Override
@@ -154,6 +207,9 @@ public class ChatService implements IChatUseCase {
             // (?page=&size=) — el wrapper paginado también lleva serverTime para arrancar
             // el polling sin necesidad de hacer una carga sin cap.
             messages = chatMessageRepository.findLatestInSessionAsc(chatSession, initialLoadCap);
+            if (messages.size() < initialLoadCap) {
+                messages = prependArchived(chatSession, messages, initialLoadCap - messages.size());
+            }
             readReceipts = Collections.emptyList();
         } else {
             messages = chatMessageRepository.findInSessionSinceInclusiveAsc(chatSession, sinceTimestamp);
@@ -173,9 +229,7 @@ public class ChatService implements IChatUseCase {
         if (page < 0) {
             throw new IllegalArgumentException("El número de página no puede ser negativo.");
         }
-        if (size <= 0 || size > 200) {
-            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y 200.");
-        }
+        validatePageSize(size);
         // Capturar serverTime ANTES de leer mantiene el mismo contrato de cursor que el
         // wrapper polling: tras una carga inicial paginada, el FE puede arrancar polling
         // con ?since=serverTime sin necesidad de Date.now() (clock skew) ni de una carga
@@ -185,9 +239,96 @@ public class ChatService implements IChatUseCase {
         ChatSession chatSession = loadSessionOrThrow(chatSessionId);
         chatPolicyService.validateMessageAccess(chatSession, user);
 
-        List<ChatMessage> pageContent = chatMessageRepository.findByChatSessionPagedDesc(chatSession, page, size);
-        long total = chatMessageRepository.countByChatSession(chatSession);
-        return new PagedMessages(pageContent, page, size, total, serverTime);
+        long hotTotal = chatMessageRepository.countByChatSession(chatSession);
+        long offset = (long) page * size;
+        List<ChatMessage> pageContent = offset < hotTotal
+                ? new ArrayList<>(chatMessageRepository.findByChatSessionPagedDesc(chatSession, page, size))
+                : new ArrayList<>();
+        long archivedTotal = archiveReader.count(chatSession);
+        if (pageContent.size() < size && archivedTotal > 0) {
+            // La página cruza (o ya pasó) el borde con el tier frío: el offset dentro del
+            // archivo es lo que queda después de recorrer toda la tabla caliente.
+            pageContent.addAll(archiveReader.pageDesc(
+                    chatSession, Math.max(0, offset - hotTotal), size - pageContent.size()));
+        }
+        return new PagedMessages(pageContent, page, size, hotTotal + archivedTotal, serverTime);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPagedMessages getMessagesByCursor(Long chatSessionId, User user, String cursor,
+                                                   int size, boolean includeTotal) {
+        validatePageSize(size);
+        // Decodificar antes de tocar la base: un cursor inválido es error del cliente.
+        ChatMessageCursor before = cursor != null ? ChatMessageCursor.decode(cursor) : null;
+        Instant serverTime = Instant.now();
+
+        ChatSession chatSession = loadSessionOrThrow(chatSessionId);
+        chatPolicyService.validateMessageAccess(chatSession, user);
+
+        // Pedimos size + 1 para saber si hay más sin un COUNT: la fila extra solo se usa
+        // como señal y no se devuelve.
+        List<ChatMessage> rows = chatMessageRepository.findInSessionBeforeDesc(
+                chatSession,
+                before != null ? before.getSentAt() : null,
+                before != null ? before.getId() : null,
+                size + 1);
+        if (rows.size() <= size) {
+            // Se agotó la tabla caliente: seguimos en el archivo desde el último entregado
+            // (o desde el cursor si la tabla no aportó nada).
+            List<ChatMessage> merged = new ArrayList<>(rows);
+            ChatMessage tail = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+            merged.addAll(archiveReader.beforeDesc(
+                    chatSession,
+                    tail != null ? tail.getSentAt() : (before != null ? before.getSentAt() : null),
+                    tail != null ? tail.getId() : (before != null ? before.getId() : null),
+                    size + 1 - rows.size()));
+            rows = merged;
+        }
+        boolean hasMore = rows.size() > size;
+        List<ChatMessage> pageContent = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = hasMore
+                ? ChatMessageCursor.of(pageContent.get(pageContent.size() - 1)).encode()
+                : null;
+        Long total = includeTotal
+                ? chatMessageRepository.countByChatSession(chatSession) + archiveReader.count(chatSession)
+                : null;
+        return new CursorPagedMessages(new ArrayList<>(pageContent), size, nextCursor, total, serverTime);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ChatSearchResult searchMessages(User user, String query, Long chatSessionId, int page, int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("El número de página no puede ser negativo.");
+        }
+        validatePageSize(size);
+        List<String> terms = ChatSearchTerms.parse(query);
+        if (terms.isEmpty()) {
+            throw new InvalidBusinessRuleException(
+                    "La búsqueda necesita al menos una palabra de " + ChatSearchTerms.MIN_TERM_LENGTH + " o más caracteres.",
+                    CODE_SEARCH_QUERY_TOO_SHORT);
+        }
+
+        // Alcance: la sesión pedida (validada por la política) o todas las del usuario, que
+        // por construcción son aquellas donde es participante.
+        List<Long> sessionIds;
+        if (chatSessionId != null) {
+            ChatSession chatSession = loadSessionOrThrow(chatSessionId);
+            chatPolicyService.validateMessageAccess(chatSession, user);
+            sessionIds = List.of(chatSession.getId());
+        } else {
+            sessionIds = loadSessionsForUser(user).stream().map(ChatSession::getId).toList();
+        }
+        if (sessionIds.isEmpty()) {
+            return new ChatSearchResult(List.of(), page, size, false);
+        }
+
+        // Misma técnica que el historial por cursor: la fila extra indica si hay más página.
+        List<ChatMessageSearchHit> hits = chatMessageRepository.searchInSessions(
+                sessionIds, terms, (long) page * size, size + 1);
+        boolean hasMore = hits.size() > size;
+        return new ChatSearchResult(hasMore ? new ArrayList<>(hits.subList(0, size)) : hits, page, size, hasMore);
     }
 
     @Override
@@ -279,12 +420,65 @@ public class ChatService implements IChatUseCase {
     }
 
     @Override
-    public int markMessagesAsRead(Long chatSessionId, User receiver) {
+    @Transactional(readOnly = true)
+    public int markMessagesAsRead(Long chatSessionId, User receiver, Long upToMessageId) {
+        Instant readAt = Instant.now();
         ChatSession chatSession = loadSessionOrThrow(chatSessionId);
         chatPolicyService.validateMarkAsRead(chatSession, receiver);
 
-        // Bulk UPDATE en una sola sentencia SQL → evita N+1 al abrir conversaciones largas.
-        return chatMessageRepository.markAllAsReadInSession(chatSession, receiver.getId(), Instant.now());
+        Long upTo = upToMessageId;
+        if (upTo == null) {
+            upTo = chatMessageRepository.findLastMessageInSession(chatSession)
+                    .map(ChatMessage::getId)
+                    .orElse(null);
+            if (upTo == null) {
+                return 0;
+            }
+        }
+        long covered = chatMessageRepository.countUnreadByChatSessionAndReceiverUpTo(
+                chatSessionId, receiver.getId(), upTo);
+        if (covered == 0) {
+            // Nada que marcar: ni siquiera encolamos, el foco repetido sobre una sesión al día
+            // no debe generar escrituras.
+            return 0;
+        }
+        // El UPDATE lo emite el flush: N focos seguidos sobre la misma sesión terminan en
+        // una sola sentencia con el mayor upTo recibido.
+        readAcknowledgementBuffer.acknowledge(chatSessionId, receiver.getId(), upTo, readAt, covered);
+        return (int) covered;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int flushReadAcknowledgements() {
+        List<PendingAck> acks = readAcknowledgementBuffer.drain();
+        if (acks.isEmpty()) {
+            return 0;
+        }
+        // Todas las confirmaciones de la ventana viajan en una sola transacción: un solo
+        // commit en lugar de uno por request. Si algo falla, incluido el commit, se reencolan
+        // enteras (el UPDATE es idempotente gracias al filtro readAt IS NULL).
+        int[] rows;
+        try {
+            rows = tx.execute(status -> {
+                int[] updated = new int[acks.size()];
+                for (int i = 0; i < acks.size(); i++) {
+                    PendingAck ack = acks.get(i);
+                    updated[i] = chatMessageRepository.markAsReadUpTo(
+                            ack.chatSessionId(), ack.receiverUserId(), ack.upToMessageId(), ack.readAt());
+                }
+                return updated;
+            });
+        } catch (RuntimeException ex) {
+            readAcknowledgementBuffer.requeue(acks);
+            throw ex;
+        }
+        // Recién con el commit hecho: un rollback no deja el badge descontado.
+        for (int i = 0; i < rows.length; i++) {
+            readAcknowledgementBuffer.recordFlush(rows[i]);
+            unreadCounter.decrement(acks.get(i).receiverUserId(), rows[i]);
+        }
+        return acks.size();
     }
 
     @Override
@@ -293,11 +487,75 @@ public class ChatService implements IChatUseCase {
         if (user == null) {
             throw new IllegalArgumentException("El usuario no puede ser nulo.");
         }
-        return chatMessageRepository.countTotalUnreadByReceiver(user.getId());
+        Long userId = user.getId();
+        // O(1) salvo la primera vez que se pide el badge del usuario (COUNT para cargarlo).
+        long total = unreadCounter.get(userId, () -> chatMessageRepository.countTotalUnreadByReceiver(userId),
+                Instant.now());
+        for (long covered : readAcknowledgementBuffer.pendingUnreadBySession(userId).values()) {
+            total -= covered;
+        }
+        return Math.max(0, total);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int reconcileUnreadCounters(Instant idleBefore) {
+        // Sin transacción envolvente a propósito: con REPEATABLE READ todos los COUNT del
+        // barrido leerían el snapshot del primero, mientras reconcile() compara contra el
+        // contador en vivo y publicaría un conteo de menos. Cada COUNT corre en su propia
+        // transacción corta del repositorio, y el barrido no retiene una conexión.
+        unreadCounter.evictIdle(idleBefore);
+        int corrected = 0;
+        for (Long userId : unreadCounter.trackedUsers()) {
+            if (unreadCounter.reconcile(userId, () -> chatMessageRepository.countTotalUnreadByReceiver(userId)) != 0) {
+                corrected++;
+            }
+        }
+        return corrected;
     }
 
     // Helpers privados
 
+    /**
+     * Usuario del otro participante de la sesión (el receptor de un mensaje de
+     * {@code sender}), o {@code null} si la sesión no trae los participantes cargados.
+     */
+    private static Long otherParticipantUserId(ChatSession session, User sender) {
+        User patientUser = session.getPatient() != null ? session.getPatient().getUser() : null;
+        User practitionerUser = session.getPractitioner() != null ? session.getPractitioner().getUser() : null;
+        if (patientUser == null || practitionerUser == null) {
+            return null;
+        }
+        return sender.getId().equals(patientUser.getId()) ? practitionerUser.getId() : patientUser.getId();
+    }
+
+    /**
+     * Antepone hasta {@code missing} mensajes archivados a una carga ASC de la tabla
+     * caliente, para que la carga inicial de una sesión archivada no llegue vacía.
+     */
+    private List<ChatMessage> prependArchived(ChatSession chatSession, List<ChatMessage> hotAsc, int missing) {
+        ChatMessage oldest = hotAsc.isEmpty() ? null : hotAsc.get(0);
+        List<ChatMessage> archivedDesc = archiveReader.beforeDesc(
+                chatSession,
+                oldest != null ? oldest.getSentAt() : null,
+                oldest != null ? oldest.getId() : null,
+                missing);
+        if (archivedDesc.isEmpty()) {
+            return hotAsc;
+        }
+        List<ChatMessage> merged = new ArrayList<>(archivedDesc.size() + hotAsc.size());
+        merged.addAll(archivedDesc);
+        Collections.reverse(merged);
+        merged.addAll(hotAsc);
+        return merged;
+    }
+
+    private void validatePageSize(int size) {
+        if (size <= 0 || size > 200) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y 200.");
+        }
+    }
+
     private ChatSession loadSessionOrThrow(Long chatSessionId) {
         return chatSessionRepository.findById(chatSessionId)
                 .orElseThrow(() -> new ResourceNotFoundException("ChatSession", "id", chatSessionId.toString()));
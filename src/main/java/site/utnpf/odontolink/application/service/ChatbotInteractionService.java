@@ -2,45 +2,56 @@ package site.utnpf.odontolink.application.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import site.utnpf.odontolink.application.port.in.IChatbotInteractionUseCase;
 import site.utnpf.odontolink.application.port.in.dto.ChatbotMessageCommand;
 import site.utnpf.odontolink.application.port.in.dto.ChatbotPublicInfo;
+import site.utnpf.odontolink.application.port.out.IChatbotTurnMetricsPort;
+import site.utnpf.odontolink.application.port.out.IChatbotTurnMetricsPort.Outcome;
+import site.utnpf.odontolink.application.port.out.IChatbotTurnMetricsPort.Phase;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.AgentInvocationResult;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.ChatMessage;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.RetrievalDocument;
-import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshot;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
+import site.utnpf.odontolink.application.service.support.ChatbotConversationWindow;
+import site.utnpf.odontolink.application.service.support.ChatbotRequestCoalescer;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
 import site.utnpf.odontolink.application.service.security.EmergencyDetector;
 import site.utnpf.odontolink.application.service.security.PiiSanitizer;
 import site.utnpf.odontolink.application.service.security.PiiSanitizer.PiiScanResult;
-import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 import site.utnpf.odontolink.domain.exception.LlmProviderException;
 import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
 import site.utnpf.odontolink.domain.model.AiAgentAccessMode;
-import site.utnpf.odontolink.domain.model.AiAgentConfiguration;
-import site.utnpf.odontolink.domain.model.AiAgentLifecycle;
 import site.utnpf.odontolink.domain.model.AiPiiPolicy;
 import site.utnpf.odontolink.domain.model.ChatbotInteractionResult;
 import site.utnpf.odontolink.domain.model.ChatbotMessage;
 import site.utnpf.odontolink.domain.model.ChatbotMessageRole;
 import site.utnpf.odontolink.domain.model.ChatbotSession;
 import site.utnpf.odontolink.domain.model.ConfidenceAssessment;
-import site.utnpf.odontolink.domain.model.EmergencyKeyword;
 import site.utnpf.odontolink.domain.model.Role;
-import site.utnpf.odontolink.domain.repository.AiAgentConfigurationRepository;
 import site.utnpf.odontolink.domain.repository.ChatbotMessageRepository;
 import site.utnpf.odontolink.domain.repository.ChatbotSessionRepository;
 import site.utnpf.odontolink.domain.repository.EmergencyKeywordRepository;
 import site.utnpf.odontolink.domain.service.ConfidenceCalculator;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 /**
  * Servicio de aplicacion del chatbot institucional (RF29/RF31/RF32/RF34).
@@ -59,7 +70,16 @@ import java.util.UUID;
  *   <li>Si la politica PII es BLOCK y se detecto PII: respondemos un mensaje
  *       educativo y NO llamamos al proveedor. No persistimos el mensaje del
  *       usuario (evita guardar PII en BD).</li>
- *   <li>El rolling buffer se purga FIFO despues de cada turno exitoso.</li>
+ *   <li>El historial del turno sale de la {@link ChatbotConversationWindow}
+ *       en memoria; los mensajes se persisten en lotes
+ *       ({@link #flushConversationWrites}) y el cap FIFO de la base se aplica
+ *       con un recorte periodico ({@link #trimConversationBuffers}).</li>
+ *   <li>La llamada al proveedor corre fuera de toda transaccion (ver
+ *       {@link #sendMessage}): con el pool de Hikari en 10, diez turnos
+ *       esperando a DigitalOcean dejaban al resto de la API sin conexiones.</li>
+ *   <li>Las preguntas de un solo turno sin emergencia pasan por el
+ *       {@link ChatbotResponseCache}: un hit responde sin invocar al
+ *       proveedor, pero el turno se persiste igual que uno normal.</li>
  * </ul>
  */
 @Transactional
@@ -72,141 +92,218 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
                     "(DNI, CUIT, CBU, numeros de tarjeta, etc.) en este canal. " +
                     "Reformula tu consulta sin esa informacion y con gusto te ayudo.";
 
+    /** Mensajes por commit del flush; el job corre cada pocos cientos de ms. */
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * Antiguedad minima del ultimo flush de una sesion para que el recorte la
+     * tome: sus mensajes pueden haber llegado antes que el commit del alta.
+     */
+    private static final Duration ORPHAN_GRACE = Duration.ofMinutes(5);
+
+    /** Sesiones por transaccion del recorte. */
+    private static final int TRIM_BATCH_SIZE = 100;
+
     private static final String FALLBACK_REPLY =
             "El asistente no esta disponible en este momento. " +
                     "Si tu consulta es urgente, por favor contactate con la clinica.";
 
-    private final AiAgentConfigurationRepository configRepository;
+    private final ChatbotConfigSnapshotHolder configSnapshot;
     private final ChatbotSessionRepository sessionRepository;
     private final ChatbotMessageRepository messageRepository;
     private final EmergencyKeywordRepository emergencyKeywordRepository;
     private final PiiSanitizer piiSanitizer;
     private final EmergencyDetector emergencyDetector;
     private final ILlmAgentInvokerPort invokerPort;
-    private final ILlmAgentProviderPort providerPort;
     private final ConfidenceCalculator confidenceCalculator;
-    private final String envAgentInvocationUrl;
-    private final String providerAgentUuid;
+    private final TransactionTemplate tx;
+    private final ChatbotResponseCache responseCache;
+    private final ChatbotRequestCoalescer requestCoalescer;
+    private final ChatbotConversationWindow conversationWindow;
+    private final IChatbotTurnMetricsPort turnMetrics;
 
-    public ChatbotInteractionService(AiAgentConfigurationRepository configRepository,
+    public ChatbotInteractionService(ChatbotConfigSnapshotHolder configSnapshot,
                                      ChatbotSessionRepository sessionRepository,
                                      ChatbotMessageRepository messageRepository,
                                      EmergencyKeywordRepository emergencyKeywordRepository,
                                      PiiSanitizer piiSanitizer,
                                      EmergencyDetector emergencyDetector,
                                      ILlmAgentInvokerPort invokerPort,
-                                     ILlmAgentProviderPort providerPort,
                                      ConfidenceCalculator confidenceCalculator,
-                                     String envAgentInvocationUrl,
-                                     String providerAgentUuid) {
-        this.configRepository = configRepository;
+                                     PlatformTransactionManager transactionManager,
+                                     ChatbotResponseCache responseCache,
+                                     ChatbotRequestCoalescer requestCoalescer,
+                                     ChatbotConversationWindow conversationWindow,
+                                     IChatbotTurnMetricsPort turnMetrics) {
+        this.configSnapshot = configSnapshot;
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
         this.emergencyKeywordRepository = emergencyKeywordRepository;
         this.piiSanitizer = piiSanitizer;
         this.emergencyDetector = emergencyDetector;
         this.invokerPort = invokerPort;
-        this.providerPort = providerPort;
         this.confidenceCalculator = confidenceCalculator;
-        this.envAgentInvocationUrl = envAgentInvocationUrl;
-        this.providerAgentUuid = providerAgentUuid;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
+        this.conversationWindow = conversationWindow;
+        this.turnMetrics = turnMetrics;
     }
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ChatbotPublicInfo getPublicInfo(Role callerRole) {
-        Optional<AiAgentConfiguration> opt = configRepository.findSingleton();
-        if (opt.isEmpty()) {
-            return ChatbotPublicInfo.denied(AiAgentAccessMode.DISABLED, "AGENT_NOT_PUBLISHED");
-        }
-        AiAgentConfiguration config = opt.get();
-        if (config.getLifecycle() != AiAgentLifecycle.PUBLISHED) {
-            return ChatbotPublicInfo.denied(config.getAccessMode(), "AGENT_NOT_PUBLISHED");
+        ChatbotConfigSnapshot config = configSnapshot.current();
+        if (!config.isPublished()) {
+            return ChatbotPublicInfo.denied(config.accessMode(), "AGENT_NOT_PUBLISHED");
         }
-        if (config.getAccessMode() == AiAgentAccessMode.DISABLED) {
+        if (config.accessMode() == AiAgentAccessMode.DISABLED) {
             return ChatbotPublicInfo.denied(AiAgentAccessMode.DISABLED, "AGENT_DISABLED");
         }
-        if (config.getAccessMode() == AiAgentAccessMode.PRIVATE) {
+        if (config.accessMode() == AiAgentAccessMode.PRIVATE) {
             if (callerRole == null) {
                 return ChatbotPublicInfo.denied(AiAgentAccessMode.PRIVATE, "AUTHENTICATION_REQUIRED");
             }
-            if (!config.getAllowedRoles().contains(callerRole)) {
+            if (!config.allowedRoles().contains(callerRole)) {
                 return ChatbotPublicInfo.denied(AiAgentAccessMode.PRIVATE, "ROLE_NOT_ALLOWED");
             }
         }
         return ChatbotPublicInfo.granted(
-                config.getAccessMode(),
-                config.getDisplayName(),
-                config.getWelcomeMessage());
+                config.accessMode(),
+                config.displayName(),
+                config.welcomeMessage());
     }
 
+    /** Turno del chatbot con la respuesta completa; ver {@link #runTurn}. */
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ChatbotInteractionResult sendMessage(ChatbotMessageCommand cmd) {
-        long startedAt = System.currentTimeMillis();
-        AiAgentConfiguration config = requirePublishedConfig();
-        validateAccess(config, cmd);
+        return runTurn(cmd, (url, turn) -> invokerPort.invoke(url, turn.wireMessages()), delta -> { });
+    }
 
-        // Sesion: cargar y validar ownership, o crear nueva.
-        ChatbotSession session = resolveSession(config, cmd);
+    /**
+     * Mismo turno que {@link #sendMessage} con la fase 2 en streaming. Si hay
+     * emergencia el banner se emite como primer fragmento, asi lo que ve el
+     * browser coincide con el {@code reply} final. Banner, confianza y
+     * persistencia corren sobre el texto ensamblado, despues del stream.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ChatbotInteractionResult sendMessageStreaming(ChatbotMessageCommand cmd, Consumer<String> onDelta) {
+        return runTurn(cmd, (url, turn) -> {
+            if (turn.emergency()) {
+                onDelta.accept(turn.config().emergencyBannerText());
+            }
+            return invokerPort.invokeStreaming(url, turn.wireMessages(), onDelta);
+        }, onDelta);
+    }
 
-        // Sanitizacion PII pre-envio.
-        PiiScanResult pii = piiSanitizer.scan(cmd.message());
-        if (pii.hasPii() && config.getPiiPolicy() == AiPiiPolicy.BLOCK) {
-            // No persistimos el mensaje original ni llamamos al proveedor.
-            long latency = System.currentTimeMillis() - startedAt;
-            return ChatbotInteractionResult.piiBlocked(
-                    session.getId(), session.getAnonymousToken(),
-                    PII_EDUCATIONAL_REPLY, pii.detected(), latency);
+    /**
+     * Turno del chatbot en tres fases para no retener una conexion del pool
+     * mientras el proveedor responde (hasta {@code read-timeout-ms}, 20 s):
+     * <ol>
+     *   <li>Tx corta: acceso, sesion, PII, emergencias, agregar el mensaje
+     *       del usuario a la ventana y armar el wire. La configuracion sale
+     *       del {@link ChatbotConfigSnapshotHolder}, sin tocar la base.</li>
+     *   <li>Sin transaccion: invocacion del agente.</li>
+     *   <li>Tx corta: agregar la respuesta a la ventana y registrar la
+     *       interaccion en la sesion.</li>
+     * </ol>
+     * Los metodos publicos usan {@code NOT_SUPPORTED} para anular el
+     * {@code @Transactional} de clase: si el caller traia una transaccion,
+     * queda suspendida durante todo el turno.
+     *
+     * <p>Si la fase 2 se resuelve desde el cache o desde una invocacion
+     * identica en vuelo, la respuesta completa se entrega a
+     * {@code onCachedReply} como un unico fragmento.
+     *
+     * <p>Cada fase se mide con un {@link TurnClock} y el desglose se publica
+     * por {@link IChatbotTurnMetricsPort} al terminar, con el resultado del
+     * turno.
+     */
+    private ChatbotInteractionResult runTurn(ChatbotMessageCommand cmd,
+                                             BiFunction<String, PreparedTurn, AgentInvocationResult> invocation,
+                                             Consumer<String> onCachedReply) {
+        TurnClock clock = new TurnClock();
+        try {
+            ChatbotInteractionResult result = executeTurn(cmd, invocation, onCachedReply, clock);
+            if (!result.fallbackTriggered()) {
+                clock.outcome = result.piiBlocked() ? Outcome.PII_BLOCKED : Outcome.OK;
+            }
+            return result;
+        } finally {
+            turnMetrics.recordTurn(clock.outcome, clock.elapsedNanos(), clock.phases);
         }
-        // Politica ANONYMIZE (o sin PII): usamos el texto sanitizado para todo
-        // el flujo posterior (BD y proveedor). El original solo queda en el
-        // log de la request (no persistido).
-        String userVisibleMessage = pii.hasPii() ? pii.sanitized() : cmd.message();
-
-        // Deteccion local de emergencias (independiente de los guardrails del proveedor).
-        List<EmergencyKeyword> activeKeywords = emergencyKeywordRepository.findAllActive();
-        boolean emergency = emergencyDetector.containsEmergencyTerm(userVisibleMessage, activeKeywords);
+    }
 
-        // Persistimos el turno del usuario en el buffer rolling.
-        ChatbotMessage userMessage = ChatbotMessage.createNew(
-                session.getId(), ChatbotMessageRole.USER, userVisibleMessage);
-        messageRepository.save(userMessage);
+    private ChatbotInteractionResult executeTurn(ChatbotMessageCommand cmd,
+                                                 BiFunction<String, PreparedTurn, AgentInvocationResult> invocation,
+                                                 Consumer<String> onCachedReply,
+                                                 TurnClock clock) {
+        long startedAt = System.currentTimeMillis();
 
-        // Construimos el historial para el proveedor: system + ultimos N
-        // mensajes (que ya incluyen el del usuario recien persistido).
-        List<ChatMessage> wireMessages = buildWireMessages(config, session.getId());
+        long phaseStart = System.nanoTime();
+        PreparedTurn turn = tx.execute(status -> prepareTurn(cmd, startedAt, clock));
+        clock.record(Phase.PREPARE_TX, phaseStart);
+        if (turn.shortCircuit() != null) {
+            return turn.shortCircuit();
+        }
+        ChatbotSession session = turn.session();
 
         // Llamada al proveedor con resiliencia (el adapter aplica el circuit
         // breaker). Cualquier excepcion irrecuperable cae al fallback.
         ChatbotInteractionResult result;
+        ChatbotResponseCache.Lookup cached = lookupCachedReply(turn);
+        Phase running = Phase.PROVIDER;
+        phaseStart = System.nanoTime();
         try {
-            String url = resolveAgentInvocationUrl(config);
-            AgentInvocationResult invocation = invokerPort.invoke(url, wireMessages);
-            result = buildResult(session, invocation, emergency, config, pii, startedAt);
-
-            // Persistimos la respuesta del bot solo si NO es fallback (en
-            // fallback ya devolvimos antes; aqui no aplica). Aplicamos banner
-            // antes de persistir para que el rolling buffer conserve lo que
-            // realmente vio el usuario.
-            ChatbotMessage botMessage = ChatbotMessage.createNew(
-                    session.getId(), ChatbotMessageRole.ASSISTANT, result.reply());
-            messageRepository.save(botMessage);
+            AgentInvocationResult invoked;
+            if (cached != null && cached.isHit()) {
+                invoked = cached.hit().toInvocationResult();
+                onCachedReply.accept(invoked.reply());
+            } else {
+                // Sin URL en el snapshot solo si el ultimo descubrimiento fallo.
+                String url = turn.config().agentInvocationUrl();
+                if (url == null) {
+                    running = Phase.URL_RESOLUTION;
+                    url = configSnapshot.discoverInvocationUrl();
+                    clock.record(running, phaseStart);
+                    running = Phase.PROVIDER;
+                    phaseStart = System.nanoTime();
+                }
+                invoked = invokeProvider(turn, url, cached, invocation, onCachedReply);
+            }
+            clock.record(running, phaseStart);
+            phaseStart = System.nanoTime();
+            result = buildResult(session, invoked, turn.emergency(), turn.config(), turn.pii(), startedAt);
+            clock.record(Phase.CONFIDENCE, phaseStart);
         } catch (LlmProviderException ex) {
             log.warn("Fallback del chatbot por falla del proveedor: code={} message={}",
                     ex.getErrorCode(), ex.getMessage());
+            clock.record(running, phaseStart);
+            clock.outcome = fallbackOutcome(ex.getErrorCode());
             long latency = System.currentTimeMillis() - startedAt;
             return ChatbotInteractionResult.fallback(
                     session.getId(), session.getAnonymousToken(), FALLBACK_REPLY, latency);
         }
 
-        // Sesion + cap FIFO. recordInteraction++ y refresh timestamp.
-        session.recordInteraction();
-        sessionRepository.save(session);
-        messageRepository.deleteOldestKeepingLast(session.getId(), config.getConversationBufferSize());
-
+        phaseStart = System.nanoTime();
+        tx.executeWithoutResult(status -> recordReply(session.getId(), result.reply(),
+                turn.config().conversationBufferSize()));
+        clock.record(Phase.RECORD_TX, phaseStart);
         return result;
     }
 
+    private static Outcome fallbackOutcome(String errorCode) {
+        if (AiAgentErrorCodes.AI_PROVIDER_CIRCUIT_OPEN.equals(errorCode)) {
+            return Outcome.CIRCUIT_OPEN;
+        }
+        if (AiAgentErrorCodes.AI_PROVIDER_CONCURRENCY_LIMITED.equals(errorCode)) {
+            return Outcome.CONCURRENCY_LIMITED;
+        }
+        return Outcome.FALLBACK;
+    }
+
     @Override
     public void closeSession(UUID sessionId, Optional<Long> authenticatedUserId, Optional<UUID> anonymousToken) {
         Optional<ChatbotSession> opt = sessionRepository.findById(sessionId);
@@ -219,18 +316,199 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
             // 404 en lugar de 403 para no confirmar existencia.
             throw new ResourceNotFoundException("ChatbotSession", "id", sessionId.toString());
         }
+        conversationWindow.discard(sessionId);
         messageRepository.deleteAllBySessionId(sessionId);
         sessionRepository.deleteById(sessionId);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int flushConversationWrites() {
+        List<ChatbotMessage> batch = conversationWindow.drainPending(FLUSH_BATCH_SIZE);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            tx.executeWithoutResult(status -> messageRepository.saveAll(batch));
+        } catch (RuntimeException ex) {
+            conversationWindow.requeue(batch);
+            throw ex;
+        }
+        conversationWindow.markFlushed(batch);
+        return batch.size();
+    }
+
+    /**
+     * Recorta solo las sesiones que recibieron filas (o se cerraron) desde la
+     * corrida anterior, de a {@link #TRIM_BATCH_SIZE} por transaccion: cada
+     * DELETE es un rango del indice de una sesion, asi que los turnos en
+     * vuelo de otras sesiones no esperan locks. Los huerfanos de un cierre se
+     * borran en el mismo lote.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int trimConversationBuffers() {
+        ChatbotConfigSnapshot config = configSnapshot.current();
+        if (!config.isConfigured()) {
+            return 0;
+        }
+        int keepLast = config.conversationBufferSize();
+        Instant flushedBefore = Instant.now().minus(ORPHAN_GRACE);
+        int deleted = 0;
+        List<UUID> batch;
+        while (!(batch = conversationWindow.drainTrimCandidates(flushedBefore, TRIM_BATCH_SIZE)).isEmpty()) {
+            List<UUID> sessionIds = batch;
+            try {
+                deleted += tx.execute(status -> {
+                    int trimmed = 0;
+                    for (UUID sessionId : sessionIds) {
+                        trimmed += messageRepository.trimSessionKeepingLast(sessionId, keepLast);
+                    }
+                    return trimmed + messageRepository.deleteOrphanedBySessionIds(sessionIds);
+                });
+            } catch (RuntimeException ex) {
+                conversationWindow.requeueTrimCandidates(sessionIds);
+                throw ex;
+            }
+        }
+        return deleted;
+    }
+
     // --- Helpers privados ---------------------------------------------------
 
-    private AiAgentConfiguration requirePublishedConfig() {
-        AiAgentConfiguration config = configRepository.findSingleton()
-                .orElseThrow(() -> new LlmProviderException(
-                        "El asistente todavia no esta configurado.", null,
-                        AiAgentErrorCodes.AI_AGENT_NOT_PUBLISHED));
-        if (config.getLifecycle() != AiAgentLifecycle.PUBLISHED) {
+    /**
+     * Fase 1 del turno. Devuelve el contexto para invocar al proveedor, o un
+     * resultado ya resuelto si la politica PII bloquea el mensaje.
+     */
+    private PreparedTurn prepareTurn(ChatbotMessageCommand cmd, long startedAt, TurnClock clock) {
+        ChatbotConfigSnapshot config = requirePublishedConfig();
+        validateAccess(config, cmd);
+
+        // Sesion: cargar y validar ownership, o crear nueva.
+        long phaseStart = System.nanoTime();
+        ChatbotSession session = resolveSession(config, cmd);
+        clock.record(Phase.SESSION, phaseStart);
+
+        // Sanitizacion PII pre-envio.
+        phaseStart = System.nanoTime();
+        PiiScanResult pii = piiSanitizer.scan(cmd.message());
+        clock.record(Phase.PII_SCAN, phaseStart);
+        if (pii.hasPii() && config.piiPolicy() == AiPiiPolicy.BLOCK) {
+            // No persistimos el mensaje original ni llamamos al proveedor.
+            long latency = System.currentTimeMillis() - startedAt;
+            return PreparedTurn.resolved(ChatbotInteractionResult.piiBlocked(
+                    session.getId(), session.getAnonymousToken(),
+                    PII_EDUCATIONAL_REPLY, pii.detected(), latency));
+        }
+        // Politica ANONYMIZE (o sin PII): usamos el texto sanitizado para todo
+        // el flujo posterior (BD y proveedor). El original solo queda en el
+        // log de la request (no persistido).
+        String userVisibleMessage = pii.hasPii() ? pii.sanitized() : cmd.message();
+
+        // Deteccion local de emergencias (independiente de los guardrails del
+        // proveedor). El detector solo lee los keywords al recompilar.
+        phaseStart = System.nanoTime();
+        boolean emergency = emergencyDetector.containsEmergencyTerm(
+                userVisibleMessage, emergencyKeywordRepository::findAllActive);
+        clock.record(Phase.EMERGENCY_DETECTION, phaseStart);
+
+        // Agregamos el turno del usuario a la ventana (se persiste en el
+        // proximo flush). Lo que queda en ella, ultimos N mensajes incluido
+        // el recien agregado, es el historial para el proveedor. Una sesion
+        // nueva no tiene nada que leer de la base.
+        phaseStart = System.nanoTime();
+        ChatbotMessage userMessage = ChatbotMessage.createNew(
+                session.getId(), ChatbotMessageRole.USER, userVisibleMessage);
+        boolean newSession = cmd.sessionId().isEmpty();
+        List<ChatbotMessage> recent = conversationWindow.append(userMessage, config.conversationBufferSize(),
+                () -> newSession ? List.of() : loadRecentMessages(session.getId(), config.conversationBufferSize()));
+        clock.record(Phase.HISTORY, phaseStart);
+        List<ChatMessage> wireMessages = buildWireMessages(recent);
+
+        return new PreparedTurn(config, session, pii, emergency, wireMessages, null);
+    }
+
+    /**
+     * Fase 2 sin cache. Un turno elegible para el cache (miss) pasa por el
+     * coalescer: si ya hay una invocacion identica en vuelo, reutiliza su
+     * resultado y lo entrega a {@code onSharedReply} como un unico fragmento.
+     * Solo quien invoco guarda en el cache.
+     */
+    private AgentInvocationResult invokeProvider(PreparedTurn turn,
+                                                 String url,
+                                                 ChatbotResponseCache.Lookup miss,
+                                                 BiFunction<String, PreparedTurn, AgentInvocationResult> invocation,
+                                                 Consumer<String> onSharedReply) {
+        if (miss == null) {
+            return invocation.apply(url, turn);
+        }
+        long invokedAt = System.nanoTime();
+        ChatbotRequestCoalescer.Outcome outcome =
+                requestCoalescer.execute(miss.key(), () -> invocation.apply(url, turn));
+        if (outcome.shared()) {
+            onSharedReply.accept(outcome.result().reply());
+        } else {
+            responseCache.store(miss, outcome.result(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - invokedAt), Instant.now());
+        }
+        return outcome.result();
+    }
+
+    /**
+     * Consulta el cache de respuestas si el turno es elegible: primer mensaje
+     * de la sesion (el wire solo trae el del usuario), sin emergencia y con
+     * una version publicada conocida. El texto del wire ya paso por el
+     * sanitizador de PII. Devuelve {@code null} si el turno no es elegible.
+     */
+    private ChatbotResponseCache.Lookup lookupCachedReply(PreparedTurn turn) {
+        if (turn.emergency() || turn.wireMessages().size() != 1
+                || turn.config().providerSyncedAt() == null) {
+            return null;
+        }
+        // providerSyncedAt cambia con cada publish y cada rollback: hace de
+        // version de la configuracion publicada.
+        String configVersion = String.valueOf(turn.config().providerSyncedAt().toEpochMilli());
+        return responseCache.lookup(configVersion, turn.wireMessages().get(0).content(), Instant.now());
+    }
+
+    /**
+     * Fase 3 del turno. Relee la sesion en lugar de guardar la copia de la
+     * fase 1: entre ambas pudo correr otro turno (el contador no pierde
+     * incrementos) o un {@code closeSession} (no la resucitamos).
+     */
+    private void recordReply(UUID sessionId, String reply, int bufferSize) {
+        Optional<ChatbotSession> fresh = sessionRepository.findById(sessionId);
+        if (fresh.isEmpty()) {
+            log.debug("Sesion de chatbot {} cerrada durante la invocacion; no se persiste la respuesta.", sessionId);
+            return;
+        }
+        // Banner de emergencia ya aplicado en reply: el rolling buffer
+        // conserva lo que realmente vio el usuario.
+        conversationWindow.append(ChatbotMessage.createNew(sessionId, ChatbotMessageRole.ASSISTANT, reply),
+                bufferSize, () -> loadRecentMessages(sessionId, bufferSize));
+
+        // recordInteraction++ y refresh timestamp.
+        ChatbotSession session = fresh.get();
+        session.recordInteraction();
+        sessionRepository.save(session);
+    }
+
+    /**
+     * Reconstruye la ventana de una sesion que no esta en memoria (primer
+     * turno desde el arranque o desalojada por LRU).
+     */
+    private List<ChatbotMessage> loadRecentMessages(UUID sessionId, int bufferSize) {
+        return messageRepository.findLastNBySessionId(sessionId, bufferSize);
+    }
+
+    private ChatbotConfigSnapshot requirePublishedConfig() {
+        ChatbotConfigSnapshot config = configSnapshot.current();
+        if (!config.isConfigured()) {
+            throw new LlmProviderException(
+                    "El asistente todavia no esta configurado.", null,
+                    AiAgentErrorCodes.AI_AGENT_NOT_PUBLISHED);
+        }
+        if (!config.isPublished()) {
             throw new LlmProviderException(
                     "El asistente esta en preparacion. Volve mas tarde.", null,
                     AiAgentErrorCodes.AI_AGENT_NOT_PUBLISHED);
@@ -238,13 +516,13 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
         return config;
     }
 
-    private void validateAccess(AiAgentConfiguration config, ChatbotMessageCommand cmd) {
-        if (config.getAccessMode() == AiAgentAccessMode.DISABLED) {
+    private void validateAccess(ChatbotConfigSnapshot config, ChatbotMessageCommand cmd) {
+        if (config.accessMode() == AiAgentAccessMode.DISABLED) {
             throw new LlmProviderException(
                     "El chatbot esta deshabilitado en este momento.", null,
                     AiAgentErrorCodes.AI_AGENT_DISABLED);
         }
-        if (config.getAccessMode() == AiAgentAccessMode.PRIVATE) {
+        if (config.accessMode() == AiAgentAccessMode.PRIVATE) {
             if (cmd.authenticatedUserId().isEmpty()) {
                 throw new LlmProviderException(
                         "El chatbot requiere autenticacion en este momento.", null,
@@ -259,7 +537,7 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
         }
     }
 
-    private ChatbotSession resolveSession(AiAgentConfiguration config, ChatbotMessageCommand cmd) {
+    private ChatbotSession resolveSession(ChatbotConfigSnapshot config, ChatbotMessageCommand cmd) {
         if (cmd.sessionId().isPresent()) {
             UUID sid = cmd.sessionId().get();
             ChatbotSession existing = sessionRepository.findById(sid)
@@ -279,7 +557,7 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
         }
         // Anonimo: rechazamos si el modo es PRIVATE (defensa adicional al
         // validateAccess que ya corrio).
-        if (config.getAccessMode() == AiAgentAccessMode.PRIVATE) {
+        if (config.accessMode() == AiAgentAccessMode.PRIVATE) {
             throw new LlmProviderException(
                     "El chatbot requiere autenticacion.", null,
                     AiAgentErrorCodes.AI_AGENT_ANONYMOUS_FORBIDDEN);
@@ -314,15 +592,8 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
      * usado solo en el flujo de {@code publish()} y en {@code preview()} (que
      * el admin usa para revisar antes de publicar).
      */
-    private List<ChatMessage> buildWireMessages(AiAgentConfiguration config, UUID sessionId) {
-        // Copia mutable para poder ordenar: el contrato del puerto no exige
-        // que la lista devuelta sea mutable y algunos tests/mock pueden pasar
-        // {@code List.of(...)} inmutable. Defensa baratisima.
-        List<ChatbotMessage> recent = new ArrayList<>(
-                messageRepository.findLastNBySessionId(sessionId, config.getConversationBufferSize()));
-        // Garantizamos orden cronologico ASC defensivamente.
-        recent.sort(Comparator.comparing(ChatbotMessage::getCreatedAt));
-
+    private List<ChatMessage> buildWireMessages(List<ChatbotMessage> recent) {
+        // La ventana ya viene en orden cronologico ASC.
         List<ChatMessage> wire = new ArrayList<>(recent.size());
         for (ChatbotMessage m : recent) {
             String role = m.getRole() == ChatbotMessageRole.USER ? "user" : "assistant";
@@ -331,57 +602,6 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
         return wire;
     }
 
-    /**
-     * Resuelve la URL de invocacion del agente segun la estrategia hibrida:
-     * <ol>
-     *   <li>ENV {@code DIGITALOCEAN_AGENT_INVOCATION_URL} si esta seteada.</li>
-     *   <li>Cache local en {@code config.agentInvocationUrl} si esta presente.</li>
-     *   <li>Descubrimiento via management API ({@code getAgent}) + persistencia
-     *       en config.</li>
-     * </ol>
-     */
-    private String resolveAgentInvocationUrl(AiAgentConfiguration config) {
-        if (envAgentInvocationUrl != null && !envAgentInvocationUrl.isBlank()) {
-            // ENV gana. Mantenemos el cache de BD sincronizado solo si esta
-            // vacio o desactualizado, para que el endpoint admin de "clear
-            // cache" tenga visibilidad consistente.
-            if (!envAgentInvocationUrl.equals(config.getAgentInvocationUrl())) {
-                config.cacheAgentInvocationUrl(envAgentInvocationUrl);
-                configRepository.save(config);
-            }
-            return envAgentInvocationUrl;
-        }
-        if (config.getAgentInvocationUrl() != null && !config.getAgentInvocationUrl().isBlank()) {
-            return config.getAgentInvocationUrl();
-        }
-        if (providerAgentUuid == null || providerAgentUuid.isBlank()) {
-            throw new LlmProviderException(
-                    "No hay URL de invocacion configurada y no se puede descubrir (DIGITALOCEAN_AGENT_UUID vacio).",
-                    null,
-                    AiAgentErrorCodes.AI_AGENT_INVOCATION_URL_UNAVAILABLE);
-        }
-        try {
-            ILlmAgentProviderPort.AgentSnapshot snap = providerPort.getAgent(providerAgentUuid);
-            String discovered = snap.deploymentEndpoint();
-            if (discovered == null || discovered.isBlank()) {
-                throw new LlmProviderException(
-                        "El proveedor no reporto deployment.url para el agente.", null,
-                        AiAgentErrorCodes.AI_AGENT_INVOCATION_URL_UNAVAILABLE);
-            }
-            config.cacheAgentInvocationUrl(discovered);
-            configRepository.save(config);
-            return discovered;
-        } catch (LlmProviderException ex) {
-            // Re-propagamos con el codigo correcto si vino otro generico.
-            if (ex.getErrorCode() == null) {
-                throw new LlmProviderException(
-                        ex.getMessage(), ex.getStatusCode(),
-                        AiAgentErrorCodes.AI_AGENT_INVOCATION_URL_UNAVAILABLE, ex);
-            }
-            throw ex;
-        }
-    }
-
     /**
      * Compone el resultado del turno aplicando el banner de emergencia si
      * corresponde y delegando el calculo del indicador de confianza al
@@ -403,7 +623,7 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
     private ChatbotInteractionResult buildResult(ChatbotSession session,
                                                 AgentInvocationResult invocation,
                                                 boolean emergency,
-                                                AiAgentConfiguration config,
+                                                ChatbotConfigSnapshot config,
                                                 PiiScanResult pii,
                                                 long startedAt) {
         String reply = invocation.reply();
@@ -414,11 +634,11 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
                 ? List.of() : invocation.retrievedDocuments();
 
         if (emergency) {
-            reply = config.getEmergencyBannerText() + reply;
+            reply = config.emergencyBannerText() + reply;
         }
 
         ConfidenceAssessment assessment;
-        if (emergency || !config.isShowConfidenceIndicator()) {
+        if (emergency || !config.showConfidenceIndicator()) {
             // Emergencia: prioridad a la derivacion clinica.
             // Toggle off: el admin oculta el indicador en runtime.
             assessment = null;
@@ -443,4 +663,40 @@ public class ChatbotInteractionService implements IChatbotInteractionUseCase {
                 retrievedIds
         );
     }
+
+    /**
+     * Contexto que la fase 1 entrega a las fases 2 y 3. Si
+     * {@code shortCircuit} no es null el turno termina ahi.
+     */
+    private record PreparedTurn(ChatbotConfigSnapshot config,
+                                ChatbotSession session,
+                                PiiScanResult pii,
+                                boolean emergency,
+                                List<ChatMessage> wireMessages,
+                                ChatbotInteractionResult shortCircuit) {
+
+        static PreparedTurn resolved(ChatbotInteractionResult result) {
+            return new PreparedTurn(null, null, null, false, null, result);
+        }
+    }
+
+    /**
+     * Desglose de un turno: duracion por fase y resultado. Lo usa un solo
+     * hilo (el del turno).
+     */
+    private static final class TurnClock {
+
+        private final long startedAt = System.nanoTime();
+        private final Map<Phase, Long> phases = new EnumMap<>(Phase.class);
+        /** Queda en REJECTED si el turno termina con una excepcion. */
+        private Outcome outcome = Outcome.REJECTED;
+
+        void record(Phase phase, long phaseStartedAt) {
+            phases.merge(phase, System.nanoTime() - phaseStartedAt, Long::sum);
+        }
+
+        long elapsedNanos() {
+            return System.nanoTime() - startedAt;
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package site.utnpf.odontolink.application.service;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import site.utnpf.odontolink.application.port.in.IChatbotSessionPurgeUseCase;
+import site.utnpf.odontolink.application.port.in.dto.ChatbotSessionPurgeResult;
+import site.utnpf.odontolink.domain.repository.ChatbotMessageRepository;
+import site.utnpf.odontolink.domain.repository.ChatbotSessionRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Purga de sesiones inactivas del chatbot (RF29).
+ *
+ * <p>Cada visitante anonimo que manda un mensaje crea una sesion y nada las
+ * borraba: {@code ai_chatbot_sessions} y {@code ai_chatbot_messages} solo
+ * crecian. Cada tipo de sesion tiene su TTL: las anonimas no se pueden
+ * retomar desde otro browser, asi que duran mucho menos que las de un
+ * usuario autenticado.
+ *
+ * <p>Para no retener locks de InnoDB, la purga avanza en lotes de
+ * {@code batchSize} sesiones, cada uno en su propia transaccion corta:
+ * <ol>
+ *   <li>busca los ids mas viejos por {@code idx_chatbot_session_last};</li>
+ *   <li>los borra por PK, re-chequeando el corte: una sesion que retomo un
+ *       turno entre la busqueda y el borrado se conserva;</li>
+ *   <li>borra los mensajes de las sesiones que efectivamente se borraron.</li>
+ * </ol>
+ * Un turno en vuelo sobre una sesion purgada se comporta como con
+ * {@code closeSession}: la fase 3 no la resucita. {@code maxBatches} acota
+ * una corrida; lo que quede lo toma la siguiente. Los lotes alternan entre
+ * anonimas y autenticadas, asi una avalancha de anonimas no consume todo el
+ * cupo y deja sin purgar a las otras.
+ */
+public class ChatbotSessionPurgeService implements IChatbotSessionPurgeUseCase {
+
+    private final ChatbotSessionRepository sessionRepository;
+    private final ChatbotMessageRepository messageRepository;
+    private final TransactionTemplate tx;
+    private final Duration anonymousTtl;
+    private final Duration authenticatedTtl;
+    private final int batchSize;
+    private final int maxBatches;
+
+    public ChatbotSessionPurgeService(ChatbotSessionRepository sessionRepository,
+                                      ChatbotMessageRepository messageRepository,
+                                      PlatformTransactionManager transactionManager,
+                                      Duration anonymousTtl,
+                                      Duration authenticatedTtl,
+                                      int batchSize,
+                                      int maxBatches) {
+        this.sessionRepository = sessionRepository;
+        this.messageRepository = messageRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.anonymousTtl = anonymousTtl;
+        this.authenticatedTtl = authenticatedTtl;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Override
+    public ChatbotSessionPurgeResult purgeIdleSessions(Instant now) {
+        List<ChatbotSessionPurgeResult.Batch> batches = new ArrayList<>();
+        List<IdleKind> pending = new ArrayList<>(List.of(
+                new IdleKind(true, now.minus(anonymousTtl)),
+                new IdleKind(false, now.minus(authenticatedTtl))));
+        while (!pending.isEmpty() && batches.size() < maxBatches) {
+            Iterator<IdleKind> it = pending.iterator();
+            while (it.hasNext() && batches.size() < maxBatches) {
+                IdleKind kind = it.next();
+                if (!purgeBatch(kind, batches)) {
+                    it.remove();
+                }
+            }
+        }
+        return new ChatbotSessionPurgeResult(batches);
+    }
+
+    /**
+     * Un lote de un tipo de sesion. Devuelve false cuando no quedan vencidas
+     * de ese tipo: un lote corto indica que no hay mas.
+     */
+    private boolean purgeBatch(IdleKind kind, List<ChatbotSessionPurgeResult.Batch> batches) {
+        long startedAt = System.nanoTime();
+        Deleted deleted = tx.execute(status -> {
+            List<UUID> ids = sessionRepository.findIdleIds(kind.anonymous(), kind.cutoff(), batchSize);
+            if (ids.isEmpty()) {
+                return new Deleted(0, 0, 0);
+            }
+            int sessions = sessionRepository.deleteIdleByIds(ids, kind.cutoff());
+            int messages = messageRepository.deleteOrphanedBySessionIds(ids);
+            return new Deleted(ids.size(), sessions, messages);
+        });
+        if (deleted.candidates() == 0) {
+            return false;
+        }
+        batches.add(new ChatbotSessionPurgeResult.Batch(kind.anonymous(), deleted.sessions(), deleted.messages(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt)));
+        return deleted.candidates() >= batchSize;
+    }
+
+    /** Tipo de sesion con su corte de inactividad. */
+    private record IdleKind(boolean anonymous, Instant cutoff) {
+    }
+
+    /** Resultado de la transaccion de un lote. */
+    private record Deleted(int candidates, int sessions, int messages) {
+    }
+}
@@ -2,6 +2,7 @@ package site.utnpf.odontolink.application.service;
 
 import org.springframework.transaction.annotation.Transactional;
 import site.utnpf.odontolink.application.port.in.IEmergencyKeywordAdminUseCase;
+import site.utnpf.odontolink.application.service.security.EmergencyDetector;
 import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
 import site.utnpf.odontolink.domain.model.EmergencyKeyword;
@@ -15,14 +16,21 @@ import java.util.List;
  * <p>Mantiene la regla de unicidad case-insensitive normalizada: dos terminos
  * que normalizados (sin acentos, lowercase) coinciden son considerados
  * duplicados y se rechazan con 422.
+ *
+ * <p>Cada alta, edicion o baja invalida el matcher compilado del
+ * {@link EmergencyDetector} despues del commit, para que el chatbot use el
+ * diccionario nuevo y no una recarga hecha antes de que fuera visible.
  */
 @Transactional
 public class EmergencyKeywordAdminService implements IEmergencyKeywordAdminUseCase {
 
     private final EmergencyKeywordRepository repository;
+    private final EmergencyDetector emergencyDetector;
 
-    public EmergencyKeywordAdminService(EmergencyKeywordRepository repository) {
+    public EmergencyKeywordAdminService(EmergencyKeywordRepository repository,
+                                        EmergencyDetector emergencyDetector) {
         this.repository = repository;
+        this.emergencyDetector = emergencyDetector;
     }
 
     @Override
@@ -35,7 +43,9 @@ public class EmergencyKeywordAdminService implements IEmergencyKeywordAdminUseCa
     public EmergencyKeyword create(String term, boolean active) {
         rejectIfDuplicate(term, null);
         EmergencyKeyword kw = EmergencyKeyword.createNew(term, active);
-        return repository.save(kw);
+        EmergencyKeyword saved = repository.save(kw);
+        emergencyDetector.invalidateAfterCommit();
+        return saved;
     }
 
     @Override
@@ -45,7 +55,9 @@ public class EmergencyKeywordAdminService implements IEmergencyKeywordAdminUseCa
                         "EmergencyKeyword", "id", String.valueOf(id)));
         rejectIfDuplicate(term, id);
         existing.apply(term, active);
-        return repository.save(existing);
+        EmergencyKeyword saved = repository.save(existing);
+        emergencyDetector.invalidateAfterCommit();
+        return saved;
     }
 
     @Override
@@ -54,6 +66,7 @@ public class EmergencyKeywordAdminService implements IEmergencyKeywordAdminUseCa
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "EmergencyKeyword", "id", String.valueOf(id)));
         repository.deleteById(id);
+        emergencyDetector.invalidateAfterCommit();
     }
 
     /**
@@ -3,51 +3,64 @@ package site.utnpf.odontolink.application.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import site.utnpf.odontolink.application.port.in.IKnowledgeBaseAdminUseCase;
 import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort;
 import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort.IndexingJobSnapshot;
-import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort.RegisteredDataSource;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseIngestionQueuePort;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseStagingPort;
 import site.utnpf.odontolink.application.port.out.IObjectStoragePort;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.ByteRange;
 import site.utnpf.odontolink.application.port.out.StorageException;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
+import site.utnpf.odontolink.application.service.support.KnowledgeBaseReindexDebouncer;
+import site.utnpf.odontolink.domain.exception.DuplicateResourceException;
 import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.domain.exception.RangeNotSatisfiableException;
 import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
 import site.utnpf.odontolink.domain.model.KnowledgeBaseDocument;
 import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentKind;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentStatus;
 import site.utnpf.odontolink.domain.model.PageResult;
 import site.utnpf.odontolink.domain.repository.KnowledgeBaseDocumentRepository;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
 
 /**
  * Servicio de aplicacion para la administracion de la Knowledge Base (RF33).
  *
- * <p>Pipeline del alta de un documento:
+ * <p>El alta de un documento solo hace lo que el request necesita:
  * <ol>
  *   <li>Validacion (tamanio, MIME type).</li>
  *   <li>Persistir el documento en estado {@code PENDING_UPLOAD}.</li>
- *   <li>Subir el binario al bucket Spaces dedicado a la KB.</li>
- *   <li>Marcar {@code UPLOADED} con la {@code storedObjectKey}.</li>
- *   <li>Registrar el data source en el proveedor de IA.</li>
- *   <li>Marcar {@code REGISTERED}.</li>
- *   <li>Disparar el indexing job y guardar el {@code lastIndexingJobId}.</li>
- *   <li>Marcar {@code INDEXING}.</li>
+ *   <li>Para archivos, copiar el stream del request al staging local.</li>
+ *   <li>Encolar la ingesta, que arranca al commitear.</li>
  * </ol>
+ * El upload al bucket, el registro del data source y la indexacion corren
+ * en background ({@code KnowledgeBaseIngestionService}); el controller
+ * responde 202 con el documento en {@code PENDING_UPLOAD}. Asi la
+ * transaccion del alta no retiene una conexion de BD durante tres llamadas
+ * remotas.
  *
- * <p>Si cualquier paso intermedio falla, el documento queda en {@code FAILED}
- * con {@code errorMessage} descriptivo y la transaccion local se commitea
- * igual: el administrador puede inspeccionar el estado y decidir reintentar
- * o borrar. Esto evita que un blip del proveedor deje un objeto huerfano
- * sin ningun registro en BD.
+ * <p>Las ediciones de FAQ y las bajas tampoco disparan la indexacion en el
+ * acto: la piden a {@link KnowledgeBaseReindexDebouncer}, que junta los
+ * pedidos de una ventana en un solo indexing job. Solo
+ * {@link #triggerReindex()} indexa de inmediato. El pedido se registra al
+ * commitear: un flush que corre antes tiene que ver el documento guardado.
  *
- * <p>El pipeline es sincronico para mantener el codigo simple. Si en el
- * futuro los documentos crecen (mucho indexing tiempo) se puede mover a
- * background con {@code @Async}.
+ * <p>Cada documento guarda el SHA-256 de su contenido. Un alta con el mismo
+ * hash que un documento vivo (no {@code FAILED}) se rechaza con 409 antes de
+ * subir, registrar o indexar nada, y una edicion de FAQ con el mismo hash
+ * solo actualiza el titulo.
  */
 @Transactional
 public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
@@ -70,28 +83,43 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
     private final KnowledgeBaseDocumentRepository documentRepository;
     private final IKnowledgeBaseProviderPort kbProvider;
     private final IObjectStoragePort aiKbStorage;
+    private final IKnowledgeBaseStagingPort staging;
+    private final IKnowledgeBaseIngestionQueuePort ingestionQueue;
     private final String knowledgeBaseUuid;
     private final String bucketName;
     private final String bucketRegion;
-    private final String keyPrefix;
     private final long maxUploadBytes;
+    private final ChatbotResponseCache chatbotResponseCache;
+    private final KnowledgeBaseReindexDebouncer reindexDebouncer;
+    private final long directDownloadMinBytes;
+    private final Duration directDownloadTtl;
 
     public KnowledgeBaseAdminService(KnowledgeBaseDocumentRepository documentRepository,
                                      IKnowledgeBaseProviderPort kbProvider,
                                      IObjectStoragePort aiKbStorage,
+                                     IKnowledgeBaseStagingPort staging,
+                                     IKnowledgeBaseIngestionQueuePort ingestionQueue,
                                      String knowledgeBaseUuid,
                                      String bucketName,
                                      String bucketRegion,
-                                     String keyPrefix,
-                                     long maxUploadBytes) {
+                                     long maxUploadBytes,
+                                     ChatbotResponseCache chatbotResponseCache,
+                                     KnowledgeBaseReindexDebouncer reindexDebouncer,
+                                     long directDownloadMinBytes,
+                                     Duration directDownloadTtl) {
         this.documentRepository = documentRepository;
         this.kbProvider = kbProvider;
         this.aiKbStorage = aiKbStorage;
+        this.staging = staging;
+        this.ingestionQueue = ingestionQueue;
         this.knowledgeBaseUuid = knowledgeBaseUuid;
         this.bucketName = bucketName;
         this.bucketRegion = bucketRegion;
-        this.keyPrefix = keyPrefix;
         this.maxUploadBytes = maxUploadBytes;
+        this.chatbotResponseCache = chatbotResponseCache;
+        this.reindexDebouncer = reindexDebouncer;
+        this.directDownloadMinBytes = directDownloadMinBytes;
+        this.directDownloadTtl = directDownloadTtl;
     }
 
     @Override
@@ -122,22 +150,27 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
                     AiAgentErrorCodes.AI_KB_FILE_TOO_LARGE);
         }
 
-        KnowledgeBaseDocument doc = KnowledgeBaseDocument.faq(title, content);
-        return persistAndPropagate(doc, bytes, doc.getOriginalFileName(), "text/plain");
+        // El contenido viaja inline en el documento: no hace falta staging.
+        KnowledgeBaseDocument faq = KnowledgeBaseDocument.faq(title, content);
+        rejectDuplicateContent(faq.getContentSha256(), null);
+        KnowledgeBaseDocument persisted = documentRepository.save(faq);
+        ingestionQueue.enqueue(persisted.getId());
+        return persisted;
     }
 
     @Override
     public KnowledgeBaseDocument addFileDocument(String title,
                                                  String originalFileName,
-                                                 byte[] content,
+                                                 InputStream content,
+                                                 long size,
                                                  String contentType) {
         validateModuleConfigured();
-        if (content == null || content.length == 0) {
+        if (content == null || size <= 0) {
             throw new InvalidBusinessRuleException(
                     "El archivo es obligatorio y no puede estar vacio.",
                     AiAgentErrorCodes.AI_KB_FILE_EMPTY);
         }
-        if (content.length > maxUploadBytes) {
+        if (size > maxUploadBytes) {
             throw new InvalidBusinessRuleException(
                     "El archivo excede el tamanio maximo permitido (" + maxUploadBytes + " bytes).",
                     AiAgentErrorCodes.AI_KB_FILE_TOO_LARGE);
@@ -148,64 +181,22 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
                     AiAgentErrorCodes.AI_KB_UNSUPPORTED_TYPE);
         }
 
-        KnowledgeBaseDocument doc = KnowledgeBaseDocument.file(title, originalFileName, content.length, contentType);
-        return persistAndPropagate(doc, content, originalFileName, contentType);
-    }
-
-    /**
-     * Recibe un documento recien construido por la factory y los bytes
-     * efectivos a subir, y ejecuta el pipeline completo. La separacion
-     * con los entry points permite reusar el mismo camino para FAQ y file.
-     */
-    private KnowledgeBaseDocument persistAndPropagate(KnowledgeBaseDocument doc,
-                                                     byte[] bytes,
-                                                     String fileNameForKey,
-                                                     String contentType) {
-        // 1) Persistimos el documento PENDING_UPLOAD primero. Asi si el
-        // siguiente paso falla por timeout, hay traza local.
-        KnowledgeBaseDocument persisted = documentRepository.save(doc);
-
-        // 2) Subimos el binario al bucket. La key incluye un UUID para
-        // evitar colisiones y permite reintentos sin pisar el objeto previo.
-        String storedKey = buildStoredKey(fileNameForKey);
-        try {
-            aiKbStorage.upload(storedKey, bytes, contentType);
-            persisted.markUploaded(storedKey);
-            persisted = documentRepository.save(persisted);
-        } catch (StorageException ex) {
-            persisted.markFailed("Falla al subir el binario al storage: " + ex.getMessage());
-            documentRepository.save(persisted);
-            throw ex;
-        }
-
-        // 3) Registramos el data source en el proveedor. Si falla, el
-        // documento queda UPLOADED + FAILED; el binario queda en nuestro
-        // bucket y puede limpiarse via deleteDocument.
-        RegisteredDataSource registered;
+        // Si la copia al staging falla, o resulta ser un duplicado, la
+        // excepcion hace rollback del insert. El hash sale de la misma pasada
+        // que copia el stream: no hay forma de conocerlo antes de leerlo.
+        KnowledgeBaseDocument persisted = documentRepository.save(
+                KnowledgeBaseDocument.file(title, originalFileName, size, contentType));
+        String sha256 = staging.stage(persisted.getId(), content, size);
         try {
-            registered = kbProvider.registerSpacesDataSource(
-                    knowledgeBaseUuid, bucketName, bucketRegion, storedKey);
-            persisted.markRegistered(registered.providerDataSourceId());
-            persisted = documentRepository.save(persisted);
-        } catch (LlmProviderException ex) {
-            persisted.markFailed("Falla al registrar el data source en el proveedor: " + ex.getMessage());
-            documentRepository.save(persisted);
+            rejectDuplicateContent(sha256, persisted.getId());
+        } catch (DuplicateResourceException ex) {
+            staging.discard(persisted.getId());
             throw ex;
         }
-
-        // 4) Disparamos la indexacion. Si falla, devolvemos el documento en
-        // REGISTERED + errorMessage: el binario esta listo, la indexacion se
-        // puede reintentar via triggerReindex.
-        try {
-            IndexingJobSnapshot job = kbProvider.startIndexing(
-                    knowledgeBaseUuid, List.of(registered.providerDataSourceId()));
-            persisted.markIndexing(job.jobId());
-            return documentRepository.save(persisted);
-        } catch (LlmProviderException ex) {
-            log.warn("Falla al disparar la indexacion del documento id={}: {}", persisted.getId(), ex.getMessage());
-            persisted.markFailed("Falla al iniciar la indexacion: " + ex.getMessage());
-            return documentRepository.save(persisted);
-        }
+        persisted.recordContentSha256(sha256);
+        persisted = documentRepository.save(persisted);
+        ingestionQueue.enqueue(persisted.getId());
+        return persisted;
     }
 
     @Override
@@ -230,12 +221,13 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
         }
 
         // Si es FAQ y el contenido cambia, re-subimos el TXT al mismo
-        // storedObjectKey (reemplazo, sin generar uno nuevo) y disparamos
+        // storedObjectKey (reemplazo, sin generar uno nuevo) y encolamos el
         // reindex del data source asociado. Asi el indice remoto refleja
-        // la nueva FAQ sin proliferar objetos huerfanos en el bucket.
+        // la nueva FAQ sin proliferar objetos huerfanos en el bucket. El mismo
+        // hash significa el mismo texto: ni upload ni reindex.
         boolean contentChanged = content != null
                 && doc.getKind() == KnowledgeBaseDocumentKind.FAQ_TEXT
-                && !content.equals(doc.getInlineContent());
+                && !doc.hasSameFaqContent(content);
         if (contentChanged) {
             byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
             if (bytes.length > maxUploadBytes) {
@@ -244,23 +236,22 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
                         AiAgentErrorCodes.AI_KB_FILE_TOO_LARGE);
             }
             doc.updateFaqContent(content);
-            // Re-upload al mismo key: pisa el objeto previo (S3 PUT es atomico).
-            aiKbStorage.upload(doc.getStoredObjectKey(), bytes, "text/plain");
+            // Sin key la FAQ sigue en la etapa de upload, que va a leer el
+            // contenido nuevo. Con key, re-upload al mismo key: pisa el
+            // objeto previo (S3 PUT es atomico).
+            if (doc.getStoredObjectKey() != null) {
+                aiKbStorage.upload(doc.getStoredObjectKey(), bytes, "text/plain");
+            }
+            // Sin data source todavia, el pipeline la indexa al registrarla.
+            if (doc.getProviderDataSourceId() != null) {
+                doc.markReindexQueued();
+            }
         }
 
         KnowledgeBaseDocument saved = documentRepository.save(doc);
-
-        if (contentChanged && saved.getProviderDataSourceId() != null) {
-            try {
-                IndexingJobSnapshot job = kbProvider.startIndexing(
-                        knowledgeBaseUuid, List.of(saved.getProviderDataSourceId()));
-                saved.markIndexing(job.jobId());
-                saved = documentRepository.save(saved);
-            } catch (LlmProviderException ex) {
-                log.warn("Falla al disparar reindex tras editar FAQ id={}: {}", id, ex.getMessage());
-                saved.markFailed("Falla al re-indexar la FAQ tras edicion: " + ex.getMessage());
-                saved = documentRepository.save(saved);
-            }
+        if (contentChanged && saved.getStatus() == KnowledgeBaseDocumentStatus.REINDEX_QUEUED) {
+            String dataSourceId = saved.getProviderDataSourceId();
+            afterCommit(() -> reindexDebouncer.request(dataSourceId));
         }
         return saved;
     }
@@ -299,6 +290,65 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
         return new DocumentDownload(downloaded.content(), contentType, doc.getOriginalFileName());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public DocumentStream streamDocument(Long id, RangeRequest range) {
+        validateModuleConfigured();
+        KnowledgeBaseDocument doc = documentRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "KnowledgeBaseDocument", "id", String.valueOf(id)));
+
+        // FAQs: el texto ya esta en memoria, no hay nada que streamear.
+        if (doc.getKind() == KnowledgeBaseDocumentKind.FAQ_TEXT) {
+            byte[] bytes = doc.getInlineContent() == null
+                    ? new byte[0]
+                    : doc.getInlineContent().getBytes(StandardCharsets.UTF_8);
+            ByteRange resolved = resolveRange(range, bytes.length);
+            InputStream content = resolved == null
+                    ? new ByteArrayInputStream(bytes)
+                    : new ByteArrayInputStream(bytes, (int) resolved.first(), (int) resolved.length());
+            return new DocumentStream(content, "text/plain; charset=utf-8", doc.getOriginalFileName(),
+                    bytes.length, resolved, null);
+        }
+
+        if (doc.getStoredObjectKey() == null || doc.getStoredObjectKey().isBlank()) {
+            throw new InvalidBusinessRuleException(
+                    "El documento todavia no fue subido al bucket; no hay binario que descargar.",
+                    AiAgentErrorCodes.AI_KB_FILE_EMPTY);
+        }
+
+        // Archivos grandes: el cliente baja directo del bucket y la JVM no
+        // toca los bytes. El storage resuelve los Range sobre esa URL.
+        if (directDownloadMinBytes > 0 && doc.getSizeBytes() >= directDownloadMinBytes) {
+            return DocumentStream.redirect(aiKbStorage.presignDownload(
+                    doc.getStoredObjectKey(), directDownloadTtl, doc.getContentType(), doc.getOriginalFileName()));
+        }
+
+        // El tamanio en BD es el que valido el staging al subirlo: alcanza
+        // para resolver el rango sin un HEAD al storage.
+        ByteRange resolved = resolveRange(range, doc.getSizeBytes());
+        IObjectStoragePort.ObjectStream object = aiKbStorage.openStream(doc.getStoredObjectKey(), resolved);
+        String contentType = doc.getContentType() != null && !doc.getContentType().isBlank()
+                ? doc.getContentType()
+                : object.contentType();
+        if (contentType == null || contentType.isBlank()) {
+            contentType = "application/octet-stream";
+        }
+        return new DocumentStream(object.content(), contentType, doc.getOriginalFileName(),
+                doc.getSizeBytes(), resolved, null);
+    }
+
+    private static ByteRange resolveRange(RangeRequest range, long totalSize) {
+        if (range == null) {
+            return null;
+        }
+        ByteRange resolved = range.resolve(totalSize);
+        if (resolved == null) {
+            throw new RangeNotSatisfiableException(totalSize);
+        }
+        return resolved;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public IndexingJobSnapshot getIndexingJob(String jobId) {
@@ -312,7 +362,7 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
     @Override
     @Transactional(readOnly = true)
     public PageResult<KnowledgeBaseDocument> listDocumentsPaged(
-            site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentStatus status,
+            KnowledgeBaseDocumentStatus status,
             int page,
             int size) {
         int safePage = Math.max(0, page);
@@ -345,22 +395,22 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
                         doc.getStoredObjectKey(), id, ex.getMessage());
             }
         }
+        staging.discard(id);
         documentRepository.deleteById(id);
 
-        // Reindexamos para sacar el documento eliminado del indice. No es
-        // critico (el data source ya esta borrado en el proveedor), pero
-        // mantiene consistencia.
-        try {
-            kbProvider.startIndexing(knowledgeBaseUuid, Collections.emptyList());
-        } catch (LlmProviderException ex) {
-            log.warn("Falla al disparar reindex tras borrar documento {}: {}", id, ex.getMessage());
+        // Pedimos un reindex completo para sacar el documento eliminado del
+        // indice. No es critico (el data source ya esta borrado en el
+        // proveedor), pero mantiene consistencia. Varias bajas seguidas
+        // comparten un solo job.
+        if (doc.getProviderDataSourceId() != null) {
+            afterCommit(reindexDebouncer::requestFullReindex);
         }
     }
 
     @Override
     public IndexingJobSnapshot triggerReindex() {
         validateModuleConfigured();
-        return kbProvider.startIndexing(knowledgeBaseUuid, Collections.emptyList());
+        return startIndexing(Collections.emptyList());
     }
 
     @Override
@@ -375,15 +425,7 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
         }
 
         IndexingJobSnapshot snapshot = kbProvider.getIndexingJobStatus(doc.getLastIndexingJobId());
-        // El set de status de DO incluye INDEX_JOB_STATUS_COMPLETED, *_RUNNING,
-        // *_FAILED, *_PENDING. Reducimos a INDEXED/INDEXING/FAILED para
-        // mantener el dominio simple.
-        String status = snapshot.status() == null ? "" : snapshot.status();
-        if (status.contains("COMPLETED") || status.contains("SUCCESS")) {
-            doc.markIndexed();
-        } else if (status.contains("FAILED") || status.contains("ERROR")) {
-            doc.markFailed(snapshot.errorMessage() == null ? "Indexing job fallo en el proveedor." : snapshot.errorMessage());
-        } else {
+        if (!doc.applyIndexingJobStatus(snapshot.status(), snapshot.errorMessage())) {
             // Sigue corriendo: mantenemos INDEXING. Solo refrescamos updatedAt
             // via markIndexing con el mismo jobId.
             doc.markIndexing(doc.getLastIndexingJobId());
@@ -391,14 +433,49 @@ public class KnowledgeBaseAdminService implements IKnowledgeBaseAdminUseCase {
         return documentRepository.save(doc);
     }
 
-    private String buildStoredKey(String fileName) {
-        String safeName = fileName == null ? "document" : fileName;
-        // El prefijo separa los binarios de la KB del resto del bucket; el
-        // UUID asegura unicidad incluso si el admin sube dos archivos con
-        // el mismo nombre. Mantenemos el nombre original al final para que
-        // el listado del bucket sea legible humanamente.
-        return (keyPrefix.endsWith("/") ? keyPrefix : keyPrefix + "/")
-                + UUID.randomUUID() + "/" + safeName;
+    /** Corre {@code action} al commitear la transaccion en curso, o ya si no hay una. */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Dispara la indexacion y vacia el cache de respuestas del chatbot: las
+     * respuestas guardadas pueden citar documentos que cambiaron. Se invalida
+     * aunque el disparo falle, porque el data source ya pudo haber cambiado
+     * en el proveedor. Lo que se responda mientras el job corre vence por el
+     * TTL del cache.
+     */
+    private IndexingJobSnapshot startIndexing(List<String> dataSourceIds) {
+        try {
+            return kbProvider.startIndexing(knowledgeBaseUuid, dataSourceIds);
+        } finally {
+            chatbotResponseCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Rechaza el alta si ya hay un documento vivo con el mismo contenido.
+     * Los {@code FAILED} no cuentan: el admin tiene que poder reintentar.
+     */
+    private void rejectDuplicateContent(String sha256, Long selfId) {
+        documentRepository.findByContentSha256(sha256).stream()
+                .filter(existing -> !existing.getId().equals(selfId))
+                .filter(existing -> existing.getStatus() != KnowledgeBaseDocumentStatus.FAILED)
+                .findFirst()
+                .ifPresent(existing -> {
+                    log.info("Alta de KB rechazada: mismo contenido que el documento id={} ({})",
+                            existing.getId(), existing.getTitle());
+                    throw new DuplicateResourceException("KnowledgeBaseDocument", "contentSha256", sha256);
+                });
     }
 
     private void validateModuleConfigured() {
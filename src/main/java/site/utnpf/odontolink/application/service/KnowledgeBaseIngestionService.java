@@ -0,0 +1,465 @@
+package site.utnpf.odontolink.application.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseIngestionUseCase;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort.IndexingJobSnapshot;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort.RegisteredDataSource;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseStagingPort;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.UploadedObject;
+import site.utnpf.odontolink.application.port.out.StorageException;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
+import site.utnpf.odontolink.application.service.support.KnowledgeBaseReindexDebouncer;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocument;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentKind;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentStatus;
+import site.utnpf.odontolink.domain.repository.KnowledgeBaseDocumentRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Pipeline de ingesta de la Knowledge Base en background (RF33).
+ *
+ * <p>El alta ({@code KnowledgeBaseAdminService}) solo persiste el documento
+ * en {@code PENDING_UPLOAD} y lo encola. Un worker llama a {@link #ingest}
+ * y el documento avanza por etapas, cada una con su propio {@code save}:
+ * <pre>
+ *   PENDING_UPLOAD -(upload)-> UPLOADED -(register)-> REGISTERED -> REINDEX_QUEUED
+ * </pre>
+ * Ninguna transaccion queda abierta durante las llamadas remotas. Como cada
+ * etapa arranca desde el estado persistido, un documento interrumpido (p. ej.
+ * por un reinicio) retoma donde quedo.
+ *
+ * <p>Concurrencia con el admin: el documento tiene {@code @Version}, asi que
+ * guardar una etapa sobre una lectura vieja falla en lugar de revertir una
+ * edicion hecha durante la llamada remota. Ante el conflicto se relee la
+ * fila y la etapa se reaplica solo si sigue valiendo para lo que se subio o
+ * registro (ver {@link #saveStage}).
+ *
+ * <p>Reintentos: una falla transitoria (storage, timeout, 429 o 5xx del
+ * proveedor) se reintenta hasta {@code maxAttempts} veces con backoff
+ * exponencial. Agotados los intentos, o ante un 4xx, el documento queda en
+ * {@code FAILED} con el detalle en {@code errorMessage}, igual que antes.
+ *
+ * <p>La indexacion no se dispara por documento: {@code REINDEX_QUEUED} pide
+ * el data source a {@link KnowledgeBaseReindexDebouncer} y
+ * {@link #flushQueuedReindex()} manda un solo {@code startIndexing} por lote,
+ * junto con las ediciones y bajas que llegaron en la misma ventana.
+ *
+ * <p>{@link #reconcileIndexingJobs()} reemplaza el "refresh-status" manual:
+ * agrupa los documentos en {@code INDEXING} por job, consulta cada job una
+ * sola vez y guarda cada documento que termino por separado.
+ */
+public class KnowledgeBaseIngestionService implements IKnowledgeBaseIngestionUseCase {
+
+    private static final Logger log = LoggerFactory.getLogger(KnowledgeBaseIngestionService.class);
+
+    /** Estados intermedios que el pipeline todavia tiene que avanzar. */
+    private static final List<KnowledgeBaseDocumentStatus> IN_PIPELINE = List.of(
+            KnowledgeBaseDocumentStatus.PENDING_UPLOAD,
+            KnowledgeBaseDocumentStatus.UPLOADED,
+            KnowledgeBaseDocumentStatus.REGISTERED,
+            KnowledgeBaseDocumentStatus.REINDEX_QUEUED);
+
+    /** Relecturas ante un conflicto de version antes de propagarlo. */
+    private static final int MAX_CONFLICT_RETRIES = 3;
+
+    private final KnowledgeBaseDocumentRepository documentRepository;
+    private final IKnowledgeBaseProviderPort kbProvider;
+    private final IObjectStoragePort aiKbStorage;
+    private final IKnowledgeBaseStagingPort staging;
+    private final ChatbotResponseCache chatbotResponseCache;
+    private final KnowledgeBaseReindexDebouncer reindexDebouncer;
+    private final String knowledgeBaseUuid;
+    private final String bucketName;
+    private final String bucketRegion;
+    private final String keyPrefix;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+
+    public KnowledgeBaseIngestionService(KnowledgeBaseDocumentRepository documentRepository,
+                                         IKnowledgeBaseProviderPort kbProvider,
+                                         IObjectStoragePort aiKbStorage,
+                                         IKnowledgeBaseStagingPort staging,
+                                         ChatbotResponseCache chatbotResponseCache,
+                                         KnowledgeBaseReindexDebouncer reindexDebouncer,
+                                         String knowledgeBaseUuid,
+                                         String bucketName,
+                                         String bucketRegion,
+                                         String keyPrefix,
+                                         int maxAttempts,
+                                         Duration initialBackoff) {
+        this.documentRepository = documentRepository;
+        this.kbProvider = kbProvider;
+        this.aiKbStorage = aiKbStorage;
+        this.staging = staging;
+        this.chatbotResponseCache = chatbotResponseCache;
+        this.reindexDebouncer = reindexDebouncer;
+        this.knowledgeBaseUuid = knowledgeBaseUuid;
+        this.bucketName = bucketName;
+        this.bucketRegion = bucketRegion;
+        this.keyPrefix = keyPrefix;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+    }
+
+    @Override
+    public void ingest(Long documentId) {
+        KnowledgeBaseDocument doc = documentRepository.findById(documentId).orElse(null);
+        if (doc == null) {
+            // Borrado mientras esperaba en la cola.
+            staging.discard(documentId);
+            return;
+        }
+        if (doc.getStatus() == KnowledgeBaseDocumentStatus.PENDING_UPLOAD) {
+            doc = upload(doc);
+        }
+        if (doc != null && doc.getStatus() == KnowledgeBaseDocumentStatus.UPLOADED) {
+            doc = register(doc);
+        }
+        if (doc != null && doc.getStatus() == KnowledgeBaseDocumentStatus.REGISTERED) {
+            doc.markReindexQueued();
+            doc = saveStage(doc, KnowledgeBaseDocument::markReindexQueued,
+                    fresh -> fresh.getStatus() == KnowledgeBaseDocumentStatus.REGISTERED);
+        }
+        if (doc != null && doc.getStatus() == KnowledgeBaseDocumentStatus.REINDEX_QUEUED) {
+            // Tambien cubre un REINDEX_QUEUED que retoma el barrido tras un
+            // reinicio: el set del debouncer no sobrevive al proceso.
+            reindexDebouncer.request(doc.getProviderDataSourceId());
+        }
+    }
+
+    @Override
+    public int flushQueuedReindex() {
+        KnowledgeBaseReindexDebouncer.Batch batch = reindexDebouncer.drainIfQuiet();
+        if (batch == null) {
+            return 0;
+        }
+        // Los documentos del lote se fijan al drenar: uno que el admin
+        // re-encola mientras viaja startIndexing queda para el proximo lote
+        // en lugar de quedar en INDEXING con un job que no lo incluye.
+        List<KnowledgeBaseDocument> drained = queuedDocuments(batch);
+        IndexingJobSnapshot job;
+        try {
+            job = kbProvider.startIndexing(knowledgeBaseUuid, batch.providerDataSourceIds());
+        } catch (LlmProviderException ex) {
+            if (isTransient(ex)) {
+                log.warn("Falla transitoria al disparar la indexacion agrupada ({} data sources), "
+                        + "se reintenta: {}", batch.dataSourceIds().size(), ex.getMessage());
+                reindexDebouncer.requeue(batch);
+                return 0;
+            }
+            String reason = "Falla al iniciar la indexacion: " + ex.getMessage();
+            for (KnowledgeBaseDocument doc : drained) {
+                Predicate<KnowledgeBaseDocument> unchanged = unchangedSinceDrain(doc);
+                doc.markFailed(reason);
+                saveStage(doc, d -> d.markFailed(reason), unchanged);
+            }
+            log.warn("Falla al disparar la indexacion agrupada: {}", ex.getMessage());
+            return 0;
+        } finally {
+            // Se invalida aunque el disparo falle: el data source ya pudo
+            // haber cambiado en el proveedor.
+            chatbotResponseCache.invalidateAll();
+        }
+        reindexDebouncer.recordJobStarted();
+
+        int started = 0;
+        for (KnowledgeBaseDocument doc : drained) {
+            Predicate<KnowledgeBaseDocument> unchanged = unchangedSinceDrain(doc);
+            doc.markIndexing(job.jobId());
+            KnowledgeBaseDocument saved = saveStage(doc, d -> d.markIndexing(job.jobId()), unchanged);
+            if (saved != null && job.jobId().equals(saved.getLastIndexingJobId())) {
+                started++;
+            }
+        }
+        log.info("Indexing job {} disparado para {} documentos (reindex completo: {})",
+                job.jobId(), started, batch.fullReindex());
+        return started;
+    }
+
+    @Override
+    public int reconcileIndexingJobs() {
+        List<KnowledgeBaseDocument> indexing =
+                documentRepository.findByStatusIn(List.of(KnowledgeBaseDocumentStatus.INDEXING));
+        if (indexing.isEmpty()) {
+            return 0;
+        }
+        // Un reindex global deja varios documentos con el mismo job: se
+        // consulta una vez por job, no por documento.
+        Map<String, List<KnowledgeBaseDocument>> byJob = new LinkedHashMap<>();
+        for (KnowledgeBaseDocument doc : indexing) {
+            if (doc.getLastIndexingJobId() != null) {
+                byJob.computeIfAbsent(doc.getLastIndexingJobId(), k -> new ArrayList<>()).add(doc);
+            }
+        }
+
+        int finished = 0;
+        boolean anyIndexed = false;
+        for (Map.Entry<String, List<KnowledgeBaseDocument>> entry : byJob.entrySet()) {
+            IndexingJobSnapshot snapshot;
+            try {
+                snapshot = kbProvider.getIndexingJobStatus(entry.getKey());
+            } catch (LlmProviderException ex) {
+                log.warn("No se pudo consultar el indexing job {}: {}", entry.getKey(), ex.getMessage());
+                continue;
+            }
+            String jobId = entry.getKey();
+            for (KnowledgeBaseDocument doc : entry.getValue()) {
+                if (!doc.applyIndexingJobStatus(snapshot.status(), snapshot.errorMessage())) {
+                    continue;
+                }
+                // Si el admin lo re-encolo mientras el job corria, el
+                // resultado de este job ya no describe su contenido.
+                KnowledgeBaseDocument saved = saveStage(doc,
+                        d -> d.applyIndexingJobStatus(snapshot.status(), snapshot.errorMessage()),
+                        fresh -> fresh.getStatus() == KnowledgeBaseDocumentStatus.INDEXING
+                                && jobId.equals(fresh.getLastIndexingJobId()));
+                if (saved == null || !jobId.equals(saved.getLastIndexingJobId())) {
+                    continue;
+                }
+                if (saved.getStatus() == KnowledgeBaseDocumentStatus.INDEXED) {
+                    finished++;
+                    anyIndexed = true;
+                } else if (saved.getStatus() == KnowledgeBaseDocumentStatus.FAILED) {
+                    finished++;
+                }
+            }
+        }
+        if (anyIndexed) {
+            // Lo cacheado mientras el job corria no conocia el contenido nuevo.
+            chatbotResponseCache.invalidateAll();
+        }
+        return finished;
+    }
+
+    @Override
+    public List<Long> findStalledDocumentIds(Instant olderThan) {
+        return documentRepository.findIdsByStatusInAndUpdatedAtBefore(IN_PIPELINE, olderThan);
+    }
+
+    private KnowledgeBaseDocument upload(KnowledgeBaseDocument doc) {
+        // La key incluye un UUID para evitar colisiones; los reintentos de
+        // esta corrida reusan la misma key y pisan el intento previo.
+        String storedKey = buildStoredKey(doc.getOriginalFileName());
+        UploadedObject uploaded;
+        try {
+            uploaded = withRetries("upload", doc.getId(), () -> uploadContent(doc, storedKey));
+            log.debug("Documento KB id={} subido: key={}, bytes={}, sha256={}",
+                    doc.getId(), storedKey, uploaded.size(), uploaded.sha256Hex());
+        } catch (StorageException ex) {
+            staging.discard(doc.getId());
+            return fail(doc, "Falla al subir el binario al storage: ", ex);
+        }
+        staging.discard(doc.getId());
+
+        if (documentRepository.findById(doc.getId()).isEmpty()) {
+            // Lo borraron mientras subia: no dejamos el objeto huerfano.
+            deleteQuietly(storedKey);
+            return null;
+        }
+        String uploadedSha = doc.getContentSha256();
+        Consumer<KnowledgeBaseDocument> markUploaded = d -> {
+            if (d.getContentSha256() == null && uploaded.sha256Hex() != null) {
+                // Documento encolado antes de que el alta calculara el hash.
+                d.recordContentSha256(uploaded.sha256Hex());
+            }
+            d.markUploaded(storedKey);
+        };
+        markUploaded.accept(doc);
+        KnowledgeBaseDocument saved = saveStage(doc, markUploaded,
+                fresh -> fresh.getStatus() == KnowledgeBaseDocumentStatus.PENDING_UPLOAD
+                        && Objects.equals(fresh.getContentSha256(), uploadedSha));
+        if (saved != null && storedKey.equals(saved.getStoredObjectKey())) {
+            return saved;
+        }
+        // La etapa no se aplico: ninguna fila referencia el objeto subido.
+        deleteQuietly(storedKey);
+        if (saved != null && saved.getStatus() == KnowledgeBaseDocumentStatus.PENDING_UPLOAD
+                && saved.getKind() == KnowledgeBaseDocumentKind.FAQ_TEXT) {
+            // El admin edito el FAQ mientras subia: se sube el contenido nuevo.
+            return upload(saved);
+        }
+        return null;
+    }
+
+    private UploadedObject uploadContent(KnowledgeBaseDocument doc, String storedKey) {
+        if (doc.getKind() == KnowledgeBaseDocumentKind.FAQ_TEXT) {
+            byte[] bytes = Objects.requireNonNullElse(doc.getInlineContent(), "").getBytes(StandardCharsets.UTF_8);
+            return aiKbStorage.upload(storedKey, new ByteArrayInputStream(bytes), bytes.length, "text/plain");
+        }
+        try (InputStream content = staging.open(doc.getId())) {
+            return aiKbStorage.upload(storedKey, content, doc.getSizeBytes(), doc.getContentType());
+        } catch (IOException ex) {
+            throw new StorageException("No se pudo leer el archivo en staging: " + ex.getMessage(), ex);
+        }
+    }
+
+    private KnowledgeBaseDocument register(KnowledgeBaseDocument doc) {
+        // Si falla, el binario queda en el bucket y puede limpiarse via deleteDocument.
+        String registeredKey = doc.getStoredObjectKey();
+        RegisteredDataSource registered;
+        try {
+            registered = withRetries("register", doc.getId(), () ->
+                    kbProvider.registerSpacesDataSource(knowledgeBaseUuid, bucketName, bucketRegion, registeredKey));
+        } catch (LlmProviderException ex) {
+            return fail(doc, "Falla al registrar el data source en el proveedor: ", ex);
+        }
+        String dataSourceId = registered.providerDataSourceId();
+        doc.markRegistered(dataSourceId);
+        KnowledgeBaseDocument saved = saveStage(doc, d -> d.markRegistered(dataSourceId),
+                fresh -> fresh.getStatus() == KnowledgeBaseDocumentStatus.UPLOADED
+                        && Objects.equals(fresh.getStoredObjectKey(), registeredKey));
+        if (saved != null && dataSourceId.equals(saved.getProviderDataSourceId())) {
+            return saved;
+        }
+        // Lo borraron (o ya lo registro otro worker) mientras se registraba.
+        deleteDataSourceQuietly(dataSourceId);
+        return null;
+    }
+
+    /** Documentos en {@code REINDEX_QUEUED} que cubre el lote. */
+    private List<KnowledgeBaseDocument> queuedDocuments(KnowledgeBaseReindexDebouncer.Batch batch) {
+        Set<String> ids = new HashSet<>(batch.dataSourceIds());
+        return documentRepository.findByStatusIn(List.of(KnowledgeBaseDocumentStatus.REINDEX_QUEUED)).stream()
+                .filter(doc -> batch.fullReindex() || ids.contains(doc.getProviderDataSourceId()))
+                .toList();
+    }
+
+    /**
+     * Acepta la relectura si sigue en cola con el contenido que tenia al
+     * drenar el lote; un rename no lo saca del lote, una edicion si.
+     */
+    private static Predicate<KnowledgeBaseDocument> unchangedSinceDrain(KnowledgeBaseDocument drained) {
+        String drainedSha = drained.getContentSha256();
+        return fresh -> fresh.getStatus() == KnowledgeBaseDocumentStatus.REINDEX_QUEUED
+                && Objects.equals(fresh.getContentSha256(), drainedSha);
+    }
+
+    private KnowledgeBaseDocument fail(KnowledgeBaseDocument doc, String reason, RuntimeException ex) {
+        log.warn("Ingesta del documento KB id={} fallida: {}{}", doc.getId(), reason, ex.getMessage());
+        KnowledgeBaseDocumentStatus stage = doc.getStatus();
+        String message = reason + ex.getMessage();
+        doc.markFailed(message);
+        saveStage(doc, d -> d.markFailed(message), fresh -> fresh.getStatus() == stage);
+        return null;
+    }
+
+    /**
+     * Guarda {@code doc}, que ya trae aplicada la transicion de la etapa. Si
+     * la fila cambio desde que se leyo, relee y reaplica {@code transition}
+     * sobre la version nueva mientras {@code stillApplies} la acepte.
+     *
+     * @return el documento guardado; el releido sin cambios si la etapa ya no
+     *         aplica; o {@code null} si lo borraron
+     */
+    private KnowledgeBaseDocument saveStage(KnowledgeBaseDocument doc,
+                                            Consumer<KnowledgeBaseDocument> transition,
+                                            Predicate<KnowledgeBaseDocument> stillApplies) {
+        KnowledgeBaseDocument current = doc;
+        for (int conflicts = 0; ; conflicts++) {
+            try {
+                return documentRepository.save(current);
+            } catch (OptimisticLockingFailureException ex) {
+                if (conflicts >= MAX_CONFLICT_RETRIES) {
+                    throw ex;
+                }
+                current = documentRepository.findById(doc.getId()).orElse(null);
+                if (current == null || !stillApplies.test(current)) {
+                    log.debug("Documento KB id={} cambio durante la etapa, no se reaplica", doc.getId());
+                    return current;
+                }
+                transition.accept(current);
+            }
+        }
+    }
+
+    /**
+     * Corre {@code step} reintentando las fallas transitorias con backoff
+     * exponencial. La ultima falla, o una no transitoria, se propaga.
+     */
+    private <T> T withRetries(String stepName, Long documentId, Supplier<T> step) {
+        long backoffMs = initialBackoff.toMillis();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return step.get();
+            } catch (StorageException | LlmProviderException ex) {
+                if (attempt >= maxAttempts || !isTransient(ex)) {
+                    throw ex;
+                }
+                log.info("Etapa {} del documento KB id={} fallo (intento {}/{}), reintentando en {} ms: {}",
+                        stepName, documentId, attempt, maxAttempts, backoffMs, ex.getMessage());
+                sleep(backoffMs);
+                backoffMs *= 2;
+            }
+        }
+    }
+
+    private static boolean isTransient(RuntimeException ex) {
+        if (ex instanceof LlmProviderException providerEx) {
+            Integer status = providerEx.getStatusCode();
+            return status == null || status == 429 || status >= 500;
+        }
+        return true;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            // Apagado de la instancia: el documento queda en su estado actual
+            // y lo retoma el barrido de ingestas demoradas.
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ingesta interrumpida.", ex);
+        }
+    }
+
+    private void deleteQuietly(String storedKey) {
+        try {
+            aiKbStorage.delete(storedKey);
+        } catch (StorageException ex) {
+            log.warn("Falla al borrar el binario huerfano {}: {}", storedKey, ex.getMessage());
+        }
+    }
+
+    private void deleteDataSourceQuietly(String dataSourceId) {
+        try {
+            kbProvider.deleteDataSource(knowledgeBaseUuid, dataSourceId);
+        } catch (LlmProviderException ex) {
+            log.warn("Falla al borrar el data source huerfano {}: {}", dataSourceId, ex.getMessage());
+        }
+    }
+
+    private String buildStoredKey(String fileName) {
+        String safeName = fileName == null ? "document" : fileName;
+        // El prefijo separa los binarios de la KB del resto del bucket; el
+        // UUID asegura unicidad incluso si el admin sube dos archivos con
+        // el mismo nombre. Mantenemos el nombre original al final para que
+        // el listado del bucket sea legible humanamente.
+        return (keyPrefix.endsWith("/") ? keyPrefix : keyPrefix + "/")
+                + UUID.randomUUID() + "/" + safeName;
+    }
+}
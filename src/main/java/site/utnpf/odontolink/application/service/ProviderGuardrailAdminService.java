@@ -7,6 +7,7 @@ import site.utnpf.odontolink.application.port.in.IProviderGuardrailAdminUseCase;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort.AgentSnapshot;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort.ProviderGuardrailSnapshot;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
 import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 import site.utnpf.odontolink.domain.exception.LlmProviderException;
 import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
@@ -66,15 +67,18 @@ public class ProviderGuardrailAdminService implements IProviderGuardrailAdminUse
     private final AiAgentConfigurationRepository configRepository;
     private final ILlmAgentProviderPort llmProvider;
     private final String providerAgentUuid;
+    private final ChatbotConfigSnapshotHolder chatbotConfigSnapshot;
 
     public ProviderGuardrailAdminService(ProviderGuardrailRepository guardrailRepository,
                                          AiAgentConfigurationRepository configRepository,
                                          ILlmAgentProviderPort llmProvider,
-                                         String providerAgentUuid) {
+                                         String providerAgentUuid,
+                                         ChatbotConfigSnapshotHolder chatbotConfigSnapshot) {
         this.guardrailRepository = guardrailRepository;
         this.configRepository = configRepository;
         this.llmProvider = llmProvider;
         this.providerAgentUuid = providerAgentUuid;
+        this.chatbotConfigSnapshot = chatbotConfigSnapshot;
     }
 
     @Override
@@ -204,6 +208,7 @@ public class ProviderGuardrailAdminService implements IProviderGuardrailAdminUse
             if (config.getLifecycle() == AiAgentLifecycle.PUBLISHED) {
                 config.markDraft();
                 configRepository.save(config);
+                chatbotConfigSnapshot.refreshAfterCommit();
             }
         });
     }
@@ -1,9 +1,14 @@
 package site.utnpf.odontolink.application.service.security;
 
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import site.utnpf.odontolink.domain.model.EmergencyKeyword;
 
+import java.time.Duration;
 import java.util.Collection;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * Detector local de emergencias en el mensaje del usuario del chatbot (RF32).
@@ -19,38 +24,97 @@ import java.util.regex.Pattern;
  * de acentos cubre las variaciones legitimas (Sangrado, SANGRADO, sangrado)
  * sin allocar modelos pesados.
  *
- * <p>El cache de keywords activos no vive aqui: lo hace el adapter de
- * persistencia para que el detector siga siendo stateless y testeable.
+ * <p>Matcher compilado: los terminos se arman en un {@link EmergencyTermMatcher}
+ * (Aho-Corasick) una vez por version del diccionario y se reemplazan de forma
+ * atomica. {@link #invalidateAfterCommit()} sube la version cuando commitea
+ * la edicion del admin: invalidar antes dejaria que un turno recargue el
+ * diccionario viejo y lo retenga hasta {@link #DEFAULT_MAX_AGE}. Ademas el
+ * matcher se reconstruye cada {@link #DEFAULT_MAX_AGE} como red de seguridad
+ * (cambios hechos por otra instancia). El cache de filas sigue viviendo en el
+ * adapter de persistencia.
  */
 public class EmergencyDetector {
 
+    static final Duration DEFAULT_MAX_AGE = Duration.ofSeconds(60);
+
+    private final long maxAgeNanos;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<Compiled> compiled = new AtomicReference<>();
+
+    public EmergencyDetector() {
+        this(DEFAULT_MAX_AGE);
+    }
+
+    EmergencyDetector(Duration maxAge) {
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
     /**
      * Devuelve {@code true} si el {@code input} normalizado contiene al menos
      * uno de los terminos del catalogo. Devuelve {@code false} para input
      * vacio o coleccion vacia (no es una "emergencia" un mensaje sin keywords).
+     *
+     * <p>Compila el matcher en cada llamada; para el camino caliente usar la
+     * variante con {@link Supplier}.
      */
     public boolean containsEmergencyTerm(String input, Collection<EmergencyKeyword> activeKeywords) {
         if (input == null || input.isBlank() || activeKeywords == null || activeKeywords.isEmpty()) {
             return false;
         }
-        String normalizedInput = EmergencyKeyword.normalize(input);
-        for (EmergencyKeyword kw : activeKeywords) {
-            if (!kw.isActive()) {
-                continue;
-            }
-            String term = kw.getNormalizedTerm();
-            if (term.isEmpty()) {
-                continue;
-            }
-            // Boundary-aware contains: usamos regex \b para que "dolor" no
-            // matchee "duelo lor" pero si "dolor agudo" o "dolor.". Quoteamos
-            // el termino para evitar inyeccion de metacaracteres regex desde
-            // el admin (defensivo).
-            String regex = "\\b" + Pattern.quote(term) + "\\b";
-            if (Pattern.compile(regex).matcher(normalizedInput).find()) {
-                return true;
-            }
+        return EmergencyTermMatcher.compile(activeKeywords).matches(EmergencyKeyword.normalize(input));
+    }
+
+    /**
+     * Igual que {@link #containsEmergencyTerm(String, Collection)}, pero
+     * reutiliza el matcher compilado de la version vigente. {@code activeKeywords}
+     * solo se consulta cuando hay que reconstruirlo.
+     */
+    public boolean containsEmergencyTerm(String input,
+                                         Supplier<? extends Collection<EmergencyKeyword>> activeKeywords) {
+        if (input == null || input.isBlank()) {
+            return false;
         }
-        return false;
+        return currentMatcher(activeKeywords).matches(EmergencyKeyword.normalize(input));
+    }
+
+    /** Descarta el matcher vigente; el proximo mensaje lo reconstruye. */
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Programa un {@link #invalidate()} para despues del commit de la
+     * transaccion en curso; sin transaccion, invalida en el momento. Si la
+     * transaccion hace rollback el matcher vigente sigue siendo valido.
+     */
+    public void invalidateAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+            return;
+        }
+        invalidate();
+    }
+
+    private EmergencyTermMatcher currentMatcher(Supplier<? extends Collection<EmergencyKeyword>> loader) {
+        Compiled current = compiled.get();
+        long expected = version.get();
+        long now = System.nanoTime();
+        if (current != null && current.version == expected && now - current.builtAt < maxAgeNanos) {
+            return current.matcher;
+        }
+        // La version se lee antes de cargar: si un invalidate() llega durante
+        // la carga, el matcher queda con la version vieja y el proximo mensaje
+        // lo reconstruye.
+        Compiled rebuilt = new Compiled(expected, now, EmergencyTermMatcher.compile(loader.get()));
+        compiled.compareAndSet(current, rebuilt);
+        return rebuilt.matcher;
+    }
+
+    private record Compiled(long version, long builtAt, EmergencyTermMatcher matcher) {
     }
 }
@@ -0,0 +1,89 @@
+package site.utnpf.odontolink.application.service.security;
+
+import site.utnpf.odontolink.domain.model.EmergencyKeyword;
+import site.utnpf.odontolink.domain.service.SubstringAutomaton;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Matcher inmutable de los terminos normalizados del diccionario de
+ * emergencias (RF32), sobre un {@link SubstringAutomaton} con chequeo de
+ * borde de palabra.
+ *
+ * <p>Reemplaza el {@code Pattern.compile("\\b" + term + "\\b")} por keyword
+ * y por mensaje: el automata se arma una vez por version del diccionario y
+ * recorre el mensaje en una sola pasada, sin importar cuantos terminos haya.
+ *
+ * <p>Semantica identica a la del regex anterior: un termino matchea si
+ * aparece en el input normalizado con borde de palabra a ambos lados, con la
+ * misma definicion de borde que {@code \b} en {@link java.util.regex.Pattern}
+ * (cambio entre caracter de palabra -letra, digito o {@code _}- y no-palabra).
+ * Como en el regex, un termino que empieza o termina con un signo exige del
+ * otro lado un caracter de palabra.
+ *
+ * <p>Thread-safe por inmutabilidad.
+ */
+public final class EmergencyTermMatcher {
+
+    private static final EmergencyTermMatcher EMPTY = new EmergencyTermMatcher(SubstringAutomaton.compile(List.of()));
+
+    private final SubstringAutomaton automaton;
+
+    private EmergencyTermMatcher(SubstringAutomaton automaton) {
+        this.automaton = automaton;
+    }
+
+    /** Automata para los keywords activos de {@code keywords}. */
+    public static EmergencyTermMatcher compile(Collection<EmergencyKeyword> keywords) {
+        if (keywords == null || keywords.isEmpty()) {
+            return EMPTY;
+        }
+        List<String> terms = new ArrayList<>(keywords.size());
+        for (EmergencyKeyword kw : keywords) {
+            if (kw.isActive() && !kw.getNormalizedTerm().isEmpty()) {
+                terms.add(kw.getNormalizedTerm());
+            }
+        }
+        return terms.isEmpty() ? EMPTY : new EmergencyTermMatcher(SubstringAutomaton.compile(terms));
+    }
+
+    /**
+     * {@code true} si {@code normalizedInput} (ya pasado por
+     * {@link EmergencyKeyword#normalize}) contiene algun termino con borde de
+     * palabra a ambos lados.
+     */
+    public boolean matches(String normalizedInput) {
+        if (automaton.isEmpty() || normalizedInput == null) {
+            return false;
+        }
+        IntPredicate startsOnBoundary = start -> isBoundary(normalizedInput, start);
+        int state = 0;
+        for (int i = 0; i < normalizedInput.length(); i++) {
+            state = automaton.next(state, normalizedInput.charAt(i));
+            if (automaton.accepts(state) && isBoundary(normalizedInput, i + 1)
+                    && automaton.anyMatch(state, i + 1, startsOnBoundary)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Cantidad de estados del automata; expuesto para tests. */
+    int stateCount() {
+        return automaton.stateCount();
+    }
+
+    /** Mismo criterio que {@code \b}: distinto caracter de palabra a cada lado. */
+    private static boolean isBoundary(String s, int index) {
+        boolean before = index > 0 && isWord(s.codePointBefore(index));
+        boolean after = index < s.length() && isWord(s.codePointAt(index));
+        return before != after;
+    }
+
+    private static boolean isWord(int codePoint) {
+        return codePoint == '_' || Character.isLetterOrDigit(codePoint);
+    }
+}
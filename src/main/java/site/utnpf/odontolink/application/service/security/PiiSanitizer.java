@@ -2,6 +2,7 @@ package site.utnpf.odontolink.application.service.security;
 
 import site.utnpf.odontolink.domain.model.ChatbotPiiType;
 
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -26,6 +27,18 @@ import java.util.regex.Pattern;
  *       sin estructura PII).</li>
  * </ul>
  *
+ * <p>Pasada unica: {@link #scan} recorre el texto una sola vez y separa los
+ * "clusters" candidatos, uniones de corridas numericas (digitos, espacios,
+ * {@code . - +}) con al menos un digito y de tokens de email
+ * ({@code [A-Za-z0-9._%+-@]}) con {@code @}. Toda coincidencia de cualquier
+ * patron cae dentro de un cluster, y los reemplazos de un cluster no cambian
+ * los bordes de palabra de otro, asi que la cascada de patrones se aplica por
+ * cluster (con un caracter de contexto a cada lado para los {@code \b}) con
+ * la misma precedencia que sobre el texto completo. Un cluster con menos
+ * digitos de los que exige un patron ni siquiera lo evalua: la prosa con
+ * algun numero suelto se copia sin tocar regex. La salida se arma en un
+ * unico {@link StringBuilder}, y si no hubo reemplazos se devuelve el input.
+ *
  * <p>El sanitizador es deterministico y stateless. Una unica instancia
  * funciona para toda la app (los patrones son thread-safe via Pattern).
  */
@@ -41,14 +54,17 @@ public class PiiSanitizer {
     private static final Pattern DNI = Pattern.compile(
             "\\b\\d{1,2}\\.?\\d{3}\\.?\\d{3}\\b"
     );
+    private static final int DNI_MIN_DIGITS = 7;
 
     /** CUIT/CUIL: 2 digitos - 8 digitos - 1 digito, con prefijos validos. */
     private static final Pattern CUIT = Pattern.compile(
             "\\b(20|23|24|27|30|33|34)-?\\d{8}-?\\d\\b"
     );
+    private static final int CUIT_MIN_DIGITS = 11;
 
     /** CBU argentino: exactamente 22 digitos consecutivos. */
     private static final Pattern CBU = Pattern.compile("\\b\\d{22}\\b");
+    private static final int CBU_MIN_DIGITS = 22;
 
     /**
      * Tarjeta de credito: 13-19 digitos (con separadores opcionales). El
@@ -58,6 +74,7 @@ public class PiiSanitizer {
     private static final Pattern CREDIT_CARD_CANDIDATE = Pattern.compile(
             "\\b(?:\\d[ -]?){12,18}\\d\\b"
     );
+    private static final int CREDIT_CARD_MIN_DIGITS = 13;
 
     /** Email RFC 5321 simplificado: suficiente para detectar y enmascarar. */
     private static final Pattern EMAIL = Pattern.compile(
@@ -74,6 +91,8 @@ public class PiiSanitizer {
                     + "|\\b0\\d{2,4}[\\s-]?\\d{6,8}\\b"
                     + "|\\b15\\s?\\d{6,8}\\b"
     );
+    /** La alternativa mas corta ({@code 15} + 6 digitos). */
+    private static final int PHONE_AR_MIN_DIGITS = 8;
 
     /**
      * Resultado de la pasada de sanitizacion. {@code sanitized} es el texto
@@ -97,22 +116,169 @@ public class PiiSanitizer {
      *   <li>Email.</li>
      *   <li>DNI (lo mas chico al final).</li>
      * </ol>
+     *
+     * <p>La cascada corre por cluster candidato (ver doc de la clase), no
+     * sobre el texto completo; el resultado es el mismo.
      */
     public PiiScanResult scan(String input) {
         if (input == null || input.isEmpty()) {
             return new PiiScanResult(input == null ? "" : "", input == null ? "" : "", EnumSet.noneOf(ChatbotPiiType.class));
         }
         Set<ChatbotPiiType> detected = EnumSet.noneOf(ChatbotPiiType.class);
-        String result = input;
+        long[] clusters = candidateClusters(input);
+        StringBuilder out = null;
+        int cursor = 0;
+        for (long cluster : clusters) {
+            int start = (int) (cluster >>> 32);
+            int end = (int) cluster;
+            String redacted = redactCluster(input, start, end, detected);
+            if (redacted == null) {
+                continue;
+            }
+            if (out == null) {
+                out = new StringBuilder(input.length() + 32);
+            }
+            out.append(input, cursor, start).append(redacted);
+            cursor = end;
+        }
+        String result = out == null ? input : out.append(input, cursor, input.length()).toString();
+        return new PiiScanResult(input, result, detected);
+    }
 
-        result = replaceAllValidCreditCards(result, detected);
-        result = replaceAll(result, CBU, "[CBU_REDACTADO]", detected, ChatbotPiiType.CBU);
-        result = replaceAll(result, CUIT, "[CUIT_REDACTADO]", detected, ChatbotPiiType.CUIT);
-        result = replaceAll(result, PHONE_AR, "[TELEFONO_REDACTADO]", detected, ChatbotPiiType.PHONE_AR);
-        result = replaceAll(result, EMAIL, "[EMAIL_REDACTADO]", detected, ChatbotPiiType.EMAIL);
-        result = replaceAll(result, DNI, "[DNI_REDACTADO]", detected, ChatbotPiiType.DNI);
+    /**
+     * Aplica la cascada de {@link #scan} sobre {@code text[start, end)}.
+     * Devuelve el cluster redactado, o {@code null} si no hubo reemplazos.
+     */
+    private String redactCluster(String text, int start, int end, Set<ChatbotPiiType> detected) {
+        int digits = 0;
+        boolean at = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isAsciiDigit(c)) {
+                digits++;
+            } else if (c == '@') {
+                at = true;
+            }
+        }
+        if (digits < DNI_MIN_DIGITS && !at) {
+            return null;
+        }
+        // Un caracter de contexto a cada lado para que los \b vean lo mismo
+        // que sobre el texto completo. Nunca forma parte de un match.
+        int from = Math.max(start - 1, 0);
+        int to = Math.min(end + 1, text.length());
+        String local = text.substring(from, to);
+        String result = local;
 
-        return new PiiScanResult(input, result, detected);
+        if (digits >= CREDIT_CARD_MIN_DIGITS) {
+            result = replaceAllValidCreditCards(result, detected);
+        }
+        if (digits >= CBU_MIN_DIGITS) {
+            result = replaceAll(result, CBU, "[CBU_REDACTADO]", detected, ChatbotPiiType.CBU);
+        }
+        if (digits >= CUIT_MIN_DIGITS) {
+            result = replaceAll(result, CUIT, "[CUIT_REDACTADO]", detected, ChatbotPiiType.CUIT);
+        }
+        if (digits >= PHONE_AR_MIN_DIGITS) {
+            result = replaceAll(result, PHONE_AR, "[TELEFONO_REDACTADO]", detected, ChatbotPiiType.PHONE_AR);
+        }
+        if (at) {
+            result = replaceAll(result, EMAIL, "[EMAIL_REDACTADO]", detected, ChatbotPiiType.EMAIL);
+        }
+        if (digits >= DNI_MIN_DIGITS) {
+            result = replaceAll(result, DNI, "[DNI_REDACTADO]", detected, ChatbotPiiType.DNI);
+        }
+        if (result == local) {
+            return null;
+        }
+        return result.substring(start - from, result.length() - (to - end));
+    }
+
+    /**
+     * Pasada unica sobre el texto: devuelve los clusters candidatos ordenados
+     * como {@code start << 32 | end}. Un cluster es la union de las corridas
+     * numericas con algun digito y los tokens de email con {@code @} que se
+     * solapan o tocan.
+     */
+    private static long[] candidateClusters(String text) {
+        long[] runs = new long[4];
+        int count = 0;
+        int numericStart = -1;
+        boolean numericHasDigit = false;
+        int emailStart = -1;
+        boolean emailHasAt = false;
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            // Centinela al final: '\0' no pertenece a ninguna corrida.
+            char c = i < length ? text.charAt(i) : '\0';
+            if (isNumericRunChar(c)) {
+                if (numericStart < 0) {
+                    numericStart = i;
+                    numericHasDigit = false;
+                }
+                numericHasDigit |= isAsciiDigit(c);
+            } else if (numericStart >= 0) {
+                if (numericHasDigit) {
+                    runs = append(runs, count++, numericStart, i);
+                }
+                numericStart = -1;
+            }
+            if (isEmailChar(c)) {
+                if (emailStart < 0) {
+                    emailStart = i;
+                    emailHasAt = false;
+                }
+                emailHasAt |= c == '@';
+            } else if (emailStart >= 0) {
+                if (emailHasAt) {
+                    runs = append(runs, count++, emailStart, i);
+                }
+                emailStart = -1;
+            }
+        }
+        if (count == 0) {
+            return new long[0];
+        }
+        // Cada familia sale ordenada, pero intercaladas no: ordenamos por
+        // inicio y fusionamos las que se solapan o tocan.
+        Arrays.sort(runs, 0, count);
+        int merged = 0;
+        long current = runs[0];
+        for (int i = 1; i < count; i++) {
+            int currentEnd = (int) current;
+            int nextStart = (int) (runs[i] >>> 32);
+            if (nextStart <= currentEnd) {
+                int nextEnd = Math.max(currentEnd, (int) runs[i]);
+                current = (current & 0xFFFFFFFF00000000L) | nextEnd;
+            } else {
+                runs[merged++] = current;
+                current = runs[i];
+            }
+        }
+        runs[merged++] = current;
+        return Arrays.copyOf(runs, merged);
+    }
+
+    private static long[] append(long[] runs, int index, int start, int end) {
+        long[] target = index < runs.length ? runs : Arrays.copyOf(runs, runs.length * 2);
+        target[index] = ((long) start << 32) | end;
+        return target;
+    }
+
+    /** Caracteres que pueden aparecer en un match de tarjeta, CBU, CUIT, telefono o DNI. */
+    private static boolean isNumericRunChar(char c) {
+        return isAsciiDigit(c) || c == '.' || c == '-' || c == '+'
+                || c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** Caracteres que pueden aparecer en un match de email. */
+    private static boolean isEmailChar(char c) {
+        return isAsciiDigit(c) || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')
+                || c == '.' || c == '_' || c == '%' || c == '+' || c == '-' || c == '@';
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
     }
 
     private String replaceAll(String text, Pattern pattern, String replacement,
@@ -130,28 +296,25 @@ public class PiiSanitizer {
     /**
      * Pasa el detector de tarjetas + valida Luhn para cada candidata. Si
      * pasa Luhn, reemplaza y registra. Si no, deja el texto intacto (era un
-     * numero largo cualquiera). Operacion sobre StringBuilder para minimizar
-     * allocs en mensajes largos.
+     * numero largo cualquiera). Luhn corre sobre el match saltando los
+     * separadores, sin copiar los digitos a otro String.
      */
     private String replaceAllValidCreditCards(String text, Set<ChatbotPiiType> detected) {
         Matcher m = CREDIT_CARD_CANDIDATE.matcher(text);
-        if (!m.find()) {
-            return text;
-        }
-        StringBuilder out = new StringBuilder(text.length());
+        StringBuilder out = null;
         int cursor = 0;
-        m.reset();
         while (m.find()) {
-            String candidate = m.group();
-            String digits = candidate.replaceAll("[^0-9]", "");
-            if (digits.length() >= 13 && digits.length() <= 19 && luhnValid(digits)) {
+            if (luhnValid(text, m.start(), m.end())) {
+                if (out == null) {
+                    out = new StringBuilder(text.length());
+                }
                 out.append(text, cursor, m.start());
                 out.append("[TARJETA_REDACTADA]");
                 cursor = m.end();
                 detected.add(ChatbotPiiType.CREDIT_CARD);
             }
         }
-        if (cursor == 0) {
+        if (out == null) {
             // No hubo tarjetas validas; devolvemos el original sin copias.
             return text;
         }
@@ -164,10 +327,23 @@ public class PiiSanitizer {
      * Implementacion clasica en O(n) sin allocs.
      */
     static boolean luhnValid(String digits) {
+        return luhnValid(digits, 0, digits.length());
+    }
+
+    /**
+     * Luhn sobre {@code text[start, end)} ignorando los caracteres que no son
+     * digitos. El largo de 13-19 digitos ya lo garantiza
+     * {@link #CREDIT_CARD_CANDIDATE}.
+     */
+    private static boolean luhnValid(CharSequence text, int start, int end) {
         int sum = 0;
         boolean alternate = false;
-        for (int i = digits.length() - 1; i >= 0; i--) {
-            int n = digits.charAt(i) - '0';
+        for (int i = end - 1; i >= start; i--) {
+            char c = text.charAt(i);
+            if (!isAsciiDigit(c)) {
+                continue;
+            }
+            int n = c - '0';
             if (alternate) {
                 n *= 2;
                 if (n > 9) {
@@ -0,0 +1,137 @@
+package site.utnpf.odontolink.application.service.support;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.domain.model.ChatSession;
+import site.utnpf.odontolink.domain.model.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Serialización de los chunks del tier frío del chat: JSON compacto comprimido con
+ * deflate.
+ *
+ * <p>Formato: un array de objetos {@code {i, s, c, t, r}} (id, senderId, content, sentAt,
+ * readAt) en orden ASC. Los instantes van como ISO-8601 para conservar los nanosegundos
+ * que usa el cursor keyset. Solo se guarda el id del sender: al decodificar se resuelve
+ * contra los participantes de la sesión, que son siempre los mismos dos usuarios.
+ *
+ * <p>Deflate (y no zstd) porque viene en el JDK: texto conversacional en español comprime
+ * 4-6x con nivel máximo y no suma dependencias nativas.
+ */
+public final class ChatArchiveCodec {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<ArchivedMessage>> LIST_TYPE = new TypeReference<>() {
+    };
+
+    private ChatArchiveCodec() {
+    }
+
+    record ArchivedMessage(Long i, Long s, String c, String t, String r) {
+    }
+
+    /** Comprime los mensajes (ya en orden ASC) en un payload de chunk. */
+    public static byte[] encode(List<ChatMessage> messages) {
+        List<ArchivedMessage> rows = new ArrayList<>(messages.size());
+        for (ChatMessage m : messages) {
+            rows.add(new ArchivedMessage(
+                    m.getId(),
+                    m.getSender() != null ? m.getSender().getId() : null,
+                    m.getContent(),
+                    m.getSentAt().toString(),
+                    m.getReadAt() != null ? m.getReadAt().toString() : null));
+        }
+        try {
+            return deflate(MAPPER.writeValueAsBytes(rows));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el chunk de chat archivado.", e);
+        }
+    }
+
+    /**
+     * Descomprime un payload y reconstruye los mensajes en orden ASC, con la sesión y el
+     * sender apuntando a los objetos de {@code session}.
+     */
+    public static List<ChatMessage> decode(byte[] payload, ChatSession session) {
+        List<ArchivedMessage> rows;
+        try {
+            rows = MAPPER.readValue(inflate(payload), LIST_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Chunk de chat archivado corrupto.", e);
+        }
+        List<ChatMessage> out = new ArrayList<>(rows.size());
+        for (ArchivedMessage row : rows) {
+            ChatMessage m = new ChatMessage(session, resolveSender(session, row.s()), row.c());
+            m.setId(row.i());
+            m.setSentAt(Instant.parse(row.t()));
+            m.setReadAt(row.r() != null ? Instant.parse(row.r()) : null);
+            out.add(m);
+        }
+        return out;
+    }
+
+    private static User resolveSender(ChatSession session, Long senderId) {
+        if (senderId == null) {
+            return null;
+        }
+        if (session.getPatient() != null && session.getPatient().getUser() != null
+                && senderId.equals(session.getPatient().getUser().getId())) {
+            return session.getPatient().getUser();
+        }
+        if (session.getPractitioner() != null && session.getPractitioner().getUser() != null
+                && senderId.equals(session.getPractitioner().getUser().getId())) {
+            return session.getPractitioner().getUser();
+        }
+        User placeholder = new User();
+        placeholder.setId(senderId);
+        return placeholder;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Payload truncado.");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
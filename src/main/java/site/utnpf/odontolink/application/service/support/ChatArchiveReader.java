@@ -0,0 +1,106 @@
+package site.utnpf.odontolink.application.service.support;
+
+import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.domain.model.ChatMessageArchiveChunk;
+import site.utnpf.odontolink.domain.model.ChatSession;
+import site.utnpf.odontolink.domain.repository.ChatMessageArchiveRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lectura del tier frío del chat con la misma semántica que la tabla caliente.
+ *
+ * <p>Todas las operaciones devuelven mensajes en orden DESC ({@code sentAt}, {@code id}) y
+ * recorren los chunks del más reciente al más antiguo usando solo sus metadatos: un chunk
+ * se descomprime únicamente si aporta mensajes al resultado. Como el tier frío es siempre
+ * anterior a la tabla caliente, los callers piden acá "lo que falta" después de agotar
+ * {@code chat_messages}.
+ */
+public class ChatArchiveReader {
+
+    private final ChatMessageArchiveRepository archiveRepository;
+
+    public ChatArchiveReader(ChatMessageArchiveRepository archiveRepository) {
+        this.archiveRepository = archiveRepository;
+    }
+
+    public long count(ChatSession session) {
+        return archiveRepository.countMessagesBySession(session.getId());
+    }
+
+    /**
+     * Equivalente a OFFSET/LIMIT sobre el historial archivado: {@code offset} cuenta
+     * desde el mensaje archivado más reciente.
+     */
+    public List<ChatMessage> pageDesc(ChatSession session, long offset, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        List<ChatMessage> out = new ArrayList<>(limit);
+        long skipped = 0;
+        for (ChatMessageArchiveChunk chunk : archiveRepository.findHeadersBySessionDesc(session.getId())) {
+            if (out.size() >= limit) {
+                break;
+            }
+            if (skipped + chunk.getMessageCount() <= offset) {
+                skipped += chunk.getMessageCount();
+                continue;
+            }
+            List<ChatMessage> desc = decodeDesc(chunk, session);
+            int from = (int) Math.max(0, offset - skipped);
+            skipped += chunk.getMessageCount();
+            for (int i = from; i < desc.size() && out.size() < limit; i++) {
+                out.add(desc.get(i));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Equivalente al keyset de la tabla caliente: mensajes estrictamente anteriores a
+     * ({@code beforeSentAt}, {@code beforeId}), o los más recientes si la tupla es
+     * {@code null}.
+     */
+    public List<ChatMessage> beforeDesc(ChatSession session, Instant beforeSentAt, Long beforeId, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        boolean bounded = beforeSentAt != null && beforeId != null;
+        List<ChatMessage> out = new ArrayList<>(limit);
+        for (ChatMessageArchiveChunk chunk : archiveRepository.findHeadersBySessionDesc(session.getId())) {
+            if (out.size() >= limit) {
+                break;
+            }
+            if (bounded && !chunk.startsBefore(beforeSentAt, beforeId)) {
+                continue;
+            }
+            for (ChatMessage m : decodeDesc(chunk, session)) {
+                if (out.size() >= limit) {
+                    break;
+                }
+                if (!bounded || isBefore(m, beforeSentAt, beforeId)) {
+                    out.add(m);
+                }
+            }
+        }
+        return out;
+    }
+
+    private List<ChatMessage> decodeDesc(ChatMessageArchiveChunk chunk, ChatSession session) {
+        byte[] payload = chunk.getPayload() != null ? chunk.getPayload() : archiveRepository.findPayload(chunk.getId());
+        if (payload == null) {
+            return List.of();
+        }
+        List<ChatMessage> messages = ChatArchiveCodec.decode(payload, session);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    private static boolean isBefore(ChatMessage m, Instant sentAt, Long id) {
+        int cmp = m.getSentAt().compareTo(sentAt);
+        return cmp < 0 || (cmp == 0 && m.getId() < id);
+    }
+}
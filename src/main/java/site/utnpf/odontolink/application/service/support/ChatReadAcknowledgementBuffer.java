@@ -0,0 +1,151 @@
+package site.utnpf.odontolink.application.service.support;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffer en memoria de confirmaciones de lectura del chat (CU012).
+ *
+ * <p>Problema que resuelve: el FE llama a {@code POST /messages/read} cada vez que la
+ * vista del chat gana foco, y cada llamada era un UPDATE sobre toda la sesión. Con varias
+ * pestañas o un usuario que alterna ventanas, eso son decenas de UPDATEs por minuto que
+ * en su mayoría no cambian ninguna fila pero igual toman locks y escriben redo log.
+ *
+ * <p>Estrategia: cada confirmación se reduce a "leído hasta el mensaje X" por
+ * (sesión, receptor) y se fusiona con la pendiente quedándose con el X mayor. Un job
+ * periódico drena el buffer con {@link #drain()} y emite <b>un</b> UPDATE por clave,
+ * sin importar cuántas confirmaciones llegaron en la ventana.
+ *
+ * <p>Thread-safety: las fusiones usan {@link ConcurrentMap#merge}; el drenado remueve
+ * clave por clave, así que una confirmación que llega durante el drenado queda para el
+ * ciclo siguiente en lugar de perderse.
+ *
+ * <p>Pérdida ante caída: lo pendiente vive solo en memoria. En el peor caso se pierden
+ * unos cientos de ms de confirmaciones; el FE re-confirma en el próximo foco y el
+ * contador de no-leídos vuelve a cerrarse. Es el mismo contrato "best effort" que ya
+ * tienen los read receipts.
+ */
+public class ChatReadAcknowledgementBuffer {
+
+    private final ConcurrentMap<Key, PendingAck> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong acknowledgementsReceived = new AtomicLong();
+    private final AtomicLong updatesIssued = new AtomicLong();
+    private final AtomicLong rowsUpdated = new AtomicLong();
+
+    /**
+     * Registra que {@code receiverUserId} leyó la sesión hasta {@code upToMessageId}
+     * inclusive. Si ya había una confirmación pendiente para la misma clave, se fusiona.
+     *
+     * @param coveredUnread no-leídos que la confirmación cubría al recibirse; alimenta el
+     *                      overlay de {@link #pendingUnreadBySession} sin volver a contar.
+     */
+    public void acknowledge(Long chatSessionId, Long receiverUserId, Long upToMessageId, Instant readAt,
+                            long coveredUnread) {
+        acknowledgementsReceived.incrementAndGet();
+        pending.merge(new Key(chatSessionId, receiverUserId),
+                new PendingAck(chatSessionId, receiverUserId, upToMessageId, readAt, coveredUnread),
+                PendingAck::mergeWith);
+    }
+
+    /**
+     * No-leídos ya cubiertos por confirmaciones pendientes del usuario, indexados por
+     * sesión. Permite que el propio lector vea sus badges cerrados antes de que el flush
+     * llegue a la base.
+     */
+    public Map<Long, Long> pendingUnreadBySession(Long receiverUserId) {
+        Map<Long, Long> out = new HashMap<>();
+        for (PendingAck ack : pending.values()) {
+            if (ack.receiverUserId().equals(receiverUserId)) {
+                out.put(ack.chatSessionId(), ack.coveredUnread());
+            }
+        }
+        return out.isEmpty() ? Collections.emptyMap() : out;
+    }
+
+    /**
+     * Remueve y devuelve todas las confirmaciones pendientes. El caller es responsable de
+     * aplicarlas y, si falla, devolverlas con {@link #requeue}.
+     */
+    public List<PendingAck> drain() {
+        List<PendingAck> drained = new ArrayList<>(pending.size());
+        for (Key key : pending.keySet()) {
+            PendingAck ack = pending.remove(key);
+            if (ack != null) {
+                drained.add(ack);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Reencola confirmaciones que no se pudieron aplicar, fusionándolas con cualquier otra
+     * que haya llegado mientras tanto.
+     */
+    public void requeue(List<PendingAck> acks) {
+        for (PendingAck ack : acks) {
+            pending.merge(new Key(ack.chatSessionId(), ack.receiverUserId()), ack, PendingAck::mergeWith);
+        }
+    }
+
+    /** Contabiliza un UPDATE emitido y las filas que afectó. */
+    public void recordFlush(int rows) {
+        updatesIssued.incrementAndGet();
+        rowsUpdated.addAndGet(rows);
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public long getAcknowledgementsReceived() {
+        return acknowledgementsReceived.get();
+    }
+
+    public long getUpdatesIssued() {
+        return updatesIssued.get();
+    }
+
+    public long getRowsUpdated() {
+        return rowsUpdated.get();
+    }
+
+    /**
+     * UPDATEs emitidos por confirmación recibida. 1.0 equivale al comportamiento sin
+     * buffer; cuanto más cerca de 0, más confirmaciones se coalescieron.
+     */
+    public double writeAmplification() {
+        long received = acknowledgementsReceived.get();
+        return received == 0 ? 0.0 : (double) updatesIssued.get() / received;
+    }
+
+    private record Key(Long chatSessionId, Long receiverUserId) {
+    }
+
+    /**
+     * Confirmación pendiente ya fusionada. {@code readAt} es el instante de la última
+     * confirmación: los mensajes que entraron entre la primera y la última también quedan
+     * cubiertos, y no pueden tener un {@code readAt} anterior a su {@code sentAt}.
+     * {@code coveredUnread} viaja con el mayor {@code upTo}: es el que cubre más mensajes.
+     */
+    public record PendingAck(Long chatSessionId, Long receiverUserId, Long upToMessageId, Instant readAt,
+                             long coveredUnread) {
+
+        PendingAck mergeWith(PendingAck other) {
+            boolean mineIsWider = upToMessageId >= other.upToMessageId;
+            return new PendingAck(
+                    chatSessionId,
+                    receiverUserId,
+                    mineIsWider ? upToMessageId : other.upToMessageId,
+                    readAt.isAfter(other.readAt) ? readAt : other.readAt,
+                    mineIsWider ? Math.max(coveredUnread, other.coveredUnread) : other.coveredUnread);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package site.utnpf.odontolink.application.service.support;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normaliza el texto libre de la búsqueda del chat a una lista de términos seguros para
+ * el motor full-text.
+ *
+ * <p>Reglas:
+ * <ul>
+ *   <li>Se parte por cualquier carácter que no sea letra o dígito: los operadores del
+ *       boolean mode ({@code + - * " ( ) ~ < >}) nunca llegan al motor.</li>
+ *   <li>Se descartan términos de menos de {@link #MIN_TERM_LENGTH} caracteres: el índice
+ *       de InnoDB no los tokeniza ({@code innodb_ft_min_token_size = 3}) y exigirlos
+ *       vaciaría el resultado.</li>
+ *   <li>Como mucho {@link #MAX_TERMS} términos, sin repetir, en minúsculas.</li>
+ * </ul>
+ */
+public final class ChatSearchTerms {
+
+    public static final int MIN_TERM_LENGTH = 3;
+    public static final int MAX_TERMS = 8;
+
+    private ChatSearchTerms() {
+    }
+
+    public static List<String> parse(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        for (String token : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= MIN_TERM_LENGTH) {
+                terms.add(token);
+                if (terms.size() == MAX_TERMS) {
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+}
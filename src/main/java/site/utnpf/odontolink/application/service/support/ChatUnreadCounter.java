@@ -0,0 +1,143 @@
+package site.utnpf.odontolink.application.service.support;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Contador en memoria de no-leídos del chat por usuario (badge global, CU012 - P8).
+ *
+ * <p>Problema que resuelve: el badge se pide en cada navegación y cada pedido era un COUNT
+ * con joins a paciente y practicante sobre toda {@code chat_messages}. Con el contador, la
+ * lectura es un {@code get} sobre un mapa; el COUNT solo corre la primera vez que se pide
+ * el badge de un usuario y en la reconciliación periódica.
+ *
+ * <p>Mantenimiento:
+ * <ul>
+ *   <li>{@link #increment} al enviar un mensaje, para el receptor.</li>
+ *   <li>{@link #decrement} al aplicar un mark-as-read, por las filas realmente
+ *       actualizadas.</li>
+ *   <li>Solo se ajustan usuarios ya cargados: si el receptor no tiene entrada, su próximo
+ *       pedido de badge la carga con el COUNT, que ya incluye el cambio.</li>
+ * </ul>
+ *
+ * <p>Deriva: los ajustes se aplican antes del commit de la transacción que los origina, así
+ * que un rollback o una carga concurrente con un envío pueden dejar el contador corrido en
+ * una unidad. {@link #reconcile} lo corrige contra el COUNT autoritativo; mientras tanto el
+ * valor expuesto nunca es negativo.
+ *
+ * <p>Memoria: las entradas que no se leen en un rato se descartan con {@link #evictIdle},
+ * así el mapa queda acotado a los usuarios con sesión activa.
+ */
+public class ChatUnreadCounter {
+
+    private final ConcurrentMap<Long, Entry> counters = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong driftCorrected = new AtomicLong();
+
+    /**
+     * Valor actual para el usuario. Si no está cargado, lo inicializa con
+     * {@code authoritative} (fuera de cualquier lock del mapa: dos cargas simultáneas del
+     * mismo usuario hacen dos COUNT y gana la primera).
+     */
+    public long get(Long userId, LongSupplier authoritative, Instant now) {
+        Entry entry = counters.get(userId);
+        if (entry != null) {
+            hits.incrementAndGet();
+        } else {
+            loads.incrementAndGet();
+            Entry loaded = new Entry(authoritative.getAsLong());
+            Entry existing = counters.putIfAbsent(userId, loaded);
+            entry = existing != null ? existing : loaded;
+        }
+        entry.lastAccess = now;
+        return Math.max(0, entry.value.get());
+    }
+
+    public void increment(Long userId) {
+        Entry entry = counters.get(userId);
+        if (entry != null) {
+            entry.value.incrementAndGet();
+        }
+    }
+
+    public void decrement(Long userId, long by) {
+        if (by <= 0) {
+            return;
+        }
+        Entry entry = counters.get(userId);
+        if (entry != null) {
+            entry.value.addAndGet(-by);
+        }
+    }
+
+    /** Usuarios con contador cargado; snapshot para la reconciliación. */
+    public Set<Long> trackedUsers() {
+        return Set.copyOf(counters.keySet());
+    }
+
+    /**
+     * Corrige la entrada del usuario contra el COUNT autoritativo. El valor corregido se
+     * publica con un compare-and-set contra el leído antes del COUNT: si un
+     * {@link #increment} o {@link #decrement} llegó mientras tanto, no se sabe si el COUNT
+     * ya lo incluye, así que la corrección se saltea y queda para la próxima pasada.
+     *
+     * @return la deriva corregida (0 si estaba al día, el usuario no está cargado o hubo
+     *         un ajuste concurrente).
+     */
+    public long reconcile(Long userId, LongSupplier authoritative) {
+        Entry entry = counters.get(userId);
+        if (entry == null) {
+            return 0;
+        }
+        long before = entry.value.get();
+        long actual = authoritative.getAsLong();
+        long drift = actual - before;
+        if (drift == 0 || !entry.value.compareAndSet(before, actual)) {
+            return 0;
+        }
+        driftCorrected.addAndGet(Math.abs(drift));
+        return drift;
+    }
+
+    /** Descarta las entradas que nadie leyó desde {@code idleBefore}. */
+    public int evictIdle(Instant idleBefore) {
+        int evicted = 0;
+        for (var e : counters.entrySet()) {
+            if (e.getValue().lastAccess.isBefore(idleBefore) && counters.remove(e.getKey(), e.getValue())) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getDriftCorrected() {
+        return driftCorrected.get();
+    }
+
+    private static final class Entry {
+        private final AtomicLong value;
+        private volatile Instant lastAccess = Instant.EPOCH;
+
+        private Entry(long initial) {
+            this.value = new AtomicLong(initial);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package site.utnpf.odontolink.application.service.support;
+
+import site.utnpf.odontolink.domain.model.AiAgentAccessMode;
+import site.utnpf.odontolink.domain.model.AiAgentConfiguration;
+import site.utnpf.odontolink.domain.model.AiAgentLifecycle;
+import site.utnpf.odontolink.domain.model.AiPiiPolicy;
+import site.utnpf.odontolink.domain.model.Role;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Copia inmutable de lo que un turno del chatbot necesita de la
+ * configuracion del agente (RF29/RF31), con la URL de invocacion ya
+ * resuelta. La mantiene {@link ChatbotConfigSnapshotHolder}.
+ *
+ * <p>{@code agentInvocationUrl} es {@code null} si no hay ENV ni cache en BD
+ * y el descubrimiento todavia no la encontro.
+ */
+public record ChatbotConfigSnapshot(AiAgentLifecycle lifecycle,
+                                    AiAgentAccessMode accessMode,
+                                    Set<Role> allowedRoles,
+                                    AiPiiPolicy piiPolicy,
+                                    int conversationBufferSize,
+                                    String emergencyBannerText,
+                                    boolean showConfidenceIndicator,
+                                    Instant providerSyncedAt,
+                                    String displayName,
+                                    String welcomeMessage,
+                                    String agentInvocationUrl) {
+
+    /** Sin fila de configuracion: el admin todavia no hizo el primer PUT. */
+    public static final ChatbotConfigSnapshot UNCONFIGURED = new ChatbotConfigSnapshot(
+            AiAgentLifecycle.UNCONFIGURED, AiAgentAccessMode.DISABLED, Set.of(), AiPiiPolicy.BLOCK,
+            0, null, false, null, null, null, null);
+
+    public ChatbotConfigSnapshot {
+        allowedRoles = allowedRoles == null ? Set.of() : Set.copyOf(allowedRoles);
+    }
+
+    public static ChatbotConfigSnapshot of(AiAgentConfiguration config, String agentInvocationUrl) {
+        return new ChatbotConfigSnapshot(
+                config.getLifecycle(),
+                config.getAccessMode(),
+                config.getAllowedRoles(),
+                config.getPiiPolicy(),
+                config.getConversationBufferSize(),
+                config.getEmergencyBannerText(),
+                config.isShowConfidenceIndicator(),
+                config.getProviderSyncedAt(),
+                config.getDisplayName(),
+                config.getWelcomeMessage(),
+                agentInvocationUrl);
+    }
+
+    public boolean isConfigured() {
+        return lifecycle != AiAgentLifecycle.UNCONFIGURED;
+    }
+
+    public boolean isPublished() {
+        return lifecycle == AiAgentLifecycle.PUBLISHED;
+    }
+
+    /** Copia con la URL de invocacion descubierta. */
+    public ChatbotConfigSnapshot withAgentInvocationUrl(String url) {
+        return new ChatbotConfigSnapshot(lifecycle, accessMode, allowedRoles, piiPolicy,
+                conversationBufferSize, emergencyBannerText, showConfidenceIndicator,
+                providerSyncedAt, displayName, welcomeMessage, url);
+    }
+}
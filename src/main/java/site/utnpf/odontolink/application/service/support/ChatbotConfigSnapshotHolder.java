@@ -0,0 +1,256 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.domain.model.AiAgentConfiguration;
+import site.utnpf.odontolink.domain.model.AiAgentLifecycle;
+import site.utnpf.odontolink.domain.repository.AiAgentConfigurationRepository;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Configuracion publicada del chatbot en memoria (RF29/RF31).
+ *
+ * <p>Problema que resuelve: cada turno leia la fila singleton de MySQL, la
+ * guardaba si la URL de la ENV no coincidia con la cacheada y, despues de un
+ * "clear cache", el primer usuario pagaba el {@code getAgent} de la
+ * management API dentro de su turno.
+ *
+ * <p>Estrategia: un {@link ChatbotConfigSnapshot} inmutable detras de un
+ * {@link AtomicReference}. El turno solo lee la referencia. El snapshot se
+ * reconstruye:
+ * <ul>
+ *   <li>al arranque ({@code ChatbotConfigSnapshotBootstrapper});</li>
+ *   <li>despues del commit de cada escritura de la configuracion (save,
+ *       publish, rollback, revert, clear cache), via
+ *       {@link #refreshAfterCommit()};</li>
+ *   <li>periodicamente, para tomar cambios hechos por otra instancia.</li>
+ * </ul>
+ * Al reconstruir se resuelve la URL (ENV, cache en BD o descubrimiento) y se
+ * persiste si cambio: las escrituras y la llamada remota quedan del lado del
+ * admin o del job, no del usuario.
+ *
+ * <p>Sin locks: la llamada remota al proveedor no puede bloquear a los turnos
+ * ni a otros refresh. Cada refresh toma un numero de secuencia al arrancar y
+ * solo publica si ninguno posterior publico antes.
+ */
+public class ChatbotConfigSnapshotHolder {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotConfigSnapshotHolder.class);
+
+    private final AiAgentConfigurationRepository configRepository;
+    private final ILlmAgentProviderPort providerPort;
+    private final String envAgentInvocationUrl;
+    private final String providerAgentUuid;
+    /**
+     * Transaccion propia: {@link #refreshAfterCommit()} corre cuando la del
+     * caller ya commiteo y sus recursos siguen ligados al thread.
+     */
+    private final TransactionTemplate requiresNew;
+
+    private final AtomicReference<Published> current = new AtomicReference<>();
+    private final AtomicLong refreshSequence = new AtomicLong();
+    /** Descubrimiento en vuelo de {@link #discoverInvocationUrl()}; null si no hay. */
+    private final AtomicReference<CompletableFuture<String>> discovery = new AtomicReference<>();
+
+    public ChatbotConfigSnapshotHolder(AiAgentConfigurationRepository configRepository,
+                                       ILlmAgentProviderPort providerPort,
+                                       String envAgentInvocationUrl,
+                                       String providerAgentUuid,
+                                       PlatformTransactionManager transactionManager) {
+        this.configRepository = configRepository;
+        this.providerPort = providerPort;
+        this.envAgentInvocationUrl = envAgentInvocationUrl;
+        this.providerAgentUuid = providerAgentUuid;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Snapshot vigente. Solo lee la base si todavia no se cargo (el
+     * bootstrap del arranque fallo o no corrio).
+     */
+    public ChatbotConfigSnapshot current() {
+        Published published = current.get();
+        return published != null ? published.snapshot() : refresh();
+    }
+
+    /**
+     * Relee la configuracion y publica un snapshot nuevo. Dos refresh
+     * concurrentes no pueden dejar publicado el mas viejo: si uno que arranco
+     * despues ya publico, este descarta su resultado y devuelve el vigente.
+     */
+    public ChatbotConfigSnapshot refresh() {
+        long sequence = refreshSequence.incrementAndGet();
+        Optional<AiAgentConfiguration> loaded = requiresNew.execute(status -> configRepository.findSingleton());
+        ChatbotConfigSnapshot snapshot;
+        if (loaded == null || loaded.isEmpty()) {
+            snapshot = ChatbotConfigSnapshot.UNCONFIGURED;
+        } else {
+            AiAgentConfiguration config = loaded.get();
+            snapshot = ChatbotConfigSnapshot.of(config, resolveInvocationUrl(config));
+        }
+        return current.updateAndGet(prev -> prev != null && prev.sequence() > sequence
+                ? prev : new Published(snapshot, sequence)).snapshot();
+    }
+
+    /**
+     * Programa un {@link #refresh()} para despues del commit de la transaccion
+     * en curso; sin transaccion, refresca en el momento. Si la transaccion
+     * hace rollback el snapshot no cambia. Una falla del refresh se loguea y
+     * no llega al caller: su escritura ya quedo commiteada.
+     */
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refreshQuietly();
+                }
+            });
+            return;
+        }
+        refreshQuietly();
+    }
+
+    /** Igual que {@link #refresh()} pero sin propagar errores (jobs y bootstrap). */
+    public void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException ex) {
+            log.warn("No se pudo refrescar la configuracion del chatbot en memoria: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Caso degradado del turno: el snapshot no tiene URL porque el
+     * descubrimiento del ultimo refresh fallo. Reintenta una vez por rafaga:
+     * el primer turno llama al proveedor y los concurrentes esperan su
+     * resultado en lugar de repetir la llamada.
+     *
+     * @throws LlmProviderException con
+     *         {@link AiAgentErrorCodes#AI_AGENT_INVOCATION_URL_UNAVAILABLE}.
+     */
+    public String discoverInvocationUrl() {
+        String url = current().agentInvocationUrl();
+        if (url != null) {
+            return url;
+        }
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = discovery.compareAndExchange(null, mine);
+        if (inFlight != null) {
+            return awaitDiscovery(inFlight);
+        }
+        try {
+            // Otro turno pudo terminar entre la lectura y el CAS.
+            String discovered = current().agentInvocationUrl();
+            if (discovered == null) {
+                discovered = discover();
+                persistInvocationUrl(discovered);
+                String published = discovered;
+                current.updateAndGet(prev -> prev.snapshot().agentInvocationUrl() != null
+                        ? prev : new Published(prev.snapshot().withAgentInvocationUrl(published), prev.sequence()));
+            }
+            mine.complete(discovered);
+            return discovered;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            discovery.set(null);
+        }
+    }
+
+    private static String awaitDiscovery(CompletableFuture<String> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Estrategia hibrida: ENV {@code DIGITALOCEAN_AGENT_INVOCATION_URL}, cache
+     * en {@code config.agentInvocationUrl} o descubrimiento via management API
+     * (solo si el agente esta publicado). Sincroniza el cache de BD para que el
+     * endpoint admin de "clear cache" tenga visibilidad consistente.
+     */
+    private String resolveInvocationUrl(AiAgentConfiguration config) {
+        String url;
+        if (envAgentInvocationUrl != null && !envAgentInvocationUrl.isBlank()) {
+            url = envAgentInvocationUrl;
+        } else if (config.getAgentInvocationUrl() != null && !config.getAgentInvocationUrl().isBlank()) {
+            return config.getAgentInvocationUrl();
+        } else if (config.getLifecycle() != AiAgentLifecycle.PUBLISHED) {
+            return null;
+        } else {
+            try {
+                url = discover();
+            } catch (LlmProviderException ex) {
+                log.warn("No se pudo descubrir la URL de invocacion del agente: {} ({}).",
+                        ex.getMessage(), ex.getErrorCode());
+                return null;
+            }
+        }
+        if (!url.equals(config.getAgentInvocationUrl())) {
+            persistInvocationUrl(url);
+        }
+        return url;
+    }
+
+    private String discover() {
+        if (providerAgentUuid == null || providerAgentUuid.isBlank()) {
+            throw new LlmProviderException(
+                    "No hay URL de invocacion configurada y no se puede descubrir (DIGITALOCEAN_AGENT_UUID vacio).",
+                    null,
+                    AiAgentErrorCodes.AI_AGENT_INVOCATION_URL_UNAVAILABLE);
+        }
+        try {
+            ILlmAgentProviderPort.AgentSnapshot snap = providerPort.getAgent(providerAgentUuid);
+            String discovered = snap.deploymentEndpoint();
+            if (discovered == null || discovered.isBlank()) {
+                throw new LlmProviderException(
+                        "El proveedor no reporto deployment.url para el agente.", null,
+                        AiAgentErrorCodes.AI_AGENT_INVOCATION_URL_UNAVAILABLE);
+            }
+            return discovered;
+        } catch (LlmProviderException ex) {
+            // Re-propagamos con el codigo correcto si vino otro generico.
+            if (ex.getErrorCode() == null) {
+                throw new LlmProviderException(
+                        ex.getMessage(), ex.getStatusCode(),
+                        AiAgentErrorCodes.AI_AGENT_INVOCATION_URL_UNAVAILABLE, ex);
+            }
+            throw ex;
+        }
+    }
+
+    /** Relee la fila para no pisar una edicion del admin con la copia del snapshot. */
+    private void persistInvocationUrl(String url) {
+        requiresNew.executeWithoutResult(status -> configRepository.findSingleton().ifPresent(config -> {
+            if (!url.equals(config.getAgentInvocationUrl())) {
+                config.cacheAgentInvocationUrl(url);
+                configRepository.save(config);
+            }
+        }));
+    }
+
+    /** Snapshot publicado y la secuencia del refresh que lo construyo. */
+    private record Published(ChatbotConfigSnapshot snapshot, long sequence) {
+    }
+}
@@ -0,0 +1,268 @@
+package site.utnpf.odontolink.application.service.support;
+
+import site.utnpf.odontolink.domain.model.ChatbotMessage;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Ventana conversacional en memoria de las sesiones del chatbot (RF29).
+ *
+ * <p>Problema que resuelve: cada turno leia los ultimos N mensajes de la
+ * base, insertaba dos filas en transacciones separadas y recortaba el buffer
+ * con otra lectura mas un DELETE. Con la ventana, el historial del turno sale
+ * de un ring buffer por sesion y la base solo recibe los inserts, agrupados.
+ *
+ * <p>Estrategia:
+ * <ul>
+ *   <li>{@link #append} agrega el mensaje al ring buffer de la sesion
+ *       (capacidad {@code conversationBufferSize}) y lo deja en la cola de
+ *       escritura. Si la sesion no esta cargada, primero la reconstruye con
+ *       el loader (lectura a la base fuera del lock).</li>
+ *   <li>Un job drena la cola con {@link #drainPending} y la persiste en un
+ *       solo commit; despues confirma con {@link #markFlushed}.</li>
+ *   <li>El recorte de la base deja de ser por mensaje: lo hace un job
+ *       periodico sobre las sesiones que recibieron filas desde la corrida
+ *       anterior ({@link #drainTrimCandidates}). Entre corridas la base puede
+ *       tener mas de N mensajes por sesion, pero el wire siempre sale de la
+ *       ventana.</li>
+ * </ul>
+ *
+ * <p>Invariante: una sesion con mensajes sin persistir nunca se desaloja. Asi
+ * una reconstruccion desde la base no puede perder mensajes que todavia
+ * estan en la cola. Si el LRU no encuentra a quien desalojar, el mapa supera
+ * {@code maxSessions} hasta el proximo flush.
+ *
+ * <p>Perdida ante caida: lo que esta en la cola vive solo en memoria; un
+ * corte pierde a lo sumo la ventana de flush (cientos de ms). Es historial
+ * de contexto descartable, no registro clinico. Tambien se pierden las
+ * candidatas a recorte: esas sesiones quedan con excedente en la base hasta
+ * su proximo turno o la purga por inactividad. La ventana asume una sola
+ * instancia del backend, igual que el resto de los caches en memoria.
+ */
+public class ChatbotConversationWindow {
+
+    private final int maxSessions;
+    private final LinkedHashMap<UUID, Window> windows = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentLinkedQueue<ChatbotMessage> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    /** Sesiones a recortar en la base, con la hora de su ultimo flush o cierre. */
+    private final ConcurrentMap<UUID, Instant> trimCandidates = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong messagesFlushed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+
+    public ChatbotConversationWindow(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Agrega {@code message} a la ventana de su sesion y lo encola para
+     * persistir.
+     *
+     * @param capacity tamanio del ring buffer ({@code conversationBufferSize}).
+     * @param loader   ultimos {@code capacity} mensajes ya persistidos, en
+     *                 orden cronologico; solo se invoca si la sesion no esta
+     *                 cargada.
+     * @return snapshot de la ventana despues del agregado, en orden cronologico.
+     */
+    public List<ChatbotMessage> append(ChatbotMessage message,
+                                       int capacity,
+                                       Supplier<List<ChatbotMessage>> loader) {
+        UUID sessionId = message.getSessionId();
+        synchronized (this) {
+            if (windows.containsKey(sessionId)) {
+                hits.incrementAndGet();
+                return appendLoaded(windows.get(sessionId), message, capacity);
+            }
+        }
+        // Sin ventana no hay mensajes pendientes de la sesion (invariante),
+        // asi que la base tiene el historial completo.
+        List<ChatbotMessage> loaded = loader.get();
+        synchronized (this) {
+            Window window = windows.get(sessionId);
+            if (window == null) {
+                loads.incrementAndGet();
+                window = new Window();
+                for (ChatbotMessage m : loaded) {
+                    window.add(m, capacity);
+                }
+                windows.put(sessionId, window);
+            } else {
+                // Otro turno de la misma sesion la cargo mientras leiamos.
+                hits.incrementAndGet();
+            }
+            // Desalojo despues del agregado: con el mensaje pendiente, la
+            // ventana recien cargada ya no es candidata.
+            List<ChatbotMessage> snapshot = appendLoaded(window, message, capacity);
+            evictOverflow();
+            return snapshot;
+        }
+    }
+
+    /**
+     * Descarta la ventana y los mensajes sin persistir de la sesion (cierre
+     * de sesion). Un flush que ya los habia drenado puede insertarlos igual;
+     * la sesion queda como candidata para que el recorte periodico borre esas
+     * filas huerfanas.
+     */
+    public void discard(UUID sessionId) {
+        synchronized (this) {
+            windows.remove(sessionId);
+        }
+        trimCandidates.put(sessionId, Instant.now());
+        for (ChatbotMessage m : pending) {
+            // remove() en lugar del iterador: si un drain concurrente ya lo
+            // saco, no hay que descontarlo dos veces.
+            if (m.getSessionId().equals(sessionId) && pending.remove(m)) {
+                pendingCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remueve hasta {@code max} mensajes de la cola en orden de llegada. El
+     * caller los persiste y confirma con {@link #markFlushed}, o los devuelve
+     * con {@link #requeue} si fallo.
+     */
+    public List<ChatbotMessage> drainPending(int max) {
+        List<ChatbotMessage> drained = new ArrayList<>(Math.min(max, pendingCount.get()));
+        ChatbotMessage next;
+        while (drained.size() < max && (next = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            drained.add(next);
+        }
+        return drained;
+    }
+
+    /** Reencola mensajes que no se pudieron persistir. */
+    public void requeue(Collection<ChatbotMessage> messages) {
+        for (ChatbotMessage m : messages) {
+            pending.add(m);
+            pendingCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Confirma que {@code messages} ya estan en la base. Sus sesiones quedan
+     * como candidatas al proximo recorte.
+     */
+    public synchronized void markFlushed(Collection<ChatbotMessage> messages) {
+        Instant flushedAt = Instant.now();
+        for (ChatbotMessage m : messages) {
+            trimCandidates.put(m.getSessionId(), flushedAt);
+            Window window = windows.get(m.getSessionId());
+            if (window != null && window.unflushed > 0) {
+                window.unflushed--;
+            }
+        }
+        messagesFlushed.addAndGet(messages.size());
+        flushes.incrementAndGet();
+        evictOverflow();
+    }
+
+    /**
+     * Remueve hasta {@code max} sesiones cuyo ultimo flush (o cierre) fue
+     * antes de {@code flushedBefore}. Las mas recientes esperan: un turno en
+     * vuelo puede haber flusheado mensajes de una sesion cuyo alta todavia no
+     * commiteo, y el recorte no debe tomarlos por huerfanos.
+     */
+    public List<UUID> drainTrimCandidates(Instant flushedBefore, int max) {
+        List<UUID> drained = new ArrayList<>();
+        for (Map.Entry<UUID, Instant> e : trimCandidates.entrySet()) {
+            if (drained.size() >= max) {
+                break;
+            }
+            if (e.getValue().isBefore(flushedBefore) && trimCandidates.remove(e.getKey(), e.getValue())) {
+                drained.add(e.getKey());
+            }
+        }
+        return drained;
+    }
+
+    /** Devuelve sesiones cuyo recorte fallo; un flush posterior tiene prioridad. */
+    public void requeueTrimCandidates(Collection<UUID> sessionIds) {
+        for (UUID sessionId : sessionIds) {
+            trimCandidates.putIfAbsent(sessionId, Instant.EPOCH);
+        }
+    }
+
+    public int trimCandidateCount() {
+        return trimCandidates.size();
+    }
+
+    public synchronized int size() {
+        return windows.size();
+    }
+
+    public int pendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getMessagesFlushed() {
+        return messagesFlushed.get();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    private List<ChatbotMessage> appendLoaded(Window window, ChatbotMessage message, int capacity) {
+        window.add(message, capacity);
+        window.unflushed++;
+        pending.add(message);
+        pendingCount.incrementAndGet();
+        return List.copyOf(window.messages);
+    }
+
+    /** Desaloja las sesiones menos usadas que no tengan mensajes pendientes. */
+    private void evictOverflow() {
+        Iterator<Map.Entry<UUID, Window>> it = windows.entrySet().iterator();
+        while (windows.size() > maxSessions && it.hasNext()) {
+            if (it.next().getValue().unflushed == 0) {
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Window {
+        private final ArrayDeque<ChatbotMessage> messages = new ArrayDeque<>();
+        private int unflushed;
+
+        private void add(ChatbotMessage message, int capacity) {
+            messages.addLast(message);
+            while (messages.size() > Math.max(capacity, 1)) {
+                messages.removeFirst();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package site.utnpf.odontolink.application.service.support;
+
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.AgentInvocationResult;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicacion de invocaciones identicas en vuelo al agente del chatbot
+ * (RF29), en la linea de un "single-flight".
+ *
+ * <p>Problema que resuelve: en una campania decenas de usuarios anonimos
+ * mandan la misma primera pregunta en pocos segundos. El
+ * {@link ChatbotResponseCache} solo ayuda despues de la primera respuesta;
+ * mientras esa invocacion esta en vuelo, cada turno identico pagaba la suya.
+ *
+ * <p>Estrategia: el primer turno con una clave (la del cache: version
+ * publicada + consulta normalizada) es el lider e invoca al proveedor. Los
+ * que llegan mientras tanto esperan su resultado hasta {@code maxWait}. Un
+ * seguidor invoca por su cuenta si:
+ * <ul>
+ *   <li>se agota {@code maxWait} (el lider esta lento), o</li>
+ *   <li>el lider fallo: el circuit breaker del adapter decide si la llamada
+ *       independiente sale o cae al fallback.</li>
+ * </ul>
+ * Con {@code maxWait} en cero no se espera nunca (coalescing desactivado).
+ *
+ * <p>Solo aplica a turnos elegibles para el cache: un solo mensaje en el
+ * wire, sin emergencia. La clave ya viene del texto sanitizado de PII.
+ */
+public class ChatbotRequestCoalescer {
+
+    private final Duration maxWait;
+    private final ConcurrentHashMap<String, CompletableFuture<AgentInvocationResult>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private final AtomicLong upstreamCalls = new AtomicLong();
+    private final AtomicLong callsSaved = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+    private final AtomicLong leaderFailures = new AtomicLong();
+
+    public ChatbotRequestCoalescer(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Ejecuta {@code upstream} o se suma a una ejecucion en vuelo con la
+     * misma {@code key}. Las excepciones del lider se propagan solo al lider.
+     */
+    public Outcome execute(String key, Supplier<AgentInvocationResult> upstream) {
+        CompletableFuture<AgentInvocationResult> mine = new CompletableFuture<>();
+        CompletableFuture<AgentInvocationResult> leader = inFlight.putIfAbsent(key, mine);
+        if (leader == null) {
+            try {
+                AgentInvocationResult result = invoke(upstream);
+                mine.complete(result);
+                return new Outcome(result, false);
+            } catch (RuntimeException ex) {
+                mine.completeExceptionally(ex);
+                throw ex;
+            } finally {
+                inFlight.remove(key, mine);
+            }
+        }
+        if (maxWait.isZero() || maxWait.isNegative()) {
+            return new Outcome(invoke(upstream), false);
+        }
+        try {
+            AgentInvocationResult shared = leader.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+            callsSaved.incrementAndGet();
+            return new Outcome(shared, true);
+        } catch (TimeoutException ex) {
+            waitTimeouts.incrementAndGet();
+        } catch (ExecutionException ex) {
+            leaderFailures.incrementAndGet();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        return new Outcome(invoke(upstream), false);
+    }
+
+    /** Invocaciones en vuelo que admiten seguidores. */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /** Invocaciones al proveedor hechas a traves del coalescer. */
+    public long getUpstreamCalls() {
+        return upstreamCalls.get();
+    }
+
+    /** Turnos que reutilizaron el resultado del lider en lugar de invocar. */
+    public long getCallsSaved() {
+        return callsSaved.get();
+    }
+
+    public long getWaitTimeouts() {
+        return waitTimeouts.get();
+    }
+
+    public long getLeaderFailures() {
+        return leaderFailures.get();
+    }
+
+    private AgentInvocationResult invoke(Supplier<AgentInvocationResult> upstream) {
+        upstreamCalls.incrementAndGet();
+        return upstream.get();
+    }
+
+    /**
+     * Resultado de {@link #execute}. {@code shared=true} si vino del lider:
+     * el caller no invoco al proveedor y no tiene que guardarlo en el cache.
+     */
+    public record Outcome(AgentInvocationResult result, boolean shared) {
+    }
+}
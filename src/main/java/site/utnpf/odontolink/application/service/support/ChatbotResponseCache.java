@@ -0,0 +1,354 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import site.utnpf.odontolink.application.port.out.IChatbotQueryEmbeddingPort;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.AgentInvocationResult;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.RetrievalDocument;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache en memoria de respuestas del chatbot para las preguntas frecuentes
+ * de un solo turno (RF29).
+ *
+ * <p>Problema que resuelve: la mayor parte del trafico anonimo son las mismas
+ * pocas preguntas ("horarios", "como saco turno", "que cuesta") y cada una
+ * pagaba una invocacion completa al agente. Con el cache, una pregunta ya
+ * respondida bajo la misma configuracion publicada se contesta sin salir de
+ * la JVM.
+ *
+ * <p>Clave: version de la configuracion publicada + texto normalizado
+ * ({@link #normalize}) del mensaje ya sanitizado de PII. El texto original
+ * nunca llega aca. Si hay un {@link IChatbotQueryEmbeddingPort}, un miss
+ * exacto prueba ademas por similitud coseno contra las entradas de la misma
+ * version.
+ *
+ * <p>Vigencia:
+ * <ul>
+ *   <li>Tamanio acotado a {@code maxEntries} con desalojo LRU.</li>
+ *   <li>Cada entrada vence a los {@code ttl} de creada.</li>
+ *   <li>{@link #invalidateAll} vacia el cache (publish, reindex de la base
+ *       de conocimiento). Un turno que consulto antes de la invalidacion y
+ *       guarda despues se descarta: la generacion de su {@link Lookup} ya no
+ *       es la vigente.</li>
+ * </ul>
+ *
+ * <p>Thread-safe: el mapa se accede bajo el monitor de la instancia; la
+ * llamada al puerto de embeddings corre fuera de el.
+ */
+public class ChatbotResponseCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotResponseCache.class);
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final int maxQueryLength;
+    private final IChatbotQueryEmbeddingPort embeddingPort;
+    private final double similarityThreshold;
+
+    private final LinkedHashMap<String, Entry> entries;
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong semanticHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong latencySavedMs = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param embeddingPort       tier semantico; {@code null} para trabajar solo
+     *                            con match exacto.
+     * @param similarityThreshold similitud coseno minima para aceptar un match
+     *                            semantico (0..1).
+     */
+    public ChatbotResponseCache(int maxEntries,
+                                Duration ttl,
+                                int maxQueryLength,
+                                IChatbotQueryEmbeddingPort embeddingPort,
+                                double similarityThreshold) {
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.maxQueryLength = maxQueryLength;
+        this.embeddingPort = embeddingPort;
+        this.similarityThreshold = similarityThreshold;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ChatbotResponseCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Forma canonica de una consulta: minusculas, sin tildes ni signos, con
+     * los espacios colapsados. "¿Cuáles son los HORARIOS?" y "cuales son los
+     * horarios" comparten clave.
+     */
+    public static String normalize(String message) {
+        if (message == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(message, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && out.length() > 0) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                out.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Busca la respuesta para {@code message} bajo {@code configVersion}.
+     * Devuelve {@code null} si la consulta no es cacheable (vacia o mas larga
+     * que {@code maxQueryLength}); si no, un {@link Lookup} que indica el hit
+     * o sirve para {@link #store} despues de invocar al proveedor.
+     */
+    public Lookup lookup(String configVersion, String message, Instant now) {
+        String query = normalize(message);
+        if (query.isEmpty() || query.length() > maxQueryLength) {
+            return null;
+        }
+        String key = configVersion + '\n' + query;
+        long gen;
+        synchronized (this) {
+            gen = generation;
+            Entry exact = entries.get(key);
+            if (exact != null) {
+                if (!exact.isExpired(now, ttl)) {
+                    return hit(new Lookup(key, configVersion, gen, null, exact.reply), false);
+                }
+                entries.remove(key);
+            }
+        }
+        if (embeddingPort == null) {
+            misses.incrementAndGet();
+            return new Lookup(key, configVersion, gen, null, null);
+        }
+
+        float[] embedding = embed(query);
+        if (embedding != null) {
+            synchronized (this) {
+                Entry best = null;
+                double bestScore = similarityThreshold;
+                for (Entry candidate : entries.values()) {
+                    if (candidate.embedding == null
+                            || !candidate.configVersion.equals(configVersion)
+                            || candidate.isExpired(now, ttl)) {
+                        continue;
+                    }
+                    double score = cosine(embedding, candidate.embedding);
+                    if (score >= bestScore) {
+                        best = candidate;
+                        bestScore = score;
+                    }
+                }
+                if (best != null && gen == generation) {
+                    return hit(new Lookup(key, configVersion, gen, embedding, best.reply), true);
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return new Lookup(key, configVersion, gen, embedding, null);
+    }
+
+    /**
+     * Guarda la respuesta obtenida tras un miss. Se ignora si el cache se
+     * invalido despues del {@link #lookup} que produjo {@code miss}.
+     */
+    public void store(Lookup miss, AgentInvocationResult invoked, long providerLatencyMs, Instant now) {
+        if (miss == null || miss.isHit() || invoked.reply() == null || invoked.reply().isBlank()) {
+            return;
+        }
+        List<RetrievalDocument> docs = invoked.retrievedDocuments() == null
+                ? List.of() : List.copyOf(invoked.retrievedDocuments());
+        CachedReply reply = new CachedReply(invoked.reply(), docs, providerLatencyMs);
+        synchronized (this) {
+            if (miss.generation != generation) {
+                return;
+            }
+            entries.put(miss.key, new Entry(miss.configVersion, miss.embedding, reply, now));
+        }
+    }
+
+    /** Vacia el cache. Los {@link Lookup} en vuelo ya no pueden guardar. */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        invalidations.incrementAndGet();
+    }
+
+    /** Descarta las entradas vencidas; las demas siguen hasta su TTL o el LRU. */
+    public synchronized int evictExpired(Instant now) {
+        int evicted = 0;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isExpired(now, ttl)) {
+                it.remove();
+                evicted++;
+            }
+        }
+        evictions.addAndGet(evicted);
+        return evicted;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getSemanticHits() {
+        return semanticHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Suma de la latencia del proveedor que se ahorraron los hits, en ms. */
+    public long getLatencySavedMs() {
+        return latencySavedMs.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /** Proporcion de hits sobre consultas cacheables desde el arranque. */
+    public double hitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    private Lookup hit(Lookup lookup, boolean semantic) {
+        hits.incrementAndGet();
+        if (semantic) {
+            semanticHits.incrementAndGet();
+        }
+        latencySavedMs.addAndGet(lookup.hit.providerLatencyMs());
+        return lookup;
+    }
+
+    private float[] embed(String query) {
+        try {
+            return embeddingPort.embed(query);
+        } catch (RuntimeException ex) {
+            log.warn("Falla al calcular el embedding de la consulta; se sigue sin tier semantico: {}",
+                    ex.getMessage());
+            return null;
+        }
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0.0;
+        }
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0 || normB == 0) {
+            return 0.0;
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    /**
+     * Respuesta cacheada: lo que devolvio el proveedor, sin banner ni
+     * confianza. Un hit no consume tokens, por eso {@code totalTokens=0}.
+     */
+    public record CachedReply(String reply, List<RetrievalDocument> retrievedDocuments, long providerLatencyMs) {
+
+        public AgentInvocationResult toInvocationResult() {
+            return new AgentInvocationResult(reply, retrievedDocuments, 0);
+        }
+    }
+
+    /**
+     * Resultado de {@link #lookup}. Si {@link #isHit()} es false, se pasa a
+     * {@link #store} con la respuesta del proveedor.
+     */
+    public static final class Lookup {
+
+        private final String key;
+        private final String configVersion;
+        private final long generation;
+        private final float[] embedding;
+        private final CachedReply hit;
+
+        private Lookup(String key, String configVersion, long generation, float[] embedding, CachedReply hit) {
+            this.key = key;
+            this.configVersion = configVersion;
+            this.generation = generation;
+            this.embedding = embedding;
+            this.hit = hit;
+        }
+
+        public boolean isHit() {
+            return hit != null;
+        }
+
+        /** Clave del cache (version + consulta normalizada); la usa el coalescer. */
+        public String key() {
+            return key;
+        }
+
+        public CachedReply hit() {
+            return hit;
+        }
+    }
+
+    private static final class Entry {
+        private final String configVersion;
+        private final float[] embedding;
+        private final CachedReply reply;
+        private final Instant createdAt;
+
+        private Entry(String configVersion, float[] embedding, CachedReply reply, Instant createdAt) {
+            this.configVersion = configVersion;
+            this.embedding = embedding;
+            this.reply = reply;
+            this.createdAt = createdAt;
+        }
+
+        private boolean isExpired(Instant now, Duration ttl) {
+            return !createdAt.plus(ttl).isAfter(now);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package site.utnpf.odontolink.application.service.support;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Agrupa los pedidos de indexacion de la KB (RF33) en un solo indexing job.
+ *
+ * <p>Problema que resuelve: cada edicion de FAQ, baja o alta disparaba
+ * {@code startIndexing} en el acto. Un admin que edita 30 FAQs seguidas
+ * arrancaba 30 jobs superpuestos en el proveedor, cada uno re-embebiendo
+ * lo mismo.
+ *
+ * <p>Estrategia: cada pedido suma su data source a un set (dos pedidos del
+ * mismo data source cuentan una vez) o, en una baja, marca "indexar toda la
+ * KB". {@link #drainIfQuiet()} entrega el lote recien cuando pasaron
+ * {@code quietWindow} sin pedidos nuevos, o {@code maxDelay} desde el primero
+ * del lote para que una rafaga continua no lo posponga para siempre. El job
+ * que lo drena manda un solo {@code startIndexing} con la lista fusionada.
+ *
+ * <p>Perdida ante caida: el set vive en memoria, pero los documentos quedan
+ * persistidos en {@code REINDEX_QUEUED} y el barrido de ingestas demoradas
+ * los vuelve a pedir. Lo unico que se pierde es el reindex completo de una
+ * baja, que no es critico: el data source ya se borro en el proveedor.
+ */
+public class KnowledgeBaseReindexDebouncer {
+
+    private final long quietWindowNanos;
+    private final long maxDelayNanos;
+    private final LongSupplier nanoClock;
+
+    // Guardados por this.
+    private final Set<String> pendingDataSourceIds = new LinkedHashSet<>();
+    private boolean fullReindexPending;
+    private long firstRequestAt;
+    private long lastRequestAt;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong jobsStarted = new AtomicLong();
+
+    public KnowledgeBaseReindexDebouncer(long quietWindowMs, long maxDelayMs) {
+        this(quietWindowMs, maxDelayMs, System::nanoTime);
+    }
+
+    KnowledgeBaseReindexDebouncer(long quietWindowMs, long maxDelayMs, LongSupplier nanoClock) {
+        this.quietWindowNanos = TimeUnit.MILLISECONDS.toNanos(quietWindowMs);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(quietWindowMs, maxDelayMs));
+        this.nanoClock = nanoClock;
+    }
+
+    /** Pide indexar un data source en el proximo lote. */
+    public synchronized void request(String dataSourceId) {
+        requests.incrementAndGet();
+        boolean startsBatch = isIdle();
+        pendingDataSourceIds.add(dataSourceId);
+        touch(startsBatch);
+    }
+
+    /** Pide indexar toda la KB en el proximo lote (p. ej. tras una baja). */
+    public synchronized void requestFullReindex() {
+        requests.incrementAndGet();
+        boolean startsBatch = isIdle();
+        fullReindexPending = true;
+        touch(startsBatch);
+    }
+
+    /**
+     * Remueve y devuelve el lote pendiente si la ventana de quietud (o la
+     * demora maxima) ya vencio; si no, {@code null}. El caller lo manda al
+     * proveedor y, si falla de forma transitoria, lo devuelve con
+     * {@link #requeue}.
+     */
+    public synchronized Batch drainIfQuiet() {
+        if (isIdle()) {
+            return null;
+        }
+        long now = nanoClock.getAsLong();
+        if (now - lastRequestAt < quietWindowNanos && now - firstRequestAt < maxDelayNanos) {
+            return null;
+        }
+        Batch batch = new Batch(List.copyOf(pendingDataSourceIds), fullReindexPending);
+        pendingDataSourceIds.clear();
+        fullReindexPending = false;
+        return batch;
+    }
+
+    /**
+     * Devuelve un lote que no se pudo mandar, fusionado con lo que haya
+     * llegado mientras tanto. Reinicia la ventana para no reintentar en cada
+     * ciclo del job mientras el proveedor esta caido.
+     */
+    public synchronized void requeue(Batch batch) {
+        pendingDataSourceIds.addAll(batch.dataSourceIds());
+        fullReindexPending |= batch.fullReindex();
+        touch(true);
+    }
+
+    /** Contabiliza un indexing job disparado por un lote. */
+    public void recordJobStarted() {
+        jobsStarted.incrementAndGet();
+    }
+
+    public synchronized int pendingCount() {
+        return pendingDataSourceIds.size() + (fullReindexPending ? 1 : 0);
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getJobsStarted() {
+        return jobsStarted.get();
+    }
+
+    private boolean isIdle() {
+        return pendingDataSourceIds.isEmpty() && !fullReindexPending;
+    }
+
+    private void touch(boolean startsBatch) {
+        long now = nanoClock.getAsLong();
+        if (startsBatch) {
+            firstRequestAt = now;
+        }
+        lastRequestAt = now;
+    }
+
+    /**
+     * Lote a indexar. Con {@code fullReindex} se indexa toda la KB y la lista
+     * solo sirve para saber que documentos pasan a {@code INDEXING}.
+     */
+    public record Batch(List<String> dataSourceIds, boolean fullReindex) {
+
+        /** Lista a mandar al proveedor: vacia significa "toda la KB". */
+        public List<String> providerDataSourceIds() {
+            return fullReindex ? List.of() : dataSourceIds;
+        }
+    }
+}
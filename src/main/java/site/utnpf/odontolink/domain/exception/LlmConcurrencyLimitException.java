@@ -0,0 +1,17 @@
+package site.utnpf.odontolink.domain.exception;
+
+/**
+ * Falla del proveedor del LLM sin haberlo llamado: el limite adaptativo de
+ * invocaciones concurrentes estaba lleno.
+ *
+ * <p>Es una {@link LlmProviderException} para que el use case responda el
+ * fallback de siempre, pero con clase propia para que el circuit breaker la
+ * ignore (configurado en {@code ignore-exceptions}): rechazar por exceso de
+ * carga no es evidencia de que el proveedor este caido.
+ */
+public class LlmConcurrencyLimitException extends LlmProviderException {
+
+    public LlmConcurrencyLimitException(String message, String errorCode) {
+        super(message, null, errorCode);
+    }
+}
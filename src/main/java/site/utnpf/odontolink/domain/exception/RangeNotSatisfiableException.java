@@ -0,0 +1,24 @@
+package site.utnpf.odontolink.domain.exception;
+
+/**
+ * Senaliza que una descarga parcial pidio un rango de bytes que cae fuera
+ * del documento (p. ej. {@code bytes=5000-} sobre un archivo de 4000 bytes).
+ *
+ * <p>Se mapea a HTTP 416 con {@code errorCode=RANGE_NOT_SATISFIABLE} y un
+ * header {@code Content-Range} con el tamanio total, para que el cliente
+ * reintente con un rango valido.
+ */
+public class RangeNotSatisfiableException extends DomainException {
+
+    private final long totalSize;
+
+    public RangeNotSatisfiableException(long totalSize) {
+        super("El rango pedido no es valido para un documento de " + totalSize + " bytes.",
+                "RANGE_NOT_SATISFIABLE");
+        this.totalSize = totalSize;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+}
@@ -0,0 +1,24 @@
+package site.utnpf.odontolink.domain.exception;
+
+/**
+ * Excepcion lanzada cuando un recurso acotado (p. ej. el pool de invocaciones
+ * del chatbot) no admite mas trabajo. El {@code GlobalExceptionHandler} la
+ * mapea a HTTP 503 (Service Unavailable).
+ *
+ * <p>A diferencia de {@link RateLimitExceededException} no es culpa del
+ * caller: es saturacion momentanea del servidor. {@code retryAfterSeconds}
+ * viaja en el header {@code Retry-After}.
+ */
+public class ServiceOverloadedException extends DomainException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String message, String errorCode, long retryAfterSeconds) {
+        super(message, errorCode);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,127 @@
+package site.utnpf.odontolink.domain.model;
+
+import java.time.Instant;
+
+/**
+ * Bloque comprimido de mensajes de chat movidos al tier frío (CU012).
+ *
+ * <p>Cada chunk guarda un tramo contiguo y cronológico de una sesión: sus mensajes son
+ * todos anteriores a cualquier mensaje que siga en {@code chat_messages}, así que el
+ * historial completo es siempre "tabla caliente" seguida de "chunks" sin solaparse.
+ *
+ * <p>Los límites ({@code first*}/{@code last*}) y {@code messageCount} viajan fuera del
+ * payload para poder paginar sin descomprimir chunks que no se van a devolver. El
+ * {@code payload} puede venir {@code null} cuando solo se leyeron esos metadatos.
+ *
+ * @author OdontoLink Team
+ */
+public class ChatMessageArchiveChunk {
+
+    private Long id;
+    private Long chatSessionId;
+    private Long firstMessageId;
+    private Instant firstSentAt;
+    private Long lastMessageId;
+    private Instant lastSentAt;
+    private int messageCount;
+    /** Mensajes serializados y comprimidos; ver {@code ChatArchiveCodec}. */
+    private byte[] payload;
+    private Instant archivedAt;
+
+    public ChatMessageArchiveChunk() {
+    }
+
+    public ChatMessageArchiveChunk(Long chatSessionId, Long firstMessageId, Instant firstSentAt,
+                                   Long lastMessageId, Instant lastSentAt, int messageCount,
+                                   byte[] payload, Instant archivedAt) {
+        this.chatSessionId = chatSessionId;
+        this.firstMessageId = firstMessageId;
+        this.firstSentAt = firstSentAt;
+        this.lastMessageId = lastMessageId;
+        this.lastSentAt = lastSentAt;
+        this.messageCount = messageCount;
+        this.payload = payload;
+        this.archivedAt = archivedAt;
+    }
+
+    /**
+     * {@code true} si el chunk tiene algún mensaje estrictamente anterior a la tupla
+     * ({@code sentAt}, {@code id}); mismo orden que el historial por keyset.
+     */
+    public boolean startsBefore(Instant sentAt, Long id) {
+        int cmp = firstSentAt.compareTo(sentAt);
+        return cmp < 0 || (cmp == 0 && firstMessageId < id);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getChatSessionId() {
+        return chatSessionId;
+    }
+
+    public void setChatSessionId(Long chatSessionId) {
+        this.chatSessionId = chatSessionId;
+    }
+
+    public Long getFirstMessageId() {
+        return firstMessageId;
+    }
+
+    public void setFirstMessageId(Long firstMessageId) {
+        this.firstMessageId = firstMessageId;
+    }
+
+    public Instant getFirstSentAt() {
+        return firstSentAt;
+    }
+
+    public void setFirstSentAt(Instant firstSentAt) {
+        this.firstSentAt = firstSentAt;
+    }
+
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(Long lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public Instant getLastSentAt() {
+        return lastSentAt;
+    }
+
+    public void setLastSentAt(Instant lastSentAt) {
+        this.lastSentAt = lastSentAt;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public Instant getArchivedAt() {
+        return archivedAt;
+    }
+
+    public void setArchivedAt(Instant archivedAt) {
+        this.archivedAt = archivedAt;
+    }
+}
@@ -0,0 +1,28 @@
+package site.utnpf.odontolink.domain.model;
+
+/**
+ * Resultado de la búsqueda full-text del chat: el mensaje y su relevancia.
+ *
+ * <p>{@code score} es el valor que devuelve el motor (MySQL FULLTEXT); solo sirve para
+ * ordenar resultados de una misma búsqueda, no es comparable entre búsquedas.
+ *
+ * @author OdontoLink Team
+ */
+public class ChatMessageSearchHit {
+
+    private final ChatMessage message;
+    private final double score;
+
+    public ChatMessageSearchHit(ChatMessage message, double score) {
+        this.message = message;
+        this.score = score;
+    }
+
+    public ChatMessage getMessage() {
+        return message;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -82,20 +82,28 @@ public record ConfidenceCalculatorConfig(
         String lower = text.toLowerCase(Locale.ROOT);
         StringBuilder out = new StringBuilder(lower.length());
         for (int i = 0; i < lower.length(); i++) {
-            char c = lower.charAt(i);
-            switch (c) {
-                case 'á' -> out.append('a');
-                case 'é' -> out.append('e');
-                case 'í' -> out.append('i');
-                case 'ó' -> out.append('o');
-                case 'ú', 'ü' -> out.append('u');
-                case 'ñ' -> out.append('n');
-                default -> out.append(c);
-            }
+            out.append(foldAccent(lower.charAt(i)));
         }
         return out.toString();
     }
 
+    /**
+     * Paso por caracter de {@link #normalize(String)} sobre un caracter ya en
+     * minuscula. Lo usa el {@code RefusalDetector} para normalizar mientras
+     * recorre el reply, sin armar el String intermedio.
+     */
+    public static char foldAccent(char lowerCased) {
+        return switch (lowerCased) {
+            case 'á' -> 'a';
+            case 'é' -> 'e';
+            case 'í' -> 'i';
+            case 'ó' -> 'o';
+            case 'ú', 'ü' -> 'u';
+            case 'ñ' -> 'n';
+            default -> lowerCased;
+        };
+    }
+
     /**
      * Textos por categoria. Inmutable, sin defaults: el caller los provee
      * siempre (la fuente unica de copy vive en application.properties via
@@ -2,7 +2,11 @@ package site.utnpf.odontolink.domain.model;
 
 import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.HexFormat;
 
 /**
  * Documento de la Knowledge Base administrada (RF33).
@@ -17,8 +21,10 @@ import java.time.Instant;
  * <p>El ciclo de vida lo expresan los metodos {@code mark*} y avanza el
  * {@link KnowledgeBaseDocumentStatus} segun el siguiente flujo feliz:
  * <pre>
- *   PENDING_UPLOAD -> UPLOADED -> REGISTERED -> INDEXING -> INDEXED
+ *   PENDING_UPLOAD -> UPLOADED -> REGISTERED -> REINDEX_QUEUED -> INDEXING -> INDEXED
  * </pre>
+ * Una FAQ editada vuelve a {@code REINDEX_QUEUED} desde cualquier estado
+ * posterior al registro.
  * Cualquier estado puede saltar a {@link KnowledgeBaseDocumentStatus#FAILED}
  * con un {@code errorMessage} que el administrador ve y usa para decidir si
  * reintentar o eliminar.
@@ -45,6 +51,13 @@ public class KnowledgeBaseDocument {
     private String storedObjectKey;
     private long sizeBytes;
     private String contentType;
+    /**
+     * SHA-256 (hex) del contenido. En FAQs se calcula del texto inline; en
+     * archivos lo informa el staging al copiar el stream. Permite detectar
+     * altas duplicadas y ediciones que no cambian nada sin comparar el
+     * contenido entero. Null en documentos creados antes de que existiera.
+     */
+    private String contentSha256;
     /**
      * UUID del data source asociado en el proveedor. Null mientras el upload
      * fue exitoso pero el registro todavia no se confirmo (estado
@@ -57,6 +70,11 @@ public class KnowledgeBaseDocument {
     private String errorMessage;
     private Instant createdAt;
     private Instant updatedAt;
+    /**
+     * Version de la fila al leerla. Un {@code save} con una version vieja
+     * falla en lugar de pisar lo que otro guardo en el medio.
+     */
+    private long version;
 
     public KnowledgeBaseDocument() {
     }
@@ -69,6 +87,7 @@ public class KnowledgeBaseDocument {
                                  String storedObjectKey,
                                  long sizeBytes,
                                  String contentType,
+                                 String contentSha256,
                                  String providerDataSourceId,
                                  KnowledgeBaseDocumentStatus status,
                                  String lastIndexingJobId,
@@ -84,6 +103,7 @@ public class KnowledgeBaseDocument {
         this.storedObjectKey = storedObjectKey;
         this.sizeBytes = sizeBytes;
         this.contentType = contentType;
+        this.contentSha256 = contentSha256;
         this.providerDataSourceId = providerDataSourceId;
         this.status = status;
         this.lastIndexingJobId = lastIndexingJobId;
@@ -109,8 +129,9 @@ public class KnowledgeBaseDocument {
                 content,
                 title.trim().replaceAll("\\s+", "_") + ".txt",
                 null,
-                content.getBytes(java.nio.charset.StandardCharsets.UTF_8).length,
+                content.getBytes(StandardCharsets.UTF_8).length,
                 "text/plain",
+                sha256Hex(content),
                 null,
                 KnowledgeBaseDocumentStatus.PENDING_UPLOAD,
                 null,
@@ -144,6 +165,7 @@ public class KnowledgeBaseDocument {
                 sizeBytes,
                 contentType,
                 null,
+                null,
                 KnowledgeBaseDocumentStatus.PENDING_UPLOAD,
                 null,
                 null,
@@ -183,10 +205,37 @@ public class KnowledgeBaseDocument {
             throw new InvalidBusinessRuleException("El contenido de la FAQ no puede estar vacio.");
         }
         this.inlineContent = newContent;
-        this.sizeBytes = newContent.getBytes(java.nio.charset.StandardCharsets.UTF_8).length;
+        this.sizeBytes = newContent.getBytes(StandardCharsets.UTF_8).length;
+        this.contentSha256 = sha256Hex(newContent);
         this.updatedAt = Instant.now();
     }
 
+    /**
+     * Indica si {@code content} es el mismo texto que la FAQ ya tiene,
+     * comparando hashes. Una FAQ anterior al hash lo calcula de su contenido
+     * inline.
+     */
+    public boolean hasSameFaqContent(String content) {
+        if (content == null) {
+            return false;
+        }
+        String current = contentSha256 != null
+                ? contentSha256
+                : (inlineContent == null ? null : sha256Hex(inlineContent));
+        return sha256Hex(content).equals(current);
+    }
+
+    /**
+     * Registra el hash del contenido de un archivo, calculado al copiarlo
+     * al staging o al subirlo al bucket.
+     */
+    public void recordContentSha256(String sha256Hex) {
+        if (sha256Hex == null || sha256Hex.isBlank()) {
+            throw new InvalidBusinessRuleException("El hash del contenido es obligatorio.");
+        }
+        this.contentSha256 = sha256Hex;
+    }
+
     public void markUploaded(String storedObjectKey) {
         if (storedObjectKey == null || storedObjectKey.isBlank()) {
             throw new InvalidBusinessRuleException("storedObjectKey es obligatorio para marcar UPLOADED.");
@@ -207,6 +256,19 @@ public class KnowledgeBaseDocument {
         this.updatedAt = Instant.now();
     }
 
+    /**
+     * Deja el documento esperando el proximo indexing job agrupado. Requiere
+     * el data source registrado: es lo que se manda a indexar.
+     */
+    public void markReindexQueued() {
+        if (providerDataSourceId == null || providerDataSourceId.isBlank()) {
+            throw new InvalidBusinessRuleException("providerDataSourceId es obligatorio para marcar REINDEX_QUEUED.");
+        }
+        this.status = KnowledgeBaseDocumentStatus.REINDEX_QUEUED;
+        this.errorMessage = null;
+        this.updatedAt = Instant.now();
+    }
+
     public void markIndexing(String indexingJobId) {
         this.lastIndexingJobId = indexingJobId;
         this.status = KnowledgeBaseDocumentStatus.INDEXING;
@@ -221,12 +283,44 @@ public class KnowledgeBaseDocument {
         this.updatedAt = this.lastIndexedAt;
     }
 
+    /**
+     * Aplica el estado reportado por el proveedor para el indexing job del
+     * documento. El set de status de DO incluye INDEX_JOB_STATUS_COMPLETED,
+     * *_RUNNING, *_FAILED, *_PENDING; se reduce a INDEXED/FAILED y cualquier
+     * otro valor se toma como "sigue corriendo".
+     *
+     * @return {@code true} si el documento llego a un estado terminal
+     */
+    public boolean applyIndexingJobStatus(String jobStatus, String jobErrorMessage) {
+        String status = jobStatus == null ? "" : jobStatus;
+        if (status.contains("COMPLETED") || status.contains("SUCCESS")) {
+            markIndexed();
+            return true;
+        }
+        if (status.contains("FAILED") || status.contains("ERROR")) {
+            markFailed(jobErrorMessage == null ? "Indexing job fallo en el proveedor." : jobErrorMessage);
+            return true;
+        }
+        return false;
+    }
+
     public void markFailed(String reason) {
         this.status = KnowledgeBaseDocumentStatus.FAILED;
         this.errorMessage = reason;
         this.updatedAt = Instant.now();
     }
 
+    /** SHA-256 en hexadecimal de los bytes UTF-8 del texto. */
+    public static String sha256Hex(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 es obligatorio en toda JVM.
+            throw new IllegalStateException("Algoritmo SHA-256 no disponible en la JVM.", e);
+        }
+    }
+
     private static void validateNonBlank(String value, String field) {
         if (value == null || value.isBlank()) {
             throw new InvalidBusinessRuleException("El campo '" + field + "' es obligatorio.");
@@ -271,6 +365,10 @@ public class KnowledgeBaseDocument {
         return contentType;
     }
 
+    public String getContentSha256() {
+        return contentSha256;
+    }
+
     public String getProviderDataSourceId() {
         return providerDataSourceId;
     }
@@ -298,4 +396,12 @@ public class KnowledgeBaseDocument {
     public Instant getUpdatedAt() {
         return updatedAt;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
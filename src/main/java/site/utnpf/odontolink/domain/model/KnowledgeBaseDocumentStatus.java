@@ -12,10 +12,9 @@ package site.utnpf.odontolink.domain.model;
 public enum KnowledgeBaseDocumentStatus {
 
     /**
-     * El documento existe en BD pero todavia no se subio al bucket. Estado
-     * raramente persistido: solo si el caller decide separar el insert del
-     * upload por algun motivo (p. ej. encolar y subir en batch). En el flujo
-     * sincronico actual el documento pasa directo de aqui a {@link #UPLOADED}.
+     * El documento existe en BD y espera turno en el pipeline de ingesta. Es
+     * el estado con el que responde el alta (202): la subida al bucket, el
+     * registro y la indexacion corren despues en background.
      */
     PENDING_UPLOAD,
 
@@ -30,6 +29,14 @@ public enum KnowledgeBaseDocumentStatus {
      */
     REGISTERED,
 
+    /**
+     * El data source espera un indexing job: recien registrado o con el
+     * contenido editado. Los pedidos se agrupan durante una ventana de
+     * quietud y salen juntos en un solo job, despues del cual el documento
+     * pasa a {@link #INDEXING}.
+     */
+    REINDEX_QUEUED,
+
     /**
      * Indexing job disparado y en progreso en el proveedor.
      */
@@ -0,0 +1,28 @@
+package site.utnpf.odontolink.domain.repository;
+
+import site.utnpf.odontolink.domain.model.ChatMessageArchiveChunk;
+
+import java.util.List;
+
+/**
+ * Puerto de salida para el tier frío del chat: chunks comprimidos de mensajes antiguos
+ * (ver {@link ChatMessageArchiveChunk}).
+ *
+ * @author OdontoLink Team
+ */
+public interface ChatMessageArchiveRepository {
+
+    ChatMessageArchiveChunk save(ChatMessageArchiveChunk chunk);
+
+    /**
+     * Metadatos de los chunks de la sesión, del más reciente al más antiguo, <b>sin</b>
+     * payload: alcanzan para decidir qué chunks tocar antes de descomprimir nada.
+     */
+    List<ChatMessageArchiveChunk> findHeadersBySessionDesc(Long chatSessionId);
+
+    /** Payload comprimido de un chunk, o {@code null} si no existe. */
+    byte[] findPayload(Long chunkId);
+
+    /** Total de mensajes archivados de la sesión (suma de {@code messageCount}). */
+    long countMessagesBySession(Long chatSessionId);
+}
@@ -1,9 +1,11 @@
 package site.utnpf.odontolink.domain.repository;
 
 import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.domain.model.ChatMessageSearchHit;
 import site.utnpf.odontolink.domain.model.ChatSession;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -63,6 +65,17 @@ public interface ChatMessageRepository {
      */
     List<ChatMessage> findByChatSessionPagedDesc(ChatSession session, int page, int size);
 
+    /**
+     * Página DESC por keyset: los {@code limit} mensajes estrictamente anteriores a la tupla
+     * ({@code beforeSentAt}, {@code beforeId}), con el mismo orden que
+     * {@link #findByChatSessionPagedDesc}. Si ambos son {@code null} arranca desde el más
+     * reciente.
+     *
+     * <p>A diferencia del offset, el costo no crece con la profundidad: el motor posiciona
+     * el índice {@code (chat_session_id, sent_at, id)} en la tupla y lee {@code limit} filas.
+     */
+    List<ChatMessage> findInSessionBeforeDesc(ChatSession session, Instant beforeSentAt, Long beforeId, int limit);
+
     /**
      * Cuenta mensajes no-leídos de los que el receptor NO es el sender.
      * Usado para construir el badge "X no leídos" del inbox.
@@ -82,6 +95,20 @@ public interface ChatMessageRepository {
      */
     int markAllAsReadInSession(ChatSession session, Long receiverUserId, Instant readAt);
 
+    /**
+     * Variante acotada de {@link #markAllAsReadInSession}: solo marca los mensajes con
+     * {@code id <= upToMessageId}. Es la forma en que se aplican las confirmaciones
+     * coalescidas: un mensaje que llegó después del foco no debe quedar leído.
+     * @return número de filas afectadas.
+     */
+    int markAsReadUpTo(Long chatSessionId, Long receiverUserId, Long upToMessageId, Instant readAt);
+
+    /**
+     * No-leídos del receptor con {@code id <= upToMessageId}: los que cubriría una
+     * confirmación "leído hasta X" todavía no aplicada.
+     */
+    long countUnreadByChatSessionAndReceiverUpTo(Long chatSessionId, Long receiverUserId, Long upToMessageId);
+
     /** Último mensaje de la sesión, para ordenar el inbox por actividad real. */
     Optional<ChatMessage> findLastMessageInSession(ChatSession session);
 
@@ -98,4 +125,36 @@ public interface ChatMessageRepository {
      * <p>Orden: {@code readAt ASC}, tie-break {@code id ASC}.
      */
     List<ChatMessage> findReadReceiptsForSenderSinceInclusive(ChatSession session, Long senderUserId, Instant since);
+
+    /**
+     * De {@code sessionIds}, las candidatas al tier frío: sin mensajes posteriores a
+     * {@code inactiveSince} y sin no-leídos (un mensaje archivado no puede aparecer en un
+     * badge). Ordenadas por id.
+     */
+    List<Long> findArchivableSessionIds(Instant inactiveSince, Collection<Long> sessionIds);
+
+    /**
+     * Los mensajes más antiguos de la sesión con {@code sentAt < sentBefore}, en orden
+     * ASC ({@code sentAt}, {@code id}), hasta {@code limit}. Es el tramo que el archivado
+     * mueve como un chunk.
+     */
+    List<ChatMessage> findInSessionSentBeforeAsc(Long chatSessionId, Instant sentBefore, int limit);
+
+    /**
+     * Borra mensajes por id. Solo lo usa el archivado, en la misma transacción que
+     * persiste el chunk que los contiene.
+     * @return número de filas borradas.
+     */
+    int deleteByIds(List<Long> ids);
+
+    /**
+     * Búsqueda full-text sobre el contenido de los mensajes de las sesiones indicadas.
+     * Todos los {@code terms} deben aparecer (como palabra o prefijo de palabra); el
+     * resultado va ordenado por relevancia y, a igual relevancia, del más reciente al más
+     * antiguo. Solo cubre la tabla caliente: el tier frío archivado no se indexa.
+     *
+     * @param terms términos ya normalizados (minúsculas, sin operadores).
+     */
+    List<ChatMessageSearchHit> searchInSessions(Collection<Long> chatSessionIds, List<String> terms,
+                                                long offset, int limit);
 }
@@ -89,4 +89,14 @@ public interface ChatSessionRepository {
      * @return Lista de sesiones del practicante
      */
     List<ChatSession> findByPractitionerId(Long practitionerId);
+
+    /**
+     * Página de ids de sesión mayores a {@code afterId}, en orden ascendente. Permite a
+     * los jobs de mantenimiento recorrer la tabla por keyset sin cargar entidades.
+     *
+     * @param afterId Cursor exclusivo; {@code 0} para empezar desde el principio
+     * @param limit Tamaño máximo de la página
+     * @return Ids ascendentes (vacía al llegar al final)
+     */
+    List<Long> findIdsAfter(Long afterId, int limit);
 }
@@ -2,15 +2,17 @@ package site.utnpf.odontolink.domain.repository;
 
 import site.utnpf.odontolink.domain.model.ChatbotMessage;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 /**
  * Puerto de salida para los mensajes del rolling buffer del chatbot (RF29).
  *
- * <p>El cap se aplica desde el servicio (no aqui) llamando a
- * {@link #deleteOldestKeepingLast(UUID, int)} tras cada inserto cuando el
- * count supera el limite configurado.
+ * <p>Los turnos no escriben aca directamente: el servicio mantiene la
+ * ventana en memoria y persiste en lotes con {@link #saveAll}. El cap se
+ * aplica de forma periodica, sesion por sesion, con
+ * {@link #trimSessionKeepingLast}.
  */
 public interface ChatbotMessageRepository {
 
@@ -19,14 +21,25 @@ public interface ChatbotMessageRepository {
 
     ChatbotMessage save(ChatbotMessage message);
 
+    /** Inserta el lote en la transaccion del caller (un solo commit). */
+    void saveAll(List<ChatbotMessage> messages);
+
     /**
-     * Mantiene solo los {@code keepLast} mensajes mas recientes de la sesion;
-     * borra los demas (FIFO). Devuelve la cantidad de mensajes borrados.
+     * Deja solo los {@code keepLast} mensajes mas recientes de la sesion y
+     * borra los demas (FIFO). Toca solo filas de esa sesion. Devuelve la
+     * cantidad de mensajes borrados.
      */
-    int deleteOldestKeepingLast(UUID sessionId, int keepLast);
+    int trimSessionKeepingLast(UUID sessionId, int keepLast);
 
     /** Borra todos los mensajes de la sesion (al cerrar/borrar la sesion). */
     int deleteAllBySessionId(UUID sessionId);
 
+    /**
+     * Borra los mensajes de las sesiones dadas que ya no existen (purga de
+     * sesiones inactivas: las que se conservaron mantienen sus mensajes).
+     * Devuelve la cantidad borrada.
+     */
+    int deleteOrphanedBySessionIds(Collection<UUID> sessionIds);
+
     long countBySessionId(UUID sessionId);
 }
@@ -3,6 +3,8 @@ package site.utnpf.odontolink.domain.repository;
 import site.utnpf.odontolink.domain.model.ChatbotSession;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -24,6 +26,17 @@ public interface ChatbotSessionRepository {
     /** Borra una sesion por id. Idempotente (no falla si no existe). */
     void deleteById(UUID id);
 
-    /** Util para futura limpieza de sesiones idle (hoy no se ejecuta automaticamente). */
-    int deleteIdleOlderThan(Instant cutoff);
+    /**
+     * Ids de hasta {@code limit} sesiones sin interaccion desde antes de
+     * {@code cutoff}, de la mas vieja a la mas nueva. {@code anonymous}
+     * elige sesiones anonimas o de usuario autenticado.
+     */
+    List<UUID> findIdleIds(boolean anonymous, Instant cutoff, int limit);
+
+    /**
+     * Borra las sesiones dadas que sigan sin interaccion desde antes de
+     * {@code cutoff} (una que retomo un turno entre la busqueda y el borrado
+     * se conserva). Devuelve la cantidad borrada.
+     */
+    int deleteIdleByIds(Collection<UUID> ids, Instant cutoff);
 }
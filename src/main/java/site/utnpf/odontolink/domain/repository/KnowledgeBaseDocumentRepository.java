@@ -4,6 +4,7 @@ import site.utnpf.odontolink.domain.model.KnowledgeBaseDocument;
 import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentStatus;
 import site.utnpf.odontolink.domain.model.PageResult;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,8 +27,21 @@ public interface KnowledgeBaseDocumentRepository {
 
     Optional<KnowledgeBaseDocument> findByProviderDataSourceId(String providerDataSourceId);
 
+    /** Documentos con ese hash de contenido, en cualquier estado. */
+    List<KnowledgeBaseDocument> findByContentSha256(String contentSha256);
+
     List<KnowledgeBaseDocument> findByStatusIn(List<KnowledgeBaseDocumentStatus> statuses);
 
+    /**
+     * Ids de los documentos en alguno de {@code statuses} cuya ultima
+     * modificacion es anterior a {@code before}.
+     */
+    List<Long> findIdsByStatusInAndUpdatedAtBefore(List<KnowledgeBaseDocumentStatus> statuses, Instant before);
+
+    /**
+     * Guarda el documento. Si la fila cambio desde que se leyo lanza
+     * {@code OptimisticLockingFailureException} de Spring.
+     */
     KnowledgeBaseDocument save(KnowledgeBaseDocument document);
 
     void deleteById(Long id);
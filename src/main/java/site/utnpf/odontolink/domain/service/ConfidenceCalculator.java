@@ -42,11 +42,14 @@ public class ConfidenceCalculator {
 
     private final ConfidenceCalculatorConfig config;
     private final RefusalDetector refusalDetector;
+    /** {@code config.topKWeights()} desempaquetado una sola vez. */
+    private final double[] topKWeights;
 
     public ConfidenceCalculator(ConfidenceCalculatorConfig config,
                                 RefusalDetector refusalDetector) {
         this.config = Objects.requireNonNull(config, "config");
         this.refusalDetector = Objects.requireNonNull(refusalDetector, "refusalDetector");
+        this.topKWeights = config.topKWeights().stream().mapToDouble(Double::doubleValue).toArray();
     }
 
     /**
@@ -54,14 +57,30 @@ public class ConfidenceCalculator {
      * devueltos por el proveedor. Nunca devuelve {@code null}: la decision
      * de ocultar el indicador (emergencia, fallback, toggle off, PII) la
      * toma el caller, no este metodo.
+     *
+     * <p>Una sola pasada por los chunks: cada score se normaliza una vez, se
+     * cuenta para S_C y se inserta en un top-K acotado para S_A (sin ordenar
+     * la lista completa ni boxear).
      */
     public ConfidenceAssessment assess(String reply, List<RetrievalDocument> chunks) {
         List<RetrievalDocument> safeChunks = chunks == null ? List.of() : chunks;
         boolean refusal = refusalDetector.isRefusal(reply);
         boolean hasChunks = !safeChunks.isEmpty();
 
-        double sA = signalRetrieval(safeChunks);
-        double sC = signalCoverage(safeChunks);
+        double[] top = new double[topKWeights.length];
+        int filled = 0;
+        int relevant = 0;
+        double relevanceThreshold = config.chunkRelevanceThreshold();
+        for (int i = 0, n = safeChunks.size(); i < n; i++) {
+            double score = normalizeScore(safeChunks.get(i).score());
+            if (score >= relevanceThreshold) {
+                relevant++;
+            }
+            filled = offerTopK(top, filled, score);
+        }
+
+        double sA = signalRetrieval(top, filled);
+        double sC = signalCoverage(hasChunks, relevant);
         double alpha = computeAlpha(reply, hasChunks);
 
         double composite = config.weightRetrieval() * sA + config.weightCoverage() * sC;
@@ -81,37 +100,41 @@ public class ConfidenceCalculator {
 
     // --- Senales ---------------------------------------------------------
 
+    /**
+     * Inserta {@code score} en {@code top} (descendente, {@code filled}
+     * posiciones ocupadas) si entra en el top-K. Devuelve el nuevo
+     * {@code filled}. Normalizamos ANTES de seleccionar: los sentinels
+     * filtrados a 0 no se cuelan al top como artefacto del orden.
+     */
+    private static int offerTopK(double[] top, int filled, double score) {
+        int k = top.length;
+        int pos;
+        if (filled < k) {
+            pos = filled++;
+        } else if (k > 0 && score > top[k - 1]) {
+            pos = k - 1;
+        } else {
+            return filled;
+        }
+        while (pos > 0 && top[pos - 1] < score) {
+            top[pos] = top[pos - 1];
+            pos--;
+        }
+        top[pos] = score;
+        return filled;
+    }
+
     /**
      * S_A: promedio ponderado del top-K (K = tamano de
      * {@code config.topKWeights()}) sobre scores normalizados, ordenados
      * descendentemente. Si hay menos chunks que K, los pesos se renormalizan
      * sobre los presentes.
      */
-    private double signalRetrieval(List<RetrievalDocument> chunks) {
-        if (chunks.isEmpty()) {
-            return 0.0;
-        }
-        List<Double> weights = config.topKWeights();
-        int k = weights.size();
-
-        // Normalizamos PRIMERO y despues ordenamos; los sentinels filtrados a 0
-        // no se cuelan al top como artefacto del orden.
-        double[] normalized = chunks.stream()
-                .mapToDouble(c -> normalizeScore(c.score()))
-                .sorted()
-                .toArray();
-
-        // sorted() es ascendente; tomamos los ultimos k.
-        int take = Math.min(k, normalized.length);
-        double[] top = new double[take];
-        for (int i = 0; i < take; i++) {
-            top[i] = normalized[normalized.length - 1 - i];
-        }
-
+    private double signalRetrieval(double[] top, int filled) {
         double totalWeight = 0;
         double weighted = 0;
-        for (int i = 0; i < take; i++) {
-            double w = weights.get(i);
+        for (int i = 0; i < filled; i++) {
+            double w = topKWeights[i];
             totalWeight += w;
             weighted += w * top[i];
         }
@@ -125,15 +148,11 @@ public class ConfidenceCalculator {
      * S_C: fraccion de chunks "relevantes" (score normalizado &gt;= threshold)
      * sobre los esperados, saturando arriba a 1.
      */
-    private double signalCoverage(List<RetrievalDocument> chunks) {
+    private double signalCoverage(boolean hasChunks, int relevant) {
         int expected = config.expectedRelevantChunks();
-        if (chunks.isEmpty() || expected <= 0) {
+        if (!hasChunks || expected <= 0) {
             return 0.0;
         }
-        long relevant = chunks.stream()
-                .mapToDouble(c -> normalizeScore(c.score()))
-                .filter(s -> s >= config.chunkRelevanceThreshold())
-                .count();
         return clampUnit((double) relevant / expected);
     }
 
@@ -2,7 +2,6 @@ package site.utnpf.odontolink.domain.service;
 
 import site.utnpf.odontolink.domain.model.ConfidenceCalculatorConfig;
 
-import java.util.List;
 import java.util.Objects;
 
 /**
@@ -15,22 +14,25 @@ import java.util.Objects;
  *
  * <p>El matching se hace en dos pasos:
  * <ol>
- *   <li>Pre-normalizamos los patrones una vez en construccion (lowercase
- *       + sin tildes) — los teniamos que normalizar igual y hacerlo en
- *       cada turno seria desperdicio.</li>
- *   <li>Normalizamos el reply con la misma transformacion y buscamos
- *       cualquier patron por substring.</li>
+ *   <li>En construccion, los patrones normalizados (lowercase + sin tildes)
+ *       se compilan en un {@link SubstringAutomaton}.</li>
+ *   <li>El reply se recorre una sola vez normalizando cada caracter al
+ *       vuelo ({@link ConfidenceCalculatorConfig#foldAccent}) y avanzando
+ *       el automata: sin String normalizado intermedio y sin un
+ *       {@code contains} por patron.</li>
  * </ol>
- * No usamos regex: las frases del PoC son substrings comunes y un
- * {@code String#contains} es mas barato y mas predecible.
+ * No usamos regex: las frases del PoC son substrings comunes.
  */
 public class RefusalDetector {
 
-    private final List<String> normalizedPatterns;
+    private final SubstringAutomaton automaton;
 
     public RefusalDetector(ConfidenceCalculatorConfig config) {
         Objects.requireNonNull(config, "config");
-        this.normalizedPatterns = config.normalizedRefusalPatterns();
+        // Los patrones en blanco se ignoran, igual que el detector anterior.
+        this.automaton = SubstringAutomaton.compile(config.normalizedRefusalPatterns().stream()
+                .filter(pattern -> pattern != null && !pattern.isBlank())
+                .toList());
     }
 
     /**
@@ -39,12 +41,29 @@ public class RefusalDetector {
      * la lista de patrones esta vacia.
      */
     public boolean isRefusal(String reply) {
-        if (reply == null || reply.isBlank() || normalizedPatterns.isEmpty()) {
+        if (reply == null || reply.isBlank() || automaton.isEmpty()) {
             return false;
         }
-        String normalized = ConfidenceCalculatorConfig.normalize(reply);
-        for (String pattern : normalizedPatterns) {
-            if (pattern != null && !pattern.isBlank() && normalized.contains(pattern)) {
+        int state = 0;
+        for (int i = 0; i < reply.length(); ) {
+            int cp = reply.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp == 'İ' || cp == 'Σ') {
+                // Unicos casos en que String#toLowerCase(ROOT) no es por code
+                // point (I con punto y sigma final): normalizacion completa.
+                return automaton.containsAny(ConfidenceCalculatorConfig.normalize(reply));
+            }
+            int lower = Character.toLowerCase(cp);
+            if (Character.isBmpCodePoint(lower)) {
+                state = automaton.next(state, ConfidenceCalculatorConfig.foldAccent((char) lower));
+            } else {
+                state = automaton.next(state, Character.highSurrogate(lower));
+                if (automaton.accepts(state)) {
+                    return true;
+                }
+                state = automaton.next(state, Character.lowSurrogate(lower));
+            }
+            if (automaton.accepts(state)) {
                 return true;
             }
         }
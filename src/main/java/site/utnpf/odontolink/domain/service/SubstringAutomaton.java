@@ -0,0 +1,175 @@
+package site.utnpf.odontolink.domain.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Automata Aho-Corasick determinista para buscar varios substrings en una
+ * sola pasada, sin importar cuantos patrones haya.
+ *
+ * <p>Lo comparten {@link RefusalDetector} y el {@code EmergencyTermMatcher}
+ * de la capa de aplicacion. Cada uno normaliza el texto a su manera y avanza
+ * el automata con {@link #next}; el de emergencias agrega encima su chequeo
+ * de borde de palabra via {@link #anyMatch}.
+ *
+ * <p>La tabla de transiciones es completa sobre el alfabeto de los patrones
+ * (ordenado, busqueda binaria): {@link #next} nunca recorre enlaces de falla
+ * y un caracter fuera del alfabeto vuelve a la raiz (estado {@code 0}).
+ *
+ * <p>Thread-safe por inmutabilidad.
+ */
+public final class SubstringAutomaton {
+
+    private static final SubstringAutomaton EMPTY =
+            new SubstringAutomaton(new char[0], new int[0], new int[][]{new int[0]});
+
+    /** Caracteres que aparecen en algun patron, ordenados. */
+    private final char[] alphabet;
+    /** {@code delta[state * alphabet.length + symbol]}. */
+    private final int[] delta;
+    /** Por estado: largos de los patrones que terminan aca (propios o por enlace de falla). */
+    private final int[][] matchLengths;
+
+    private SubstringAutomaton(char[] alphabet, int[] delta, int[][] matchLengths) {
+        this.alphabet = alphabet;
+        this.delta = delta;
+        this.matchLengths = matchLengths;
+    }
+
+    /** Automata para {@code patterns}; los nulos o vacios se ignoran. */
+    public static SubstringAutomaton compile(Collection<String> patterns) {
+        List<String> usable = new ArrayList<>();
+        TreeSet<Character> symbols = new TreeSet<>();
+        for (String pattern : patterns) {
+            if (pattern == null || pattern.isEmpty()) {
+                continue;
+            }
+            usable.add(pattern);
+            for (int i = 0; i < pattern.length(); i++) {
+                symbols.add(pattern.charAt(i));
+            }
+        }
+        if (usable.isEmpty()) {
+            return EMPTY;
+        }
+        char[] alphabet = new char[symbols.size()];
+        int idx = 0;
+        for (char c : symbols) {
+            alphabet[idx++] = c;
+        }
+
+        // Trie.
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> ownLengths = new ArrayList<>();
+        children.add(new HashMap<>());
+        ownLengths.add(new ArrayList<>());
+        for (String pattern : usable) {
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer child = children.get(state).get(pattern.charAt(i));
+                if (child == null) {
+                    child = children.size();
+                    children.add(new HashMap<>());
+                    ownLengths.add(new ArrayList<>());
+                    children.get(state).put(pattern.charAt(i), child);
+                }
+                state = child;
+            }
+            ownLengths.get(state).add(pattern.length());
+        }
+
+        // BFS: enlaces de falla y tabla completa. Cada estado hereda los
+        // matches de su enlace para no recorrer la cadena al buscar.
+        int states = children.size();
+        int width = alphabet.length;
+        int[] delta = new int[states * width];
+        int[] fail = new int[states];
+        int[][] matchLengths = new int[states][];
+        matchLengths[0] = new int[0];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int a = 0; a < width; a++) {
+            Integer child = children.get(0).get(alphabet[a]);
+            if (child != null) {
+                delta[a] = child;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            matchLengths[s] = concat(ownLengths.get(s), matchLengths[fail[s]]);
+            for (int a = 0; a < width; a++) {
+                Integer child = children.get(s).get(alphabet[a]);
+                if (child != null) {
+                    fail[child] = delta[fail[s] * width + a];
+                    delta[s * width + a] = child;
+                    queue.add(child);
+                } else {
+                    delta[s * width + a] = delta[fail[s] * width + a];
+                }
+            }
+        }
+        return new SubstringAutomaton(alphabet, delta, matchLengths);
+    }
+
+    public boolean isEmpty() {
+        return alphabet.length == 0;
+    }
+
+    /** Estado siguiente a {@code state} al leer {@code c}. */
+    public int next(int state, char c) {
+        int symbol = Arrays.binarySearch(alphabet, c);
+        return symbol < 0 ? 0 : delta[state * alphabet.length + symbol];
+    }
+
+    /** {@code true} si en {@code state} termina algun patron. */
+    public boolean accepts(int state) {
+        return matchLengths[state].length > 0;
+    }
+
+    /**
+     * {@code true} si alguno de los patrones que terminan en {@code state}
+     * (con el ultimo caracter justo antes de {@code end}) empieza en un
+     * indice que {@code acceptsStart} acepta.
+     */
+    public boolean anyMatch(int state, int end, IntPredicate acceptsStart) {
+        for (int length : matchLengths[state]) {
+            if (acceptsStart.test(end - length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@code true} si {@code text} contiene algun patron, sin normalizarlo. */
+    public boolean containsAny(String text) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            if (accepts(state)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Cantidad de estados, contando la raiz. */
+    public int stateCount() {
+        return matchLengths.length;
+    }
+
+    private static int[] concat(List<Integer> own, int[] inherited) {
+        int[] out = new int[own.size() + inherited.length];
+        for (int i = 0; i < own.size(); i++) {
+            out[i] = own.get(i);
+        }
+        System.arraycopy(inherited, 0, out, own.size(), inherited.length);
+        return out;
+    }
+}
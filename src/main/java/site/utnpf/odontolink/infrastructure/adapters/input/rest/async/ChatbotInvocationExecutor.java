@@ -0,0 +1,161 @@
+package site.utnpf.odontolink.infrastructure.adapters.input.rest.async;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import site.utnpf.odontolink.domain.exception.ServiceOverloadedException;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool acotado donde corren los turnos del chatbot, fuera de los hilos de
+ * Tomcat (RF29).
+ *
+ * <p>Problema que resuelve: una invocacion al agente tarda lo que tarda
+ * DigitalOcean (hasta el read timeout, y el {@code @Retry} puede duplicarlo).
+ * Corriendo en el hilo del request, un pico de chatbot agotaba el pool de
+ * Tomcat y el resto de la API dejaba de responder. Aca el hilo del request
+ * se libera enseguida ({@link DeferredResult} / SSE) y el trabajo lento queda
+ * confinado a {@code max-concurrent} hilos propios.
+ *
+ * <p>Back-pressure: con todos los hilos ocupados los turnos esperan en una
+ * cola de {@code queue-capacity}; con la cola llena se rechaza en el acto con
+ * {@link ServiceOverloadedException} (503 + {@code Retry-After}) en lugar de
+ * encolar sin limite. Un turno que no termino dentro de {@code timeout-ms}
+ * (cola + ejecucion) responde el mismo 503; si todavia no habia arrancado,
+ * ya no se ejecuta.
+ *
+ * <p>Metricas publicadas:
+ * <ul>
+ *   <li>{@code chatbot.invocation.in_flight}: turnos ejecutandose.</li>
+ *   <li>{@code chatbot.invocation.queue_depth}: turnos esperando hilo.</li>
+ *   <li>{@code chatbot.invocation.queue_wait}: tiempo en cola hasta arrancar.</li>
+ *   <li>{@code chatbot.invocation.rejected}: rechazos por cola llena.</li>
+ *   <li>{@code chatbot.invocation.timeouts}: turnos vencidos antes de responder.</li>
+ * </ul>
+ */
+@Component
+public class ChatbotInvocationExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotInvocationExecutor.class);
+
+    private static final String BUSY_MESSAGE =
+            "El asistente esta atendiendo demasiadas consultas. Intenta nuevamente en unos segundos.";
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final long retryAfterSeconds;
+    private final Timer queueWait;
+    private final Counter rejected;
+    private final Counter timeouts;
+
+    public ChatbotInvocationExecutor(MeterRegistry meterRegistry,
+                                     @Value("${odontolink.chatbot.invocation.max-concurrent:16}") int maxConcurrent,
+                                     @Value("${odontolink.chatbot.invocation.queue-capacity:32}") int queueCapacity,
+                                     @Value("${odontolink.chatbot.invocation.timeout-ms:60000}") long timeoutMs,
+                                     @Value("${odontolink.chatbot.invocation.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.timeoutMs = timeoutMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "chatbot-invoke-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("chatbot.invocation.in_flight", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Turnos del chatbot ejecutandose")
+                .register(meterRegistry);
+        Gauge.builder("chatbot.invocation.queue_depth", executor, e -> e.getQueue().size())
+                .description("Turnos del chatbot esperando hilo")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("chatbot.invocation.queue_wait")
+                .description("Espera en cola hasta que el turno arranca")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chatbot.invocation.rejected")
+                .description("Turnos rechazados con 503 por cola llena")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("chatbot.invocation.timeouts")
+                .description("Turnos que no respondieron dentro del timeout")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Corre {@code work} en el pool y devuelve el {@link DeferredResult} que
+     * Spring MVC completa cuando termina. Las excepciones de {@code work}
+     * llegan al {@code GlobalExceptionHandler} como si el controller las
+     * hubiera lanzado.
+     *
+     * @throws ServiceOverloadedException si la cola esta llena.
+     */
+    public <T> DeferredResult<T> defer(Supplier<T> work) {
+        DeferredResult<T> deferred = new DeferredResult<>(timeoutMs);
+        deferred.onTimeout(() -> {
+            timeouts.increment();
+            deferred.setErrorResult(overloaded());
+        });
+        submit(() -> {
+            if (deferred.isSetOrExpired()) {
+                // Vencio mientras esperaba en cola: nadie va a leer la respuesta.
+                return;
+            }
+            try {
+                deferred.setResult(work.get());
+            } catch (RuntimeException ex) {
+                deferred.setErrorResult(ex);
+            }
+        });
+        return deferred;
+    }
+
+    /**
+     * Encola {@code task} midiendo su espera. Lo usan los streams SSE, que
+     * manejan su propio emitter.
+     *
+     * @throws ServiceOverloadedException si la cola esta llena.
+     */
+    public void submit(Runnable task) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                queueWait.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                task.run();
+            });
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            log.warn("Pool de invocaciones del chatbot saturado (en curso={}, en cola={})",
+                    executor.getActiveCount(), executor.getQueue().size());
+            throw overloaded();
+        }
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    private ServiceOverloadedException overloaded() {
+        return new ServiceOverloadedException(BUSY_MESSAGE, AiAgentErrorCodes.AI_AGENT_BUSY, retryAfterSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
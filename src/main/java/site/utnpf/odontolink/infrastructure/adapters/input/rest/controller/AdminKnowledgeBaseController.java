@@ -19,12 +19,15 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import site.utnpf.odontolink.application.port.in.IKnowledgeBaseAdminUseCase;
-import site.utnpf.odontolink.application.port.in.IKnowledgeBaseAdminUseCase.DocumentDownload;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseAdminUseCase.DocumentStream;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseAdminUseCase.RangeRequest;
 import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort.IndexingJobSnapshot;
 import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 import site.utnpf.odontolink.domain.model.KnowledgeBaseDocument;
@@ -39,8 +42,12 @@ import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErr
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.mapper.KnowledgeBaseDocumentRestMapper;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Adaptador de entrada REST para la administracion de la Knowledge Base
@@ -55,6 +62,8 @@ import java.nio.charset.StandardCharsets;
         description = "Gestion de la Knowledge Base (FAQs y archivos) que el agente usa via RAG (RF33)")
 public class AdminKnowledgeBaseController {
 
+    private static final Pattern SINGLE_BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
     private final IKnowledgeBaseAdminUseCase useCase;
 
     public AdminKnowledgeBaseController(IKnowledgeBaseAdminUseCase useCase) {
@@ -82,19 +91,23 @@ public class AdminKnowledgeBaseController {
     }
 
     @Operation(summary = "Agregar FAQ a la Knowledge Base",
-            description = "Acepta titulo + contenido en texto plano. El backend lo envuelve como TXT, " +
-                    "lo sube al bucket Spaces, lo registra como data source y dispara la indexacion.")
+            description = "Acepta titulo + contenido en texto plano y responde 202 con el documento en " +
+                    "PENDING_UPLOAD. En background el backend lo envuelve como TXT, lo sube al bucket " +
+                    "Spaces, lo registra como data source y dispara la indexacion. Responde 409 si ya existe un " +
+                    "documento no FAILED con el mismo contenido (mismo SHA-256).")
     @PostMapping("/documents/faq")
     public ResponseEntity<KnowledgeBaseDocumentResponseDTO> addFaqDocument(
             @Valid @RequestBody AddFaqDocumentRequestDTO request) {
         KnowledgeBaseDocument doc = useCase.addFaqDocument(request.getTitle(), request.getContent());
-        return ResponseEntity.status(HttpStatus.CREATED)
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
                 .body(KnowledgeBaseDocumentRestMapper.toResponse(doc));
     }
 
     @Operation(summary = "Agregar archivo a la Knowledge Base",
             description = "Multipart con campos 'title' (texto, max 200 chars) y 'file' (binario, max 10 MB). " +
-                    "Formatos aceptados: PDF, TXT, MD, JSON, CSV, DOCX.",
+                    "Formatos aceptados: PDF, TXT, MD, JSON, CSV, DOCX. Responde 202 con el documento en " +
+                    "PENDING_UPLOAD; subida, registro e indexacion corren en background. Responde 409 si ya " +
+                    "existe un documento no FAILED con el mismo contenido (mismo SHA-256).",
             requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
                     description = "Multipart con titulo + archivo",
                     required = true,
@@ -109,23 +122,26 @@ public class AdminKnowledgeBaseController {
                     "El archivo es obligatorio en el campo 'file'.",
                     AiAgentErrorCodes.AI_KB_FILE_EMPTY);
         }
-        byte[] bytes;
-        try {
-            bytes = file.getBytes();
+        // Stream directo desde la parte multipart (que el contenedor ya
+        // volco a disco) al staging de la ingesta: el archivo no se copia
+        // entero al heap.
+        KnowledgeBaseDocument doc;
+        try (InputStream content = file.getInputStream()) {
+            doc = useCase.addFileDocument(
+                    title, file.getOriginalFilename(), content, file.getSize(), file.getContentType());
         } catch (IOException ex) {
             throw new InvalidBusinessRuleException(
                     "No se pudo leer el archivo subido: " + ex.getMessage());
         }
-        KnowledgeBaseDocument doc = useCase.addFileDocument(
-                title, file.getOriginalFilename(), bytes, file.getContentType());
-        return ResponseEntity.status(HttpStatus.CREATED)
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
                 .body(KnowledgeBaseDocumentRestMapper.toResponse(doc));
     }
 
     @Operation(summary = "Editar documento (titulo y, en FAQs, contenido)",
             description = "Acepta cambio de titulo siempre. Para documentos FAQ_TEXT acepta tambien " +
                     "un nuevo content; si llega distinto al actual, el backend re-sube el TXT al bucket " +
-                    "(mismo storedObjectKey) y dispara reindex del data source. Para archivos subidos " +
+                    "(mismo storedObjectKey) y deja el documento en REINDEX_QUEUED: el reindex se agrupa con " +
+                    "las demas ediciones de la ventana en un solo indexing job. Para archivos subidos " +
                     "el content debe llegar nulo: editar binarios pasa por delete + create.")
     @PutMapping("/documents/{id}")
     public ResponseEntity<KnowledgeBaseDocumentResponseDTO> updateDocument(
@@ -137,11 +153,20 @@ public class AdminKnowledgeBaseController {
 
     @Operation(summary = "Descargar el binario original del documento",
             description = "Para FAQs devuelve el inlineContent como text/plain UTF-8. Para archivos " +
-                    "subidos lee el objeto desde el bucket Spaces y lo devuelve con el contentType " +
-                    "original (PDF, DOCX, etc.). Util para que el admin verifique que se indexo.")
+                    "subidos streamea el objeto desde el bucket Spaces con el contentType original " +
+                    "(PDF, DOCX, etc.), sin cargarlo entero en memoria. Acepta un header Range de un solo " +
+                    "rango (206 Partial Content; 416 si cae fuera del documento). Si la descarga directa " +
+                    "esta habilitada, los archivos grandes responden 302 a una URL prefirmada del bucket.")
     @GetMapping("/documents/{id}/download")
-    public ResponseEntity<byte[]> downloadDocument(@PathVariable Long id) {
-        DocumentDownload download = useCase.downloadDocument(id);
+    public ResponseEntity<StreamingResponseBody> downloadDocument(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader) {
+        DocumentStream download = useCase.streamDocument(id, parseRange(rangeHeader));
+        if (download.isRedirect()) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(download.redirectUrl()))
+                    .build();
+        }
         // El nombre original puede traer caracteres no-ASCII; lo codificamos como
         // RFC 5987 (filename*=UTF-8''...) para que navegadores y clientes
         // modernos lo decodifiquen correctamente.
@@ -149,11 +174,53 @@ public class AdminKnowledgeBaseController {
                 download.fileName() == null ? "document" : download.fileName(),
                 StandardCharsets.UTF_8);
         String disposition = "attachment; filename*=UTF-8''" + safeName;
-        return ResponseEntity.ok()
+
+        ResponseEntity.BodyBuilder response;
+        if (download.range() == null) {
+            response = ResponseEntity.ok();
+        } else {
+            response = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes " + download.range().first() + "-"
+                            + download.range().last() + "/" + download.totalSize());
+        }
+        // Los bytes pasan del storage a la respuesta de a un buffer; cerrar el
+        // stream antes de tiempo (cliente que corta) aborta la lectura.
+        StreamingResponseBody body = out -> {
+            try (InputStream content = download.content()) {
+                content.transferTo(out);
+            }
+        };
+        return response
                 .contentType(MediaType.parseMediaType(download.contentType()))
                 .header(HttpHeaders.CONTENT_DISPOSITION, disposition)
-                .contentLength(download.content().length)
-                .body(download.content());
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentLength(download.contentLength())
+                .body(body);
+    }
+
+    /**
+     * Interpreta un header {@code Range} de un solo rango en bytes. Cualquier
+     * otra cosa (varios rangos, otra unidad, sintaxis invalida) se ignora y
+     * se sirve el documento completo, como permite RFC 9110.
+     */
+    static RangeRequest parseRange(String header) {
+        if (header == null) {
+            return null;
+        }
+        Matcher matcher = SINGLE_BYTE_RANGE.matcher(header.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        try {
+            Long first = matcher.group(1).isEmpty() ? null : Long.parseLong(matcher.group(1));
+            Long last = matcher.group(2).isEmpty() ? null : Long.parseLong(matcher.group(2));
+            if (first != null && last != null && last < first) {
+                return null;
+            }
+            return new RangeRequest(first, last);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
     }
 
     @Operation(summary = "Borrar documento de la Knowledge Base",
@@ -167,8 +234,8 @@ public class AdminKnowledgeBaseController {
 
     @Operation(summary = "Refrescar estado de indexacion de un documento",
             description = "Pega al proveedor con el lastIndexingJobId del documento y actualiza el " +
-                    "status local. Recomendacion: pollear cada 5-10s SOLO para documentos en estado " +
-                    "INDEXING; parar al llegar a INDEXED/FAILED.")
+                    "status local en el acto. No hace falta pollearlo: un job del backend sincroniza " +
+                    "periodicamente todos los documentos en INDEXING; alcanza con releer el documento.")
     @PostMapping("/documents/{id}/refresh-status")
     public ResponseEntity<KnowledgeBaseDocumentResponseDTO> refreshStatus(@PathVariable Long id) {
         KnowledgeBaseDocument doc = useCase.refreshIndexingStatus(id);
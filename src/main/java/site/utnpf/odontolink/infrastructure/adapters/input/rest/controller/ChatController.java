@@ -16,7 +16,9 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import site.utnpf.odontolink.application.port.in.IChatUseCase;
 import site.utnpf.odontolink.application.port.in.dto.ChatPollResult;
+import site.utnpf.odontolink.application.port.in.dto.ChatSearchResult;
 import site.utnpf.odontolink.application.port.in.dto.ChatSessionView;
+import site.utnpf.odontolink.application.port.in.dto.CursorPagedMessages;
 import site.utnpf.odontolink.application.port.in.dto.PagedMessages;
 import site.utnpf.odontolink.domain.model.ChatMessage;
 import site.utnpf.odontolink.domain.model.ChatSession;
@@ -26,7 +28,9 @@ import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.request.Crea
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.request.SendMessageRequestDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatMessageResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatPollResponseDTO;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatSearchResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatSessionResponseDTO;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.CursorChatMessagesResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.MarkMessagesAsReadResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.PagedChatMessagesResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.UnreadCountResponseDTO;
@@ -46,8 +50,10 @@ import java.util.stream.Collectors;
  * - GET    /api/chat/sessions                                 - Inbox con unreadCount y bloqueo (CU 6.1 + CU012); soporta ?since= para delta
  * - POST   /api/chat/sessions                                 - Creación idempotente de sesión (P4) — exige relación clínica previa (RF27)
  * - GET    /api/chat/unread-count                             - Contador global de no leídos para badge del sidebar (P8)
+ * - GET    /api/chat/messages/search                          - Búsqueda full-text en el historial propio, por relevancia
  * - POST   /api/chat/sessions/{sessionId}/messages            - Enviar mensaje (RF26 - CU 6.2)
  * - GET    /api/chat/sessions/{sessionId}/messages            - Historial / polling unificado / paginado (CU 6.3 + CU012)
+ * - GET    /api/chat/sessions/{sessionId}/messages/history    - Historial paginado por cursor keyset ("cargar anteriores")
  * - POST   /api/chat/sessions/{sessionId}/messages/read       - Marcar mensajes como leídos en bulk (CU012)
  * - POST   /api/chat/sessions/{sessionId}/block               - Bloquear sesión (RF28)
  * - POST   /api/chat/sessions/{sessionId}/unblock             - Desbloquear sesión (RF28 reversible)
@@ -219,8 +225,10 @@ public class ChatController {
     /**
      * Contador global de no-leídos (P8). Implementa el badge del sidebar/AppBar.
      *
-     * <p>Suma en una sola query SQL los mensajes con {@code readAt IS NULL} de todas las
-     * sesiones donde el usuario es participante, excluyendo sus propios mensajes.
+     * <p>Cuenta los mensajes con {@code readAt IS NULL} de todas las sesiones donde el
+     * usuario es participante, excluyendo sus propios mensajes. Se sirve desde un contador
+     * en memoria por usuario; el COUNT en SQL solo corre la primera vez y en la
+     * reconciliación periódica.
      */
     @Operation(
             summary = "Contador global de no-leídos",
@@ -241,6 +249,52 @@ public class ChatController {
         return ResponseEntity.ok(new UnreadCountResponseDTO(total));
     }
 
+    /**
+     * Búsqueda full-text en el historial de chat del usuario autenticado ("el mensaje
+     * donde el paciente mencionó la alergia").
+     *
+     * <p>Alcance: solo sesiones donde el usuario es participante; con {@code sessionId} se
+     * restringe a una. Cada palabra del texto (3+ caracteres) debe aparecer, como palabra
+     * completa o prefijo. Los mensajes archivados (tier frío) no se buscan.
+     */
+    @Operation(
+            summary = "Buscar en el historial de chat",
+            description = "Busca por contenido en las sesiones del usuario, ordenado por relevancia. " +
+                    "Todas las palabras de 3+ caracteres deben aparecer (acepta prefijos). " +
+                    "size en [1,200] default 20. Sin total: usar hasMore."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Resultados",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ChatSearchResponseDTO.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                      "results": [ { "message": { "id": 812, "content": "Soy alérgica a la penicilina" }, "score": 3.41 } ],
+                                      "page": 0,
+                                      "size": 20,
+                                      "hasMore": false
+                                    }
+                                    """))),
+            @ApiResponse(responseCode = "403", description = "CHAT_NOT_PARTICIPANT (con sessionId)", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Sesión no encontrada", content = @Content),
+            @ApiResponse(responseCode = "422", description = "CHAT_SEARCH_QUERY_TOO_SHORT", content = @Content)
+    })
+    @GetMapping("/messages/search")
+    @PreAuthorize("hasRole('PATIENT') or hasRole('PRACTITIONER')")
+    public ResponseEntity<ChatSearchResponseDTO> searchMessages(
+            @Parameter(description = "Texto a buscar", required = true, example = "alergia penicilina")
+            @RequestParam("q") String query,
+            @Parameter(description = "Restringe la búsqueda a una sesión")
+            @RequestParam(required = false) Long sessionId,
+            @Parameter(description = "Número de página (0-based)", example = "0")
+            @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Tamaño de página entre 1 y 200 (default 20)", example = "20")
+            @RequestParam(defaultValue = "20") int size) {
+        User authenticatedUser = authenticationFacade.getAuthenticatedUser();
+        ChatSearchResult result = chatUseCase.searchMessages(authenticatedUser, query, sessionId, page, size);
+        return ResponseEntity.ok(ChatRestMapper.toChatSearchResponseDTO(result));
+    }
+
     /**
      * Envía un nuevo mensaje a una sesión de chat existente. Implementa RF26 - CU 6.2.
      *
@@ -425,15 +479,73 @@ public class ChatController {
         return ResponseEntity.ok(ChatRestMapper.toChatPollResponseDTO(result));
     }
 
+    /**
+     * Historial paginado por cursor keyset ({@code sentAt}, {@code id}) para el scroll-up.
+     *
+     * <p>Alternativa al modo {@code ?page=&size=} de {@link #getMessages}: el offset obliga al
+     * motor a recorrer y descartar todas las filas previas, así que las páginas profundas de
+     * una conversación larga se vuelven cada vez más lentas, y además cada página cuenta la
+     * sesión entera. Acá cada página cuesta lo mismo y el total es opt-in.
+     *
+     * <p>Flujo del FE: primera llamada sin {@code cursor}; mientras {@code hasMore} sea true,
+     * repetir con el {@code nextCursor} recibido.
+     */
+    @Operation(
+            summary = "Historial de mensajes paginado por cursor",
+            description = "Sin cursor devuelve los más recientes; con ?cursor= (opaco, tomado de nextCursor) los anteriores. " +
+                    "Orden DESC por sentAt + id. size en [1,200] default 50. includeTotal=true agrega totalElements (cuesta un COUNT)."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Página obtenida",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CursorChatMessagesResponseDTO.class),
+                            examples = @ExampleObject(value = """
+                                    {
+                                      "messages": [ /* DESC por sentAt */ ],
+                                      "size": 50,
+                                      "nextCursor": "MTc0NzEyOTEwMi4zNDUwMDAwMDA6MTAyNQ",
+                                      "hasMore": true,
+                                      "totalElements": null,
+                                      "serverTime": "2026-05-13T09:45:10.789Z"
+                                    }
+                                    """))),
+            @ApiResponse(responseCode = "400", description = "size fuera de [1, 200]", content = @Content),
+            @ApiResponse(responseCode = "403", description = "CHAT_NOT_PARTICIPANT", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Sesión no encontrada", content = @Content),
+            @ApiResponse(responseCode = "422", description = "CHAT_INVALID_CURSOR", content = @Content)
+    })
+    @GetMapping("/sessions/{sessionId}/messages/history")
+    @PreAuthorize("hasRole('PATIENT') or hasRole('PRACTITIONER')")
+    public ResponseEntity<CursorChatMessagesResponseDTO> getMessageHistory(
+            @Parameter(description = "ID de la sesión de chat", required = true)
+            @PathVariable Long sessionId,
+            @Parameter(description = "Cursor opaco (nextCursor de la página previa). Omitir para la primera página.")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Tamaño de página entre 1 y 200 (default 50)", example = "50")
+            @RequestParam(defaultValue = "50") int size,
+            @Parameter(description = "Si es true, incluye totalElements (COUNT de la sesión)", example = "false")
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+
+        User authenticatedUser = authenticationFacade.getAuthenticatedUser();
+        CursorPagedMessages result = chatUseCase.getMessagesByCursor(
+                sessionId, authenticatedUser, cursor, size, includeTotal);
+        return ResponseEntity.ok(ChatRestMapper.toCursorChatMessagesResponseDTO(result));
+    }
+
     /**
      * Marca como leídos en bulk los mensajes pendientes de la contraparte (CU012).
      *
      * <p>Funciona también con la sesión bloqueada (P6): el lado silenciado conserva el derecho
      * a cerrar su contador de no-leídos sobre el historial existente.
+     *
+     * <p>La escritura se coalesce: los focos repetidos dentro de la ventana de flush
+     * (default 250 ms) terminan en un solo UPDATE. Los contadores del propio usuario se
+     * cierran en el acto; el read receipt del sender llega en el poll siguiente al flush.
      */
     @Operation(
             summary = "Marcar mensajes como leídos (bulk)",
-            description = "Marca como leídos todos los mensajes no leídos enviados por la contraparte en una única operación SQL. " +
+            description = "Marca como leídos los mensajes no leídos enviados por la contraparte hasta upToMessageId " +
+                    "(default: el último de la sesión). La escritura se aplica en lote unos cientos de ms después. " +
                     "Idempotente. Funciona también si la sesión está bloqueada."
     )
     @ApiResponses(value = {
@@ -454,11 +566,14 @@ public class ChatController {
     @PreAuthorize("hasRole('PATIENT') or hasRole('PRACTITIONER')")
     public ResponseEntity<MarkMessagesAsReadResponseDTO> markMessagesAsRead(
             @Parameter(description = "ID de la sesión de chat", required = true)
-            @PathVariable Long sessionId) {
+            @PathVariable Long sessionId,
+            @Parameter(description = "Último mensaje renderizado por el cliente. Si se omite, se toma el último de la sesión.",
+                       example = "1025")
+            @RequestParam(required = false) Long upToMessageId) {
 
         User authenticatedUser = authenticationFacade.getAuthenticatedUser();
         Instant readAt = Instant.now();
-        int marked = chatUseCase.markMessagesAsRead(sessionId, authenticatedUser);
+        int marked = chatUseCase.markMessagesAsRead(sessionId, authenticatedUser, upToMessageId);
         return ResponseEntity.ok(new MarkMessagesAsReadResponseDTO(sessionId, marked, readAt));
     }
 
@@ -4,6 +4,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -17,6 +18,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import site.utnpf.odontolink.application.port.in.IChatbotInteractionUseCase;
 import site.utnpf.odontolink.application.port.in.dto.ChatbotMessageCommand;
 import site.utnpf.odontolink.application.port.in.dto.ChatbotPublicInfo;
@@ -24,10 +27,12 @@ import site.utnpf.odontolink.domain.model.ChatbotInteractionResult;
 import site.utnpf.odontolink.domain.model.Role;
 import site.utnpf.odontolink.domain.model.User;
 import site.utnpf.odontolink.domain.repository.UserRepository;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.async.ChatbotInvocationExecutor;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.request.ChatbotMessageRequestDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatbotMessageResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatbotPublicInfoResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.mapper.ChatbotRestMapper;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.streaming.ChatbotStreamDispatcher;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -49,11 +54,17 @@ public class PublicChatbotController {
 
     private final IChatbotInteractionUseCase chatbotUseCase;
     private final UserRepository userRepository;
+    private final ChatbotStreamDispatcher streamDispatcher;
+    private final ChatbotInvocationExecutor invocationExecutor;
 
     public PublicChatbotController(IChatbotInteractionUseCase chatbotUseCase,
-                                   UserRepository userRepository) {
+                                   UserRepository userRepository,
+                                   ChatbotStreamDispatcher streamDispatcher,
+                                   ChatbotInvocationExecutor invocationExecutor) {
         this.chatbotUseCase = chatbotUseCase;
         this.userRepository = userRepository;
+        this.streamDispatcher = streamDispatcher;
+        this.invocationExecutor = invocationExecutor;
     }
 
     @Operation(summary = "Informacion publica del chatbot",
@@ -71,9 +82,9 @@ public class PublicChatbotController {
             description = "Procesa el mensaje con sanitizacion PII + deteccion de emergencias + RAG. " +
                     "Devuelve la respuesta + confidence (RF34) + flags estructuradas. Crea sesion si " +
                     "no se envia sessionId. Para sesiones anonimas el FE debe persistir y reenviar el " +
-                    "anonymousToken.")
+                    "anonymousToken. Con el asistente saturado responde 503 AI_AGENT_BUSY con Retry-After.")
     @PostMapping("/messages")
-    public ResponseEntity<ChatbotMessageResponseDTO> sendMessage(
+    public DeferredResult<ResponseEntity<ChatbotMessageResponseDTO>> sendMessage(
             @Valid @RequestBody ChatbotMessageRequestDTO request,
             HttpServletRequest httpRequest) {
         Optional<Long> userId = resolveAuthenticatedUserId();
@@ -84,8 +95,33 @@ public class PublicChatbotController {
                 userId,
                 resolveClientIp(httpRequest)
         );
-        ChatbotInteractionResult result = chatbotUseCase.sendMessage(cmd);
-        return ResponseEntity.ok(ChatbotRestMapper.toResponse(result));
+        // El turno corre en el pool acotado del chatbot: el hilo de Tomcat
+        // vuelve al pool enseguida aunque el agente tarde 20 s en responder.
+        return invocationExecutor.defer(() -> {
+            ChatbotInteractionResult result = chatbotUseCase.sendMessage(cmd);
+            return ResponseEntity.ok(ChatbotRestMapper.toResponse(result));
+        });
+    }
+
+    @Operation(summary = "Enviar mensaje al chatbot (streaming SSE)",
+            description = "Mismo contrato que POST /messages pero la respuesta llega como text/event-stream: " +
+                    "eventos 'delta' con {text} a medida que el agente genera, y al final un evento " +
+                    "'result' con el mismo body que POST /messages (autoritativo: en fallback o bloqueo " +
+                    "PII reemplaza el texto parcial) o un evento 'error' con el ErrorResponse.")
+    @PostMapping(value = "/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamMessage(
+            @Valid @RequestBody ChatbotMessageRequestDTO request,
+            HttpServletRequest httpRequest) {
+        // El usuario se resuelve aca: el turno corre en otro hilo, sin SecurityContext.
+        Optional<Long> userId = resolveAuthenticatedUserId();
+        ChatbotMessageCommand cmd = new ChatbotMessageCommand(
+                request.getMessage(),
+                Optional.ofNullable(request.getSessionId()),
+                Optional.ofNullable(request.getAnonymousToken()),
+                userId,
+                resolveClientIp(httpRequest)
+        );
+        return streamDispatcher.dispatch(cmd, httpRequest.getRequestURI());
     }
 
     @Operation(summary = "Cerrar sesion del chatbot",
@@ -0,0 +1,37 @@
+package site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response;
+
+/**
+ * Un resultado de la búsqueda en el chat: el mensaje con el mismo shape que el historial
+ * más su relevancia ({@code score}, solo comparable dentro de la misma búsqueda).
+ *
+ * @author OdontoLink Team
+ */
+public class ChatSearchHitResponseDTO {
+
+    private ChatMessageResponseDTO message;
+    private double score;
+
+    public ChatSearchHitResponseDTO() {
+    }
+
+    public ChatSearchHitResponseDTO(ChatMessageResponseDTO message, double score) {
+        this.message = message;
+        this.score = score;
+    }
+
+    public ChatMessageResponseDTO getMessage() {
+        return message;
+    }
+
+    public void setMessage(ChatMessageResponseDTO message) {
+        this.message = message;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+}
@@ -0,0 +1,63 @@
+package site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response;
+
+import java.util.List;
+
+/**
+ * Respuesta de {@code GET /api/chat/messages/search}.
+ *
+ * <ul>
+ *   <li><b>results</b>: ordenados por relevancia; a igual relevancia, más reciente primero.</li>
+ *   <li><b>hasMore</b>: hay otra página con {@code page + 1}. No se informa total.</li>
+ * </ul>
+ *
+ * @author OdontoLink Team
+ */
+public class ChatSearchResponseDTO {
+
+    private List<ChatSearchHitResponseDTO> results;
+    private int page;
+    private int size;
+    private boolean hasMore;
+
+    public ChatSearchResponseDTO() {
+    }
+
+    public ChatSearchResponseDTO(List<ChatSearchHitResponseDTO> results, int page, int size, boolean hasMore) {
+        this.results = results;
+        this.page = page;
+        this.size = size;
+        this.hasMore = hasMore;
+    }
+
+    public List<ChatSearchHitResponseDTO> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ChatSearchHitResponseDTO> results) {
+        this.results = results;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,90 @@
+package site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Respuesta del historial paginado por cursor ({@code GET /messages/history}).
+ *
+ * <ul>
+ *   <li><b>messages</b>: orden DESC por {@code sentAt} con tie-break por {@code id}
+ *       (el más reciente de la página primero), igual que el modo {@code ?page=}.</li>
+ *   <li><b>nextCursor</b>: token opaco para pedir los mensajes más antiguos;
+ *       {@code null} cuando se llegó al inicio de la conversación.</li>
+ *   <li><b>hasMore</b>: sinónimo de {@code nextCursor != null}.</li>
+ *   <li><b>totalElements</b>: solo presente si se pidió {@code includeTotal=true}.</li>
+ *   <li><b>serverTime</b>: mismo contrato que el wrapper polling.</li>
+ * </ul>
+ *
+ * @author OdontoLink Team
+ */
+public class CursorChatMessagesResponseDTO {
+
+    private List<ChatMessageResponseDTO> messages;
+    private int size;
+    private String nextCursor;
+    private boolean hasMore;
+    private Long totalElements;
+    private Instant serverTime;
+
+    public CursorChatMessagesResponseDTO() {
+    }
+
+    public CursorChatMessagesResponseDTO(List<ChatMessageResponseDTO> messages, int size, String nextCursor,
+                                         boolean hasMore, Long totalElements, Instant serverTime) {
+        this.messages = messages;
+        this.size = size;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+        this.totalElements = totalElements;
+        this.serverTime = serverTime;
+    }
+
+    public List<ChatMessageResponseDTO> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatMessageResponseDTO> messages) {
+        this.messages = messages;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+
+    public Instant getServerTime() {
+        return serverTime;
+    }
+
+    public void setServerTime(Instant serverTime) {
+        this.serverTime = serverTime;
+    }
+}
@@ -22,6 +22,19 @@ public final class AiAgentErrorCodes {
      */
     public static final String AI_PROVIDER_UNAVAILABLE = "AI_PROVIDER_UNAVAILABLE";
 
+    /**
+     * Igual que {@link #AI_PROVIDER_UNAVAILABLE} pero sin haber llamado al
+     * proveedor: el circuit breaker esta abierto por fallas recientes. 503.
+     */
+    public static final String AI_PROVIDER_CIRCUIT_OPEN = "AI_PROVIDER_CIRCUIT_OPEN";
+
+    /**
+     * Tampoco se llamo al proveedor: el limite adaptativo de invocaciones
+     * concurrentes estaba lleno porque la latencia del agente viene subiendo.
+     * 503.
+     */
+    public static final String AI_PROVIDER_CONCURRENCY_LIMITED = "AI_PROVIDER_CONCURRENCY_LIMITED";
+
     /**
      * El proveedor de IA respondio con 4xx (request mal formado, credencial
      * invalida, UUID inexistente). Distinto del unavailable porque indica
@@ -115,4 +128,11 @@ public final class AiAgentErrorCodes {
      * API devolvio un deployment.url. 503.
      */
     public static final String AI_AGENT_INVOCATION_URL_UNAVAILABLE = "AI_AGENT_INVOCATION_URL_UNAVAILABLE";
+
+    /**
+     * El pool de invocaciones del chatbot esta lleno (todas las
+     * invocaciones en curso y la cola completa) o el turno no arranco a
+     * tiempo. 503 con header {@code Retry-After}.
+     */
+    public static final String AI_AGENT_BUSY = "AI_AGENT_BUSY";
 }
@@ -65,4 +65,17 @@ public final class ChatErrorCodes {
      * practitionerId distinto al suyo. Indica intento de impersonación.
      */
     public static final String CHAT_PARTICIPANT_MISMATCH = "CHAT_PARTICIPANT_MISMATCH";
+
+    /**
+     * El cursor opaco de {@code GET /messages/history} no se pudo decodificar (truncado o
+     * manipulado). El frontend debería descartarlo y recargar desde la página más reciente.
+     */
+    public static final String CHAT_INVALID_CURSOR = "CHAT_INVALID_CURSOR";
+
+    /**
+     * El texto de {@code GET /messages/search} no tiene ninguna palabra indexable (todas
+     * de menos de 3 caracteres, o solo signos). El frontend debería pedir una búsqueda más
+     * específica en lugar de mostrar "sin resultados".
+     */
+    public static final String CHAT_SEARCH_QUERY_TOO_SHORT = "CHAT_SEARCH_QUERY_TOO_SHORT";
 }
@@ -3,6 +3,8 @@ package site.utnpf.odontolink.infrastructure.adapters.input.rest.exception;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -19,8 +21,10 @@ import site.utnpf.odontolink.domain.exception.IncorrectCurrentPasswordException;
 import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
 import site.utnpf.odontolink.domain.exception.InvalidPasswordResetTokenException;
 import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.domain.exception.RangeNotSatisfiableException;
 import site.utnpf.odontolink.domain.exception.RateLimitExceededException;
 import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
+import site.utnpf.odontolink.domain.exception.ServiceOverloadedException;
 import site.utnpf.odontolink.domain.exception.ThemeInUseException;
 import site.utnpf.odontolink.domain.exception.UnauthorizedOperationException;
 import site.utnpf.odontolink.domain.exception.VersionConflictException;
@@ -218,6 +222,28 @@ public class GlobalExceptionHandler {
         return builder.body(errorResponse);
     }
 
+    /**
+     * Maneja {@link ServiceOverloadedException}: un pool acotado rechazo el
+     * trabajo. 503 con {@code Retry-After} para que el cliente reintente sin
+     * martillar.
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponseDTO> handleServiceOverloadedException(
+            ServiceOverloadedException ex,
+            HttpServletRequest request) {
+
+        ErrorResponseDTO errorResponse = new ErrorResponseDTO(
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                "Service Unavailable",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        errorResponse.setErrorCode(ex.getErrorCode());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     /**
      * Maneja el limite de tamanio del subsistema multipart de Spring. La
      * cota propia del use case de fotos (max-bytes) se valida despues y
@@ -372,6 +398,50 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
     }
 
+    /**
+     * Maneja {@link OptimisticLockingFailureException}: la fila cambio entre
+     * la lectura y el guardado (p. ej. un admin edita un documento de la KB
+     * mientras el worker de ingesta avanza su etapa). Devuelve 409 con
+     * {@code errorCode=VERSION_CONFLICT} para que el FE recargue y reintente.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponseDTO> handleOptimisticLockingFailureException(
+            OptimisticLockingFailureException ex,
+            HttpServletRequest request) {
+
+        ErrorResponseDTO errorResponse = new ErrorResponseDTO(
+                HttpStatus.CONFLICT.value(),
+                "Version Conflict",
+                "El recurso fue modificado por otra operación. Recargue e intente de nuevo.",
+                request.getRequestURI()
+        );
+        errorResponse.setErrorCode("VERSION_CONFLICT");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+
+    /**
+     * Maneja {@link RangeNotSatisfiableException}: una descarga parcial pidio
+     * bytes fuera del documento. Devuelve 416 con
+     * {@code errorCode=RANGE_NOT_SATISFIABLE} y {@code Content-Range} con el
+     * tamanio real, como pide RFC 9110.
+     */
+    @ExceptionHandler(RangeNotSatisfiableException.class)
+    public ResponseEntity<ErrorResponseDTO> handleRangeNotSatisfiableException(
+            RangeNotSatisfiableException ex,
+            HttpServletRequest request) {
+
+        ErrorResponseDTO errorResponse = new ErrorResponseDTO(
+                HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(),
+                "Range Not Satisfiable",
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+        errorResponse.setErrorCode(ex.getErrorCode());
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + ex.getTotalSize())
+                .body(errorResponse);
+    }
+
     /**
      * Maneja {@link ThemeInUseException}: se intento borrar un custom theme
      * que esta seteado como appearance activa. Devuelve 409 con
@@ -1,7 +1,9 @@
 package site.utnpf.odontolink.infrastructure.adapters.input.rest.mapper;
 
 import site.utnpf.odontolink.application.port.in.dto.ChatPollResult;
+import site.utnpf.odontolink.application.port.in.dto.ChatSearchResult;
 import site.utnpf.odontolink.application.port.in.dto.ChatSessionView;
+import site.utnpf.odontolink.application.port.in.dto.CursorPagedMessages;
 import site.utnpf.odontolink.application.port.in.dto.PagedMessages;
 import site.utnpf.odontolink.application.port.in.dto.ReadReceipt;
 import site.utnpf.odontolink.domain.model.ChatMessage;
@@ -9,7 +11,10 @@ import site.utnpf.odontolink.domain.model.ChatSession;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatMessageResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatPollResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatReadReceiptDTO;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatSearchHitResponseDTO;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatSearchResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ChatSessionResponseDTO;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.CursorChatMessagesResponseDTO;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.PagedChatMessagesResponseDTO;
 
 import java.util.List;
@@ -136,6 +141,33 @@ public class ChatRestMapper {
         );
     }
 
+    public static CursorChatMessagesResponseDTO toCursorChatMessagesResponseDTO(CursorPagedMessages page) {
+        if (page == null) {
+            return null;
+        }
+        List<ChatMessageResponseDTO> messages = page.getMessages().stream()
+                .map(ChatRestMapper::toChatMessageResponseDTO)
+                .collect(Collectors.toList());
+        return new CursorChatMessagesResponseDTO(
+                messages,
+                page.getSize(),
+                page.getNextCursor(),
+                page.hasMore(),
+                page.getTotalElements(),
+                page.getServerTime()
+        );
+    }
+
+    public static ChatSearchResponseDTO toChatSearchResponseDTO(ChatSearchResult result) {
+        if (result == null) {
+            return null;
+        }
+        List<ChatSearchHitResponseDTO> results = result.getHits().stream()
+                .map(hit -> new ChatSearchHitResponseDTO(toChatMessageResponseDTO(hit.getMessage()), hit.getScore()))
+                .collect(Collectors.toList());
+        return new ChatSearchResponseDTO(results, result.getPage(), result.getSize(), result.hasMore());
+    }
+
     public static ChatPollResponseDTO toChatPollResponseDTO(ChatPollResult result) {
         if (result == null) {
             return null;
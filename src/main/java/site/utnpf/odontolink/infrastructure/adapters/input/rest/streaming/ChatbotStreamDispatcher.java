@@ -0,0 +1,154 @@
+package site.utnpf.odontolink.infrastructure.adapters.input.rest.streaming;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import site.utnpf.odontolink.application.port.in.IChatbotInteractionUseCase;
+import site.utnpf.odontolink.application.port.in.dto.ChatbotMessageCommand;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.domain.exception.ResourceNotFoundException;
+import site.utnpf.odontolink.domain.exception.ServiceOverloadedException;
+import site.utnpf.odontolink.domain.model.ChatbotInteractionResult;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.dto.response.ErrorResponseDTO;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.async.ChatbotInvocationExecutor;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.mapper.ChatbotRestMapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ejecuta turnos del chatbot en streaming y los traduce a eventos SSE
+ * (RF29).
+ *
+ * <p>Eventos emitidos, en orden:
+ * <ul>
+ *   <li>{@code delta} ({@code {"text": "..."}}): cero o mas fragmentos de la
+ *       respuesta a medida que el proveedor los genera.</li>
+ *   <li>{@code result}: el mismo {@code ChatbotMessageResponseDTO} que
+ *       devuelve {@code POST /api/chatbot/messages}. Es la version
+ *       autoritativa: si hubo fallback o bloqueo PII, el FE reemplaza lo que
+ *       venia mostrando por {@code reply}.</li>
+ *   <li>{@code error}: en lugar de {@code result}, con un
+ *       {@link ErrorResponseDTO}. El status HTTP ya se envio (200) al abrir el
+ *       stream, asi que el codigo real viaja en el body.</li>
+ * </ul>
+ *
+ * <p>Cada stream ocupa un hilo de {@link ChatbotInvocationExecutor} mientras
+ * dura la generacion. Si el cliente corta la conexion, el turno sigue hasta
+ * el final para que la respuesta quede persistida en el rolling buffer.
+ */
+@Component
+public class ChatbotStreamDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotStreamDispatcher.class);
+
+    private final IChatbotInteractionUseCase chatbotUseCase;
+    private final ChatbotInvocationExecutor executor;
+
+    public ChatbotStreamDispatcher(IChatbotInteractionUseCase chatbotUseCase,
+                                   ChatbotInvocationExecutor executor) {
+        this.chatbotUseCase = chatbotUseCase;
+        this.executor = executor;
+    }
+
+    /**
+     * Abre el emitter y encola el turno. El comando ya debe traer resuelto el
+     * usuario autenticado: el SecurityContext no viaja al hilo del pool.
+     *
+     * <p>Si el pool esta saturado el stream no llega a abrirse: responde 503
+     * con {@code Retry-After} y un unico evento {@code error}.
+     */
+    public ResponseEntity<SseEmitter> dispatch(ChatbotMessageCommand cmd, String path) {
+        SseEmitter emitter = new SseEmitter(executor.getTimeoutMs());
+        StreamSink sink = new StreamSink(emitter);
+        emitter.onTimeout(sink::markGone);
+        emitter.onError(e -> sink.markGone());
+        try {
+            executor.submit(() -> run(cmd, sink, path));
+        } catch (ServiceOverloadedException ex) {
+            ErrorResponseDTO body = new ErrorResponseDTO(
+                    HttpStatus.SERVICE_UNAVAILABLE.value(), "Service Unavailable", ex.getMessage(), path);
+            body.setErrorCode(ex.getErrorCode());
+            sink.finish("error", body);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                    .body(emitter);
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private void run(ChatbotMessageCommand cmd, StreamSink sink, String path) {
+        try {
+            ChatbotInteractionResult result = chatbotUseCase.sendMessageStreaming(
+                    cmd, delta -> sink.send("delta", Map.of("text", delta)));
+            sink.finish("result", ChatbotRestMapper.toResponse(result));
+        } catch (RuntimeException ex) {
+            sink.finish("error", toError(ex, path));
+        }
+    }
+
+    /**
+     * Version reducida del mapeo de {@code GlobalExceptionHandler}: los
+     * errores que puede lanzar el turno antes de invocar al proveedor.
+     */
+    private static ErrorResponseDTO toError(RuntimeException ex, String path) {
+        ErrorResponseDTO body;
+        if (ex instanceof LlmProviderException llm) {
+            body = new ErrorResponseDTO(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                    "AI Service Unavailable", llm.getMessage(), path);
+            body.setErrorCode(llm.getErrorCode());
+        } else if (ex instanceof ResourceNotFoundException) {
+            body = new ErrorResponseDTO(HttpStatus.NOT_FOUND.value(),
+                    "Resource Not Found", ex.getMessage(), path);
+        } else {
+            String traceId = UUID.randomUUID().toString();
+            log.error("Error inesperado en stream del chatbot [traceId={}]", traceId, ex);
+            body = new ErrorResponseDTO(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "Internal Server Error", "Ocurrio un error inesperado.", path);
+            body.setTraceId(traceId);
+        }
+        return body;
+    }
+
+    /**
+     * Envoltura del emitter que nunca lanza: si el cliente se fue, los envios
+     * siguientes se descartan en silencio y el turno termina igual.
+     */
+    private static final class StreamSink {
+
+        private final SseEmitter emitter;
+        private volatile boolean gone;
+
+        private StreamSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void markGone() {
+            gone = true;
+        }
+
+        private void send(String event, Object data) {
+            if (gone) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException ex) {
+                gone = true;
+            }
+        }
+
+        private void finish(String event, Object data) {
+            send(event, data);
+            if (!gone) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limite adaptativo de invocaciones concurrentes al agente IA (algoritmo de
+ * gradiente, como {@code Gradient2Limit} de Netflix concurrency-limits).
+ *
+ * <p>Problema que resuelve: el circuit breaker solo reacciona despues de una
+ * ventana de fallas o slow-calls. Mientras el proveedor se degrada, todas
+ * las invocaciones que admite el pool siguen saliendo y cada una espera el
+ * read timeout. Aca el limite se recalcula con cada respuesta:
+ * <ul>
+ *   <li>Se mantienen dos promedios moviles del RTT: uno largo (la latencia
+ *       "normal" del agente) y uno corto (la actual).</li>
+ *   <li>{@code gradiente = largo / corto}, acotado a [0.5, 1]. Si la latencia
+ *       sube, el gradiente cae y el limite se achica; si se mantiene, el
+ *       limite crece de a {@code sqrt(limite)} hasta {@code max-limit}.</li>
+ *   <li>Un timeout, un 429 o un 5xx multiplican el limite por
+ *       {@value #BACKOFF_RATIO}.</li>
+ *   <li>Con menos de la mitad del limite en uso no se recalcula: sin carga
+ *       el RTT no dice nada sobre la capacidad.</li>
+ * </ul>
+ * Con el limite lleno, {@link #tryAcquire()} devuelve {@code null} en el
+ * acto y el caller responde el fallback sin esperar al proveedor. El circuit
+ * breaker queda como ultimo recurso para un proveedor caido del todo.
+ *
+ * <p>Metricas publicadas:
+ * <ul>
+ *   <li>{@code chatbot.provider.concurrency.limit}: limite vigente.</li>
+ *   <li>{@code chatbot.provider.concurrency.in_flight}: invocaciones en curso.</li>
+ *   <li>{@code chatbot.provider.concurrency.rejected}: invocaciones rechazadas
+ *       por limite lleno.</li>
+ * </ul>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    /** EMA de ~600 muestras para el RTT de referencia y de ~10 para el actual. */
+    private static final double LONG_RTT_ALPHA = 2.0 / 601;
+    private static final double SHORT_RTT_ALPHA = 2.0 / 11;
+    /**
+     * Si la referencia quedo muy por encima del RTT actual (el proveedor se
+     * recupero de una degradacion larga), se la acerca mas rapido.
+     */
+    private static final double LONG_RTT_DECAY = 0.95;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+
+    private volatile int limit;
+
+    // Guardados por this: se actualizan al terminar cada invocacion, que
+    // tarda segundos; la contencion es despreciable.
+    private double estimatedLimit;
+    private double longRttNanos;
+    private double shortRttNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, MeterRegistry meterRegistry) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Se requiere 1 <= min-limit <= max-limit.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        this.limit = (int) estimatedLimit;
+        Gauge.builder("chatbot.provider.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Limite adaptativo de invocaciones concurrentes al agente.")
+                .register(meterRegistry);
+        Gauge.builder("chatbot.provider.concurrency.in_flight", inFlight, AtomicInteger::get)
+                .description("Invocaciones al agente en curso.")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("chatbot.provider.concurrency.rejected")
+                .description("Invocaciones rechazadas por el limite de concurrencia.")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserva un lugar si el limite lo permite.
+     *
+     * @return el permiso a liberar al terminar, o {@code null} si el limite
+     *         esta lleno
+     */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit();
+            }
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtRelease) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+            return;
+        }
+        shortRttNanos += SHORT_RTT_ALPHA * (rttNanos - shortRttNanos);
+        longRttNanos += LONG_RTT_ALPHA * (rttNanos - longRttNanos);
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= LONG_RTT_DECAY;
+        }
+        if (inFlightAtRelease < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, longRttNanos / shortRttNanos));
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        update(estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING);
+    }
+
+    synchronized void onDrop() {
+        update(estimatedLimit * BACKOFF_RATIO);
+    }
+
+    private void update(double newLimit) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Lugar reservado para una invocacion. Se cierra una sola vez: el primer
+     * {@link #success}, {@link #dropped} o {@link #release} libera el lugar y
+     * los siguientes no hacen nada, asi el caller puede liberar en un
+     * {@code finally} sin contar dos veces.
+     */
+    public final class Permit {
+
+        private final long startedAt = System.nanoTime();
+        private boolean released;
+
+        private Permit() {
+        }
+
+        /** El proveedor respondio: el RTT entra al calculo del limite. */
+        public void success() {
+            int inFlightBefore = close();
+            if (inFlightBefore > 0) {
+                onSample(System.nanoTime() - startedAt, inFlightBefore);
+            }
+        }
+
+        /** Timeout o rechazo por carga del proveedor: el limite retrocede. */
+        public void dropped() {
+            if (close() > 0) {
+                onDrop();
+            }
+        }
+
+        /** Termino sin informacion sobre la carga (p. ej. un 4xx). */
+        public void release() {
+            close();
+        }
+
+        /** @return invocaciones en curso antes de liberar, o -1 si ya estaba liberado */
+        private int close() {
+            if (released) {
+                return -1;
+            }
+            released = true;
+            return inFlight.getAndDecrement();
+        }
+    }
+}
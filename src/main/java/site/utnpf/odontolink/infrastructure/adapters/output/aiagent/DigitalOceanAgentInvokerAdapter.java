@@ -1,23 +1,31 @@
 package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
 
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.client.ResourceAccessException;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort;
+import site.utnpf.odontolink.domain.exception.LlmConcurrencyLimitException;
 import site.utnpf.odontolink.domain.exception.LlmProviderException;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoChatCompletionChunk;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoChatCompletionRequest;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoChatCompletionResponse;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoChoice;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoMessage;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoRetrievalBlock;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoRetrievalDocument;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoUsage;
 
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Adaptador de invocacion del agente IA (chat completions) contra DigitalOcean
@@ -42,7 +50,9 @@ import java.util.List;
  *       cuando se usa {@code agent=true}: el modelo lo provee el agente
  *       deployado. Soportamos override por property por si en algun entorno
  *       se necesita forzar uno.</li>
- *   <li>{@code stream:false} para modo sincronico (default nuestro).</li>
+ *   <li>{@code stream:false} para modo sincronico (default nuestro);
+ *       {@code stream:true} en {@link #invokeStreaming}, que consume los
+ *       chunks SSE a medida que llegan.</li>
  * </ul>
  *
  * <p>La resiliencia se modela con Resilience4j:
@@ -54,6 +64,11 @@ import java.util.List;
  *   <li>{@code @Retry(name="doAgentInvoke")}: reintenta excepciones de red
  *       transitorias (SocketTimeoutException, etc.) un par de veces con
  *       backoff antes de declararse fallido.</li>
+ *   <li>{@link AdaptiveConcurrencyLimiter} (sin anotacion, dentro de
+ *       {@link #invoke}): acota las invocaciones sincronicas en curso segun
+ *       la latencia reciente del agente. Con el limite lleno falla en el acto
+ *       con {@link LlmConcurrencyLimitException}, que el circuit breaker
+ *       ignora y el use case convierte en el fallback.</li>
  *   <li>NO usamos {@code @TimeLimiter} porque solo funciona con metodos
  *       async (CompletableFuture/reactive) y nuestro RestClient es sincronico.
  *       Los timeouts del HTTP los pone el {@code RestClient} subyacente
@@ -63,6 +78,17 @@ import java.util.List;
  * <p>El metodo de fallback DEBE estar en la misma clase y tener la misma
  * firma + un parametro {@code Throwable} al final. Lo usa Resilience4j cuando
  * el circuito esta abierto o cuando se agotaron los retries.
+ *
+ * <p>Metricas publicadas:
+ * <ul>
+ *   <li>{@code chatbot.provider.invoke}: duracion de cada intento (un
+ *       {@code @Retry} son varios), con histograma; tags {@code mode}
+ *       (sync/stream) y {@code outcome} (ok/error/timeout).</li>
+ *   <li>{@code chatbot.provider.circuit_open}: invocaciones cortadas por el
+ *       circuito abierto, sin llegar al proveedor; tag {@code mode}.</li>
+ *   <li>{@code chatbot.provider.tokens}: tokens reportados en {@code usage};
+ *       tag {@code type} (prompt/completion).</li>
+ * </ul>
  */
 public class DigitalOceanAgentInvokerAdapter implements ILlmAgentInvokerPort {
 
@@ -72,6 +98,11 @@ public class DigitalOceanAgentInvokerAdapter implements ILlmAgentInvokerPort {
     private static final String AGENT_FLAG = "agent=true";
 
     private final DigitalOceanGradientClient invocationClient;
+    /**
+     * Cliente de {@link #invokeStreaming}: sin timeout total, con limite de
+     * silencio entre chunks.
+     */
+    private final DigitalOceanGradientClient streamClient;
     /**
      * Cliente dedicado al probe con read-timeout mas corto que el normal:
      * el {@code /health} no puede colgar 20s cuando el agente esta caido.
@@ -82,13 +113,33 @@ public class DigitalOceanAgentInvokerAdapter implements ILlmAgentInvokerPort {
      * body y el agente usa el modelo configurado en su dashboard.
      */
     private final String modelOverride;
+    private final InvokeMeters syncMeters;
+    private final InvokeMeters streamMeters;
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
 
     public DigitalOceanAgentInvokerAdapter(DigitalOceanGradientClient invocationClient,
+                                           DigitalOceanGradientClient streamClient,
                                            DigitalOceanGradientClient probeClient,
-                                           String modelOverride) {
+                                           String modelOverride,
+                                           MeterRegistry meterRegistry,
+                                           AdaptiveConcurrencyLimiter concurrencyLimiter) {
         this.invocationClient = invocationClient;
+        this.streamClient = streamClient;
         this.probeClient = probeClient;
         this.modelOverride = modelOverride;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.syncMeters = new InvokeMeters(meterRegistry, "sync");
+        this.streamMeters = new InvokeMeters(meterRegistry, "stream");
+        this.promptTokens = Counter.builder("chatbot.provider.tokens")
+                .description("Tokens de prompt reportados por el agente.")
+                .tag("type", "prompt")
+                .register(meterRegistry);
+        this.completionTokens = Counter.builder("chatbot.provider.tokens")
+                .description("Tokens de completion reportados por el agente.")
+                .tag("type", "completion")
+                .register(meterRegistry);
     }
 
     @Override
@@ -105,7 +156,18 @@ public class DigitalOceanAgentInvokerAdapter implements ILlmAgentInvokerPort {
             wire.add(new DoMessage(m.role(), m.content()));
         }
         DoChatCompletionRequest body = buildRequest(wire);
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            log.warn("Invocacion al agente DO rechazada por el limite de concurrencia (limit={})",
+                    concurrencyLimiter.getLimit());
+            throw new LlmConcurrencyLimitException(
+                    "Limite de invocaciones concurrentes al agente IA alcanzado.",
+                    AiAgentErrorCodes.AI_PROVIDER_CONCURRENCY_LIMITED);
+        }
         long startedAt = System.currentTimeMillis();
+        Timer.Sample sample = Timer.start();
+        // Cualquier excepcion no prevista (parseo, framework) cuenta como error.
+        Timer outcome = syncMeters.error;
         // INFO en cada invocacion: ayuda a correlacionar la request del FE con
         // la llamada externa cuando algo no anda. No incluye contenido del
         // mensaje (privacidad) ni el bearer (seguridad); solo metadata.
@@ -121,9 +183,15 @@ public class DigitalOceanAgentInvokerAdapter implements ILlmAgentInvokerPort {
                     ? 0 : response.retrieval().retrievedData().size();
             log.info("Respuesta agente DO: latencyMs={}, choices={}, retrieved={}",
                     elapsed, choices, retrieved);
+            outcome = syncMeters.ok;
+            permit.success();
+            recordUsage(response == null ? null : response.usage());
             return toResult(response);
         } catch (LlmProviderException ex) {
             long elapsed = System.currentTimeMillis() - startedAt;
+            if (isOverloadSignal(ex.getStatusCode())) {
+                permit.dropped();
+            }
             log.warn("Falla invocando agente DO: latencyMs={}, code={}, message={}",
                     elapsed, ex.getErrorCode(), ex.getMessage());
             throw ex;
@@ -133,32 +201,127 @@ public class DigitalOceanAgentInvokerAdapter implements ILlmAgentInvokerPort {
             // 4xx/5xx del proveedor para que el operador distinga rapido entre
             // "DO me rechazo" vs "DO no respondio a tiempo".
             long elapsed = System.currentTimeMillis() - startedAt;
+            outcome = syncMeters.timeout;
+            permit.dropped();
             log.warn("Timeout/red invocando agente DO: latencyMs={}, cause={}: {}",
                     elapsed, ex.getCause() == null ? "?" : ex.getCause().getClass().getSimpleName(),
                     ex.getMessage());
             throw new LlmProviderException(
                     "Timeout o falla de red invocando al agente IA.",
                     null, AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE, ex);
+        } finally {
+            sample.stop(outcome);
+            permit.release();
+        }
+    }
+
+    /**
+     * Respuestas que indican un proveedor sobrecargado: sin status (red o
+     * timeout), 429 o 5xx. Un 4xx de configuracion no mueve el limite.
+     */
+    static boolean isOverloadSignal(Integer statusCode) {
+        return statusCode == null || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * Invocacion con {@code stream=true}: reenvia cada {@code delta.content} a
+     * {@code onDelta} y ensambla el resultado al cerrar el stream.
+     *
+     * <p>Circuit breaker propio ({@code doAgentInvokeStream}): un stream dura
+     * lo que tarda la generacion completa, asi que el umbral de slow-call de
+     * {@code doAgentInvoke} lo contaria como falla. NO lleva {@code @Retry}:
+     * reintentar despues de haber emitido fragmentos duplicaria texto en el
+     * browser.
+     */
+    @Override
+    @CircuitBreaker(name = "doAgentInvokeStream", fallbackMethod = "invokeStreamingFallback")
+    public AgentInvocationResult invokeStreaming(String agentInvocationUrl,
+                                                 List<ChatMessage> messages,
+                                                 Consumer<String> onDelta) {
+        if (agentInvocationUrl == null || agentInvocationUrl.isBlank()) {
+            throw new LlmProviderException(
+                    "URL del agente vacia.", null, AiAgentErrorCodes.AI_AGENT_INVOCATION_URL_UNAVAILABLE);
+        }
+        String fullUrl = buildCompletionsUrl(agentInvocationUrl);
+        List<DoMessage> wire = new ArrayList<>(messages.size());
+        for (ChatMessage m : messages) {
+            wire.add(new DoMessage(m.role(), m.content()));
+        }
+        String model = (modelOverride == null || modelOverride.isBlank()) ? null : modelOverride;
+        DoChatCompletionRequest body = DoChatCompletionRequest.streamingWithRetrievalInfo(wire, model);
+
+        StreamAssembler assembler = new StreamAssembler(onDelta);
+        long startedAt = System.currentTimeMillis();
+        Timer.Sample sample = Timer.start();
+        Timer outcome = streamMeters.error;
+        log.info("Invocando agente DO (stream): url={}, turns={}", fullUrl, wire.size());
+        try {
+            streamClient.postAbsoluteStream(fullUrl, body, DoChatCompletionChunk.class, assembler::accept);
+            log.info("Stream agente DO completo: latencyMs={}, chunks={}, firstChunkMs={}",
+                    System.currentTimeMillis() - startedAt, assembler.chunks, assembler.firstChunkMs(startedAt));
+            outcome = streamMeters.ok;
+            recordUsage(assembler.usage);
+            return assembler.toResult();
+        } catch (LlmProviderException ex) {
+            log.warn("Falla en stream del agente DO: latencyMs={}, chunks={}, code={}, message={}",
+                    System.currentTimeMillis() - startedAt, assembler.chunks, ex.getErrorCode(), ex.getMessage());
+            throw ex;
+        } catch (ResourceAccessException ex) {
+            outcome = streamMeters.timeout;
+            log.warn("Timeout/red en stream del agente DO: latencyMs={}, chunks={}, cause={}: {}",
+                    System.currentTimeMillis() - startedAt, assembler.chunks,
+                    ex.getCause() == null ? "?" : ex.getCause().getClass().getSimpleName(), ex.getMessage());
+            throw new LlmProviderException(
+                    "Timeout o falla de red durante el streaming del agente IA.",
+                    null, AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE, ex);
+        } finally {
+            sample.stop(outcome);
         }
     }
 
+    /** Fallback de {@link #invokeStreaming}; mismo criterio que {@link #invokeFallback}. */
+    @SuppressWarnings("unused") // referenciado por @CircuitBreaker
+    public AgentInvocationResult invokeStreamingFallback(String agentInvocationUrl,
+                                                         List<ChatMessage> messages,
+                                                         Consumer<String> onDelta,
+                                                         Throwable cause) {
+        return fallback(streamMeters, agentInvocationUrl, messages, cause);
+    }
+
     /**
      * Fallback invocado por Resilience4j cuando el circuito esta abierto o se
      * agotaron los retries. Re-lanza {@link LlmProviderException} para que el
      * use case lo capture y arme la respuesta fallback amigable. NO devolvemos
      * un AgentInvocationResult vacio porque el use case ya tiene logica
      * dedicada para fallback y queremos un unico camino de codigo.
+     *
+     * <p>Con el circuito abierto el codigo es
+     * {@link AiAgentErrorCodes#AI_PROVIDER_CIRCUIT_OPEN}: el use case lo
+     * distingue en sus metricas de un proveedor que fallo de verdad.
      */
     @SuppressWarnings("unused") // referenciado por @CircuitBreaker
     public AgentInvocationResult invokeFallback(String agentInvocationUrl,
                                                 List<ChatMessage> messages,
                                                 Throwable cause) {
+        return fallback(syncMeters, agentInvocationUrl, messages, cause);
+    }
+
+    private AgentInvocationResult fallback(InvokeMeters meters,
+                                           String agentInvocationUrl,
+                                           List<ChatMessage> messages,
+                                           Throwable cause) {
         log.warn("Fallback de Resilience4j en invocacion del agente (url={}, msgs={}): {} ({})",
                 agentInvocationUrl, messages == null ? 0 : messages.size(),
                 cause.getMessage(), cause.getClass().getSimpleName());
         if (cause instanceof LlmProviderException llmEx) {
             throw llmEx;
         }
+        if (cause instanceof CallNotPermittedException) {
+            meters.circuitOpen.increment();
+            throw new LlmProviderException(
+                    "Servicio de IA no disponible (circuito abierto).", null,
+                    AiAgentErrorCodes.AI_PROVIDER_CIRCUIT_OPEN, cause);
+        }
         throw new LlmProviderException(
                 "Servicio de IA no disponible.", null,
                 AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE, cause);
@@ -238,8 +401,25 @@ public class DigitalOceanAgentInvokerAdapter implements ILlmAgentInvokerPort {
         }
         DoChoice first = response.choices().get(0);
         String reply = first.message() == null ? "" : first.message().content();
+        int totalTokens = response.usage() != null && response.usage().totalTokens() != null
+                ? response.usage().totalTokens() : 0;
+        return new AgentInvocationResult(reply, toRetrievalDocuments(response.retrieval()), totalTokens);
+    }
+
+    private void recordUsage(DoUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.promptTokens() != null) {
+            promptTokens.increment(usage.promptTokens());
+        }
+        if (usage.completionTokens() != null) {
+            completionTokens.increment(usage.completionTokens());
+        }
+    }
+
+    private static List<RetrievalDocument> toRetrievalDocuments(DoRetrievalBlock retrieval) {
         List<RetrievalDocument> docs = new ArrayList<>();
-        DoRetrievalBlock retrieval = response.retrieval();
         if (retrieval != null && retrieval.retrievedData() != null) {
             for (DoRetrievalDocument d : retrieval.retrievedData()) {
                 if (d == null) {
@@ -249,8 +429,79 @@ public class DigitalOceanAgentInvokerAdapter implements ILlmAgentInvokerPort {
                 docs.add(new RetrievalDocument(d.dataSourceUuid(), score));
             }
         }
-        int totalTokens = response.usage() != null && response.usage().totalTokens() != null
-                ? response.usage().totalTokens() : 0;
-        return new AgentInvocationResult(reply, docs, totalTokens);
+        return docs;
+    }
+
+    /**
+     * Acumula los chunks de un stream: reenvia cada fragmento y conserva el
+     * ultimo {@code retrieval}/{@code usage} recibido para el resultado final.
+     */
+    private static final class StreamAssembler {
+
+        private final Consumer<String> onDelta;
+        private final StringBuilder reply = new StringBuilder();
+        private DoRetrievalBlock retrieval;
+        private DoUsage usage;
+        private int chunks;
+        private long firstChunkAt;
+
+        private StreamAssembler(Consumer<String> onDelta) {
+            this.onDelta = onDelta;
+        }
+
+        private void accept(DoChatCompletionChunk chunk) {
+            chunks++;
+            String delta = chunk.deltaContent();
+            if (delta != null && !delta.isEmpty()) {
+                if (firstChunkAt == 0) {
+                    firstChunkAt = System.currentTimeMillis();
+                }
+                reply.append(delta);
+                onDelta.accept(delta);
+            }
+            if (chunk.retrieval() != null) {
+                retrieval = chunk.retrieval();
+            }
+            if (chunk.usage() != null) {
+                usage = chunk.usage();
+            }
+        }
+
+        private long firstChunkMs(long startedAt) {
+            return firstChunkAt == 0 ? -1 : firstChunkAt - startedAt;
+        }
+
+        private AgentInvocationResult toResult() {
+            int totalTokens = usage != null && usage.totalTokens() != null ? usage.totalTokens() : 0;
+            return new AgentInvocationResult(reply.toString(), toRetrievalDocuments(retrieval), totalTokens);
+        }
+    }
+
+    /** Timers por outcome y contador de circuito abierto de un modo de invocacion. */
+    private static final class InvokeMeters {
+
+        private final Timer ok;
+        private final Timer error;
+        private final Timer timeout;
+        private final Counter circuitOpen;
+
+        private InvokeMeters(MeterRegistry registry, String mode) {
+            this.ok = timer(registry, mode, "ok");
+            this.error = timer(registry, mode, "error");
+            this.timeout = timer(registry, mode, "timeout");
+            this.circuitOpen = Counter.builder("chatbot.provider.circuit_open")
+                    .description("Invocaciones rechazadas por el circuit breaker abierto.")
+                    .tag("mode", mode)
+                    .register(registry);
+        }
+
+        private static Timer timer(MeterRegistry registry, String mode, String outcome) {
+            return Timer.builder("chatbot.provider.invoke")
+                    .description("Duracion de cada intento de invocacion al agente.")
+                    .tag("mode", mode)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
     }
 }
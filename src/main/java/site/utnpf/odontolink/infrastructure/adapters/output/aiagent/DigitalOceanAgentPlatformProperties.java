@@ -84,6 +84,9 @@ public class DigitalOceanAgentPlatformProperties {
     /** Subgrupo de propiedades del bucket Spaces dedicado a la KB. */
     private Storage storage = new Storage();
 
+    /** Subgrupo del cliente HTTP compartido por los RestClient de DO. */
+    private Http http = new Http();
+
     public String getEndpointBaseUrl() {
         return endpointBaseUrl;
     }
@@ -180,6 +183,14 @@ public class DigitalOceanAgentPlatformProperties {
         this.storage = storage;
     }
 
+    public Http getHttp() {
+        return http;
+    }
+
+    public void setHttp(Http http) {
+        this.http = http;
+    }
+
     /**
      * Configuracion del bucket S3-compatible (Spaces) dedicado a la KB.
      * Vive separado del bucket de fotos de perfil ({@code storage.s3.*}) para
@@ -196,6 +207,11 @@ public class DigitalOceanAgentPlatformProperties {
         private String publicBaseUrl = "";
         private boolean pathStyle = false;
         private String keyPrefix = "ai-knowledge-base";
+        /**
+         * Tamanio de parte de las subidas por stream: los archivos mas
+         * grandes van como multipart upload. Minimo 5 MiB (limite de S3).
+         */
+        private int partSizeBytes = 5 * 1024 * 1024;
 
         public String getEndpoint() {
             return endpoint;
@@ -260,5 +276,56 @@ public class DigitalOceanAgentPlatformProperties {
         public void setKeyPrefix(String keyPrefix) {
             this.keyPrefix = keyPrefix;
         }
+
+        public int getPartSizeBytes() {
+            return partSizeBytes;
+        }
+
+        public void setPartSizeBytes(int partSizeBytes) {
+            this.partSizeBytes = partSizeBytes;
+        }
+    }
+
+    /**
+     * Cliente HTTP de las llamadas a DO. Con {@code pooled=true} (default) los
+     * tres RestClient comparten un {@link java.net.http.HttpClient} con
+     * keep-alive y HTTP/2 (ALPN; cae a HTTP/1.1 si el server no lo negocia),
+     * asi una invocacion del chatbot reutiliza la conexion TLS en lugar de
+     * pagar el handshake. Con {@code pooled=false} se vuelve a
+     * {@code HttpURLConnection}.
+     *
+     * <p>El pool del cliente JDK se configura con system properties globales
+     * que se leen una sola vez por JVM ({@code jdk.httpclient.connectionPoolSize}
+     * y {@code jdk.httpclient.keepalive.timeout}); van como flags de arranque
+     * en el Dockerfile, no como properties de la app. No hay limite por ruta:
+     * con HTTP/2 todas las llamadas a un host se multiplexan sobre una conexion.
+     *
+     * <p>Diferencia con {@code HttpURLConnection}: en el cliente pooled el
+     * {@code readTimeoutMs} acota el intercambio completo. Por eso el
+     * streaming usa un RestClient propio sin timeout total, y
+     * {@code readTimeoutMs} pasa a ser el silencio maximo entre chunks.
+     */
+    public static class Http {
+
+        private boolean pooled = true;
+
+        /** {@code HTTP_2} o {@code HTTP_1_1}. */
+        private String version = "HTTP_2";
+
+        public boolean isPooled() {
+            return pooled;
+        }
+
+        public void setPooled(boolean pooled) {
+            this.pooled = pooled;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
     }
 }
@@ -1,5 +1,7 @@
 package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
@@ -11,8 +13,13 @@ import org.springframework.web.client.RestClient;
 import site.utnpf.odontolink.domain.exception.LlmProviderException;
 import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.function.Consumer;
 
 /**
  * Cliente HTTP centralizado para llamadas a DigitalOcean Gradient AI.
@@ -43,13 +50,28 @@ public class DigitalOceanGradientClient {
 
     private static final Logger log = LoggerFactory.getLogger(DigitalOceanGradientClient.class);
     private static final int MAX_ERROR_BODY_CHARS = 500;
+    private static final String SSE_DATA_PREFIX = "data:";
+    private static final String SSE_DONE = "[DONE]";
+    /** Solo deserializa chunks de streaming; los DTOs ignoran campos desconocidos. */
+    private static final ObjectMapper STREAM_MAPPER = new ObjectMapper();
 
     private final RestClient restClient;
     private final String clientLabel;
+    /**
+     * Silencio maximo entre lecturas de {@link #postAbsoluteStream}; null deja
+     * el limite al request factory (p.ej. el read timeout por socket de
+     * {@code HttpURLConnection}).
+     */
+    private final Duration streamIdleTimeout;
 
     public DigitalOceanGradientClient(RestClient restClient, String clientLabel) {
+        this(restClient, clientLabel, null);
+    }
+
+    public DigitalOceanGradientClient(RestClient restClient, String clientLabel, Duration streamIdleTimeout) {
         this.restClient = restClient;
         this.clientLabel = clientLabel;
+        this.streamIdleTimeout = streamIdleTimeout;
     }
 
     public <R> R get(String path, Class<R> responseType) {
@@ -115,6 +137,65 @@ public class DigitalOceanGradientClient {
                 .body(responseType);
     }
 
+    /**
+     * POST a una URL absoluta que responde {@code text/event-stream}. Cada
+     * linea {@code data:} se deserializa a {@code eventType} y se entrega a
+     * {@code onEvent} a medida que llega, sin esperar al final del body. Corta
+     * en {@code data: [DONE]} o al cerrarse el stream.
+     *
+     * <p>El RestClient de streaming no tiene timeout total (una generacion
+     * larga es legitima); con {@code streamIdleTimeout} el limite es el
+     * silencio entre lecturas ({@link IdleTimeoutInputStream}).
+     *
+     * <p>Errores 4xx/5xx se traducen igual que en {@link #postAbsolute}. Las
+     * fallas de red a mitad del stream llegan como
+     * {@link org.springframework.web.client.ResourceAccessException}.
+     */
+    public <R> void postAbsoluteStream(String absoluteUrl, Object body, Class<R> eventType, Consumer<R> onEvent) {
+        restClient.post()
+                .uri(java.net.URI.create(absoluteUrl))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .body(body)
+                .exchange((request, response) -> {
+                    if (response.getStatusCode().isError()) {
+                        translateError(request, response);
+                    }
+                    InputStream stream = streamIdleTimeout == null
+                            ? response.getBody()
+                            : new IdleTimeoutInputStream(response.getBody(), streamIdleTimeout.toMillis());
+                    try (BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (!line.startsWith(SSE_DATA_PREFIX)) {
+                                continue;
+                            }
+                            String data = line.substring(SSE_DATA_PREFIX.length()).trim();
+                            if (SSE_DONE.equals(data)) {
+                                break;
+                            }
+                            if (!data.isEmpty()) {
+                                onEvent.accept(parseEvent(data, eventType));
+                            }
+                        }
+                    }
+                    return null;
+                });
+    }
+
+    private <R> R parseEvent(String data, Class<R> eventType) {
+        try {
+            return STREAM_MAPPER.readValue(data, eventType);
+        } catch (JsonProcessingException e) {
+            log.warn("DigitalOcean Gradient [{}] envio un chunk SSE ilegible ({} chars).",
+                    clientLabel, data.length());
+            throw new LlmProviderException(
+                    "El proveedor de IA [" + clientLabel + "] envio un chunk de streaming invalido.",
+                    null, AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE, e);
+        }
+    }
+
     /**
      * Traduce cualquier respuesta 4xx/5xx del proveedor en una
      * {@link LlmProviderException} tipada. Es invocado por el contrato
@@ -0,0 +1,81 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
+
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * Fabrica del stack HTTP de los RestClient de DigitalOcean (RF29/RF31).
+ *
+ * <p>Antes cada RestClient usaba {@link SimpleClientHttpRequestFactory}
+ * ({@code HttpURLConnection}), con un cache de conexiones chico y solo
+ * HTTP/1.1: bajo carga muchas invocaciones pagaban un handshake TLS nuevo.
+ * Ahora los RestClient comparten un {@link HttpClient} del JDK (ver
+ * {@link DigitalOceanAgentPlatformProperties.Http}).
+ *
+ * <p>El tamano del pool y el keep-alive del cliente JDK son system properties
+ * globales que se leen una vez por JVM; no se fijan desde aca para no pisar
+ * otros {@link HttpClient} del proceso. Se pasan como flags de arranque
+ * ({@code -Djdk.httpclient.connectionPoolSize=20
+ * -Djdk.httpclient.keepalive.timeout=30}, ver Dockerfile).
+ */
+public final class DigitalOceanHttpClients {
+
+    private DigitalOceanHttpClients() {
+    }
+
+    /** Cliente compartido por los RestClient de DO. */
+    public static HttpClient create(DigitalOceanAgentPlatformProperties props) {
+        DigitalOceanAgentPlatformProperties.Http http = props.getHttp();
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.valueOf(http.getVersion()))
+                .connectTimeout(Duration.ofMillis(props.getConnectTimeoutMs()))
+                // Mismo comportamiento que HttpURLConnection ante redirects.
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Request factory para un RestClient con el {@code readTimeoutMs} dado.
+     * Con {@code pooled=false} ignora {@code sharedClient}.
+     *
+     * <p>En el cliente pooled el {@code readTimeoutMs} acota el intercambio
+     * completo; para respuestas en streaming usar
+     * {@link #streamingRequestFactory}.
+     */
+    public static ClientHttpRequestFactory requestFactory(HttpClient sharedClient,
+                                                          DigitalOceanAgentPlatformProperties props,
+                                                          int readTimeoutMs) {
+        if (props.getHttp().isPooled()) {
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(sharedClient);
+            factory.setReadTimeout(readTimeoutMs);
+            return factory;
+        }
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(props.getConnectTimeoutMs());
+        factory.setReadTimeout(readTimeoutMs);
+        return factory;
+    }
+
+    /**
+     * Request factory para respuestas en streaming: sin timeout total, porque
+     * la duracion depende de lo que tarde la generacion. En el cliente pooled
+     * el silencio entre chunks lo acota {@link DigitalOceanGradientClient}
+     * ({@code streamIdleTimeout}); con {@code pooled=false} el read timeout de
+     * {@code HttpURLConnection} ya es por lectura y cumple ese rol.
+     */
+    public static ClientHttpRequestFactory streamingRequestFactory(HttpClient sharedClient,
+                                                                   DigitalOceanAgentPlatformProperties props,
+                                                                   int idleTimeoutMs) {
+        if (props.getHttp().isPooled()) {
+            return new JdkClientHttpRequestFactory(sharedClient);
+        }
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(props.getConnectTimeoutMs());
+        factory.setReadTimeout(idleTimeoutMs);
+        return factory;
+    }
+}
@@ -0,0 +1,93 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Body de una respuesta en streaming con limite de silencio entre lecturas.
+ *
+ * <p>El {@code readTimeout} de {@code JdkClientHttpRequestFactory} acota el
+ * intercambio completo, no el tiempo entre chunks: un stream SSE largo pero
+ * sano se cortaria a mitad de la generacion. Este wrapper arma un watchdog
+ * antes de cada {@code read} y lo desarma al volver; si vence, cierra el
+ * stream (desbloquea la lectura) y la lectura falla con
+ * {@link SocketTimeoutException}, que el RestClient envuelve en
+ * {@code ResourceAccessException} como cualquier otro timeout.
+ */
+final class IdleTimeoutInputStream extends FilterInputStream {
+
+    /** Un solo hilo alcanza: las tareas solo cierran streams colgados. */
+    private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
+
+    private final long idleTimeoutMs;
+    private volatile boolean expired;
+
+    IdleTimeoutInputStream(InputStream in, long idleTimeoutMs) {
+        super(in);
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return guarded(() -> super.read());
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return guarded(() -> super.read(b, off, len));
+    }
+
+    private int guarded(Read read) throws IOException {
+        ScheduledFuture<?> timer = WATCHDOG.schedule(this::expire, idleTimeoutMs, TimeUnit.MILLISECONDS);
+        try {
+            int n = read.read();
+            if (expired) {
+                throw timeout();
+            }
+            return n;
+        } catch (IOException ex) {
+            if (expired && !(ex instanceof SocketTimeoutException)) {
+                SocketTimeoutException timeout = timeout();
+                timeout.initCause(ex);
+                throw timeout;
+            }
+            throw ex;
+        } finally {
+            timer.cancel(false);
+        }
+    }
+
+    private void expire() {
+        expired = true;
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // La lectura bloqueada reporta el timeout; el close es best-effort.
+        }
+    }
+
+    private SocketTimeoutException timeout() {
+        return new SocketTimeoutException("Sin datos del stream durante " + idleTimeoutMs + " ms");
+    }
+
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "do-stream-idle-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        // Casi todos los timers se cancelan: sin esto quedan en la cola hasta vencer.
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    @FunctionalInterface
+    private interface Read {
+        int read() throws IOException;
+    }
+}
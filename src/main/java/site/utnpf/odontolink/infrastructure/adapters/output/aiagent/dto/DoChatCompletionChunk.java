@@ -0,0 +1,31 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Evento {@code data:} de chat completions con {@code stream=true}. Mismo
+ * wire format que OpenAI: cada chunk trae un fragmento en
+ * {@code choices[0].delta.content}; {@code usage} y el bloque
+ * {@code retrieval} de DO Gradient llegan en algun chunk (normalmente el
+ * ultimo) y se conservan al ensamblar.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record DoChatCompletionChunk(
+        @JsonProperty("id") String id,
+        @JsonProperty("choices") List<DoDeltaChoice> choices,
+        @JsonProperty("usage") DoUsage usage,
+        @JsonProperty("retrieval") DoRetrievalBlock retrieval
+) {
+
+    /** Fragmento de texto del chunk, o {@code null} si no trae contenido. */
+    public String deltaContent() {
+        if (choices == null || choices.isEmpty() || choices.get(0) == null
+                || choices.get(0).delta() == null) {
+            return null;
+        }
+        return choices.get(0).delta().content();
+    }
+}
@@ -11,7 +11,8 @@ import java.util.List;
  *
  * <p>El wire format es deliberadamente igual al de OpenAI chat completions
  * porque DO lo expone bajo el mismo contrato. {@code stream:false} fija el
- * modo sincronico que nuestro adapter usa con RestClient blocking.
+ * modo sincronico que nuestro adapter usa con RestClient blocking;
+ * {@code stream:true} lo usa la variante SSE del chatbot.
  *
  * <p>{@code model} es opcional: cuando se llama al endpoint del agente con
  * {@code ?agent=true} el modelo lo provee el agente deployado en DO. Lo
@@ -42,4 +43,9 @@ public record DoChatCompletionRequest(
     public static DoChatCompletionRequest withRetrievalInfo(List<DoMessage> messages, String model) {
         return new DoChatCompletionRequest(messages, false, model, true);
     }
+
+    /** Igual que {@link #withRetrievalInfo} pero pidiendo la respuesta en chunks SSE. */
+    public static DoChatCompletionRequest streamingWithRetrievalInfo(List<DoMessage> messages, String model) {
+        return new DoChatCompletionRequest(messages, true, model, true);
+    }
 }
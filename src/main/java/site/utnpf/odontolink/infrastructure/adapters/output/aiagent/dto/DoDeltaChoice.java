@@ -0,0 +1,17 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Elemento del array {@code choices[]} de un chunk en streaming. A
+ * diferencia de {@link DoChoice}, el texto llega en {@code delta} y solo
+ * contiene el fragmento nuevo.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record DoDeltaChoice(
+        @JsonProperty("index") Integer index,
+        @JsonProperty("delta") DoMessage delta,
+        @JsonProperty("finish_reason") String finishReason
+) {
+}
@@ -0,0 +1,231 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent.stub;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort;
+import site.utnpf.odontolink.domain.exception.LlmConcurrencyLimitException;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.AdaptiveConcurrencyLimiter;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Agente local que reemplaza a DigitalOcean Gradient en pruebas de carga
+ * (perfil {@code llm-stub}). No sale a la red ni consume tokens.
+ *
+ * <p>Lo que simula:
+ * <ul>
+ *   <li>Respuestas canned deterministicas: el mismo ultimo mensaje del
+ *       usuario produce siempre el mismo reply y los mismos chunks RAG (con
+ *       scores en la escala cruda observada en el PoC, [0.69, 12.87]).</li>
+ *   <li>Latencia log-normal configurable (mediana y p99).</li>
+ *   <li>Fallas inyectadas por probabilidad: timeout (espera
+ *       {@code timeout-ms} y falla), 5xx y respuesta sin choices.</li>
+ * </ul>
+ * Lleva los mismos {@code @CircuitBreaker}/{@code @Retry} y el mismo
+ * {@link AdaptiveConcurrencyLimiter} que el adapter real, asi una prueba de
+ * carga ejercita el circuito y el limite con su configuracion de
+ * produccion. Las fallas se lanzan igual que en el adapter real
+ * ({@link LlmProviderException} con {@code AI_PROVIDER_UNAVAILABLE}).
+ */
+public class LocalLlmStubInvokerAdapter implements ILlmAgentInvokerPort {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalLlmStubInvokerAdapter.class);
+
+    /** z del percentil 99 de la normal estandar. */
+    private static final double Z_99 = 2.3263;
+    private static final double MIN_RAW_SCORE = 0.69;
+    private static final double MAX_RAW_SCORE = 12.87;
+
+    private static final List<String> CANNED_REPLIES = List.of(
+            "La clinica atiende de lunes a viernes de 8 a 20 horas. Podes reservar un turno desde la "
+                    + "seccion Tratamientos de la plataforma.",
+            "Para cancelar un turno ingresa a Mis turnos y elegi Cancelar. Te pedimos hacerlo con al "
+                    + "menos 24 horas de anticipacion.",
+            "Los tratamientos los realizan practicantes de la carrera de Odontologia bajo la "
+                    + "supervision de docentes de la facultad.",
+            "Si tenes dolor intenso, sangrado que no se detiene o inflamacion de la cara, acercate a "
+                    + "una guardia odontologica lo antes posible.",
+            "No puedo procesar esta solicitud. Mi rol esta estrictamente enfocado en la plataforma "
+                    + "OdontoLink y la atencion de la clinica."
+    );
+
+    private final LocalLlmStubProperties props;
+    private final Random random;
+    private final double latencySigma;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    public LocalLlmStubInvokerAdapter(LocalLlmStubProperties props, Random random,
+                                      AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.props = props;
+        this.random = random;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.latencySigma = props.getLatencyMedianMs() > 0 && props.getLatencyP99Ms() > props.getLatencyMedianMs()
+                ? Math.log((double) props.getLatencyP99Ms() / props.getLatencyMedianMs()) / Z_99
+                : 0.0;
+    }
+
+    @Override
+    @CircuitBreaker(name = "doAgentInvoke", fallbackMethod = "invokeFallback")
+    @Retry(name = "doAgentInvoke")
+    public AgentInvocationResult invoke(String agentInvocationUrl, List<ChatMessage> messages) {
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire();
+        if (permit == null) {
+            throw new LlmConcurrencyLimitException(
+                    "Limite de invocaciones concurrentes al agente IA alcanzado (llm-stub).",
+                    AiAgentErrorCodes.AI_PROVIDER_CONCURRENCY_LIMITED);
+        }
+        try {
+            injectFailureOrWait();
+            permit.success();
+        } catch (LlmProviderException ex) {
+            permit.dropped();
+            throw ex;
+        } finally {
+            permit.release();
+        }
+        if (random.nextDouble() < props.getEmptyChoicesRate()) {
+            return new AgentInvocationResult("", List.of(), 0);
+        }
+        return cannedResult(messages);
+    }
+
+    /**
+     * Stream simulado: la latencia se reparte entre las palabras del reply,
+     * que se emiten de a una.
+     */
+    @Override
+    @CircuitBreaker(name = "doAgentInvokeStream", fallbackMethod = "invokeStreamingFallback")
+    public AgentInvocationResult invokeStreaming(String agentInvocationUrl,
+                                                 List<ChatMessage> messages,
+                                                 Consumer<String> onDelta) {
+        long latencyMs = sampleFailureOrLatency();
+        if (random.nextDouble() < props.getEmptyChoicesRate()) {
+            sleep(latencyMs);
+            return new AgentInvocationResult("", List.of(), 0);
+        }
+        AgentInvocationResult result = cannedResult(messages);
+        String[] words = result.reply().split(" ");
+        long perWord = latencyMs / words.length;
+        for (int i = 0; i < words.length; i++) {
+            sleep(perWord);
+            onDelta.accept(i == 0 ? words[i] : " " + words[i]);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unused") // referenciado por @CircuitBreaker
+    public AgentInvocationResult invokeStreamingFallback(String agentInvocationUrl,
+                                                         List<ChatMessage> messages,
+                                                         Consumer<String> onDelta,
+                                                         Throwable cause) {
+        return invokeFallback(agentInvocationUrl, messages, cause);
+    }
+
+    /** Mismo contrato que el fallback del adapter real. */
+    @SuppressWarnings("unused") // referenciado por @CircuitBreaker
+    public AgentInvocationResult invokeFallback(String agentInvocationUrl,
+                                                List<ChatMessage> messages,
+                                                Throwable cause) {
+        if (cause instanceof LlmProviderException llmEx) {
+            throw llmEx;
+        }
+        if (cause instanceof CallNotPermittedException) {
+            throw new LlmProviderException(
+                    "Servicio de IA no disponible (circuito abierto).", null,
+                    AiAgentErrorCodes.AI_PROVIDER_CIRCUIT_OPEN, cause);
+        }
+        throw new LlmProviderException(
+                "Servicio de IA no disponible.", null,
+                AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE, cause);
+    }
+
+    /** El agente local siempre esta disponible; no simula latencia ni fallas. */
+    @Override
+    public ProbeResult probe(String agentInvocationUrl) {
+        return new ProbeResult(true, null);
+    }
+
+    // --- Simulacion ------------------------------------------------------
+
+    private void injectFailureOrWait() {
+        sleep(sampleFailureOrLatency());
+    }
+
+    /**
+     * Sortea las fallas de red/servidor (lanzandolas despues de la espera
+     * correspondiente) o devuelve la latencia de una invocacion exitosa.
+     */
+    private long sampleFailureOrLatency() {
+        double roll = random.nextDouble();
+        if (roll < props.getTimeoutRate()) {
+            sleep(props.getTimeoutMs());
+            log.debug("llm-stub: timeout inyectado tras {} ms", props.getTimeoutMs());
+            throw new LlmProviderException(
+                    "Timeout o falla de red invocando al agente IA (llm-stub).",
+                    null, AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE);
+        }
+        long latencyMs = sampleLatencyMs();
+        if (roll < props.getTimeoutRate() + props.getServerErrorRate()) {
+            sleep(latencyMs);
+            log.debug("llm-stub: 503 inyectado");
+            throw new LlmProviderException(
+                    "El agente IA respondio 503 (llm-stub).",
+                    503, AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE);
+        }
+        return latencyMs;
+    }
+
+    long sampleLatencyMs() {
+        long median = props.getLatencyMedianMs();
+        if (median <= 0) {
+            return 0;
+        }
+        double sample = median * Math.exp(latencySigma * random.nextGaussian());
+        return Math.min((long) sample, props.getTimeoutMs());
+    }
+
+    private AgentInvocationResult cannedResult(List<ChatMessage> messages) {
+        String lastUser = "";
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if ("user".equals(messages.get(i).role())) {
+                lastUser = messages.get(i).content() == null ? "" : messages.get(i).content();
+                break;
+            }
+        }
+        int hash = lastUser.hashCode();
+        String reply = CANNED_REPLIES.get(Math.floorMod(hash, CANNED_REPLIES.size()));
+
+        // Mismos chunks para la misma pregunta: el indicador de confianza
+        // queda estable entre corridas.
+        SplittableRandom chunkRandom = new SplittableRandom(hash);
+        List<RetrievalDocument> docs = new ArrayList<>(props.getRetrievalChunks());
+        for (int i = 0; i < props.getRetrievalChunks(); i++) {
+            double score = MIN_RAW_SCORE + chunkRandom.nextDouble() * (MAX_RAW_SCORE - MIN_RAW_SCORE);
+            docs.add(new RetrievalDocument("llm-stub-ds-" + chunkRandom.nextInt(8), score));
+        }
+        int totalTokens = 40 * messages.size() + reply.length() / 4;
+        return new AgentInvocationResult(reply, docs, totalTokens);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LlmProviderException(
+                    "Invocacion interrumpida (llm-stub).", null, AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE, ex);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent.stub;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Propiedades del agente local de prueba, vinculadas a
+ * {@code odontolink.llm-stub.*}. Solo se leen con el perfil {@code llm-stub}.
+ *
+ * <p>Las tasas de falla son probabilidades independientes por invocacion y
+ * se evaluan en orden (timeout, 5xx, choices vacio); su suma no deberia pasar
+ * de 1.
+ */
+@ConfigurationProperties(prefix = "odontolink.llm-stub")
+public class LocalLlmStubProperties {
+
+    /** Mediana de la latencia simulada del agente, en milisegundos. */
+    private long latencyMedianMs = 1200;
+
+    /**
+     * Percentil 99 de la latencia simulada. La distribucion es log-normal
+     * (cola larga, como la del proveedor real); igual a la mediana la hace
+     * constante.
+     */
+    private long latencyP99Ms = 6000;
+
+    /**
+     * Cuanto espera una invocacion con timeout inyectado antes de fallar.
+     * Conviene que coincida con {@code odontolink.ai-agent.read-timeout-ms}.
+     */
+    private long timeoutMs = 20000;
+
+    /** Probabilidad de que una invocacion termine por timeout. */
+    private double timeoutRate = 0.0;
+
+    /** Probabilidad de que el agente responda 5xx. */
+    private double serverErrorRate = 0.0;
+
+    /** Probabilidad de una respuesta sin {@code choices} (reply vacio). */
+    private double emptyChoicesRate = 0.0;
+
+    /** Chunks RAG por respuesta; 0 simula un agente sin knowledge base. */
+    private int retrievalChunks = 3;
+
+    public long getLatencyMedianMs() {
+        return latencyMedianMs;
+    }
+
+    public void setLatencyMedianMs(long latencyMedianMs) {
+        this.latencyMedianMs = latencyMedianMs;
+    }
+
+    public long getLatencyP99Ms() {
+        return latencyP99Ms;
+    }
+
+    public void setLatencyP99Ms(long latencyP99Ms) {
+        this.latencyP99Ms = latencyP99Ms;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public double getTimeoutRate() {
+        return timeoutRate;
+    }
+
+    public void setTimeoutRate(double timeoutRate) {
+        this.timeoutRate = timeoutRate;
+    }
+
+    public double getServerErrorRate() {
+        return serverErrorRate;
+    }
+
+    public void setServerErrorRate(double serverErrorRate) {
+        this.serverErrorRate = serverErrorRate;
+    }
+
+    public double getEmptyChoicesRate() {
+        return emptyChoicesRate;
+    }
+
+    public void setEmptyChoicesRate(double emptyChoicesRate) {
+        this.emptyChoicesRate = emptyChoicesRate;
+    }
+
+    public int getRetrievalChunks() {
+        return retrievalChunks;
+    }
+
+    public void setRetrievalChunks(int retrievalChunks) {
+        this.retrievalChunks = retrievalChunks;
+    }
+}
@@ -0,0 +1,53 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent.stub;
+
+import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
+import site.utnpf.odontolink.domain.model.AiRetrievalMethod;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Management API en memoria para el perfil {@code llm-stub}. Publicar o
+ * resincronizar la configuracion del agente funciona igual que contra DO,
+ * pero el estado vive en este bean y se pierde al reiniciar.
+ *
+ * <p>El {@code deploymentEndpoint} es ficticio: el invoker local lo ignora.
+ * Los guardrails se aceptan sin efecto (el stub no filtra contenido).
+ */
+public class LocalLlmStubProviderAdapter implements ILlmAgentProviderPort {
+
+    static final String DEPLOYMENT_ENDPOINT = "http://llm-stub.local";
+
+    private final AtomicReference<AgentSnapshot> current = new AtomicReference<>();
+
+    @Override
+    public AgentSnapshot getAgent(String providerAgentId) {
+        AgentSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            snapshot = new AgentSnapshot(providerAgentId, "", new BigDecimal("0.7"), new BigDecimal("0.9"),
+                    512, 5, AiRetrievalMethod.NONE, Instant.now(), DEPLOYMENT_ENDPOINT, false, List.of());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public AgentSnapshot updateAgent(String providerAgentId, AgentUpdateSpec spec) {
+        AgentSnapshot snapshot = new AgentSnapshot(providerAgentId, spec.instruction(), spec.temperature(),
+                spec.topP(), spec.maxTokens(), spec.k(), spec.retrievalMethod(), Instant.now(),
+                DEPLOYMENT_ENDPOINT, spec.provideCitations(), List.of());
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    @Override
+    public void attachGuardrails(String providerAgentId, List<GuardrailAttachment> attachments) {
+        // Sin guardrails nativos en el stub.
+    }
+
+    @Override
+    public void detachGuardrail(String providerAgentId, String providerGuardrailUuid) {
+        // Sin guardrails nativos en el stub.
+    }
+}
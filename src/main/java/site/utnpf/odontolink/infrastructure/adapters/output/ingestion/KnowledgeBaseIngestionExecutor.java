@@ -0,0 +1,111 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseIngestionUseCase;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseIngestionQueuePort;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool acotado de workers del pipeline de ingesta de la KB (RF33).
+ *
+ * <p>Cada tarea corre {@link IKnowledgeBaseIngestionUseCase#ingest} para un
+ * documento. Un documento ya encolado o en curso no se vuelve a encolar:
+ * el barrido periodico puede proponer el mismo id mientras su upload sigue
+ * corriendo. Con la cola llena el documento queda en su estado y lo retoma
+ * el barrido; nunca se bloquea al request del admin.
+ *
+ * <p>Metricas publicadas:
+ * <ul>
+ *   <li>{@code kb.ingestion.pending}: documentos encolados o en curso.</li>
+ *   <li>{@code kb.ingestion.rejected}: encolados rechazados por cola llena.</li>
+ * </ul>
+ */
+public class KnowledgeBaseIngestionExecutor implements IKnowledgeBaseIngestionQueuePort {
+
+    private static final Logger log = LoggerFactory.getLogger(KnowledgeBaseIngestionExecutor.class);
+
+    private final IKnowledgeBaseIngestionUseCase ingestionUseCase;
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final Counter rejected;
+
+    public KnowledgeBaseIngestionExecutor(IKnowledgeBaseIngestionUseCase ingestionUseCase,
+                                          int workers,
+                                          int queueCapacity,
+                                          MeterRegistry meterRegistry) {
+        this.ingestionUseCase = ingestionUseCase;
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "kb-ingest-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        Gauge.builder("kb.ingestion.pending", pending, Set::size)
+                .description("Documentos de la KB encolados o en ingesta")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("kb.ingestion.rejected")
+                .description("Ingestas de la KB rechazadas por cola llena")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void enqueue(Long documentId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // El worker tiene que ver el documento commiteado.
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(documentId);
+                }
+            });
+        } else {
+            submit(documentId);
+        }
+    }
+
+    private void submit(Long documentId) {
+        if (!pending.add(documentId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    ingestionUseCase.ingest(documentId);
+                } catch (RuntimeException ex) {
+                    log.warn("Ingesta del documento KB id={} interrumpida: {}", documentId, ex.getMessage());
+                } finally {
+                    pending.remove(documentId);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pending.remove(documentId);
+            rejected.increment();
+            log.warn("Cola de ingesta de la KB llena; el documento id={} queda para el proximo barrido",
+                    documentId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
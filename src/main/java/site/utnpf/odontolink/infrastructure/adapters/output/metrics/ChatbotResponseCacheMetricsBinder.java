@@ -0,0 +1,90 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import site.utnpf.odontolink.application.service.support.ChatbotRequestCoalescer;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
+
+/**
+ * Metricas del cache de respuestas y del coalescer del chatbot (RF29). Los
+ * contadores viven en los propios componentes; este binder solo los expone.
+ *
+ * <p>Metricas publicadas:
+ * <ul>
+ *   <li>{@code chatbot.response_cache.hits}: turnos respondidos desde el cache.</li>
+ *   <li>{@code chatbot.response_cache.semantic_hits}: subconjunto de hits por similitud.</li>
+ *   <li>{@code chatbot.response_cache.misses}: turnos elegibles que invocaron al proveedor.</li>
+ *   <li>{@code chatbot.response_cache.hit_ratio}: hits / (hits + misses).</li>
+ *   <li>{@code chatbot.response_cache.latency_saved}: ms de proveedor ahorrados por los hits.</li>
+ *   <li>{@code chatbot.response_cache.evictions}: entradas desalojadas por LRU o TTL.</li>
+ *   <li>{@code chatbot.response_cache.invalidations}: vaciados por publish o reindex.</li>
+ *   <li>{@code chatbot.response_cache.size}: entradas en memoria.</li>
+ * </ul>
+ *
+ * <p>Tambien las del {@link ChatbotRequestCoalescer}, que comparte la
+ * clave del cache:
+ * <ul>
+ *   <li>{@code chatbot.coalescing.upstream_calls}: invocaciones al proveedor de turnos elegibles.</li>
+ *   <li>{@code chatbot.coalescing.calls_saved}: turnos que reutilizaron una invocacion en vuelo.</li>
+ *   <li>{@code chatbot.coalescing.wait_timeouts}: seguidores que agotaron la espera.</li>
+ *   <li>{@code chatbot.coalescing.leader_failures}: seguidores cuyo lider fallo.</li>
+ *   <li>{@code chatbot.coalescing.in_flight}: invocaciones en vuelo con clave.</li>
+ * </ul>
+ */
+public class ChatbotResponseCacheMetricsBinder implements MeterBinder {
+
+    private final ChatbotResponseCache cache;
+    private final ChatbotRequestCoalescer coalescer;
+
+    public ChatbotResponseCacheMetricsBinder(ChatbotResponseCache cache, ChatbotRequestCoalescer coalescer) {
+        this.cache = cache;
+        this.coalescer = coalescer;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chatbot.response_cache.hits", cache, ChatbotResponseCache::getHits)
+                .description("Turnos del chatbot respondidos desde el cache")
+                .register(registry);
+        FunctionCounter.builder("chatbot.response_cache.semantic_hits", cache, ChatbotResponseCache::getSemanticHits)
+                .description("Hits del cache por similitud de embeddings")
+                .register(registry);
+        FunctionCounter.builder("chatbot.response_cache.misses", cache, ChatbotResponseCache::getMisses)
+                .description("Turnos elegibles que invocaron al proveedor")
+                .register(registry);
+        Gauge.builder("chatbot.response_cache.hit_ratio", cache, ChatbotResponseCache::hitRatio)
+                .description("Proporcion de hits sobre turnos elegibles")
+                .register(registry);
+        FunctionCounter.builder("chatbot.response_cache.latency_saved", cache, ChatbotResponseCache::getLatencySavedMs)
+                .description("Latencia del proveedor ahorrada por los hits")
+                .baseUnit("milliseconds")
+                .register(registry);
+        FunctionCounter.builder("chatbot.response_cache.evictions", cache, ChatbotResponseCache::getEvictions)
+                .description("Entradas desalojadas por LRU o TTL")
+                .register(registry);
+        FunctionCounter.builder("chatbot.response_cache.invalidations", cache, ChatbotResponseCache::getInvalidations)
+                .description("Vaciados del cache por publish o reindex")
+                .register(registry);
+        Gauge.builder("chatbot.response_cache.size", cache, ChatbotResponseCache::size)
+                .description("Respuestas del chatbot en memoria")
+                .register(registry);
+
+        FunctionCounter.builder("chatbot.coalescing.upstream_calls", coalescer, ChatbotRequestCoalescer::getUpstreamCalls)
+                .description("Invocaciones al proveedor de turnos elegibles para coalescing")
+                .register(registry);
+        FunctionCounter.builder("chatbot.coalescing.calls_saved", coalescer, ChatbotRequestCoalescer::getCallsSaved)
+                .description("Turnos que reutilizaron una invocacion identica en vuelo")
+                .register(registry);
+        FunctionCounter.builder("chatbot.coalescing.wait_timeouts", coalescer, ChatbotRequestCoalescer::getWaitTimeouts)
+                .description("Turnos que agotaron la espera e invocaron por su cuenta")
+                .register(registry);
+        FunctionCounter.builder("chatbot.coalescing.leader_failures", coalescer, ChatbotRequestCoalescer::getLeaderFailures)
+                .description("Turnos cuya invocacion lider fallo")
+                .register(registry);
+        Gauge.builder("chatbot.coalescing.in_flight", coalescer, ChatbotRequestCoalescer::inFlight)
+                .description("Invocaciones identicas en vuelo que admiten seguidores")
+                .register(registry);
+    }
+}
@@ -0,0 +1,55 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import site.utnpf.odontolink.application.port.out.IChatbotTurnMetricsPort;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementacion Micrometer de {@link IChatbotTurnMetricsPort}.
+ *
+ * <p>Metricas publicadas (con histograma, para percentiles en Prometheus):
+ * <ul>
+ *   <li>{@code chatbot.turn}: duracion del turno completo; tag
+ *       {@code outcome}.</li>
+ *   <li>{@code chatbot.turn.phase}: duracion de cada fase; tags
+ *       {@code phase} y {@code outcome}.</li>
+ * </ul>
+ * Los timers se registran todos en construccion (fases x outcomes es un
+ * conjunto chico y fijo): el turno solo los busca en un EnumMap.
+ */
+public class MicrometerChatbotTurnMetricsAdapter implements IChatbotTurnMetricsPort {
+
+    private final Map<Outcome, Timer> turnTimers = new EnumMap<>(Outcome.class);
+    private final Map<Outcome, Map<Phase, Timer>> phaseTimers = new EnumMap<>(Outcome.class);
+
+    public MicrometerChatbotTurnMetricsAdapter(MeterRegistry meterRegistry) {
+        for (Outcome outcome : Outcome.values()) {
+            turnTimers.put(outcome, Timer.builder("chatbot.turn")
+                    .description("Duracion de un turno del chatbot.")
+                    .tag("outcome", outcome.tag())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            Map<Phase, Timer> byPhase = new EnumMap<>(Phase.class);
+            for (Phase phase : Phase.values()) {
+                byPhase.put(phase, Timer.builder("chatbot.turn.phase")
+                        .description("Duracion de una fase del turno del chatbot.")
+                        .tag("phase", phase.tag())
+                        .tag("outcome", outcome.tag())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+            }
+            phaseTimers.put(outcome, byPhase);
+        }
+    }
+
+    @Override
+    public void recordTurn(Outcome outcome, long totalNanos, Map<Phase, Long> phaseNanos) {
+        turnTimers.get(outcome).record(totalNanos, TimeUnit.NANOSECONDS);
+        Map<Phase, Timer> byPhase = phaseTimers.get(outcome);
+        phaseNanos.forEach((phase, nanos) -> byPhase.get(phase).record(nanos, TimeUnit.NANOSECONDS));
+    }
+}
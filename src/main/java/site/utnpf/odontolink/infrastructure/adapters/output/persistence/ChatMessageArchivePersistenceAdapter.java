@@ -0,0 +1,50 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.persistence;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import site.utnpf.odontolink.domain.model.ChatMessageArchiveChunk;
+import site.utnpf.odontolink.domain.repository.ChatMessageArchiveRepository;
+import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.ChatMessageArchiveChunkEntity;
+import site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_repository.JpaChatMessageArchiveChunkRepository;
+import site.utnpf.odontolink.infrastructure.adapters.output.persistence.mapper.ChatMessageArchiveChunkPersistenceMapper;
+
+import java.util.List;
+
+/**
+ * Adaptador de persistencia del tier frío del chat. Politica transaccional uniforme con
+ * el resto de adapters; ver {@link UserPersistenceAdapter} para el racional.
+ */
+@Component
+@Transactional(readOnly = true)
+public class ChatMessageArchivePersistenceAdapter implements ChatMessageArchiveRepository {
+
+    private final JpaChatMessageArchiveChunkRepository jpa;
+
+    public ChatMessageArchivePersistenceAdapter(JpaChatMessageArchiveChunkRepository jpa) {
+        this.jpa = jpa;
+    }
+
+    @Override
+    @Transactional
+    public ChatMessageArchiveChunk save(ChatMessageArchiveChunk chunk) {
+        ChatMessageArchiveChunkEntity saved = jpa.save(ChatMessageArchiveChunkPersistenceMapper.toEntity(chunk));
+        return ChatMessageArchiveChunkPersistenceMapper.toDomain(saved);
+    }
+
+    @Override
+    public List<ChatMessageArchiveChunk> findHeadersBySessionDesc(Long chatSessionId) {
+        return jpa.findHeadersBySessionDesc(chatSessionId).stream()
+                .map(ChatMessageArchiveChunkPersistenceMapper::toDomain)
+                .toList();
+    }
+
+    @Override
+    public byte[] findPayload(Long chunkId) {
+        return jpa.findPayloadById(chunkId);
+    }
+
+    @Override
+    public long countMessagesBySession(Long chatSessionId) {
+        return jpa.sumMessageCountBySession(chatSessionId);
+    }
+}
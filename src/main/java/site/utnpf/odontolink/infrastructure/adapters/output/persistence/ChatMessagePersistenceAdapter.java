@@ -4,6 +4,7 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.domain.model.ChatMessageSearchHit;
 import site.utnpf.odontolink.domain.model.ChatSession;
 import site.utnpf.odontolink.domain.repository.ChatMessageRepository;
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.ChatMessageEntity;
@@ -14,8 +15,11 @@ import site.utnpf.odontolink.infrastructure.adapters.output.persistence.mapper.C
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -97,6 +101,22 @@ public class ChatMessagePersistenceAdapter implements ChatMessageRepository {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public List<ChatMessage> findInSessionBeforeDesc(ChatSession session, Instant beforeSentAt, Long beforeId, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        ChatSessionEntity sessionEntity = ChatSessionPersistenceMapper.toEntityShallow(session);
+        // Siempre página 0: el "desplazamiento" lo aporta el predicado del cursor, no el OFFSET.
+        PageRequest firstPage = PageRequest.of(0, limit);
+        List<ChatMessageEntity> rows = (beforeSentAt == null || beforeId == null)
+                ? jpaChatMessageRepository.findInSessionOrderedDesc(sessionEntity, firstPage)
+                : jpaChatMessageRepository.findInSessionBeforeDesc(sessionEntity, beforeSentAt, beforeId, firstPage);
+        return rows.stream()
+                .map(ChatMessagePersistenceMapper::toDomainShallow)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public long countUnreadByChatSessionAndReceiver(ChatSession session, Long receiverUserId) {
         ChatSessionEntity sessionEntity = ChatSessionPersistenceMapper.toEntityShallow(session);
@@ -110,6 +130,17 @@ public class ChatMessagePersistenceAdapter implements ChatMessageRepository {
         return jpaChatMessageRepository.markAllAsReadInSession(sessionEntity, receiverUserId, readAt);
     }
 
+    @Override
+    @Transactional
+    public int markAsReadUpTo(Long chatSessionId, Long receiverUserId, Long upToMessageId, Instant readAt) {
+        return jpaChatMessageRepository.markAsReadUpTo(chatSessionId, receiverUserId, upToMessageId, readAt);
+    }
+
+    @Override
+    public long countUnreadByChatSessionAndReceiverUpTo(Long chatSessionId, Long receiverUserId, Long upToMessageId) {
+        return jpaChatMessageRepository.countUnreadByChatSessionAndReceiverUpTo(chatSessionId, receiverUserId, upToMessageId);
+    }
+
     @Override
     public Optional<ChatMessage> findLastMessageInSession(ChatSession session) {
         ChatSessionEntity sessionEntity = ChatSessionPersistenceMapper.toEntityShallow(session);
@@ -134,4 +165,61 @@ public class ChatMessagePersistenceAdapter implements ChatMessageRepository {
                 .map(ChatMessagePersistenceMapper::toDomainShallow)
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public List<Long> findArchivableSessionIds(Instant inactiveSince, Collection<Long> sessionIds) {
+        if (sessionIds == null || sessionIds.isEmpty()) {
+            return List.of();
+        }
+        return jpaChatMessageRepository.findArchivableSessionIds(inactiveSince, sessionIds);
+    }
+
+    @Override
+    public List<ChatMessage> findInSessionSentBeforeAsc(Long chatSessionId, Instant sentBefore, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        return jpaChatMessageRepository
+                .findInSessionSentBeforeAsc(chatSessionId, sentBefore, PageRequest.of(0, limit)).stream()
+                .map(ChatMessagePersistenceMapper::toDomainShallow)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public int deleteByIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        return jpaChatMessageRepository.deleteByIdIn(ids);
+    }
+
+    @Override
+    public List<ChatMessageSearchHit> searchInSessions(Collection<Long> chatSessionIds, List<String> terms,
+                                                       long offset, int limit) {
+        if (chatSessionIds.isEmpty() || terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        // Boolean mode: "+term*" exige cada término y acepta variantes por prefijo
+        // (alergia -> alergias, alérgico no). Los términos llegan sin operadores.
+        String booleanQuery = terms.stream().map(t -> "+" + t + "*").collect(Collectors.joining(" "));
+        List<Object[]> ranked = jpaChatMessageRepository.searchFullText(chatSessionIds, booleanQuery, offset, limit);
+        if (ranked.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = ranked.stream().map(row -> ((Number) row[0]).longValue()).toList();
+        Map<Long, ChatMessageEntity> byId = new HashMap<>();
+        for (ChatMessageEntity entity : jpaChatMessageRepository.findAllById(ids)) {
+            byId.put(entity.getId(), entity);
+        }
+        List<ChatMessageSearchHit> hits = new ArrayList<>(ranked.size());
+        for (Object[] row : ranked) {
+            ChatMessageEntity entity = byId.get(((Number) row[0]).longValue());
+            if (entity != null) {
+                hits.add(new ChatMessageSearchHit(
+                        ChatMessagePersistenceMapper.toDomainShallow(entity), ((Number) row[1]).doubleValue()));
+            }
+        }
+        return hits;
+    }
 }
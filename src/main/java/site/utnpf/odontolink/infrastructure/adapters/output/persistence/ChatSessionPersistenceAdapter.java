@@ -1,5 +1,6 @@
 package site.utnpf.odontolink.infrastructure.adapters.output.persistence;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import site.utnpf.odontolink.domain.model.ChatSession;
@@ -98,4 +99,12 @@ public class ChatSessionPersistenceAdapter implements ChatSessionRepository {
                 .map(ChatSessionPersistenceMapper::toDomain)
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public List<Long> findIdsAfter(Long afterId, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        return jpaChatSessionRepository.findIdsAfter(afterId == null ? 0L : afterId, PageRequest.of(0, limit));
+    }
 }
@@ -10,6 +10,7 @@ import site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_repo
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.mapper.ChatbotMessagePersistenceMapper;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
@@ -50,19 +51,24 @@ public class ChatbotMessagePersistenceAdapter implements ChatbotMessageRepositor
 
     @Override
     @Transactional
-    public int deleteOldestKeepingLast(UUID sessionId, int keepLast) {
-        if (keepLast <= 0) {
-            return jpa.deleteBySessionId(sessionId);
+    public void saveAll(List<ChatbotMessage> messages) {
+        List<ChatbotMessageEntity> entities = new ArrayList<>(messages.size());
+        for (ChatbotMessage m : messages) {
+            entities.add(ChatbotMessagePersistenceMapper.toEntity(m));
         }
-        // Resolvemos el id de la fila en la posicion keepLast-1 desde el mas
-        // reciente. Todo lo que tenga id menor a ese se borra. Aprovecha el
-        // indice de PK para el DELETE.
-        List<ChatbotMessageEntity> recent = jpa.findRecentBySessionId(sessionId, PageRequest.of(0, keepLast));
-        if (recent.size() < keepLast) {
+        jpa.saveAll(entities);
+    }
+
+    @Override
+    @Transactional
+    public int trimSessionKeepingLast(UUID sessionId, int keepLast) {
+        List<ChatbotMessageEntity> newestDropped =
+                jpa.findNewestFirstBySessionId(sessionId, PageRequest.of(Math.max(keepLast, 0), 1));
+        if (newestDropped.isEmpty()) {
             return 0;
         }
-        long threshold = recent.get(recent.size() - 1).getId();
-        return jpa.deleteOldestBefore(sessionId, threshold);
+        ChatbotMessageEntity boundary = newestDropped.get(0);
+        return jpa.deleteBySessionIdUpTo(sessionId, boundary.getCreatedAt(), boundary.getId());
     }
 
     @Override
@@ -71,6 +77,15 @@ public class ChatbotMessagePersistenceAdapter implements ChatbotMessageRepositor
         return jpa.deleteBySessionId(sessionId);
     }
 
+    @Override
+    @Transactional
+    public int deleteOrphanedBySessionIds(Collection<UUID> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return 0;
+        }
+        return jpa.deleteOrphanedBySessionIds(sessionIds);
+    }
+
     @Override
     public long countBySessionId(UUID sessionId) {
         return jpa.countBySessionId(sessionId);
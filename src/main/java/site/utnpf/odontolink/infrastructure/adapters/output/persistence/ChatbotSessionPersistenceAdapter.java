@@ -1,5 +1,6 @@
 package site.utnpf.odontolink.infrastructure.adapters.output.persistence;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import site.utnpf.odontolink.domain.model.ChatbotSession;
@@ -9,6 +10,8 @@ import site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_repo
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.mapper.ChatbotSessionPersistenceMapper;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -49,9 +52,23 @@ public class ChatbotSessionPersistenceAdapter implements ChatbotSessionRepositor
         }
     }
 
+    @Override
+    public List<UUID> findIdleIds(boolean anonymous, Instant cutoff, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        PageRequest page = PageRequest.of(0, limit);
+        return anonymous
+                ? jpa.findIdleAnonymousIds(cutoff, page)
+                : jpa.findIdleAuthenticatedIds(cutoff, page);
+    }
+
     @Override
     @Transactional
-    public int deleteIdleOlderThan(Instant cutoff) {
-        return jpa.deleteIdleOlderThan(cutoff);
+    public int deleteIdleByIds(Collection<UUID> ids, Instant cutoff) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jpa.deleteIdleByIds(ids, cutoff);
     }
 }
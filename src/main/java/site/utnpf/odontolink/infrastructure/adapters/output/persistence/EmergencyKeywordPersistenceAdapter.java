@@ -2,6 +2,8 @@ package site.utnpf.odontolink.infrastructure.adapters.output.persistence;
 
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import site.utnpf.odontolink.domain.model.EmergencyKeyword;
 import site.utnpf.odontolink.domain.repository.EmergencyKeywordRepository;
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.EmergencyKeywordEntity;
@@ -84,8 +86,20 @@ public class EmergencyKeywordPersistenceAdapter implements EmergencyKeywordRepos
         invalidateCache();
     }
 
+    /**
+     * Invalida ya y de nuevo despues del commit: una lectura concurrente que
+     * recargo la lista antes del commit la habria cacheado vieja por todo el TTL.
+     */
     private void invalidateCache() {
         activeCache.set(new CacheSnapshot(0L, List.of()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    activeCache.set(new CacheSnapshot(0L, List.of()));
+                }
+            });
+        }
     }
 
     private record CacheSnapshot(long timestamp, List<EmergencyKeyword> value) {
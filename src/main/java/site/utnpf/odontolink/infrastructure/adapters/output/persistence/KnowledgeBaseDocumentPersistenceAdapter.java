@@ -13,6 +13,7 @@ import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.K
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_repository.JpaKnowledgeBaseDocumentRepository;
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.mapper.KnowledgeBaseDocumentPersistenceMapper;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -67,6 +68,13 @@ public class KnowledgeBaseDocumentPersistenceAdapter implements KnowledgeBaseDoc
                 .map(KnowledgeBaseDocumentPersistenceMapper::toDomain);
     }
 
+    @Override
+    public List<KnowledgeBaseDocument> findByContentSha256(String contentSha256) {
+        return jpaRepository.findByContentSha256(contentSha256).stream()
+                .map(KnowledgeBaseDocumentPersistenceMapper::toDomain)
+                .toList();
+    }
+
     @Override
     public List<KnowledgeBaseDocument> findByStatusIn(List<KnowledgeBaseDocumentStatus> statuses) {
         return jpaRepository.findByStatusIn(statuses).stream()
@@ -74,6 +82,11 @@ public class KnowledgeBaseDocumentPersistenceAdapter implements KnowledgeBaseDoc
                 .toList();
     }
 
+    @Override
+    public List<Long> findIdsByStatusInAndUpdatedAtBefore(List<KnowledgeBaseDocumentStatus> statuses, Instant before) {
+        return jpaRepository.findIdsByStatusInAndUpdatedAtBefore(statuses, before);
+    }
+
     @Override
     @Transactional
     public KnowledgeBaseDocument save(KnowledgeBaseDocument document) {
@@ -0,0 +1,163 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity;
+
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Entidad JPA para la tabla {@code chat_message_archive_chunks} (tier frío del chat).
+ *
+ * <p>Una fila por chunk: metadatos en columnas chicas (lo único que lee la paginación) y
+ * el payload comprimido en un LONGBLOB que solo se trae cuando hay que devolver esos
+ * mensajes. La tabla no tiene índices sobre el contenido a propósito: está pensada para
+ * lecturas raras y no debe competir con {@code chat_messages} por el buffer pool.
+ *
+ * <p>{@code chat_session_id} es una columna plana y no un {@code @ManyToOne}: el tier frío
+ * no necesita navegar la sesión y así los headers salen sin joins.
+ *
+ * <p>Producción corre con {@code ddl-auto=validate}: la tabla se crea a mano antes de
+ * desplegar, o el arranque falla la validación del esquema:
+ * <pre>
+ *   CREATE TABLE chat_message_archive_chunks (
+ *       id               BIGINT      NOT NULL AUTO_INCREMENT,
+ *       chat_session_id  BIGINT      NOT NULL,
+ *       first_message_id BIGINT      NOT NULL,
+ *       first_sent_at    DATETIME(6) NOT NULL,
+ *       last_message_id  BIGINT      NOT NULL,
+ *       last_sent_at     DATETIME(6) NOT NULL,
+ *       message_count    INT         NOT NULL,
+ *       payload          LONGBLOB    NOT NULL,
+ *       archived_at      DATETIME(6) NOT NULL,
+ *       PRIMARY KEY (id),
+ *       INDEX idx_chat_archive_session_first (chat_session_id, first_sent_at, first_message_id)
+ *   ) ENGINE = InnoDB;
+ * </pre>
+ */
+@Entity
+@Table(name = "chat_message_archive_chunks", indexes = {
+        @Index(name = "idx_chat_archive_session_first", columnList = "chat_session_id, first_sent_at, first_message_id")
+})
+public class ChatMessageArchiveChunkEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chat_session_id", nullable = false, updatable = false)
+    private Long chatSessionId;
+
+    @Column(name = "first_message_id", nullable = false, updatable = false)
+    private Long firstMessageId;
+
+    @Column(name = "first_sent_at", nullable = false, updatable = false)
+    private Instant firstSentAt;
+
+    @Column(name = "last_message_id", nullable = false, updatable = false)
+    private Long lastMessageId;
+
+    @Column(name = "last_sent_at", nullable = false, updatable = false)
+    private Instant lastSentAt;
+
+    @Column(name = "message_count", nullable = false, updatable = false)
+    private int messageCount;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "payload", nullable = false, updatable = false, columnDefinition = "LONGBLOB")
+    private byte[] payload;
+
+    @Column(name = "archived_at", nullable = false, updatable = false)
+    private Instant archivedAt;
+
+    public ChatMessageArchiveChunkEntity() {
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        if (archivedAt == null) {
+            archivedAt = Instant.now();
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getChatSessionId() {
+        return chatSessionId;
+    }
+
+    public void setChatSessionId(Long chatSessionId) {
+        this.chatSessionId = chatSessionId;
+    }
+
+    public Long getFirstMessageId() {
+        return firstMessageId;
+    }
+
+    public void setFirstMessageId(Long firstMessageId) {
+        this.firstMessageId = firstMessageId;
+    }
+
+    public Instant getFirstSentAt() {
+        return firstSentAt;
+    }
+
+    public void setFirstSentAt(Instant firstSentAt) {
+        this.firstSentAt = firstSentAt;
+    }
+
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(Long lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public Instant getLastSentAt() {
+        return lastSentAt;
+    }
+
+    public void setLastSentAt(Instant lastSentAt) {
+        this.lastSentAt = lastSentAt;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public Instant getArchivedAt() {
+        return archivedAt;
+    }
+
+    public void setArchivedAt(Instant archivedAt) {
+        this.archivedAt = archivedAt;
+    }
+}
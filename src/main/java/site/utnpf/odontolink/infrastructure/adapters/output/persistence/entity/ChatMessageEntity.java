@@ -19,6 +19,9 @@ import java.time.Instant;
             @Index(name = "idx_chat_message_session", columnList = "chat_session_id"),
             @Index(name = "idx_chat_message_sender", columnList = "sender_id"),
             @Index(name = "idx_chat_message_sent_at", columnList = "sent_at"),
+            // Índice compuesto para el historial por keyset y los listados ordenados de una sesión
+            // (ORDER BY sent_at, id dentro de chat_session_id): rango directo sin filesort.
+            @Index(name = "idx_chat_message_session_sent", columnList = "chat_session_id, sent_at, id"),
             // Índice compuesto para la query crítica de "no leídos" (countByChatSession + readAt IS NULL + sender != receiver).
             @Index(name = "idx_chat_message_session_read", columnList = "chat_session_id, read_at")
         })
@@ -14,9 +14,9 @@ import java.util.UUID;
 /**
  * Entidad JPA para la tabla {@code ai_chatbot_messages} (RF29).
  *
- * <p>Mensajes del rolling buffer. El cap se aplica desde el servicio
- * eliminando los mas viejos cada vez que se inserta uno nuevo y se supera el
- * limite. El indice compuesto (session_id, created_at) acelera el listado
+ * <p>Mensajes del rolling buffer. El cap se aplica con un recorte periodico
+ * en bloque sobre todas las sesiones; entre corridas una sesion puede tener
+ * unos mensajes de mas. El indice compuesto (session_id, created_at) acelera el listado
  * por sesion en orden cronologico.
  */
 @Entity
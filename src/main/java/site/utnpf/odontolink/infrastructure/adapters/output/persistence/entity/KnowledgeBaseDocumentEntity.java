@@ -9,6 +9,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentKind;
 import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentStatus;
 
@@ -23,12 +24,16 @@ import java.time.Instant;
  *       NULL en columnas unicas, asi que el indice no impide multiples
  *       documentos en estado PENDING_UPLOAD/UPLOADED simultaneos.</li>
  *   <li>{@code status}: lookup frecuente por estado para refresh batch.</li>
+ *   <li>{@code content_sha256}: deteccion de altas duplicadas. No es unico:
+ *       un documento en FAILED no bloquea volver a subir el mismo
+ *       contenido, y las filas anteriores a la columna quedan en NULL.</li>
  * </ul>
  */
 @Entity
 @Table(name = "ai_kb_documents", indexes = {
         @Index(name = "ux_ai_kb_documents_provider_ds", columnList = "provider_data_source_id", unique = true),
-        @Index(name = "ix_ai_kb_documents_status", columnList = "status")
+        @Index(name = "ix_ai_kb_documents_status", columnList = "status"),
+        @Index(name = "ix_ai_kb_documents_content_sha256", columnList = "content_sha256")
 })
 public class KnowledgeBaseDocumentEntity {
 
@@ -63,11 +68,28 @@ public class KnowledgeBaseDocumentEntity {
     @Column(name = "content_type", length = 100)
     private String contentType;
 
+    /**
+     * SHA-256 hex del contenido; NULL en filas anteriores a la columna. En
+     * prod ({@code ddl-auto=validate}) la columna y su indice los crea el DBA
+     * antes del deploy:
+     *   ALTER TABLE ai_kb_documents ADD COLUMN content_sha256 VARCHAR(64);
+     *   CREATE INDEX ix_ai_kb_documents_content_sha256 ON ai_kb_documents (content_sha256);
+     */
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
     @Column(name = "provider_data_source_id", length = 100)
     private String providerDataSourceId;
 
+    /**
+     * VARCHAR y no el {@code enum(...)} nativo de MySQL que Hibernate genera
+     * por defecto, para que sumar un estado no requiera alterar la columna.
+     * {@code ddl-auto=update} no cambia el tipo de una columna existente:
+     * las bases creadas antes de {@code REINDEX_QUEUED} requieren
+     *   ALTER TABLE ai_kb_documents MODIFY status VARCHAR(30) NOT NULL;
+     */
     @Enumerated(EnumType.STRING)
-    @Column(name = "status", nullable = false, length = 30)
+    @Column(name = "status", nullable = false, length = 30, columnDefinition = "VARCHAR(30) NOT NULL")
     private KnowledgeBaseDocumentStatus status;
 
     @Column(name = "last_indexing_job_id", length = 100)
@@ -85,6 +107,17 @@ public class KnowledgeBaseDocumentEntity {
     @Column(name = "updated_at", nullable = false)
     private Instant updatedAt;
 
+    /**
+     * Optimistic locking entre el worker de ingesta y las ediciones del
+     * admin. Primitivo a proposito: las filas existentes arrancan en 0 y
+     * Spring Data decide alta/edicion por id. En prod ({@code ddl-auto=validate})
+     * la columna la agrega el DBA antes del deploy:
+     *   ALTER TABLE ai_kb_documents ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
     public KnowledgeBaseDocumentEntity() {
     }
 
@@ -152,6 +185,14 @@ public class KnowledgeBaseDocumentEntity {
         this.contentType = contentType;
     }
 
+    public String getContentSha256() {
+        return contentSha256;
+    }
+
+    public void setContentSha256(String contentSha256) {
+        this.contentSha256 = contentSha256;
+    }
+
     public String getProviderDataSourceId() {
         return providerDataSourceId;
     }
@@ -207,4 +248,12 @@ public class KnowledgeBaseDocumentEntity {
     public void setUpdatedAt(Instant updatedAt) {
         this.updatedAt = updatedAt;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
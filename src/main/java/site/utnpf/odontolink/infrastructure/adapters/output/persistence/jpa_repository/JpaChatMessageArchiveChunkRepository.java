@@ -0,0 +1,50 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.ChatMessageArchiveChunkEntity;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface JpaChatMessageArchiveChunkRepository extends JpaRepository<ChatMessageArchiveChunkEntity, Long> {
+
+    /**
+     * Proyección sin payload: el LAZY de un {@code @Lob} depende del bytecode enhancement,
+     * así que para garantizar que el blob no viaja se seleccionan solo las columnas chicas.
+     */
+    interface ChunkHeader {
+        Long getId();
+
+        Long getChatSessionId();
+
+        Long getFirstMessageId();
+
+        Instant getFirstSentAt();
+
+        Long getLastMessageId();
+
+        Instant getLastSentAt();
+
+        int getMessageCount();
+
+        Instant getArchivedAt();
+    }
+
+    @Query("SELECT c.id AS id, c.chatSessionId AS chatSessionId, c.firstMessageId AS firstMessageId, " +
+            "c.firstSentAt AS firstSentAt, c.lastMessageId AS lastMessageId, c.lastSentAt AS lastSentAt, " +
+            "c.messageCount AS messageCount, c.archivedAt AS archivedAt " +
+            "FROM ChatMessageArchiveChunkEntity c WHERE c.chatSessionId = :sessionId " +
+            "ORDER BY c.firstSentAt DESC, c.firstMessageId DESC")
+    List<ChunkHeader> findHeadersBySessionDesc(@Param("sessionId") Long sessionId);
+
+    @Query("SELECT c.payload FROM ChatMessageArchiveChunkEntity c WHERE c.id = :id")
+    byte[] findPayloadById(@Param("id") Long id);
+
+    @Query("SELECT COALESCE(SUM(c.messageCount), 0) FROM ChatMessageArchiveChunkEntity c " +
+            "WHERE c.chatSessionId = :sessionId")
+    long sumMessageCountBySession(@Param("sessionId") Long sessionId);
+}
@@ -10,6 +10,7 @@ import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.C
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.ChatSessionEntity;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,6 +44,22 @@ public interface JpaChatMessageRepository extends JpaRepository<ChatMessageEntit
     List<ChatMessageEntity> findInSessionOrderedDesc(@Param("session") ChatSessionEntity chatSession,
                                                      Pageable pageable);
 
+    /**
+     * Keyset DESC: mensajes estrictamente anteriores a la tupla ({@code sentAt}, {@code id}).
+     * El predicado se escribe expandido (en lugar de row-value {@code (a, b) < (x, y)}) porque
+     * JPQL no soporta tuplas; MySQL igual resuelve el rango sobre
+     * {@code idx_chat_message_session_sent} sin ordenar en memoria.
+     */
+    @Query("SELECT m FROM ChatMessageEntity m " +
+           "WHERE m.chatSession = :session " +
+           "AND (m.sentAt < :beforeSentAt " +
+           "     OR (m.sentAt = :beforeSentAt AND m.id < :beforeId)) " +
+           "ORDER BY m.sentAt DESC, m.id DESC")
+    List<ChatMessageEntity> findInSessionBeforeDesc(@Param("session") ChatSessionEntity chatSession,
+                                                    @Param("beforeSentAt") Instant beforeSentAt,
+                                                    @Param("beforeId") Long beforeId,
+                                                    Pageable pageable);
+
     /**
      * Polling delta inclusivo: {@code sentAt >= since}, ASC + tie-break por id.
      */
@@ -80,6 +97,30 @@ public interface JpaChatMessageRepository extends JpaRepository<ChatMessageEntit
                                @Param("receiverUserId") Long receiverUserId,
                                @Param("readAt") Instant readAt);
 
+    /**
+     * Bulk-update acotado por id: aplica una confirmación "leído hasta X" coalescida.
+     * Mismo filtro que {@link #markAllAsReadInSession} más el tope {@code id <= :upToMessageId}.
+     */
+    @Modifying
+    @Query("UPDATE ChatMessageEntity m SET m.readAt = :readAt " +
+           "WHERE m.chatSession.id = :sessionId " +
+           "AND m.readAt IS NULL " +
+           "AND m.sender.id <> :receiverUserId " +
+           "AND m.id <= :upToMessageId")
+    int markAsReadUpTo(@Param("sessionId") Long sessionId,
+                       @Param("receiverUserId") Long receiverUserId,
+                       @Param("upToMessageId") Long upToMessageId,
+                       @Param("readAt") Instant readAt);
+
+    @Query("SELECT COUNT(m) FROM ChatMessageEntity m " +
+           "WHERE m.chatSession.id = :sessionId " +
+           "AND m.readAt IS NULL " +
+           "AND m.sender.id <> :receiverUserId " +
+           "AND m.id <= :upToMessageId")
+    long countUnreadByChatSessionAndReceiverUpTo(@Param("sessionId") Long sessionId,
+                                                 @Param("receiverUserId") Long receiverUserId,
+                                                 @Param("upToMessageId") Long upToMessageId);
+
     /**
      * Último mensaje de la sesión, para ordenar el inbox por actividad real. Tie-break por id
      * para deduplicar el caso (raro) de dos mensajes con el mismo {@code sentAt}.
@@ -115,4 +156,48 @@ public interface JpaChatMessageRepository extends JpaRepository<ChatMessageEntit
     List<ChatMessageEntity> findReadReceiptsForSenderSinceInclusive(@Param("session") ChatSessionEntity session,
                                                                     @Param("senderUserId") Long senderUserId,
                                                                     @Param("since") Instant since);
+
+    /**
+     * De las sesiones dadas, las que no tienen actividad desde {@code inactiveSince} ni
+     * no-leídos. El IN acota el GROUP BY a una página de sesiones: se resuelve con un
+     * rango de {@code idx_chat_message_session_read} por sesión, nunca con un barrido de
+     * toda la tabla.
+     */
+    @Query("SELECT m.chatSession.id FROM ChatMessageEntity m " +
+           "WHERE m.chatSession.id IN :sessionIds " +
+           "GROUP BY m.chatSession.id " +
+           "HAVING MAX(m.sentAt) < :inactiveSince " +
+           "AND SUM(CASE WHEN m.readAt IS NULL THEN 1 ELSE 0 END) = 0 " +
+           "ORDER BY m.chatSession.id ASC")
+    List<Long> findArchivableSessionIds(@Param("inactiveSince") Instant inactiveSince,
+                                        @Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query("SELECT m FROM ChatMessageEntity m " +
+           "WHERE m.chatSession.id = :sessionId " +
+           "AND m.sentAt < :sentBefore " +
+           "ORDER BY m.sentAt ASC, m.id ASC")
+    List<ChatMessageEntity> findInSessionSentBeforeAsc(@Param("sessionId") Long sessionId,
+                                                       @Param("sentBefore") Instant sentBefore,
+                                                       Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM ChatMessageEntity m WHERE m.id IN :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+
+    /**
+     * Búsqueda sobre el índice FULLTEXT {@code ft_chat_message_content} (lo crea
+     * {@code ChatFullTextIndexBootstrapper}). Nativa porque JPQL no tiene MATCH ... AGAINST.
+     * Devuelve pares (id, score); las entidades se cargan después por PK.
+     */
+    @Query(value = "SELECT m.id, MATCH(m.content) AGAINST (:query IN BOOLEAN MODE) AS score " +
+                   "FROM chat_messages m " +
+                   "WHERE MATCH(m.content) AGAINST (:query IN BOOLEAN MODE) " +
+                   "AND m.chat_session_id IN (:sessionIds) " +
+                   "ORDER BY score DESC, m.sent_at DESC, m.id DESC " +
+                   "LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<Object[]> searchFullText(@Param("sessionIds") Collection<Long> sessionIds,
+                                  @Param("query") String booleanQuery,
+                                  @Param("offset") long offset,
+                                  @Param("limit") int limit);
 }
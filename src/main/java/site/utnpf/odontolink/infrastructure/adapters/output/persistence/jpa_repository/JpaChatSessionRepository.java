@@ -1,6 +1,9 @@
 package site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.ChatSessionEntity;
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.PatientEntity;
@@ -70,4 +73,14 @@ public interface JpaChatSessionRepository extends JpaRepository<ChatSessionEntit
      * @return Lista de sesiones del practicante
      */
     List<ChatSessionEntity> findByPractitionerId(Long practitionerId);
+
+    /**
+     * Página de ids por keyset sobre la PK.
+     *
+     * @param afterId Cursor exclusivo
+     * @param pageable Tamaño de la página
+     * @return Ids ascendentes mayores a {@code afterId}
+     */
+    @Query("SELECT s.id FROM ChatSessionEntity s WHERE s.id > :afterId ORDER BY s.id ASC")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
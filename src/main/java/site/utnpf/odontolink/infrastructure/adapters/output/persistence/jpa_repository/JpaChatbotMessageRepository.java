@@ -8,6 +8,8 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.ChatbotMessageEntity;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -24,13 +26,32 @@ public interface JpaChatbotMessageRepository extends JpaRepository<ChatbotMessag
     int deleteBySessionId(UUID sessionId);
 
     /**
-     * Borra todos los mensajes de la sesion cuyo {@code id} sea menor que el
-     * umbral indicado. Lo usa el adapter para mantener el cap FIFO: calcula
-     * el id del mensaje en la posicion {@code keepLast} desde el mas reciente
-     * y borra todo lo anterior. Usar id como cursor es mas barato que filtrar
-     * por createdAt y aprovecha el indice de PK.
+     * Mensajes de la sesion del mas reciente al mas viejo, con desempate por
+     * id. El recorte pide la fila en la posicion {@code keepLast} (offset via
+     * Pageable): es el mensaje mas nuevo que sobra.
+     */
+    @Query("SELECT m FROM ChatbotMessageEntity m WHERE m.sessionId = :sessionId " +
+           "ORDER BY m.createdAt DESC, m.id DESC")
+    List<ChatbotMessageEntity> findNewestFirstBySessionId(@Param("sessionId") UUID sessionId, Pageable pageable);
+
+    /**
+     * Borra los mensajes de la sesion hasta el dado inclusive, en el mismo
+     * orden que {@link #findNewestFirstBySessionId}. Es un rango de
+     * {@code idx_chatbot_msg_session_time}: solo bloquea filas de esa sesion.
+     */
+    @Modifying
+    @Query("DELETE FROM ChatbotMessageEntity m WHERE m.sessionId = :sessionId " +
+           "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id <= :id))")
+    int deleteBySessionIdUpTo(@Param("sessionId") UUID sessionId,
+                              @Param("createdAt") Instant createdAt,
+                              @Param("id") Long id);
+
+    /**
+     * Borra los mensajes de las sesiones dadas que ya no existen. Recorre
+     * {@code idx_chatbot_msg_session_time} por el prefijo {@code session_id}.
      */
     @Modifying
-    @Query("DELETE FROM ChatbotMessageEntity m WHERE m.sessionId = :sessionId AND m.id < :idThreshold")
-    int deleteOldestBefore(@Param("sessionId") UUID sessionId, @Param("idThreshold") long idThreshold);
+    @Query("DELETE FROM ChatbotMessageEntity m WHERE m.sessionId IN :sessionIds " +
+           "AND NOT EXISTS (SELECT 1 FROM ChatbotSessionEntity s WHERE s.id = m.sessionId)")
+    int deleteOrphanedBySessionIds(@Param("sessionIds") Collection<UUID> sessionIds);
 }
@@ -1,5 +1,6 @@
 package site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,6 +9,8 @@ import org.springframework.stereotype.Repository;
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.ChatbotSessionEntity;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -16,7 +19,24 @@ public interface JpaChatbotSessionRepository extends JpaRepository<ChatbotSessio
 
     Optional<ChatbotSessionEntity> findByAnonymousToken(UUID anonymousToken);
 
+    /**
+     * Sesiones anonimas idle, de la mas vieja a la mas nueva. Recorre
+     * {@code idx_chatbot_session_last} en orden y corta en el limite del
+     * {@link Pageable}.
+     */
+    @Query("SELECT s.id FROM ChatbotSessionEntity s " +
+           "WHERE s.lastInteractionAt < :cutoff AND s.anonymousToken IS NOT NULL " +
+           "ORDER BY s.lastInteractionAt ASC")
+    List<UUID> findIdleAnonymousIds(@Param("cutoff") Instant cutoff, Pageable pageable);
+
+    /** Igual que {@link #findIdleAnonymousIds} para sesiones de usuario autenticado. */
+    @Query("SELECT s.id FROM ChatbotSessionEntity s " +
+           "WHERE s.lastInteractionAt < :cutoff AND s.anonymousToken IS NULL " +
+           "ORDER BY s.lastInteractionAt ASC")
+    List<UUID> findIdleAuthenticatedIds(@Param("cutoff") Instant cutoff, Pageable pageable);
+
+    /** Borrado por PK: bloquea solo las filas del lote, sin gap locks sobre el rango. */
     @Modifying
-    @Query("DELETE FROM ChatbotSessionEntity s WHERE s.lastInteractionAt < :cutoff")
-    int deleteIdleOlderThan(@Param("cutoff") Instant cutoff);
+    @Query("DELETE FROM ChatbotSessionEntity s WHERE s.id IN :ids AND s.lastInteractionAt < :cutoff")
+    int deleteIdleByIds(@Param("ids") Collection<UUID> ids, @Param("cutoff") Instant cutoff);
 }
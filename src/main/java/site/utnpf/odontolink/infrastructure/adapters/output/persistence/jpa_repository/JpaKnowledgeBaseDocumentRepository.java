@@ -3,10 +3,13 @@ package site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_rep
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentStatus;
 import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.KnowledgeBaseDocumentEntity;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,7 +23,16 @@ public interface JpaKnowledgeBaseDocumentRepository extends JpaRepository<Knowle
 
     Optional<KnowledgeBaseDocumentEntity> findByProviderDataSourceId(String providerDataSourceId);
 
+    List<KnowledgeBaseDocumentEntity> findByContentSha256(String contentSha256);
+
     List<KnowledgeBaseDocumentEntity> findByStatusIn(List<KnowledgeBaseDocumentStatus> statuses);
 
+    @Query("""
+            SELECT d.id FROM KnowledgeBaseDocumentEntity d
+            WHERE d.status IN :statuses AND d.updatedAt < :before
+            """)
+    List<Long> findIdsByStatusInAndUpdatedAtBefore(@Param("statuses") List<KnowledgeBaseDocumentStatus> statuses,
+                                                   @Param("before") Instant before);
+
     Page<KnowledgeBaseDocumentEntity> findByStatus(KnowledgeBaseDocumentStatus status, Pageable pageable);
 }
@@ -0,0 +1,65 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.persistence.mapper;
+
+import site.utnpf.odontolink.domain.model.ChatMessageArchiveChunk;
+import site.utnpf.odontolink.infrastructure.adapters.output.persistence.entity.ChatMessageArchiveChunkEntity;
+import site.utnpf.odontolink.infrastructure.adapters.output.persistence.jpa_repository.JpaChatMessageArchiveChunkRepository.ChunkHeader;
+
+public final class ChatMessageArchiveChunkPersistenceMapper {
+
+    private ChatMessageArchiveChunkPersistenceMapper() {
+    }
+
+    public static ChatMessageArchiveChunk toDomain(ChatMessageArchiveChunkEntity entity) {
+        if (entity == null) {
+            return null;
+        }
+        ChatMessageArchiveChunk chunk = new ChatMessageArchiveChunk(
+                entity.getChatSessionId(),
+                entity.getFirstMessageId(),
+                entity.getFirstSentAt(),
+                entity.getLastMessageId(),
+                entity.getLastSentAt(),
+                entity.getMessageCount(),
+                entity.getPayload(),
+                entity.getArchivedAt()
+        );
+        chunk.setId(entity.getId());
+        return chunk;
+    }
+
+    /** Chunk sin payload a partir de la proyección de metadatos. */
+    public static ChatMessageArchiveChunk toDomain(ChunkHeader header) {
+        if (header == null) {
+            return null;
+        }
+        ChatMessageArchiveChunk chunk = new ChatMessageArchiveChunk(
+                header.getChatSessionId(),
+                header.getFirstMessageId(),
+                header.getFirstSentAt(),
+                header.getLastMessageId(),
+                header.getLastSentAt(),
+                header.getMessageCount(),
+                null,
+                header.getArchivedAt()
+        );
+        chunk.setId(header.getId());
+        return chunk;
+    }
+
+    public static ChatMessageArchiveChunkEntity toEntity(ChatMessageArchiveChunk domain) {
+        if (domain == null) {
+            return null;
+        }
+        ChatMessageArchiveChunkEntity entity = new ChatMessageArchiveChunkEntity();
+        entity.setId(domain.getId());
+        entity.setChatSessionId(domain.getChatSessionId());
+        entity.setFirstMessageId(domain.getFirstMessageId());
+        entity.setFirstSentAt(domain.getFirstSentAt());
+        entity.setLastMessageId(domain.getLastMessageId());
+        entity.setLastSentAt(domain.getLastSentAt());
+        entity.setMessageCount(domain.getMessageCount());
+        entity.setPayload(domain.getPayload());
+        entity.setArchivedAt(domain.getArchivedAt());
+        return entity;
+    }
+}
@@ -16,7 +16,7 @@ public final class KnowledgeBaseDocumentPersistenceMapper {
         if (entity == null) {
             return null;
         }
-        return new KnowledgeBaseDocument(
+        KnowledgeBaseDocument domain = new KnowledgeBaseDocument(
                 entity.getId(),
                 entity.getTitle(),
                 entity.getKind(),
@@ -25,6 +25,7 @@ public final class KnowledgeBaseDocumentPersistenceMapper {
                 entity.getStoredObjectKey(),
                 entity.getSizeBytes(),
                 entity.getContentType(),
+                entity.getContentSha256(),
                 entity.getProviderDataSourceId(),
                 entity.getStatus(),
                 entity.getLastIndexingJobId(),
@@ -33,6 +34,8 @@ public final class KnowledgeBaseDocumentPersistenceMapper {
                 entity.getCreatedAt(),
                 entity.getUpdatedAt()
         );
+        domain.setVersion(entity.getVersion());
+        return domain;
     }
 
     public static KnowledgeBaseDocumentEntity toEntity(KnowledgeBaseDocument domain) {
@@ -48,6 +51,7 @@ public final class KnowledgeBaseDocumentPersistenceMapper {
         entity.setStoredObjectKey(domain.getStoredObjectKey());
         entity.setSizeBytes(domain.getSizeBytes());
         entity.setContentType(domain.getContentType());
+        entity.setContentSha256(domain.getContentSha256());
         entity.setProviderDataSourceId(domain.getProviderDataSourceId());
         entity.setStatus(domain.getStatus());
         entity.setLastIndexingJobId(domain.getLastIndexingJobId());
@@ -55,6 +59,7 @@ public final class KnowledgeBaseDocumentPersistenceMapper {
         entity.setErrorMessage(domain.getErrorMessage());
         entity.setCreatedAt(domain.getCreatedAt());
         entity.setUpdatedAt(domain.getUpdatedAt());
+        entity.setVersion(domain.getVersion());
         return entity;
     }
 }
@@ -0,0 +1,107 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseStagingPort;
+import site.utnpf.odontolink.application.port.out.StorageException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Staging de archivos de la KB en un directorio local (RF33).
+ *
+ * <p>Cada documento tiene un archivo {@code <id>.bin}. La copia se escribe
+ * primero en {@code <id>.part} y se renombra al terminar, asi el worker
+ * nunca lee un archivo a medio escribir. El directorio sobrevive a un
+ * reinicio si se configura fuera de {@code /tmp}: el barrido de ingestas
+ * demoradas retoma los documentos pendientes con su archivo intacto.
+ */
+public class LocalDiskKnowledgeBaseStagingAdapter implements IKnowledgeBaseStagingPort {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalDiskKnowledgeBaseStagingAdapter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    public LocalDiskKnowledgeBaseStagingAdapter(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String stage(Long documentId, InputStream content, long size) {
+        Path part = directory.resolve(documentId + ".part");
+        MessageDigest sha256 = sha256();
+        try {
+            Files.createDirectories(directory);
+            long copied = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (OutputStream out = Files.newOutputStream(part)) {
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    copied += read;
+                    if (copied > size) {
+                        break;
+                    }
+                    out.write(buffer, 0, read);
+                    sha256.update(buffer, 0, read);
+                }
+            }
+            if (copied != size) {
+                Files.deleteIfExists(part);
+                throw new StorageException("El archivo subido no tiene el tamanio declarado ("
+                        + size + " bytes).");
+            }
+            Files.move(part, fileOf(documentId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return HexFormat.of().formatHex(sha256.digest());
+        } catch (IOException ex) {
+            deleteQuietly(part);
+            throw new StorageException("No se pudo copiar el archivo al staging: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public InputStream open(Long documentId) {
+        try {
+            return Files.newInputStream(fileOf(documentId));
+        } catch (NoSuchFileException ex) {
+            throw new StorageException("No hay archivo en staging para el documento " + documentId + ".", ex);
+        } catch (IOException ex) {
+            throw new StorageException("No se pudo abrir el archivo en staging: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public void discard(Long documentId) {
+        deleteQuietly(fileOf(documentId));
+    }
+
+    private Path fileOf(Long documentId) {
+        return directory.resolve(documentId + ".bin");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 no disponible en la JVM", ex);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("No se pudo borrar {} del staging de la KB: {}", path, ex.getMessage());
+        }
+    }
+}
@@ -5,14 +5,38 @@ import org.slf4j.LoggerFactory;
 import site.utnpf.odontolink.application.port.out.IObjectStoragePort;
 import site.utnpf.odontolink.application.port.out.StorageException;
 import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
 
 /**
  * Implementacion del puerto {@link IObjectStoragePort} contra cualquier
@@ -30,19 +54,56 @@ import software.amazon.awssdk.services.s3.model.S3Exception;
  * configuracion de beans (atributo {@code destroyMethod = "close"} en la
  * declaracion del bean S3Client): esta clase NO cierra el cliente, porque
  * podria ser compartido entre adapters.
+ *
+ * <p>Subida por stream ({@link #upload(String, InputStream, long, String)}):
+ * el contenido se lee de a una parte de {@code partSizeBytes} en un buffer
+ * que se reutiliza. Si entra en una parte va en un solo PUT; si no, como
+ * multipart upload. Cada PUT/parte lleva su {@code Content-MD5} (el storage
+ * rechaza la parte si llego corrupta) y el SHA-256 del objeto completo se
+ * acumula parte por parte. Ante cualquier falla el multipart se aborta para
+ * no dejar partes huerfanas cobrando espacio.
+ *
+ * <p>Descarga por stream ({@link #openStream}): se devuelve el body del GET
+ * tal cual llega del storage, con el {@code Range} pedido. Si el caller
+ * cierra el stream antes del final (cliente HTTP que corto la descarga) la
+ * conexion se aborta: cerrarla normalmente obligaria a leer y descartar el
+ * resto del objeto. Las URLs prefirmadas requieren un {@link S3Presigner}
+ * con las mismas credenciales que el cliente.
  */
 public class S3CompatibleObjectStorageAdapter implements IObjectStoragePort {
 
     private static final Logger log = LoggerFactory.getLogger(S3CompatibleObjectStorageAdapter.class);
 
+    /** S3 exige al menos 5 MiB en toda parte salvo la ultima. */
+    public static final int MIN_PART_SIZE_BYTES = 5 * 1024 * 1024;
+    public static final int DEFAULT_PART_SIZE_BYTES = MIN_PART_SIZE_BYTES;
+
     private final S3Client s3Client;
+    private final S3Presigner presigner;
     private final String bucket;
     private final String publicBaseUrl;
+    private final int partSizeBytes;
 
     public S3CompatibleObjectStorageAdapter(S3Client s3Client, String bucket, String publicBaseUrl) {
+        this(s3Client, bucket, publicBaseUrl, DEFAULT_PART_SIZE_BYTES);
+    }
+
+    public S3CompatibleObjectStorageAdapter(S3Client s3Client, String bucket, String publicBaseUrl,
+                                            int partSizeBytes) {
+        this(s3Client, null, bucket, publicBaseUrl, partSizeBytes);
+    }
+
+    public S3CompatibleObjectStorageAdapter(S3Client s3Client, S3Presigner presigner, String bucket,
+                                            String publicBaseUrl, int partSizeBytes) {
+        if (partSizeBytes < MIN_PART_SIZE_BYTES) {
+            throw new IllegalArgumentException(
+                    "partSizeBytes debe ser al menos " + MIN_PART_SIZE_BYTES + " (minimo de S3 por parte).");
+        }
         this.s3Client = s3Client;
+        this.presigner = presigner;
         this.bucket = bucket;
         this.publicBaseUrl = publicBaseUrl;
+        this.partSizeBytes = partSizeBytes;
     }
 
     @Override
@@ -63,6 +124,145 @@ public class S3CompatibleObjectStorageAdapter implements IObjectStoragePort {
         }
     }
 
+    @Override
+    public UploadedObject upload(String key, InputStream content, long contentLength, String contentType) {
+        requireConfigured();
+        if (contentLength < 0) {
+            throw new StorageException("Largo invalido para el objeto '" + key + "': " + contentLength);
+        }
+        MessageDigest sha256 = digest("SHA-256");
+        byte[] buffer = new byte[(int) Math.min(contentLength, partSizeBytes)];
+        try {
+            int first = readPart(content, buffer, key);
+            sha256.update(buffer, 0, first);
+            if (first == contentLength) {
+                requireEndOfStream(content, key);
+                putSingle(key, buffer, first, contentType);
+            } else {
+                uploadMultipart(key, content, contentLength, contentType, buffer, first, sha256);
+            }
+        } catch (IOException ex) {
+            throw new StorageException("Falla leyendo el contenido del objeto '" + key + "'.", ex);
+        } catch (S3Exception | SdkClientException ex) {
+            throw new StorageException("Falla al subir el objeto '" + key + "' al storage.", ex);
+        }
+        return new UploadedObject(buildPublicUrl(key), contentLength, HexFormat.of().formatHex(sha256.digest()));
+    }
+
+    private void putSingle(String key, byte[] buffer, int length, String contentType) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) length)
+                .contentMD5(md5Base64(buffer, length))
+                .build();
+        s3Client.putObject(request, bodyOf(buffer, length));
+    }
+
+    /**
+     * Multipart upload a partir de la primera parte ya leida en
+     * {@code buffer}. Las partes siguientes se leen sobre el mismo buffer.
+     */
+    private void uploadMultipart(String key, InputStream content, long contentLength, String contentType,
+                                 byte[] buffer, int firstPartLength, MessageDigest sha256) throws IOException {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .build()).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            long sent = 0;
+            int length = firstPartLength;
+            while (true) {
+                int partNumber = parts.size() + 1;
+                String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) length)
+                        .contentMD5(md5Base64(buffer, length))
+                        .build(), bodyOf(buffer, length)).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+                sent += length;
+                if (sent == contentLength) {
+                    break;
+                }
+                length = readPart(content, buffer, (int) Math.min(buffer.length, contentLength - sent), key);
+                sha256.update(buffer, 0, length);
+            }
+            requireEndOfStream(content, key);
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+            log.debug("Multipart upload completo: key={}, parts={}, bytes={}", key, parts.size(), contentLength);
+        } catch (IOException | RuntimeException ex) {
+            abortQuietly(key, uploadId);
+            throw ex;
+        }
+    }
+
+    private static int readPart(InputStream content, byte[] buffer, String key) throws IOException {
+        return readPart(content, buffer, buffer.length, key);
+    }
+
+    /** Lee exactamente {@code length} bytes; menos significa que el stream era mas corto que lo declarado. */
+    private static int readPart(InputStream content, byte[] buffer, int length, String key) throws IOException {
+        int read = content.readNBytes(buffer, 0, length);
+        if (read < length) {
+            throw new StorageException(
+                    "El contenido del objeto '" + key + "' termino antes del largo declarado.");
+        }
+        return read;
+    }
+
+    private static void requireEndOfStream(InputStream content, String key) throws IOException {
+        if (content.read() != -1) {
+            throw new StorageException(
+                    "El contenido del objeto '" + key + "' excede el largo declarado.");
+        }
+    }
+
+    private void abortQuietly(String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (S3Exception | SdkClientException ex) {
+            log.warn("No se pudo abortar el multipart upload {} de '{}': {}", uploadId, key, ex.getMessage());
+        }
+    }
+
+    /**
+     * Body sobre el buffer sin copiarlo. El SDK pide un stream nuevo en cada
+     * reintento, asi que releer es seguro.
+     */
+    private static RequestBody bodyOf(byte[] buffer, int length) {
+        return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer, 0, length),
+                length, "application/octet-stream");
+    }
+
+    private static String md5Base64(byte[] buffer, int length) {
+        MessageDigest md5 = digest("MD5");
+        md5.update(buffer, 0, length);
+        return Base64.getEncoder().encodeToString(md5.digest());
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(algorithm + " no disponible en la JVM.", ex);
+        }
+    }
+
     @Override
     public void delete(String key) {
         requireConfigured();
@@ -97,6 +297,50 @@ public class S3CompatibleObjectStorageAdapter implements IObjectStoragePort {
         }
     }
 
+    @Override
+    public ObjectStream openStream(String key, ByteRange range) {
+        requireConfigured();
+        try {
+            GetObjectRequest.Builder request = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key);
+            if (range != null) {
+                request.range("bytes=" + range.first() + "-" + range.last());
+            }
+            ResponseInputStream<GetObjectResponse> response = s3Client.getObject(request.build());
+            Long contentLength = response.response().contentLength();
+            return new ObjectStream(
+                    new AbortOnEarlyCloseInputStream(response),
+                    response.response().contentType(),
+                    contentLength != null ? contentLength : -1L);
+        } catch (NoSuchKeyException ex) {
+            throw new StorageException("Objeto '" + key + "' no encontrado en el storage.", ex);
+        } catch (S3Exception ex) {
+            throw new StorageException("Falla al descargar el objeto '" + key + "' del storage.", ex);
+        }
+    }
+
+    @Override
+    public String presignDownload(String key, Duration ttl, String contentType, String fileName) {
+        requireConfigured();
+        if (presigner == null) {
+            throw new StorageException("Este bucket no tiene firmador configurado: no hay URLs prefirmadas.");
+        }
+        String safeName = URLEncoder.encode(fileName == null ? "document" : fileName, StandardCharsets.UTF_8);
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .responseContentType(contentType)
+                .responseContentDisposition("attachment; filename*=UTF-8''" + safeName)
+                .build();
+        return presigner.presignGetObject(GetObjectPresignRequest.builder()
+                        .signatureDuration(ttl)
+                        .getObjectRequest(request)
+                        .build())
+                .url()
+                .toString();
+    }
+
     @Override
     public String buildPublicUrl(String key) {
         if (publicBaseUrl == null || publicBaseUrl.isBlank()) {
@@ -121,4 +365,43 @@ public class S3CompatibleObjectStorageAdapter implements IObjectStoragePort {
         // problemas de configuracion en un ambiente nuevo.
         log.trace("S3 adapter operating on bucket={}", bucket);
     }
+
+    /**
+     * Aborta la conexion HTTP si se cierra antes de leer todo el body. El
+     * cliente del SDK, al cerrar normalmente, drena lo que falta para poder
+     * reusar la conexion: con un objeto de 10 MB y un cliente que corto, eso
+     * es bajar 10 MB para tirarlos.
+     */
+    private static final class AbortOnEarlyCloseInputStream extends FilterInputStream {
+
+        private final ResponseInputStream<GetObjectResponse> response;
+        private boolean finished;
+
+        private AbortOnEarlyCloseInputStream(ResponseInputStream<GetObjectResponse> response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            finished |= b == -1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            finished |= n == -1;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                response.abort();
+            }
+            super.close();
+        }
+    }
 }
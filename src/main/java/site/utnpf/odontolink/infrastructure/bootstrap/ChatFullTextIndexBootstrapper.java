@@ -0,0 +1,71 @@
+package site.utnpf.odontolink.infrastructure.bootstrap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Crea el índice FULLTEXT que respalda la búsqueda del chat
+ * ({@code GET /api/chat/messages/search}).
+ *
+ * <p>Hibernate no sabe declarar índices FULLTEXT desde {@code @Index}. En desarrollo el
+ * esquema lo genera {@code ddl-auto}, así que con
+ * {@code odontolink.chat.search.ensure-fulltext-index=true} (solo el perfil dev) el índice
+ * se asegura acá al arrancar: si no existe en {@code information_schema} se crea con un
+ * ALTER.
+ *
+ * <p>En producción ({@code ddl-auto=validate}) el flag queda en {@code false}: el primer
+ * ALTER reconstruye {@code chat_messages} y, corriendo en un {@code ApplicationRunner},
+ * demoraría el arranque lo suficiente para que el healthcheck mate al contenedor. El DBA
+ * lo crea antes del deploy:
+ * <pre>
+ *   CREATE FULLTEXT INDEX ft_chat_message_content ON chat_messages (content);
+ * </pre>
+ *
+ * <p>Fallas (motor sin FULLTEXT, permisos, otra instancia creándolo en paralelo) se
+ * loguean a WARN sin tumbar el arranque: la búsqueda fallará hasta que el índice exista,
+ * pero el resto del chat no depende de él.
+ */
+@Component
+public class ChatFullTextIndexBootstrapper implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatFullTextIndexBootstrapper.class);
+
+    static final String INDEX_NAME = "ft_chat_message_content";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${odontolink.chat.search.ensure-fulltext-index:false}")
+    private boolean enabled;
+
+    public ChatFullTextIndexBootstrapper(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Integer existing = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM information_schema.STATISTICS " +
+                            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_messages' AND INDEX_NAME = ?",
+                    Integer.class, INDEX_NAME);
+            if (existing != null && existing > 0) {
+                return;
+            }
+            log.info("Chat: creando índice FULLTEXT {} sobre chat_messages.content...", INDEX_NAME);
+            jdbcTemplate.execute("ALTER TABLE chat_messages ADD FULLTEXT INDEX " + INDEX_NAME + " (content)");
+            log.info("Chat: índice FULLTEXT {} creado.", INDEX_NAME);
+        } catch (DataAccessException ex) {
+            log.warn("Chat: no se pudo asegurar el índice FULLTEXT {}; la búsqueda no estará disponible. {}",
+                    INDEX_NAME, ex.getMessage());
+        }
+    }
+}
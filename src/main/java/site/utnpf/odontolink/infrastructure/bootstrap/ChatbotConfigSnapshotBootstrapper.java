@@ -0,0 +1,30 @@
+package site.utnpf.odontolink.infrastructure.bootstrap;
+
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
+
+/**
+ * Carga la configuracion del chatbot en memoria al arrancar (RF29), antes
+ * del primer turno. Si el agente esta publicado y no hay URL de invocacion,
+ * el descubrimiento via management API corre aca y no en la request del
+ * primer usuario.
+ *
+ * <p>Una falla (BD o proveedor caidos) solo se loguea: el primer turno
+ * reintenta la carga y el job de refresh la vuelve a intentar.
+ */
+@Component
+public class ChatbotConfigSnapshotBootstrapper implements ApplicationRunner {
+
+    private final ChatbotConfigSnapshotHolder configSnapshot;
+
+    public ChatbotConfigSnapshotBootstrapper(ChatbotConfigSnapshotHolder configSnapshot) {
+        this.configSnapshot = configSnapshot;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        configSnapshot.refreshQuietly();
+    }
+}
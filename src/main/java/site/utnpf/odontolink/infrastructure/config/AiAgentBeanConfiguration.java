@@ -1,20 +1,30 @@
 package site.utnpf.odontolink.infrastructure.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.client.RestClient;
 import site.utnpf.odontolink.application.port.in.IAiAgentConfigurationUseCase;
 import site.utnpf.odontolink.application.port.in.IAiAgentVersioningUseCase;
 import site.utnpf.odontolink.application.port.in.IAiGovernancePolicyUseCase;
 import site.utnpf.odontolink.application.port.in.IChatbotInteractionUseCase;
+import site.utnpf.odontolink.application.port.in.IChatbotSessionPurgeUseCase;
 import site.utnpf.odontolink.application.port.in.IEmergencyKeywordAdminUseCase;
 import site.utnpf.odontolink.application.port.in.IAgentPolicyRuleAdminUseCase;
 import site.utnpf.odontolink.application.port.in.IKnowledgeBaseAdminUseCase;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseIngestionUseCase;
+import site.utnpf.odontolink.application.port.out.IChatbotQueryEmbeddingPort;
+import site.utnpf.odontolink.application.port.out.IChatbotTurnMetricsPort;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseIngestionQueuePort;
 import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseStagingPort;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
 import site.utnpf.odontolink.application.port.out.IObjectStoragePort;
@@ -22,11 +32,18 @@ import site.utnpf.odontolink.application.service.AiAgentConfigurationService;
 import site.utnpf.odontolink.application.service.AiAgentVersioningService;
 import site.utnpf.odontolink.application.service.AiGovernancePolicyService;
 import site.utnpf.odontolink.application.service.ChatbotInteractionService;
+import site.utnpf.odontolink.application.service.ChatbotSessionPurgeService;
 import site.utnpf.odontolink.application.service.EmergencyKeywordAdminService;
 import site.utnpf.odontolink.application.service.AgentPolicyRuleAdminService;
 import site.utnpf.odontolink.application.service.KnowledgeBaseAdminService;
+import site.utnpf.odontolink.application.service.KnowledgeBaseIngestionService;
 import site.utnpf.odontolink.application.service.security.EmergencyDetector;
 import site.utnpf.odontolink.application.service.security.PiiSanitizer;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
+import site.utnpf.odontolink.application.service.support.ChatbotConversationWindow;
+import site.utnpf.odontolink.application.service.support.ChatbotRequestCoalescer;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
+import site.utnpf.odontolink.application.service.support.KnowledgeBaseReindexDebouncer;
 import site.utnpf.odontolink.application.service.support.SingletonRowBootstrap;
 import site.utnpf.odontolink.domain.model.ConfidenceCalculatorConfig;
 import site.utnpf.odontolink.domain.repository.AiAdminAuditEventRepository;
@@ -40,11 +57,17 @@ import site.utnpf.odontolink.domain.repository.AgentPolicyRuleRepository;
 import site.utnpf.odontolink.domain.repository.KnowledgeBaseDocumentRepository;
 import site.utnpf.odontolink.domain.service.ConfidenceCalculator;
 import site.utnpf.odontolink.domain.service.RefusalDetector;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.AdaptiveConcurrencyLimiter;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.DigitalOceanAgentInvokerAdapter;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.DigitalOceanAgentPlatformProperties;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.DigitalOceanGradientClient;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.DigitalOceanHttpClients;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.DigitalOceanKnowledgeBaseAdapter;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.DigitalOceanLlmAgentAdapter;
+import site.utnpf.odontolink.infrastructure.adapters.output.ingestion.KnowledgeBaseIngestionExecutor;
+import site.utnpf.odontolink.infrastructure.adapters.output.metrics.ChatbotResponseCacheMetricsBinder;
+import site.utnpf.odontolink.infrastructure.adapters.output.metrics.MicrometerChatbotTurnMetricsAdapter;
+import site.utnpf.odontolink.infrastructure.adapters.output.storage.LocalDiskKnowledgeBaseStagingAdapter;
 import site.utnpf.odontolink.infrastructure.adapters.output.storage.S3CompatibleObjectStorageAdapter;
 import site.utnpf.odontolink.infrastructure.config.confidence.ConfidenceCalculatorProperties;
 import site.utnpf.odontolink.infrastructure.security.AuthenticationFacade;
@@ -56,8 +79,12 @@ import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
 
 /**
  * Configuracion de beans del modulo de administracion del agente IA
@@ -74,6 +101,17 @@ import java.net.URI;
 })
 public class AiAgentBeanConfiguration {
 
+    /**
+     * Cliente HTTP compartido por los tres RestClient de DO: un solo pool de
+     * conexiones keep-alive (HTTP/2 cuando el server lo negocia). El de
+     * invocacion y el del probe van al mismo host del agente, asi que el
+     * health-check tambien reutiliza la conexion del chatbot.
+     */
+    @Bean(name = "doGradientHttpClient")
+    public HttpClient doGradientHttpClient(DigitalOceanAgentPlatformProperties props) {
+        return DigitalOceanHttpClients.create(props);
+    }
+
     /**
      * RestClient para el <strong>management API</strong> de DigitalOcean
      * Gradient ({@code api.digitalocean.com/v2/gen-ai/*}). Usa el Personal
@@ -83,14 +121,12 @@ public class AiAgentBeanConfiguration {
      */
     @Bean(name = "doGradientManagementRestClient")
     public RestClient doGradientManagementRestClient(DigitalOceanAgentPlatformProperties props,
-                                                     RestClient.Builder builder) {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(props.getConnectTimeoutMs());
-        factory.setReadTimeout(props.getReadTimeoutMs());
-
+                                                     RestClient.Builder builder,
+                                                     @Qualifier("doGradientHttpClient") HttpClient httpClient) {
         return builder
                 .baseUrl(props.getEndpointBaseUrl())
-                .requestFactory(factory)
+                .requestFactory(DigitalOceanHttpClients.requestFactory(
+                        httpClient, props, props.getReadTimeoutMs()))
                 .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + props.getAccessToken())
                 .build();
     }
@@ -108,13 +144,30 @@ public class AiAgentBeanConfiguration {
      */
     @Bean(name = "doGradientInvocationRestClient")
     public RestClient doGradientInvocationRestClient(DigitalOceanAgentPlatformProperties props,
-                                                     RestClient.Builder builder) {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(props.getConnectTimeoutMs());
-        factory.setReadTimeout(props.getReadTimeoutMs());
+                                                     RestClient.Builder builder,
+                                                     @Qualifier("doGradientHttpClient") HttpClient httpClient) {
+        return builder
+                .requestFactory(DigitalOceanHttpClients.requestFactory(
+                        httpClient, props, props.getReadTimeoutMs()))
+                .defaultHeader(HttpHeaders.AUTHORIZATION,
+                        "Bearer " + props.getAgentInvocationAccessKey())
+                .build();
+    }
 
+    /**
+     * RestClient de invocacion para {@code stream=true}. Mismo bearer que el
+     * de invocacion pero sin timeout total: en el cliente pooled el read
+     * timeout acota el intercambio completo y cortaria cada respuesta larga
+     * a los {@code readTimeoutMs}. El silencio entre chunks lo acota
+     * {@code doGradientInvocationStreamClient}.
+     */
+    @Bean(name = "doGradientInvocationStreamRestClient")
+    public RestClient doGradientInvocationStreamRestClient(DigitalOceanAgentPlatformProperties props,
+                                                           RestClient.Builder builder,
+                                                           @Qualifier("doGradientHttpClient") HttpClient httpClient) {
         return builder
-                .requestFactory(factory)
+                .requestFactory(DigitalOceanHttpClients.streamingRequestFactory(
+                        httpClient, props, props.getReadTimeoutMs()))
                 .defaultHeader(HttpHeaders.AUTHORIZATION,
                         "Bearer " + props.getAgentInvocationAccessKey())
                 .build();
@@ -130,13 +183,11 @@ public class AiAgentBeanConfiguration {
      */
     @Bean(name = "doGradientInvocationProbeRestClient")
     public RestClient doGradientInvocationProbeRestClient(DigitalOceanAgentPlatformProperties props,
-                                                          RestClient.Builder builder) {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(props.getConnectTimeoutMs());
-        factory.setReadTimeout(props.getProbeReadTimeoutMs());
-
+                                                          RestClient.Builder builder,
+                                                          @Qualifier("doGradientHttpClient") HttpClient httpClient) {
         return builder
-                .requestFactory(factory)
+                .requestFactory(DigitalOceanHttpClients.requestFactory(
+                        httpClient, props, props.getProbeReadTimeoutMs()))
                 .defaultHeader(HttpHeaders.AUTHORIZATION,
                         "Bearer " + props.getAgentInvocationAccessKey())
                 .build();
@@ -160,6 +211,18 @@ public class AiAgentBeanConfiguration {
         return new DigitalOceanGradientClient(restClient, "invocation");
     }
 
+    /**
+     * Cliente para invocaciones en streaming: {@code readTimeoutMs} es el
+     * silencio maximo entre chunks, no la duracion total del stream.
+     */
+    @Bean(name = "doGradientInvocationStreamClient")
+    public DigitalOceanGradientClient doGradientInvocationStreamClient(
+            @Qualifier("doGradientInvocationStreamRestClient") RestClient restClient,
+            DigitalOceanAgentPlatformProperties props) {
+        return new DigitalOceanGradientClient(restClient, "invocation-stream",
+                Duration.ofMillis(props.getReadTimeoutMs()));
+    }
+
     /** Cliente para el probe del health-check (timeout corto). */
     @Bean(name = "doGradientInvocationProbeClient")
     public DigitalOceanGradientClient doGradientInvocationProbeClient(
@@ -168,6 +231,7 @@ public class AiAgentBeanConfiguration {
     }
 
     @Bean
+    @Profile("!llm-stub")
     public ILlmAgentProviderPort llmAgentProviderPort(
             @Qualifier("doGradientManagementClient") DigitalOceanGradientClient client) {
         return new DigitalOceanLlmAgentAdapter(client);
@@ -187,45 +251,78 @@ public class AiAgentBeanConfiguration {
     @Bean(name = "aiKbS3Client", destroyMethod = "close")
     public S3Client aiKbS3Client(DigitalOceanAgentPlatformProperties props) {
         DigitalOceanAgentPlatformProperties.Storage storage = props.getStorage();
-        String endpoint = (storage.getEndpoint() == null || storage.getEndpoint().isBlank())
-                ? "https://invalid-ai-kb-endpoint.localhost"
-                : storage.getEndpoint();
-        String region = (storage.getRegion() == null || storage.getRegion().isBlank())
-                ? "auto"
-                : storage.getRegion();
-        String accessKey = (storage.getAccessKeyId() == null || storage.getAccessKeyId().isBlank())
-                ? "unset"
-                : storage.getAccessKeyId();
-        String secretKey = (storage.getSecretAccessKey() == null || storage.getSecretAccessKey().isBlank())
-                ? "unset"
-                : storage.getSecretAccessKey();
-
-        S3Configuration s3Config = S3Configuration.builder()
-                .pathStyleAccessEnabled(storage.isPathStyle())
-                .build();
         return S3Client.builder()
-                .endpointOverride(URI.create(endpoint))
-                .region(Region.of(region))
-                .credentialsProvider(StaticCredentialsProvider.create(
-                        AwsBasicCredentials.create(accessKey, secretKey)))
+                .endpointOverride(kbStorageEndpoint(storage))
+                .region(kbStorageRegion(storage))
+                .credentialsProvider(kbStorageCredentials(storage))
                 .httpClient(UrlConnectionHttpClient.create())
                 .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
                 .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED)
-                .serviceConfiguration(s3Config)
+                .serviceConfiguration(kbStorageS3Configuration(storage))
+                .build();
+    }
+
+    /**
+     * Firmador de URLs de descarga directa del bucket de la KB. Firma
+     * localmente (no hace requests), con el mismo endpoint y credenciales
+     * que {@code aiKbS3Client}.
+     */
+    @Bean(name = "aiKbS3Presigner", destroyMethod = "close")
+    public S3Presigner aiKbS3Presigner(DigitalOceanAgentPlatformProperties props) {
+        DigitalOceanAgentPlatformProperties.Storage storage = props.getStorage();
+        return S3Presigner.builder()
+                .endpointOverride(kbStorageEndpoint(storage))
+                .region(kbStorageRegion(storage))
+                .credentialsProvider(kbStorageCredentials(storage))
+                .serviceConfiguration(kbStorageS3Configuration(storage))
                 .build();
     }
 
     @Bean
     @Qualifier("aiKbObjectStorage")
     public IObjectStoragePort aiKbObjectStorage(@Qualifier("aiKbS3Client") S3Client aiKbS3Client,
+                                                @Qualifier("aiKbS3Presigner") S3Presigner aiKbS3Presigner,
                                                 DigitalOceanAgentPlatformProperties props) {
         return new S3CompatibleObjectStorageAdapter(
                 aiKbS3Client,
+                aiKbS3Presigner,
                 props.getStorage().getBucket(),
-                props.getStorage().getPublicBaseUrl()
+                props.getStorage().getPublicBaseUrl(),
+                props.getStorage().getPartSizeBytes()
         );
     }
 
+    // Config vacia se acepta con placeholders: el modulo arranca y falla
+    // recien al usarse, con el mensaje de validateModuleConfigured().
+
+    private static URI kbStorageEndpoint(DigitalOceanAgentPlatformProperties.Storage storage) {
+        return URI.create((storage.getEndpoint() == null || storage.getEndpoint().isBlank())
+                ? "https://invalid-ai-kb-endpoint.localhost"
+                : storage.getEndpoint());
+    }
+
+    private static Region kbStorageRegion(DigitalOceanAgentPlatformProperties.Storage storage) {
+        return Region.of((storage.getRegion() == null || storage.getRegion().isBlank())
+                ? "auto"
+                : storage.getRegion());
+    }
+
+    private static StaticCredentialsProvider kbStorageCredentials(DigitalOceanAgentPlatformProperties.Storage storage) {
+        String accessKey = (storage.getAccessKeyId() == null || storage.getAccessKeyId().isBlank())
+                ? "unset"
+                : storage.getAccessKeyId();
+        String secretKey = (storage.getSecretAccessKey() == null || storage.getSecretAccessKey().isBlank())
+                ? "unset"
+                : storage.getSecretAccessKey();
+        return StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+    }
+
+    private static S3Configuration kbStorageS3Configuration(DigitalOceanAgentPlatformProperties.Storage storage) {
+        return S3Configuration.builder()
+                .pathStyleAccessEnabled(storage.isPathStyle())
+                .build();
+    }
+
     @Bean
     public IAiAgentConfigurationUseCase aiAgentConfigurationUseCase(
             AiAgentConfigurationRepository configRepository,
@@ -239,7 +336,9 @@ public class AiAgentBeanConfiguration {
             ILlmAgentInvokerPort invokerPort,
             AuthenticationFacade authFacade,
             SingletonRowBootstrap singletonBootstrap,
-            DigitalOceanAgentPlatformProperties props) {
+            DigitalOceanAgentPlatformProperties props,
+            ChatbotResponseCache chatbotResponseCache,
+            ChatbotConfigSnapshotHolder chatbotConfigSnapshot) {
         return new AiAgentConfigurationService(
                 configRepository,
                 policyRuleRepository,
@@ -253,15 +352,18 @@ public class AiAgentBeanConfiguration {
                 authFacade,
                 singletonBootstrap,
                 props.getAgentUuid(),
-                props.getAgentInvocationUrl()
+                props.getAgentInvocationUrl(),
+                chatbotResponseCache,
+                chatbotConfigSnapshot
         );
     }
 
     @Bean
     public IAgentPolicyRuleAdminUseCase agentPolicyRuleAdminUseCase(
             AgentPolicyRuleRepository policyRuleRepository,
-            AiAgentConfigurationRepository configRepository) {
-        return new AgentPolicyRuleAdminService(policyRuleRepository, configRepository);
+            AiAgentConfigurationRepository configRepository,
+            ChatbotConfigSnapshotHolder chatbotConfigSnapshot) {
+        return new AgentPolicyRuleAdminService(policyRuleRepository, configRepository, chatbotConfigSnapshot);
     }
 
     @Bean
@@ -269,9 +371,10 @@ public class AiAgentBeanConfiguration {
             site.utnpf.odontolink.domain.repository.ProviderGuardrailRepository guardrailRepository,
             AiAgentConfigurationRepository configRepository,
             ILlmAgentProviderPort llmProvider,
-            DigitalOceanAgentPlatformProperties props) {
+            DigitalOceanAgentPlatformProperties props,
+            ChatbotConfigSnapshotHolder chatbotConfigSnapshot) {
         return new site.utnpf.odontolink.application.service.ProviderGuardrailAdminService(
-                guardrailRepository, configRepository, llmProvider, props.getAgentUuid());
+                guardrailRepository, configRepository, llmProvider, props.getAgentUuid(), chatbotConfigSnapshot);
     }
 
     @Bean
@@ -290,14 +393,16 @@ public class AiAgentBeanConfiguration {
             AiAdminAuditEventRepository auditRepository,
             ILlmAgentProviderPort llmProvider,
             AuthenticationFacade authFacade,
-            DigitalOceanAgentPlatformProperties props) {
+            DigitalOceanAgentPlatformProperties props,
+            ChatbotConfigSnapshotHolder chatbotConfigSnapshot) {
         return new AiAgentVersioningService(
                 versionRepository,
                 configRepository,
                 auditRepository,
                 llmProvider,
                 authFacade,
-                props.getAgentUuid()
+                props.getAgentUuid(),
+                chatbotConfigSnapshot
         );
     }
 
@@ -306,19 +411,91 @@ public class AiAgentBeanConfiguration {
             KnowledgeBaseDocumentRepository documentRepository,
             IKnowledgeBaseProviderPort kbProvider,
             @Qualifier("aiKbObjectStorage") IObjectStoragePort aiKbStorage,
-            DigitalOceanAgentPlatformProperties props) {
+            IKnowledgeBaseStagingPort kbStaging,
+            IKnowledgeBaseIngestionQueuePort kbIngestionQueue,
+            DigitalOceanAgentPlatformProperties props,
+            ChatbotResponseCache chatbotResponseCache,
+            KnowledgeBaseReindexDebouncer kbReindexDebouncer,
+            @Value("${odontolink.ai-agent.storage.direct-download-min-bytes:0}") long directDownloadMinBytes,
+            @Value("${odontolink.ai-agent.storage.direct-download-ttl-seconds:300}") long directDownloadTtlSeconds) {
         return new KnowledgeBaseAdminService(
                 documentRepository,
                 kbProvider,
                 aiKbStorage,
+                kbStaging,
+                kbIngestionQueue,
+                props.getKnowledgeBaseUuid(),
+                props.getStorage().getBucket(),
+                props.getStorage().getRegion(),
+                props.getMaxUploadBytes(),
+                chatbotResponseCache,
+                kbReindexDebouncer,
+                directDownloadMinBytes,
+                Duration.ofSeconds(directDownloadTtlSeconds)
+        );
+    }
+
+    /**
+     * Directorio donde el alta de un archivo deja el binario hasta que el
+     * pipeline de ingesta lo sube al bucket.
+     */
+    @Bean
+    public IKnowledgeBaseStagingPort kbStaging(
+            @Value("${odontolink.ai-agent.ingestion.staging-dir:${java.io.tmpdir}/odontolink-kb-staging}") String stagingDir) {
+        return new LocalDiskKnowledgeBaseStagingAdapter(Path.of(stagingDir));
+    }
+
+    /**
+     * Pipeline de ingesta en background: upload, registro e indexacion con
+     * reintentos por etapa.
+     */
+    @Bean
+    public IKnowledgeBaseIngestionUseCase knowledgeBaseIngestionUseCase(
+            KnowledgeBaseDocumentRepository documentRepository,
+            IKnowledgeBaseProviderPort kbProvider,
+            @Qualifier("aiKbObjectStorage") IObjectStoragePort aiKbStorage,
+            IKnowledgeBaseStagingPort kbStaging,
+            DigitalOceanAgentPlatformProperties props,
+            ChatbotResponseCache chatbotResponseCache,
+            KnowledgeBaseReindexDebouncer kbReindexDebouncer,
+            @Value("${odontolink.ai-agent.ingestion.max-attempts:3}") int maxAttempts,
+            @Value("${odontolink.ai-agent.ingestion.backoff-ms:2000}") long backoffMs) {
+        return new KnowledgeBaseIngestionService(
+                documentRepository,
+                kbProvider,
+                aiKbStorage,
+                kbStaging,
+                chatbotResponseCache,
+                kbReindexDebouncer,
                 props.getKnowledgeBaseUuid(),
                 props.getStorage().getBucket(),
                 props.getStorage().getRegion(),
                 props.getStorage().getKeyPrefix(),
-                props.getMaxUploadBytes()
+                maxAttempts,
+                Duration.ofMillis(backoffMs)
         );
     }
 
+    /**
+     * Junta los pedidos de indexacion de altas, ediciones y bajas en un solo
+     * indexing job por ventana de quietud.
+     */
+    @Bean
+    public KnowledgeBaseReindexDebouncer kbReindexDebouncer(
+            @Value("${odontolink.ai-agent.reindex.quiet-window-ms:5000}") long quietWindowMs,
+            @Value("${odontolink.ai-agent.reindex.max-delay-ms:60000}") long maxDelayMs) {
+        return new KnowledgeBaseReindexDebouncer(quietWindowMs, maxDelayMs);
+    }
+
+    @Bean
+    public IKnowledgeBaseIngestionQueuePort kbIngestionQueue(
+            IKnowledgeBaseIngestionUseCase ingestionUseCase,
+            MeterRegistry meterRegistry,
+            @Value("${odontolink.ai-agent.ingestion.workers:2}") int workers,
+            @Value("${odontolink.ai-agent.ingestion.queue-capacity:100}") int queueCapacity) {
+        return new KnowledgeBaseIngestionExecutor(ingestionUseCase, workers, queueCapacity, meterRegistry);
+    }
+
     // -- Beans del chatbot institucional (RF29/RF31/RF32/RF34) -----------
 
     @Bean
@@ -359,25 +536,52 @@ public class AiAgentBeanConfiguration {
      * Resilience4j envuelve las invocaciones gracias a sus anotaciones.
      */
     @Bean
+    @Profile("!llm-stub")
     public ILlmAgentInvokerPort llmAgentInvokerPort(
             @Qualifier("doGradientInvocationClient") DigitalOceanGradientClient invocationClient,
+            @Qualifier("doGradientInvocationStreamClient") DigitalOceanGradientClient streamClient,
             @Qualifier("doGradientInvocationProbeClient") DigitalOceanGradientClient probeClient,
-            DigitalOceanAgentPlatformProperties props) {
-        return new DigitalOceanAgentInvokerAdapter(invocationClient, probeClient, props.getInvocationModel());
+            DigitalOceanAgentPlatformProperties props,
+            MeterRegistry meterRegistry,
+            AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        return new DigitalOceanAgentInvokerAdapter(invocationClient, streamClient, probeClient,
+                props.getInvocationModel(), meterRegistry, concurrencyLimiter);
+    }
+
+    /**
+     * Limite adaptativo de invocaciones sincronicas en curso al agente. Lo
+     * comparten el adapter de DO y el agente local del perfil llm-stub.
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter agentConcurrencyLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${odontolink.chatbot.provider-limit.initial-limit:16}") int initialLimit,
+            @Value("${odontolink.chatbot.provider-limit.min-limit:2}") int minLimit,
+            @Value("${odontolink.chatbot.provider-limit.max-limit:16}") int maxLimit) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, meterRegistry);
+    }
+
+    /** Desglose de latencia de los turnos del chatbot en Micrometer. */
+    @Bean
+    public IChatbotTurnMetricsPort chatbotTurnMetricsPort(MeterRegistry meterRegistry) {
+        return new MicrometerChatbotTurnMetricsAdapter(meterRegistry);
     }
 
     @Bean
     public IChatbotInteractionUseCase chatbotInteractionUseCase(
-            AiAgentConfigurationRepository configRepository,
+            ChatbotConfigSnapshotHolder chatbotConfigSnapshot,
             ChatbotSessionRepository sessionRepository,
             ChatbotMessageRepository messageRepository,
             EmergencyKeywordRepository emergencyKeywordRepository,
             PiiSanitizer piiSanitizer,
             EmergencyDetector emergencyDetector,
             ILlmAgentInvokerPort invokerPort,
-            ILlmAgentProviderPort providerPort,
             ConfidenceCalculator confidenceCalculator,
-            DigitalOceanAgentPlatformProperties props) {
+            PlatformTransactionManager transactionManager,
+            ChatbotResponseCache chatbotResponseCache,
+            ChatbotRequestCoalescer chatbotRequestCoalescer,
+            ChatbotConversationWindow chatbotConversationWindow,
+            IChatbotTurnMetricsPort chatbotTurnMetrics) {
         // Nota: el GuardrailRepository se quito a proposito. Los guardrails se
         // componen al system prompt SOLO en el flujo de publish() (lo hace
         // AiAgentConfigurationService); DigitalOcean Gradient los aplica
@@ -386,23 +590,104 @@ public class AiAgentBeanConfiguration {
         // que el wire enviara role=system que DO rechaza con 400 cuando se
         // invoca con ?agent=true.
         return new ChatbotInteractionService(
-                configRepository,
+                chatbotConfigSnapshot,
                 sessionRepository,
                 messageRepository,
                 emergencyKeywordRepository,
                 piiSanitizer,
                 emergencyDetector,
                 invokerPort,
-                providerPort,
                 confidenceCalculator,
-                props.getAgentInvocationUrl(),
-                props.getAgentUuid()
+                transactionManager,
+                chatbotResponseCache,
+                chatbotRequestCoalescer,
+                chatbotConversationWindow,
+                chatbotTurnMetrics
         );
     }
 
+    /**
+     * Cache de respuestas del chatbot, compartido entre el turno (consulta y
+     * guarda) y los servicios de publish y KB (invalidan). El tier semantico
+     * se activa solo si algun adapter registra un {@link IChatbotQueryEmbeddingPort}.
+     */
+    @Bean
+    public ChatbotResponseCache chatbotResponseCache(
+            ObjectProvider<IChatbotQueryEmbeddingPort> embeddingPort,
+            @Value("${odontolink.chatbot.response-cache.max-entries:500}") int maxEntries,
+            @Value("${odontolink.chatbot.response-cache.ttl-minutes:60}") long ttlMinutes,
+            @Value("${odontolink.chatbot.response-cache.max-query-length:200}") int maxQueryLength,
+            @Value("${odontolink.chatbot.response-cache.similarity-threshold:0.92}") double similarityThreshold) {
+        return new ChatbotResponseCache(maxEntries, Duration.ofMinutes(ttlMinutes), maxQueryLength,
+                embeddingPort.getIfAvailable(), similarityThreshold);
+    }
+
+    /**
+     * Configuracion del chatbot en memoria. La leen los turnos; la refrescan
+     * los servicios que escriben la configuracion, el bootstrap y un job.
+     */
+    @Bean
+    public ChatbotConfigSnapshotHolder chatbotConfigSnapshotHolder(
+            AiAgentConfigurationRepository configRepository,
+            ILlmAgentProviderPort providerPort,
+            DigitalOceanAgentPlatformProperties props,
+            PlatformTransactionManager transactionManager) {
+        return new ChatbotConfigSnapshotHolder(configRepository, providerPort,
+                props.getAgentInvocationUrl(), props.getAgentUuid(), transactionManager);
+    }
+
+    /**
+     * Coalescer de invocaciones identicas en vuelo. Comparte la clave del
+     * cache de respuestas; {@code max-wait-ms=0} lo desactiva.
+     */
+    @Bean
+    public ChatbotRequestCoalescer chatbotRequestCoalescer(
+            @Value("${odontolink.chatbot.coalescing.max-wait-ms:8000}") long maxWaitMs) {
+        return new ChatbotRequestCoalescer(Duration.ofMillis(maxWaitMs));
+    }
+
+    /**
+     * Metricas del cache de respuestas y del coalescer. Spring Boot enlaza
+     * cualquier {@code MeterBinder} al registry.
+     */
+    @Bean
+    public ChatbotResponseCacheMetricsBinder chatbotResponseCacheMetricsBinder(
+            ChatbotResponseCache chatbotResponseCache,
+            ChatbotRequestCoalescer chatbotRequestCoalescer) {
+        return new ChatbotResponseCacheMetricsBinder(chatbotResponseCache, chatbotRequestCoalescer);
+    }
+
+    /**
+     * Ventana conversacional en memoria del chatbot. Singleton compartido entre
+     * el turno (agrega mensajes) y los jobs de flush y recorte.
+     */
+    @Bean
+    public ChatbotConversationWindow chatbotConversationWindow(
+            @Value("${odontolink.chatbot.conversation-window.max-sessions:2000}") int maxSessions) {
+        return new ChatbotConversationWindow(maxSessions);
+    }
+
+    /**
+     * Purga de sesiones inactivas del chatbot por lotes. Las anonimas vencen
+     * en horas; las de usuario autenticado conservan su memoria por dias.
+     */
+    @Bean
+    public IChatbotSessionPurgeUseCase chatbotSessionPurgeUseCase(
+            ChatbotSessionRepository sessionRepository,
+            ChatbotMessageRepository messageRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${odontolink.chatbot.session-purge.anonymous-ttl-hours:24}") long anonymousTtlHours,
+            @Value("${odontolink.chatbot.session-purge.authenticated-ttl-days:30}") long authenticatedTtlDays,
+            @Value("${odontolink.chatbot.session-purge.batch-size:500}") int batchSize,
+            @Value("${odontolink.chatbot.session-purge.max-batches:200}") int maxBatches) {
+        return new ChatbotSessionPurgeService(sessionRepository, messageRepository, transactionManager,
+                Duration.ofHours(anonymousTtlHours), Duration.ofDays(authenticatedTtlDays), batchSize, maxBatches);
+    }
+
     @Bean
     public IEmergencyKeywordAdminUseCase emergencyKeywordAdminUseCase(
-            EmergencyKeywordRepository repository) {
-        return new EmergencyKeywordAdminService(repository);
+            EmergencyKeywordRepository repository,
+            EmergencyDetector emergencyDetector) {
+        return new EmergencyKeywordAdminService(repository, emergencyDetector);
     }
 }
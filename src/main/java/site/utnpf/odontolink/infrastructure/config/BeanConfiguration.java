@@ -5,10 +5,12 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
 import site.utnpf.odontolink.application.port.in.IAdminUserManagementUseCase;
 import site.utnpf.odontolink.application.port.in.IAppointmentUseCase;
 import site.utnpf.odontolink.application.port.in.IAttentionUseCase;
 import site.utnpf.odontolink.application.port.in.IAuthUseCase;
+import site.utnpf.odontolink.application.port.in.IChatArchivalUseCase;
 import site.utnpf.odontolink.application.port.in.IChatUseCase;
 import site.utnpf.odontolink.application.port.in.IFeedbackCriterionCatalogUseCase;
 import site.utnpf.odontolink.application.port.in.IFeedbackUseCase;
@@ -35,12 +37,15 @@ import site.utnpf.odontolink.application.service.AdminUserManagementService;
 import site.utnpf.odontolink.application.service.AppointmentService;
 import site.utnpf.odontolink.application.service.AttentionService;
 import site.utnpf.odontolink.application.service.AuthService;
+import site.utnpf.odontolink.application.service.ChatArchivalService;
 import site.utnpf.odontolink.application.service.ChatService;
 import site.utnpf.odontolink.application.service.FeedbackCriterionCatalogService;
 import site.utnpf.odontolink.application.service.FeedbackService;
 import site.utnpf.odontolink.application.service.NonWorkingDayService;
 import site.utnpf.odontolink.application.service.PractitionerPerformanceService;
 import site.utnpf.odontolink.application.service.SupervisorFeedbackDashboardService;
+import site.utnpf.odontolink.application.service.support.ChatReadAcknowledgementBuffer;
+import site.utnpf.odontolink.application.service.support.ChatUnreadCounter;
 import site.utnpf.odontolink.application.service.support.SupervisorScopeResolver;
 import site.utnpf.odontolink.application.service.InstitutionalSettingsService;
 import site.utnpf.odontolink.application.service.OfferedTreatmentService;
@@ -71,6 +76,7 @@ import site.utnpf.odontolink.domain.repository.SupervisorRepository;
 import site.utnpf.odontolink.domain.repository.TreatmentRepository;
 import site.utnpf.odontolink.domain.repository.UserRepository;
 import site.utnpf.odontolink.domain.repository.ChatSessionRepository;
+import site.utnpf.odontolink.domain.repository.ChatMessageArchiveRepository;
 import site.utnpf.odontolink.domain.repository.ChatMessageRepository;
 import site.utnpf.odontolink.domain.service.AppointmentBookingService;
 import site.utnpf.odontolink.domain.service.AttentionPolicyService;
@@ -86,6 +92,8 @@ import site.utnpf.odontolink.domain.service.slotstrategy.SlotGenerationStrategy;
 import site.utnpf.odontolink.infrastructure.adapters.output.holidays.ArgentinaDatosHolidayClient;
 import site.utnpf.odontolink.infrastructure.config.ratelimit.RateLimitRegistry;
 
+import java.time.Duration;
+
 /**
  * Configuración de Beans para la capa de aplicación.
  * Define explícitamente los beans de los casos de uso (puertos de entrada)
@@ -587,7 +595,11 @@ public class BeanConfiguration {
             PractitionerRepository practitionerRepository,
             AppointmentRepository appointmentRepository,
             ChatPolicyService chatPolicyService,
-            @Value("${odontolink.chat.initial-load-cap:100}") int chatInitialLoadCap) {
+            @Value("${odontolink.chat.initial-load-cap:100}") int chatInitialLoadCap,
+            ChatReadAcknowledgementBuffer chatReadAcknowledgementBuffer,
+            ChatMessageArchiveRepository chatMessageArchiveRepository,
+            ChatUnreadCounter chatUnreadCounter,
+            PlatformTransactionManager transactionManager) {
         return new ChatService(
                 chatSessionRepository,
                 chatMessageRepository,
@@ -595,10 +607,59 @@ public class BeanConfiguration {
                 practitionerRepository,
                 appointmentRepository,
                 chatPolicyService,
-                chatInitialLoadCap
+                chatInitialLoadCap,
+                chatReadAcknowledgementBuffer,
+                chatMessageArchiveRepository,
+                chatUnreadCounter,
+                transactionManager
+        );
+    }
+
+    /**
+     * Archivado del chat a chunks comprimidos. Las ventanas están en días porque el job
+     * corre una vez por noche; {@code chunk-size} acota el tamaño de cada blob (y de cada
+     * transacción) y {@code max-sessions-per-run} la duración de cada corrida.
+     */
+    @Bean
+    public IChatArchivalUseCase chatArchivalUseCase(
+            ChatMessageRepository chatMessageRepository,
+            ChatSessionRepository chatSessionRepository,
+            ChatMessageArchiveRepository chatMessageArchiveRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${odontolink.chat.archive.min-age-days:180}") long minAgeDays,
+            @Value("${odontolink.chat.archive.inactive-days:90}") long inactiveDays,
+            @Value("${odontolink.chat.archive.chunk-size:500}") int chunkSize,
+            @Value("${odontolink.chat.archive.max-sessions-per-run:200}") int maxSessionsPerRun) {
+        return new ChatArchivalService(
+                chatMessageRepository,
+                chatSessionRepository,
+                chatMessageArchiveRepository,
+                transactionManager,
+                Duration.ofDays(minAgeDays),
+                Duration.ofDays(inactiveDays),
+                chunkSize,
+                maxSessionsPerRun
         );
     }
 
+    /**
+     * Buffer de confirmaciones de lectura del chat. Singleton compartido entre el
+     * {@link ChatService} (que encola) y el job de flush (que drena y publica métricas).
+     */
+    @Bean
+    public ChatReadAcknowledgementBuffer chatReadAcknowledgementBuffer() {
+        return new ChatReadAcknowledgementBuffer();
+    }
+
+    /**
+     * Contador en memoria del badge global de no-leídos. Singleton compartido entre el
+     * {@link ChatService} y el job que lo reconcilia contra la base.
+     */
+    @Bean
+    public ChatUnreadCounter chatUnreadCounter() {
+        return new ChatUnreadCounter();
+    }
+
     /**
      * Bean para el caso de uso de gestión administrativa de usuarios (RF05).
      *
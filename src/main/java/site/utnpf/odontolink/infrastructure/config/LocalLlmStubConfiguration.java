@@ -0,0 +1,40 @@
+package site.utnpf.odontolink.infrastructure.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort;
+import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.AdaptiveConcurrencyLimiter;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.stub.LocalLlmStubInvokerAdapter;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.stub.LocalLlmStubProperties;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.stub.LocalLlmStubProviderAdapter;
+
+import java.util.Random;
+
+/**
+ * Reemplaza al agente de DigitalOcean por un agente local cuando el perfil
+ * {@code llm-stub} esta activo. Pensado para pruebas de carga del chatbot
+ * sin red ni costo de tokens: el resto del pipeline (pool, circuit breaker,
+ * rate limiting, cache, base) queda igual que en produccion.
+ *
+ * <p>Los beans de DO equivalentes en {@link AiAgentBeanConfiguration} estan
+ * marcados con {@code @Profile("!llm-stub")}.
+ */
+@Configuration
+@Profile("llm-stub")
+@EnableConfigurationProperties(LocalLlmStubProperties.class)
+public class LocalLlmStubConfiguration {
+
+    @Bean
+    public ILlmAgentInvokerPort llmAgentInvokerPort(LocalLlmStubProperties props,
+                                                    AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        return new LocalLlmStubInvokerAdapter(props, new Random(), concurrencyLimiter);
+    }
+
+    @Bean
+    public ILlmAgentProviderPort llmAgentProviderPort() {
+        return new LocalLlmStubProviderAdapter();
+    }
+}
@@ -0,0 +1,15 @@
+package site.utnpf.odontolink.infrastructure.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita los jobs periódicos ({@code @Scheduled}) de la aplicación.
+ *
+ * <p>Los jobs viven en {@code infrastructure.scheduling} y solo disparan casos de uso:
+ * la lógica queda en la capa de aplicación, igual que con los controllers REST.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,5 +1,6 @@
 package site.utnpf.odontolink.infrastructure.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -45,6 +46,12 @@ public class SecurityConfig {
     @Value("${cors.allowed.origins}")
     private String allowedOrigins;
 
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
     public SecurityConfig(CustomUserDetailsService userDetailsService,
                          JwtAuthenticationFilter jwtAuthenticationFilter,
                          RateLimitingFilter rateLimitingFilter,
@@ -62,11 +69,21 @@ public class SecurityConfig {
                 .csrf(AbstractHttpConfigurer::disable)
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Las descargas streameadas (StreamingResponseBody) se
+                        // completan en un dispatch ASYNC que ya no trae el JWT.
+                        // La autorizacion se resolvio en el dispatch original,
+                        // antes de escribir el primer byte.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/patients/register").permitAll()
                         .requestMatchers("/api/practitioners/register").permitAll()
                         .requestMatchers("/api/supervisors/register").permitAll()
                         .requestMatchers("/actuator/health", "/actuator/info").permitAll()
+                        // Puerto de management (solo actuator): lo alcanzan el
+                        // healthcheck y el scraper de Prometheus, que no manejan
+                        // JWT. El puerto no se publica; si se configura igual al
+                        // de la app, no se abre nada.
+                        .requestMatchers(request -> isManagementPort(request.getLocalPort())).permitAll()
                         .requestMatchers("/v3/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                         // RF29: el chatbot institucional acepta requests anonimas o
                         // autenticadas. El control de acceso real (PUBLIC/PRIVATE/
@@ -78,6 +95,7 @@ public class SecurityConfig {
                         // si hay token valido).
                         .requestMatchers("/api/chatbot/info").permitAll()
                         .requestMatchers("/api/chatbot/messages").permitAll()
+                        .requestMatchers("/api/chatbot/messages/stream").permitAll()
                         .requestMatchers("/api/chatbot/sessions/**").permitAll()
                         // RF-site-appearance: el landing publico consulta este
                         // endpoint sin sesion para aplicar el theme/font/mode
@@ -107,6 +125,10 @@ public class SecurityConfig {
         return http.build();
     }
 
+    private boolean isManagementPort(int localPort) {
+        return managementPort > 0 && managementPort != serverPort && localPort == managementPort;
+    }
+
     /**
      * Configuración de CORS basada en variables de entorno.
      * Permite configurar diferentes orígenes según el ambiente (dev, prod).
@@ -33,7 +33,8 @@ import java.io.IOException;
  * <p>El filter no consulta directo a BD: usa {@link IChatbotRateLimitPolicyPort}
  * que tiene caching local con TTL para no martillar la BD en cada request.
  *
- * <p>Solo se aplica a {@code POST /api/chatbot/messages}: los demas endpoints
+ * <p>Solo se aplica a {@code POST /api/chatbot/messages} y a su variante
+ * {@code /messages/stream} (comparten bucket): los demas endpoints
  * del chatbot (info, close-session) son livianos y se rate-limitean solo
  * via el filter general.
  */
@@ -41,6 +42,7 @@ import java.io.IOException;
 public class ChatbotRateLimitingFilter extends OncePerRequestFilter {
 
     private static final String CHATBOT_MESSAGES_PATH = "/api/chatbot/messages";
+    private static final String CHATBOT_MESSAGES_STREAM_PATH = "/api/chatbot/messages/stream";
 
     private final RateLimitRegistry registry;
     private final IChatbotRateLimitPolicyPort policyPort;
@@ -60,7 +62,8 @@ public class ChatbotRateLimitingFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
 
         if (!"POST".equalsIgnoreCase(request.getMethod())
-                || !CHATBOT_MESSAGES_PATH.equals(request.getRequestURI())) {
+                || !(CHATBOT_MESSAGES_PATH.equals(request.getRequestURI())
+                        || CHATBOT_MESSAGES_STREAM_PATH.equals(request.getRequestURI()))) {
             filterChain.doFilter(request, response);
             return;
         }
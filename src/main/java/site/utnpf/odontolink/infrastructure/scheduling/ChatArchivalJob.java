@@ -0,0 +1,70 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.port.in.IChatArchivalUseCase;
+import site.utnpf.odontolink.application.port.in.dto.ChatArchivalResult;
+
+import java.time.Instant;
+
+/**
+ * Corre el archivado del chat (ver {@code ChatArchivalService}) una vez por noche.
+ *
+ * <p>Se apaga con {@code odontolink.chat.archive.enabled=false}. Está pensado para una
+ * sola instancia: con varias réplicas, la guarda de DELETE del servicio evita duplicados
+ * pero una de las corridas se abortará.
+ *
+ * <p>Métricas publicadas:
+ * <ul>
+ *   <li>{@code chat.archive.messages}: mensajes movidos al tier frío.</li>
+ *   <li>{@code chat.archive.chunks}: chunks creados.</li>
+ *   <li>{@code chat.archive.bytes}: bytes comprimidos escritos.</li>
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty(name = "odontolink.chat.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class ChatArchivalJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatArchivalJob.class);
+
+    private final IChatArchivalUseCase chatArchivalUseCase;
+    private final Counter messages;
+    private final Counter chunks;
+    private final Counter bytes;
+
+    public ChatArchivalJob(IChatArchivalUseCase chatArchivalUseCase, MeterRegistry meterRegistry) {
+        this.chatArchivalUseCase = chatArchivalUseCase;
+        this.messages = Counter.builder("chat.archive.messages")
+                .description("Mensajes de chat movidos al tier frio")
+                .register(meterRegistry);
+        this.chunks = Counter.builder("chat.archive.chunks")
+                .description("Chunks de chat archivados")
+                .register(meterRegistry);
+        this.bytes = Counter.builder("chat.archive.bytes")
+                .description("Bytes comprimidos escritos en el tier frio")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${odontolink.chat.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        try {
+            ChatArchivalResult result = chatArchivalUseCase.archiveColdMessages(Instant.now());
+            messages.increment(result.messages());
+            chunks.increment(result.chunks());
+            bytes.increment(result.compressedBytes());
+            if (result.messages() > 0) {
+                log.info("Archivado de chat: {} mensajes en {} chunks ({} bytes) de {} sesiones",
+                        result.messages(), result.chunks(), result.compressedBytes(), result.sessions());
+            }
+        } catch (RuntimeException ex) {
+            // Solo se revierte el chunk en curso; lo ya archivado queda y la
+            // próxima corrida sigue desde ahí.
+            log.warn("Archivado de chat fallido: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.port.in.IChatUseCase;
+import site.utnpf.odontolink.application.service.support.ChatReadAcknowledgementBuffer;
+
+/**
+ * Aplica periódicamente las confirmaciones de lectura coalescidas del chat (CU012).
+ *
+ * <p>La ventana ({@code odontolink.chat.read-ack.flush-interval-ms}, default 250 ms) es el
+ * máximo que tarda un read receipt en llegar a la base; el poll del sender corre cada
+ * varios segundos, así que no se percibe.
+ *
+ * <p>Al apagar la app se hace un último flush: lo pendiente no sobrevive al proceso.
+ *
+ * <p>Métricas publicadas:
+ * <ul>
+ *   <li>{@code chat.read_ack.requests}: confirmaciones recibidas.</li>
+ *   <li>{@code chat.read_ack.updates}: UPDATEs emitidos.</li>
+ *   <li>{@code chat.read_ack.rows}: filas marcadas como leídas.</li>
+ *   <li>{@code chat.read_ack.write_amplification}: updates / requests.</li>
+ *   <li>{@code chat.read_ack.pending}: claves esperando el próximo flush.</li>
+ * </ul>
+ */
+@Component
+public class ChatReadAcknowledgementFlushJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatReadAcknowledgementFlushJob.class);
+
+    private final IChatUseCase chatUseCase;
+
+    public ChatReadAcknowledgementFlushJob(IChatUseCase chatUseCase,
+                                           ChatReadAcknowledgementBuffer buffer,
+                                           MeterRegistry meterRegistry) {
+        this.chatUseCase = chatUseCase;
+
+        FunctionCounter.builder("chat.read_ack.requests", buffer,
+                        ChatReadAcknowledgementBuffer::getAcknowledgementsReceived)
+                .description("Confirmaciones de lectura recibidas")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.read_ack.updates", buffer,
+                        ChatReadAcknowledgementBuffer::getUpdatesIssued)
+                .description("UPDATEs de lectura emitidos tras coalescer")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.read_ack.rows", buffer,
+                        ChatReadAcknowledgementBuffer::getRowsUpdated)
+                .description("Mensajes marcados como leidos")
+                .register(meterRegistry);
+        Gauge.builder("chat.read_ack.write_amplification", buffer,
+                        ChatReadAcknowledgementBuffer::writeAmplification)
+                .description("UPDATEs emitidos por confirmacion recibida")
+                .register(meterRegistry);
+        Gauge.builder("chat.read_ack.pending", buffer, ChatReadAcknowledgementBuffer::pendingCount)
+                .description("Confirmaciones esperando el proximo flush")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.chat.read-ack.flush-interval-ms:250}")
+    public void flush() {
+        try {
+            chatUseCase.flushReadAcknowledgements();
+        } catch (RuntimeException ex) {
+            // Las confirmaciones ya se reencolaron; el próximo ciclo reintenta.
+            log.warn("Flush de confirmaciones de lectura fallido, se reintenta: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
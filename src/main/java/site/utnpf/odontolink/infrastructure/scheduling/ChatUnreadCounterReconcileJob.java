@@ -0,0 +1,74 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.port.in.IChatUseCase;
+import site.utnpf.odontolink.application.service.support.ChatUnreadCounter;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Reconcilia periódicamente el badge de no-leídos en memoria contra el COUNT de la base
+ * (CU012 - P8) y descarta los contadores de usuarios inactivos.
+ *
+ * <p>Cada corrida hace un COUNT por usuario cargado; con la expiración por inactividad
+ * ({@code odontolink.chat.unread-counter.idle-ttl-minutes}, default 30) eso queda acotado
+ * a los usuarios que están navegando la app.
+ *
+ * <p>Métricas publicadas:
+ * <ul>
+ *   <li>{@code chat.unread_counter.hits}: badges servidos desde memoria.</li>
+ *   <li>{@code chat.unread_counter.loads}: badges que necesitaron el COUNT inicial.</li>
+ *   <li>{@code chat.unread_counter.drift}: unidades corregidas por la reconciliación.</li>
+ *   <li>{@code chat.unread_counter.size}: usuarios con contador cargado.</li>
+ * </ul>
+ */
+@Component
+public class ChatUnreadCounterReconcileJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatUnreadCounterReconcileJob.class);
+
+    private final IChatUseCase chatUseCase;
+    private final Duration idleTtl;
+
+    public ChatUnreadCounterReconcileJob(IChatUseCase chatUseCase,
+                                         ChatUnreadCounter counter,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${odontolink.chat.unread-counter.idle-ttl-minutes:30}") long idleTtlMinutes) {
+        this.chatUseCase = chatUseCase;
+        this.idleTtl = Duration.ofMinutes(idleTtlMinutes);
+
+        FunctionCounter.builder("chat.unread_counter.hits", counter, ChatUnreadCounter::getHits)
+                .description("Badges de no-leidos servidos desde memoria")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.unread_counter.loads", counter, ChatUnreadCounter::getLoads)
+                .description("Badges de no-leidos cargados con COUNT")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.unread_counter.drift", counter, ChatUnreadCounter::getDriftCorrected)
+                .description("Unidades de deriva corregidas por la reconciliacion")
+                .register(meterRegistry);
+        Gauge.builder("chat.unread_counter.size", counter, ChatUnreadCounter::size)
+                .description("Usuarios con contador de no-leidos en memoria")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.chat.unread-counter.reconcile-interval-ms:60000}",
+            initialDelayString = "${odontolink.chat.unread-counter.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        try {
+            int corrected = chatUseCase.reconcileUnreadCounters(Instant.now().minus(idleTtl));
+            if (corrected > 0) {
+                log.debug("Contadores de no-leidos corregidos: {}", corrected);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Reconciliacion de contadores de no-leidos fallida: {}", ex.getMessage());
+        }
+    }
+}
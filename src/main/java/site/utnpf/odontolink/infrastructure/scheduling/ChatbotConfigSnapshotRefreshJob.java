@@ -0,0 +1,29 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
+
+/**
+ * Refresh periodico de la configuracion del chatbot en memoria (RF29).
+ *
+ * <p>Las escrituras de esta instancia ya refrescan el snapshot al commitear;
+ * este job cubre las hechas por otra instancia contra la misma BD y reintenta
+ * el descubrimiento de la URL si el ultimo fallo. Es una lectura por
+ * intervalo, no por turno.
+ */
+@Component
+public class ChatbotConfigSnapshotRefreshJob {
+
+    private final ChatbotConfigSnapshotHolder configSnapshot;
+
+    public ChatbotConfigSnapshotRefreshJob(ChatbotConfigSnapshotHolder configSnapshot) {
+        this.configSnapshot = configSnapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.chatbot.config-snapshot.refresh-interval-ms:60000}",
+            initialDelayString = "${odontolink.chatbot.config-snapshot.refresh-interval-ms:60000}")
+    public void refresh() {
+        configSnapshot.refreshQuietly();
+    }
+}
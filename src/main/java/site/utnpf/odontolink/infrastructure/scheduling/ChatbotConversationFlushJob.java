@@ -0,0 +1,83 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.port.in.IChatbotInteractionUseCase;
+import site.utnpf.odontolink.application.service.support.ChatbotConversationWindow;
+
+/**
+ * Persiste periodicamente los mensajes que los turnos del chatbot dejaron en
+ * la ventana conversacional (RF29).
+ *
+ * <p>La ventana ({@code odontolink.chatbot.conversation-window.flush-interval-ms},
+ * default 500 ms) es lo maximo que tarda un mensaje en llegar a la base y lo
+ * que se pierde ante una caida. Al apagar la app se hace un ultimo flush.
+ *
+ * <p>Metricas publicadas:
+ * <ul>
+ *   <li>{@code chatbot.conversation_window.hits}: turnos servidos desde memoria.</li>
+ *   <li>{@code chatbot.conversation_window.loads}: ventanas reconstruidas desde la base.</li>
+ *   <li>{@code chatbot.conversation_window.evictions}: ventanas desalojadas por LRU.</li>
+ *   <li>{@code chatbot.conversation_window.flushed}: mensajes persistidos.</li>
+ *   <li>{@code chatbot.conversation_window.flushes}: commits de flush.</li>
+ *   <li>{@code chatbot.conversation_window.pending}: mensajes esperando el proximo flush.</li>
+ *   <li>{@code chatbot.conversation_window.size}: sesiones con ventana en memoria.</li>
+ * </ul>
+ */
+@Component
+public class ChatbotConversationFlushJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotConversationFlushJob.class);
+
+    private final IChatbotInteractionUseCase chatbotUseCase;
+
+    public ChatbotConversationFlushJob(IChatbotInteractionUseCase chatbotUseCase,
+                                       ChatbotConversationWindow window,
+                                       MeterRegistry meterRegistry) {
+        this.chatbotUseCase = chatbotUseCase;
+
+        FunctionCounter.builder("chatbot.conversation_window.hits", window, ChatbotConversationWindow::getHits)
+                .description("Turnos del chatbot con la ventana ya en memoria")
+                .register(meterRegistry);
+        FunctionCounter.builder("chatbot.conversation_window.loads", window, ChatbotConversationWindow::getLoads)
+                .description("Ventanas del chatbot reconstruidas desde la base")
+                .register(meterRegistry);
+        FunctionCounter.builder("chatbot.conversation_window.evictions", window, ChatbotConversationWindow::getEvictions)
+                .description("Ventanas del chatbot desalojadas por LRU")
+                .register(meterRegistry);
+        FunctionCounter.builder("chatbot.conversation_window.flushed", window,
+                        ChatbotConversationWindow::getMessagesFlushed)
+                .description("Mensajes del chatbot persistidos por el flush")
+                .register(meterRegistry);
+        FunctionCounter.builder("chatbot.conversation_window.flushes", window, ChatbotConversationWindow::getFlushes)
+                .description("Commits del flush de mensajes del chatbot")
+                .register(meterRegistry);
+        Gauge.builder("chatbot.conversation_window.pending", window, ChatbotConversationWindow::pendingCount)
+                .description("Mensajes del chatbot esperando el proximo flush")
+                .register(meterRegistry);
+        Gauge.builder("chatbot.conversation_window.size", window, ChatbotConversationWindow::size)
+                .description("Sesiones del chatbot con ventana en memoria")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.chatbot.conversation-window.flush-interval-ms:500}")
+    public void flush() {
+        try {
+            chatbotUseCase.flushConversationWrites();
+        } catch (RuntimeException ex) {
+            // Los mensajes ya se reencolaron; el proximo ciclo reintenta.
+            log.warn("Flush de mensajes del chatbot fallido, se reintenta: {}", ex.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
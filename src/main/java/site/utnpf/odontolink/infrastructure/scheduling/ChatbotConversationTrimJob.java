@@ -0,0 +1,42 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.port.in.IChatbotInteractionUseCase;
+
+/**
+ * Recorte periodico del rolling buffer del chatbot en la base (RF29).
+ *
+ * <p>Reemplaza el DELETE que cada turno hacia sobre su sesion: cada corrida
+ * deja los ultimos {@code conversationBufferSize} mensajes de las sesiones
+ * que tuvieron actividad desde la anterior y borra los huerfanos de las que
+ * se cerraron, en lotes con transacciones cortas. El historial que ve el
+ * proveedor sale de la ventana en memoria, asi que el excedente entre
+ * corridas no cambia el comportamiento del chatbot.
+ */
+@Component
+public class ChatbotConversationTrimJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotConversationTrimJob.class);
+
+    private final IChatbotInteractionUseCase chatbotUseCase;
+
+    public ChatbotConversationTrimJob(IChatbotInteractionUseCase chatbotUseCase) {
+        this.chatbotUseCase = chatbotUseCase;
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.chatbot.conversation-window.trim-interval-ms:600000}",
+            initialDelayString = "${odontolink.chatbot.conversation-window.trim-interval-ms:600000}")
+    public void trim() {
+        try {
+            int deleted = chatbotUseCase.trimConversationBuffers();
+            if (deleted > 0) {
+                log.debug("Mensajes del chatbot recortados: {}", deleted);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Recorte del rolling buffer del chatbot fallido: {}", ex.getMessage());
+        }
+    }
+}
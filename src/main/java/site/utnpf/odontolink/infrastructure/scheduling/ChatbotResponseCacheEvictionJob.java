@@ -0,0 +1,36 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
+
+import java.time.Instant;
+
+/**
+ * Purga periodica de las respuestas vencidas del cache del chatbot (RF29).
+ * Sin esta corrida una entrada vencida que nadie vuelve a consultar ocupa
+ * lugar hasta que el LRU la desaloja. Las metricas del cache las publica
+ * {@code ChatbotResponseCacheMetricsBinder}.
+ */
+@Component
+public class ChatbotResponseCacheEvictionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotResponseCacheEvictionJob.class);
+
+    private final ChatbotResponseCache cache;
+
+    public ChatbotResponseCacheEvictionJob(ChatbotResponseCache cache) {
+        this.cache = cache;
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.chatbot.response-cache.eviction-interval-ms:300000}",
+            initialDelayString = "${odontolink.chatbot.response-cache.eviction-interval-ms:300000}")
+    public void evictExpired() {
+        int evicted = cache.evictExpired(Instant.now());
+        if (evicted > 0) {
+            log.debug("Respuestas vencidas descartadas del cache del chatbot: {}", evicted);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.port.in.IChatbotSessionPurgeUseCase;
+import site.utnpf.odontolink.application.port.in.dto.ChatbotSessionPurgeResult;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Corre la purga de sesiones inactivas del chatbot (ver
+ * {@code ChatbotSessionPurgeService}) cada {@code interval-ms}.
+ *
+ * <p>Se apaga con {@code odontolink.chatbot.session-purge.enabled=false}.
+ *
+ * <p>Metricas publicadas (tag {@code kind=anonymous|authenticated}):
+ * <ul>
+ *   <li>{@code chatbot.session.purge.sessions}: sesiones borradas.</li>
+ *   <li>{@code chatbot.session.purge.messages}: mensajes borrados.</li>
+ *   <li>{@code chatbot.session.purge.batch}: duracion de cada lote.</li>
+ * </ul>
+ */
+@Component
+@ConditionalOnProperty(name = "odontolink.chatbot.session-purge.enabled", havingValue = "true", matchIfMissing = true)
+public class ChatbotSessionPurgeJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotSessionPurgeJob.class);
+
+    private final IChatbotSessionPurgeUseCase purgeUseCase;
+    private final MeterRegistry meterRegistry;
+
+    public ChatbotSessionPurgeJob(IChatbotSessionPurgeUseCase purgeUseCase, MeterRegistry meterRegistry) {
+        this.purgeUseCase = purgeUseCase;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.chatbot.session-purge.interval-ms:3600000}",
+            initialDelayString = "${odontolink.chatbot.session-purge.interval-ms:3600000}")
+    public void purge() {
+        try {
+            ChatbotSessionPurgeResult result = purgeUseCase.purgeIdleSessions(Instant.now());
+            for (ChatbotSessionPurgeResult.Batch batch : result.batches()) {
+                String kind = batch.anonymous() ? "anonymous" : "authenticated";
+                Counter.builder("chatbot.session.purge.sessions")
+                        .description("Sesiones del chatbot borradas por inactividad")
+                        .tag("kind", kind)
+                        .register(meterRegistry)
+                        .increment(batch.sessions());
+                Counter.builder("chatbot.session.purge.messages")
+                        .description("Mensajes del chatbot borrados con su sesion inactiva")
+                        .tag("kind", kind)
+                        .register(meterRegistry)
+                        .increment(batch.messages());
+                Timer.builder("chatbot.session.purge.batch")
+                        .description("Duracion de cada lote de la purga de sesiones del chatbot")
+                        .tag("kind", kind)
+                        .register(meterRegistry)
+                        .record(Duration.ofMillis(batch.millis()));
+                log.debug("Purga de sesiones del chatbot ({}): {} sesiones y {} mensajes en {} ms",
+                        kind, batch.sessions(), batch.messages(), batch.millis());
+            }
+            if (result.sessions() > 0) {
+                log.info("Purga de sesiones del chatbot: {} sesiones y {} mensajes en {} lotes",
+                        result.sessions(), result.messages(), result.batches().size());
+            }
+        } catch (RuntimeException ex) {
+            // Solo el lote en curso hizo rollback; la proxima corrida sigue.
+            log.warn("Purga de sesiones del chatbot fallida: {}", ex.getMessage());
+        }
+    }
+}
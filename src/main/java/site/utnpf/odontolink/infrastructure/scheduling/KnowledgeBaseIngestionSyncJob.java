@@ -0,0 +1,63 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseIngestionUseCase;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseIngestionQueuePort;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Sincroniza el pipeline de ingesta de la KB (RF33) cada
+ * {@code status-poll-interval-ms}:
+ * <ol>
+ *   <li>consulta al proveedor los indexing jobs de los documentos en
+ *       {@code INDEXING} y guarda los que terminaron;</li>
+ *   <li>re-encola los documentos que quedaron a mitad del pipeline hace mas
+ *       de {@code stalled-after-ms} (reinicio, cola llena).</li>
+ * </ol>
+ *
+ * <p>Se apaga con {@code odontolink.ai-agent.ingestion.sync-enabled=false}.
+ */
+@Component
+@ConditionalOnProperty(name = "odontolink.ai-agent.ingestion.sync-enabled", havingValue = "true", matchIfMissing = true)
+public class KnowledgeBaseIngestionSyncJob {
+
+    private static final Logger log = LoggerFactory.getLogger(KnowledgeBaseIngestionSyncJob.class);
+
+    private final IKnowledgeBaseIngestionUseCase ingestionUseCase;
+    private final IKnowledgeBaseIngestionQueuePort ingestionQueue;
+    private final Duration stalledAfter;
+
+    public KnowledgeBaseIngestionSyncJob(IKnowledgeBaseIngestionUseCase ingestionUseCase,
+                                         IKnowledgeBaseIngestionQueuePort ingestionQueue,
+                                         @Value("${odontolink.ai-agent.ingestion.stalled-after-ms:600000}") long stalledAfterMs) {
+        this.ingestionUseCase = ingestionUseCase;
+        this.ingestionQueue = ingestionQueue;
+        this.stalledAfter = Duration.ofMillis(stalledAfterMs);
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.ai-agent.ingestion.status-poll-interval-ms:15000}",
+            initialDelayString = "${odontolink.ai-agent.ingestion.status-poll-interval-ms:15000}")
+    public void sync() {
+        try {
+            int finished = ingestionUseCase.reconcileIndexingJobs();
+            if (finished > 0) {
+                log.info("Indexacion de la KB: {} documentos terminaron", finished);
+            }
+            List<Long> stalled = ingestionUseCase.findStalledDocumentIds(Instant.now().minus(stalledAfter));
+            if (!stalled.isEmpty()) {
+                log.info("Re-encolando {} documentos de la KB con la ingesta demorada", stalled.size());
+                stalled.forEach(ingestionQueue::enqueue);
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Sincronizacion de la ingesta de la KB fallida: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package site.utnpf.odontolink.infrastructure.scheduling;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseIngestionUseCase;
+import site.utnpf.odontolink.application.service.support.KnowledgeBaseReindexDebouncer;
+
+/**
+ * Dispara los reindex agrupados de la KB (RF33) cuando el lote pendiente
+ * cumplio su ventana de quietud ({@code odontolink.ai-agent.reindex.*}).
+ *
+ * <p>El ciclo es corto ({@code flush-interval-ms}, default 1 s) y casi
+ * siempre no hace nada: la demora real la fija {@code quiet-window-ms}.
+ *
+ * <p>Metricas publicadas:
+ * <ul>
+ *   <li>{@code kb.reindex.requests}: pedidos de indexacion recibidos.</li>
+ *   <li>{@code kb.reindex.jobs}: indexing jobs disparados por lotes.</li>
+ *   <li>{@code kb.reindex.pending}: data sources esperando el proximo lote.</li>
+ * </ul>
+ */
+@Component
+public class KnowledgeBaseReindexFlushJob {
+
+    private static final Logger log = LoggerFactory.getLogger(KnowledgeBaseReindexFlushJob.class);
+
+    private final IKnowledgeBaseIngestionUseCase ingestionUseCase;
+
+    public KnowledgeBaseReindexFlushJob(IKnowledgeBaseIngestionUseCase ingestionUseCase,
+                                        KnowledgeBaseReindexDebouncer debouncer,
+                                        MeterRegistry meterRegistry) {
+        this.ingestionUseCase = ingestionUseCase;
+
+        FunctionCounter.builder("kb.reindex.requests", debouncer, KnowledgeBaseReindexDebouncer::getRequests)
+                .description("Pedidos de indexacion de la KB recibidos")
+                .register(meterRegistry);
+        FunctionCounter.builder("kb.reindex.jobs", debouncer, KnowledgeBaseReindexDebouncer::getJobsStarted)
+                .description("Indexing jobs disparados tras agrupar pedidos")
+                .register(meterRegistry);
+        Gauge.builder("kb.reindex.pending", debouncer, KnowledgeBaseReindexDebouncer::pendingCount)
+                .description("Data sources esperando el proximo reindex")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${odontolink.ai-agent.reindex.flush-interval-ms:1000}")
+    public void flush() {
+        try {
+            ingestionUseCase.flushQueuedReindex();
+        } catch (RuntimeException ex) {
+            // Los documentos siguen en REINDEX_QUEUED: el barrido de ingestas
+            // demoradas los vuelve a pedir.
+            log.warn("Flush de reindex de la KB fallido: {}", ex.getMessage());
+        }
+    }
+}
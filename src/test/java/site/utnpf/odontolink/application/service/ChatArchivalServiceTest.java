@@ -0,0 +1,199 @@
+package site.utnpf.odontolink.application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import site.utnpf.odontolink.application.port.in.dto.ChatArchivalResult;
+import site.utnpf.odontolink.application.service.support.ChatArchiveCodec;
+import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.domain.model.ChatMessageArchiveChunk;
+import site.utnpf.odontolink.domain.model.ChatSession;
+import site.utnpf.odontolink.domain.model.Patient;
+import site.utnpf.odontolink.domain.model.Practitioner;
+import site.utnpf.odontolink.domain.model.User;
+import site.utnpf.odontolink.domain.repository.ChatMessageArchiveRepository;
+import site.utnpf.odontolink.domain.repository.ChatMessageRepository;
+import site.utnpf.odontolink.domain.repository.ChatSessionRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests del archivado del chat: ventanas de elegibilidad, troceado en chunks con una
+ * transacción por chunk, recorrido de sesiones por keyset y el round-trip del payload
+ * comprimido.
+ */
+class ChatArchivalServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-01T03:30:00Z");
+
+    private ChatMessageRepository messageRepo;
+    private ChatSessionRepository sessionRepo;
+    private ChatMessageArchiveRepository archiveRepo;
+    private CountingTransactionManager txManager;
+    private ChatArchivalService service;
+
+    @BeforeEach
+    void setUp() {
+        messageRepo = mock(ChatMessageRepository.class);
+        sessionRepo = mock(ChatSessionRepository.class);
+        archiveRepo = mock(ChatMessageArchiveRepository.class);
+        txManager = new CountingTransactionManager();
+        service = new ChatArchivalService(messageRepo, sessionRepo, archiveRepo, txManager,
+                Duration.ofDays(180), Duration.ofDays(90), 2, 10);
+        when(sessionRepo.findIdsAfter(0L, 10)).thenReturn(List.of(7L));
+        when(archiveRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(messageRepo.deleteByIds(anyList())).thenAnswer(inv -> ((List<?>) inv.getArgument(0)).size());
+    }
+
+    @Test
+    void troceaLaSesionEnChunksYBorraLoArchivado() {
+        Instant sentBefore = NOW.minus(Duration.ofDays(180));
+        when(messageRepo.findArchivableSessionIds(NOW.minus(Duration.ofDays(90)), List.of(7L)))
+                .thenReturn(List.of(7L));
+        when(messageRepo.findInSessionSentBeforeAsc(7L, sentBefore, 2))
+                .thenReturn(messages(1, 2))
+                .thenReturn(messages(3, 1));
+
+        ChatArchivalResult result = service.archiveColdMessages(NOW);
+
+        assertEquals(1, result.sessions());
+        assertEquals(2, result.chunks());
+        assertEquals(3, result.messages());
+        assertTrue(result.compressedBytes() > 0);
+        ArgumentCaptor<ChatMessageArchiveChunk> saved = ArgumentCaptor.forClass(ChatMessageArchiveChunk.class);
+        verify(archiveRepo, times(2)).save(saved.capture());
+        ChatMessageArchiveChunk first = saved.getAllValues().get(0);
+        assertEquals(1L, first.getFirstMessageId());
+        assertEquals(2L, first.getLastMessageId());
+        assertEquals(2, first.getMessageCount());
+        verify(messageRepo).deleteByIds(List.of(1L, 2L));
+        verify(messageRepo).deleteByIds(List.of(3L));
+        assertEquals(2, txManager.commits, "Una transaccion por chunk.");
+    }
+
+    @Test
+    void sinSesionesElegiblesNoHaceNada() {
+        when(messageRepo.findArchivableSessionIds(any(), anyCollection())).thenReturn(List.of());
+
+        assertEquals(ChatArchivalResult.empty(), service.archiveColdMessages(NOW));
+        verify(archiveRepo, never()).save(any());
+    }
+
+    @Test
+    void deleteParcialRevierteSoloElChunkEnCursoYAbortaLaCorrida() {
+        when(messageRepo.findArchivableSessionIds(any(), anyCollection())).thenReturn(List.of(7L));
+        when(messageRepo.findInSessionSentBeforeAsc(eq(7L), any(), eq(2)))
+                .thenReturn(messages(1, 2))
+                .thenReturn(messages(3, 2));
+        when(messageRepo.deleteByIds(anyList())).thenReturn(2).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> service.archiveColdMessages(NOW));
+
+        assertEquals(1, txManager.commits, "El primer chunk ya quedo archivado.");
+        assertEquals(1, txManager.rollbacks);
+    }
+
+    @Test
+    void recorreLasSesionesPorPaginasYRetomaDondeCortoElCupo() {
+        service = new ChatArchivalService(messageRepo, sessionRepo, archiveRepo, txManager,
+                Duration.ofDays(180), Duration.ofDays(90), 2, 2);
+        when(sessionRepo.findIdsAfter(0L, 2)).thenReturn(List.of(1L, 2L));
+        when(sessionRepo.findIdsAfter(2L, 2)).thenReturn(List.of(3L, 4L));
+        when(sessionRepo.findIdsAfter(3L, 2)).thenReturn(List.of(4L));
+        when(messageRepo.findArchivableSessionIds(any(), eq(List.of(1L, 2L)))).thenReturn(List.of(2L));
+        when(messageRepo.findArchivableSessionIds(any(), eq(List.of(3L, 4L)))).thenReturn(List.of(3L, 4L));
+        when(messageRepo.findArchivableSessionIds(any(), eq(List.of(4L)))).thenReturn(List.of(4L));
+        when(messageRepo.findInSessionSentBeforeAsc(anyLong(), any(), eq(2))).thenAnswer(inv -> messages(1, 1));
+
+        assertEquals(2, service.archiveColdMessages(NOW).sessions());
+        verify(messageRepo, never()).findInSessionSentBeforeAsc(eq(4L), any(), eq(2));
+
+        assertEquals(1, service.archiveColdMessages(NOW).sessions());
+        verify(messageRepo).findInSessionSentBeforeAsc(eq(4L), any(), eq(2));
+
+        // La pagina corta cerro la vuelta: la proxima corrida arranca de nuevo.
+        service.archiveColdMessages(NOW);
+        verify(sessionRepo, times(2)).findIdsAfter(0L, 2);
+    }
+
+    @Test
+    void payloadConservaContenidoLecturaYNanosegundos() {
+        User patientUser = new User();
+        patientUser.setId(1L);
+        User practitionerUser = new User();
+        practitionerUser.setId(2L);
+        ChatSession session = new ChatSession(new Patient(patientUser, null, null),
+                new Practitioner(practitionerUser, "S-1", 4));
+        ChatMessage original = new ChatMessage(session, practitionerUser, "Hola, ¿cómo sigue la encía?");
+        original.setId(99L);
+        original.setSentAt(Instant.parse("2025-01-02T10:00:00.123456789Z"));
+        original.setReadAt(Instant.parse("2025-01-02T10:05:00Z"));
+
+        List<ChatMessage> decoded = ChatArchiveCodec.decode(ChatArchiveCodec.encode(List.of(original)), session);
+
+        ChatMessage m = decoded.get(0);
+        assertEquals(99L, m.getId());
+        assertEquals(original.getContent(), m.getContent());
+        assertEquals(original.getSentAt(), m.getSentAt());
+        assertEquals(original.getReadAt(), m.getReadAt());
+        assertSame(practitionerUser, m.getSender());
+        assertSame(session, m.getChatSession());
+    }
+
+    private static List<ChatMessage> messages(long firstId, int count) {
+        User sender = new User();
+        sender.setId(1L);
+        List<ChatMessage> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ChatMessage m = new ChatMessage(null, sender, "m" + (firstId + i));
+            m.setId(firstId + i);
+            m.setSentAt(Instant.parse("2025-01-01T00:00:00Z").plusSeconds(firstId + i));
+            m.setReadAt(m.getSentAt().plusSeconds(60));
+            out.add(m);
+        }
+        return out;
+    }
+
+    private static class CountingTransactionManager implements PlatformTransactionManager {
+
+        private int commits;
+        private int rollbacks;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            commits++;
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            rollbacks++;
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package site.utnpf.odontolink.application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import site.utnpf.odontolink.application.port.in.dto.ChatMessageCursor;
+import site.utnpf.odontolink.application.port.in.dto.ChatSearchResult;
+import site.utnpf.odontolink.application.port.in.dto.CursorPagedMessages;
+import site.utnpf.odontolink.application.port.in.dto.PagedMessages;
+import site.utnpf.odontolink.application.service.support.ChatArchiveCodec;
+import site.utnpf.odontolink.application.service.support.ChatReadAcknowledgementBuffer;
+import site.utnpf.odontolink.application.service.support.ChatUnreadCounter;
+import site.utnpf.odontolink.domain.exception.InvalidBusinessRuleException;
+import site.utnpf.odontolink.domain.exception.UnauthorizedOperationException;
+import site.utnpf.odontolink.domain.model.ChatMessage;
+import site.utnpf.odontolink.domain.model.ChatMessageArchiveChunk;
+import site.utnpf.odontolink.domain.model.ChatMessageSearchHit;
+import site.utnpf.odontolink.domain.model.ChatSession;
+import site.utnpf.odontolink.domain.model.Patient;
+import site.utnpf.odontolink.domain.model.Practitioner;
+import site.utnpf.odontolink.domain.model.Role;
+import site.utnpf.odontolink.domain.model.User;
+import site.utnpf.odontolink.domain.repository.AppointmentRepository;
+import site.utnpf.odontolink.domain.repository.ChatMessageArchiveRepository;
+import site.utnpf.odontolink.domain.repository.ChatMessageRepository;
+import site.utnpf.odontolink.domain.repository.ChatSessionRepository;
+import site.utnpf.odontolink.domain.repository.PatientRepository;
+import site.utnpf.odontolink.domain.repository.PractitionerRepository;
+import site.utnpf.odontolink.domain.service.ChatPolicyService;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests del orquestador del chat interno (CU012).
+ *
+ * <p>Foco: el historial por cursor keyset (la señal de "hay más" sale de la fila extra y no
+ * de un COUNT), la continuidad con el tier frío archivado y el coalescing de
+ * confirmaciones de lectura (N focos = un UPDATE) y el badge de no-leídos en memoria.
+ */
+class ChatServiceTest {
+
+    private static final long SESSION_ID = 42L;
+
+    private ChatSessionRepository sessionRepo;
+    private ChatMessageRepository messageRepo;
+    private ChatMessageArchiveRepository archiveRepo;
+    private PatientRepository patientRepo;
+    private ChatReadAcknowledgementBuffer ackBuffer;
+    private ChatUnreadCounter unreadCounter;
+    private FakeTransactionManager txManager;
+    private ChatService service;
+    private ChatSession session;
+    private User patientUser;
+    private User practitionerUser;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepo = mock(ChatSessionRepository.class);
+        messageRepo = mock(ChatMessageRepository.class);
+        archiveRepo = mock(ChatMessageArchiveRepository.class);
+        patientRepo = mock(PatientRepository.class);
+        ackBuffer = new ChatReadAcknowledgementBuffer();
+        unreadCounter = new ChatUnreadCounter();
+        txManager = new FakeTransactionManager();
+        service = new ChatService(
+                sessionRepo,
+                messageRepo,
+                patientRepo,
+                mock(PractitionerRepository.class),
+                mock(AppointmentRepository.class),
+                new ChatPolicyService(),
+                100,
+                ackBuffer,
+                archiveRepo,
+                unreadCounter,
+                txManager
+        );
+
+        patientUser = user(1L, Role.ROLE_PATIENT);
+        practitionerUser = user(2L, Role.ROLE_PRACTITIONER);
+        Patient patient = new Patient(patientUser, null, null);
+        patient.setId(10L);
+        Practitioner practitioner = new Practitioner(practitionerUser, "S-1", 4);
+        practitioner.setId(20L);
+        session = new ChatSession(patient, practitioner);
+        session.setId(SESSION_ID);
+        when(patientRepo.findByUserId(1L)).thenReturn(Optional.of(patient));
+        when(sessionRepo.findByPatient(patient)).thenReturn(List.of(session));
+        when(sessionRepo.findById(SESSION_ID)).thenReturn(Optional.of(session));
+    }
+
+    @Test
+    void primeraPaginaSinCursorNoCuentaYEmiteCursorDelUltimoEntregado() {
+        List<ChatMessage> rows = messagesDesc(100L, 4); // size 3 + 1 fila señal
+        when(messageRepo.findInSessionBeforeDesc(eq(session), isNull(), isNull(), eq(4))).thenReturn(rows);
+
+        CursorPagedMessages page = service.getMessagesByCursor(SESSION_ID, patientUser, null, 3, false);
+
+        assertEquals(3, page.getMessages().size());
+        assertTrue(page.hasMore());
+        assertNull(page.getTotalElements());
+        ChatMessageCursor next = ChatMessageCursor.decode(page.getNextCursor());
+        assertEquals(rows.get(2).getId(), next.getId());
+        assertEquals(rows.get(2).getSentAt(), next.getSentAt());
+        verify(messageRepo, never()).countByChatSession(any());
+    }
+
+    @Test
+    void conCursorPideLosAnterioresALaTuplaYCierraAlFinal() {
+        ChatMessage anchor = messagesDesc(50L, 1).get(0);
+        String cursor = ChatMessageCursor.of(anchor).encode();
+        List<ChatMessage> rows = messagesDesc(49L, 2);
+        when(messageRepo.findInSessionBeforeDesc(eq(session), eq(anchor.getSentAt()), eq(50L), eq(4)))
+                .thenReturn(rows);
+        when(messageRepo.countByChatSession(session)).thenReturn(52L);
+
+        CursorPagedMessages page = service.getMessagesByCursor(SESSION_ID, patientUser, cursor, 3, true);
+
+        assertEquals(2, page.getMessages().size());
+        assertFalse(page.hasMore());
+        assertNull(page.getNextCursor());
+        assertEquals(52L, page.getTotalElements());
+    }
+
+    @Test
+    void cursorManipuladoSeRechazaAntesDeConsultar() {
+        InvalidBusinessRuleException ex = assertThrows(InvalidBusinessRuleException.class,
+                () -> service.getMessagesByCursor(SESSION_ID, patientUser, "no-es-un-cursor", 10, false));
+        assertEquals("CHAT_INVALID_CURSOR", ex.getErrorCode());
+        verifyNoInteractions(messageRepo);
+    }
+
+    @Test
+    void cursorRoundTripConservaNanosegundos() {
+        Instant sentAt = Instant.parse("2026-05-13T09:45:02.123456789Z");
+        ChatMessageCursor decoded = ChatMessageCursor.decode(new ChatMessageCursor(sentAt, 7L).encode());
+        assertEquals(sentAt, decoded.getSentAt());
+        assertEquals(7L, decoded.getId());
+    }
+
+    @Test
+    void tamanioFueraDeRangoSeRechaza() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getMessagesByCursor(SESSION_ID, patientUser, null, 0, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.getMessagesByCursor(SESSION_ID, patientUser, null, 201, false));
+        verify(messageRepo, never()).findInSessionBeforeDesc(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void paginaQueCruzaElBordeSeCompletaDesdeElArchivo() {
+        // Tabla caliente: ids 12..10 (3 filas). Archivo: chunk A = ids 4..6, chunk B = ids 7..9.
+        when(messageRepo.countByChatSession(session)).thenReturn(3L);
+        when(messageRepo.findByChatSessionPagedDesc(session, 0, 5)).thenReturn(messagesDesc(12L, 3));
+        archive(chunkOf(9L, 3), chunkOf(6L, 3));
+
+        PagedMessages first = service.getMessagesPaged(SESSION_ID, patientUser, 0, 5);
+        assertEquals(List.of(12L, 11L, 10L, 9L, 8L), ids(first.getMessages()));
+        assertEquals(9L, first.getTotalElements());
+
+        PagedMessages second = service.getMessagesPaged(SESSION_ID, patientUser, 1, 5);
+        assertEquals(List.of(7L, 6L, 5L, 4L), ids(second.getMessages()));
+        // La página 1 queda entera en el archivo: no se consulta la tabla caliente.
+        verify(messageRepo, never()).findByChatSessionPagedDesc(session, 1, 5);
+    }
+
+    @Test
+    void cursorAlAgotarLaTablaSigueEnElArchivo() {
+        when(messageRepo.findInSessionBeforeDesc(eq(session), isNull(), isNull(), eq(4)))
+                .thenReturn(messagesDesc(10L, 2));
+        archive(chunkOf(8L, 4));
+
+        CursorPagedMessages page = service.getMessagesByCursor(SESSION_ID, patientUser, null, 3, false);
+        assertEquals(List.of(10L, 9L, 8L), ids(page.getMessages()));
+        assertTrue(page.hasMore());
+
+        CursorPagedMessages next = service.getMessagesByCursor(SESSION_ID, patientUser, page.getNextCursor(), 3, false);
+        assertEquals(List.of(7L, 6L, 5L), ids(next.getMessages()));
+        assertFalse(next.hasMore());
+    }
+
+    @Test
+    void busquedaSinSesionSeAcotaALasDelUsuarioYPaginaPorFilaExtra() {
+        List<ChatMessageSearchHit> rows = messagesDesc(30L, 3).stream()
+                .map(m -> new ChatMessageSearchHit(m, 2.5))
+                .toList();
+        when(messageRepo.searchInSessions(List.of(SESSION_ID), List.of("alergia", "penicilina"), 2L, 3))
+                .thenReturn(rows);
+
+        ChatSearchResult result = service.searchMessages(patientUser, "¿Alergia a la +penicilina?", null, 1, 2);
+
+        assertEquals(2, result.getHits().size());
+        assertTrue(result.hasMore());
+    }
+
+    @Test
+    void busquedaEnSesionAjenaSeRechaza() {
+        User stranger = user(99L, Role.ROLE_PATIENT);
+        assertThrows(UnauthorizedOperationException.class,
+                () -> service.searchMessages(stranger, "alergia", SESSION_ID, 0, 20));
+        verify(messageRepo, never()).searchInSessions(any(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void busquedaEnPaginasAltasNoDesbordaElOffset() {
+        service.searchMessages(patientUser, "alergia", null, Integer.MAX_VALUE, 20);
+
+        verify(messageRepo).searchInSessions(List.of(SESSION_ID), List.of("alergia"), Integer.MAX_VALUE * 20L, 21);
+    }
+
+    @Test
+    void busquedaSinTerminosIndexablesSeRechaza() {
+        InvalidBusinessRuleException ex = assertThrows(InvalidBusinessRuleException.class,
+                () -> service.searchMessages(patientUser, "a la -- ", null, 0, 20));
+        assertEquals("CHAT_SEARCH_QUERY_TOO_SHORT", ex.getErrorCode());
+        verifyNoInteractions(messageRepo);
+    }
+
+    @Test
+    void focosRapidosSeCoalescenEnUnSoloUpdate() {
+        when(messageRepo.countUnreadByChatSessionAndReceiverUpTo(eq(SESSION_ID), eq(1L), any())).thenReturn(3L);
+
+        for (long upTo = 100; upTo < 110; upTo++) {
+            service.markMessagesAsRead(SESSION_ID, patientUser, upTo);
+        }
+        verify(messageRepo, never()).markAsReadUpTo(any(), any(), any(), any());
+        when(messageRepo.markAsReadUpTo(eq(SESSION_ID), eq(1L), eq(109L), any())).thenReturn(3);
+
+        assertEquals(1, service.flushReadAcknowledgements());
+
+        verify(messageRepo, times(1)).markAsReadUpTo(eq(SESSION_ID), eq(1L), eq(109L), any());
+        assertEquals(10, ackBuffer.getAcknowledgementsReceived());
+        assertEquals(1, ackBuffer.getUpdatesIssued());
+        assertEquals(0.1, ackBuffer.writeAmplification(), 1e-9);
+        assertEquals(0, service.flushReadAcknowledgements());
+    }
+
+    @Test
+    void sesionAlDiaNoEncolaEscritura() {
+        when(messageRepo.findLastMessageInSession(session)).thenReturn(Optional.of(messagesDesc(7L, 1).get(0)));
+        when(messageRepo.countUnreadByChatSessionAndReceiverUpTo(SESSION_ID, 1L, 7L)).thenReturn(0L);
+
+        assertEquals(0, service.markMessagesAsRead(SESSION_ID, patientUser, null));
+        assertEquals(0, ackBuffer.pendingCount());
+    }
+
+    @Test
+    void elLectorVeSuBadgeCerradoAntesDelFlush() {
+        when(messageRepo.countUnreadByChatSessionAndReceiverUpTo(SESSION_ID, 1L, 50L)).thenReturn(4L);
+        when(messageRepo.countTotalUnreadByReceiver(1L)).thenReturn(5L);
+
+        service.markMessagesAsRead(SESSION_ID, patientUser, 50L);
+
+        assertEquals(1L, service.getTotalUnreadCount(patientUser));
+    }
+
+    @Test
+    void badgeSeSirveDeMemoriaYSeAjustaConEnviosYLecturas() {
+        when(messageRepo.countTotalUnreadByReceiver(2L)).thenReturn(3L);
+        when(messageRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        assertEquals(3L, service.getTotalUnreadCount(practitionerUser));
+        service.sendMessage(SESSION_ID, "hola", patientUser);
+        service.sendMessage(SESSION_ID, "¿sigue en pie el turno?", patientUser);
+        assertEquals(5L, service.getTotalUnreadCount(practitionerUser));
+        // Solo la primera lectura paga el COUNT.
+        verify(messageRepo, times(1)).countTotalUnreadByReceiver(2L);
+
+        when(messageRepo.countUnreadByChatSessionAndReceiverUpTo(SESSION_ID, 2L, 30L)).thenReturn(5L);
+        when(messageRepo.markAsReadUpTo(eq(SESSION_ID), eq(2L), eq(30L), any())).thenReturn(5);
+        service.markMessagesAsRead(SESSION_ID, practitionerUser, 30L);
+        assertEquals(0L, service.getTotalUnreadCount(practitionerUser));
+        service.flushReadAcknowledgements();
+        assertEquals(0L, service.getTotalUnreadCount(practitionerUser));
+    }
+
+    @Test
+    void reconciliacionCorrigeDerivaYExpulsaInactivos() {
+        when(messageRepo.countTotalUnreadByReceiver(2L)).thenReturn(3L, 7L);
+        when(messageRepo.countTotalUnreadByReceiver(1L)).thenReturn(0L);
+        service.getTotalUnreadCount(practitionerUser);
+
+        assertEquals(1, service.reconcileUnreadCounters(Instant.EPOCH));
+        assertEquals(7L, service.getTotalUnreadCount(practitionerUser));
+        assertEquals(4L, unreadCounter.getDriftCorrected());
+
+        service.reconcileUnreadCounters(Instant.now().plusSeconds(60));
+        assertEquals(0, unreadCounter.size());
+    }
+
+    @Test
+    void flushFallidoReencolaLasConfirmaciones() {
+        when(messageRepo.countUnreadByChatSessionAndReceiverUpTo(eq(SESSION_ID), eq(1L), any())).thenReturn(1L);
+        when(messageRepo.markAsReadUpTo(any(), any(), any(), any())).thenThrow(new IllegalStateException("db down"));
+        service.markMessagesAsRead(SESSION_ID, patientUser, 12L);
+
+        assertThrows(IllegalStateException.class, () -> service.flushReadAcknowledgements());
+
+        assertEquals(1, ackBuffer.pendingCount());
+        assertEquals(0, ackBuffer.getUpdatesIssued());
+    }
+
+    @Test
+    void commitFallidoDelFlushReencolaSinDescontarElBadge() {
+        when(messageRepo.countTotalUnreadByReceiver(1L)).thenReturn(4L);
+        when(messageRepo.countUnreadByChatSessionAndReceiverUpTo(eq(SESSION_ID), eq(1L), any())).thenReturn(4L);
+        when(messageRepo.markAsReadUpTo(eq(SESSION_ID), eq(1L), eq(12L), any())).thenReturn(4);
+        service.getTotalUnreadCount(patientUser);
+        service.markMessagesAsRead(SESSION_ID, patientUser, 12L);
+        txManager.failCommit = true;
+
+        assertThrows(TransactionSystemException.class, () -> service.flushReadAcknowledgements());
+
+        assertEquals(1, ackBuffer.pendingCount());
+        assertEquals(0, ackBuffer.getUpdatesIssued());
+        assertEquals(4L, unreadCounter.get(1L, () -> 0L, Instant.now()));
+
+        txManager.failCommit = false;
+        assertEquals(1, service.flushReadAcknowledgements());
+        assertEquals(0L, unreadCounter.get(1L, () -> 0L, Instant.now()));
+    }
+
+    // Fixtures
+
+    /** Transacciones simuladas; {@code failCommit} hace fallar el commit como lo haría la BD. */
+    private static class FakeTransactionManager implements PlatformTransactionManager {
+
+        private boolean failCommit;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            if (failCommit) {
+                throw new TransactionSystemException("commit fallido");
+            }
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+
+    private void archive(ChatMessageArchiveChunk... chunksDesc) {
+        List<ChatMessageArchiveChunk> headers = new ArrayList<>();
+        long total = 0;
+        for (ChatMessageArchiveChunk c : chunksDesc) {
+            when(archiveRepo.findPayload(c.getId())).thenReturn(c.getPayload());
+            ChatMessageArchiveChunk header = new ChatMessageArchiveChunk(c.getChatSessionId(), c.getFirstMessageId(),
+                    c.getFirstSentAt(), c.getLastMessageId(), c.getLastSentAt(), c.getMessageCount(), null, c.getArchivedAt());
+            header.setId(c.getId());
+            headers.add(header);
+            total += c.getMessageCount();
+        }
+        when(archiveRepo.findHeadersBySessionDesc(SESSION_ID)).thenReturn(headers);
+        when(archiveRepo.countMessagesBySession(SESSION_ID)).thenReturn(total);
+    }
+
+    /** Chunk con {@code count} mensajes ASC que termina en {@code lastId}. */
+    private ChatMessageArchiveChunk chunkOf(long lastId, int count) {
+        List<ChatMessage> asc = messagesDesc(lastId, count);
+        Collections.reverse(asc);
+        ChatMessage first = asc.get(0);
+        ChatMessageArchiveChunk chunk = new ChatMessageArchiveChunk(SESSION_ID, first.getId(), first.getSentAt(),
+                lastId, asc.get(count - 1).getSentAt(), count, ChatArchiveCodec.encode(asc), Instant.now());
+        chunk.setId(lastId);
+        return chunk;
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    private static User user(Long id, Role role) {
+        User u = new User();
+        u.setId(id);
+        u.setRole(role);
+        return u;
+    }
+
+    /** {@code count} mensajes DESC empezando en {@code firstId}, un segundo entre cada uno. */
+    private List<ChatMessage> messagesDesc(long firstId, int count) {
+        Instant base = Instant.parse("2026-05-13T09:00:00Z");
+        List<ChatMessage> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = firstId - i;
+            ChatMessage m = new ChatMessage(session, patientUser, "m" + id);
+            m.setId(id);
+            m.setSentAt(base.plusSeconds(id));
+            out.add(m);
+        }
+        return out;
+    }
+}
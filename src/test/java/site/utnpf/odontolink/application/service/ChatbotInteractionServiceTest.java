@@ -3,13 +3,26 @@ package site.utnpf.odontolink.application.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
 import site.utnpf.odontolink.application.port.in.dto.ChatbotMessageCommand;
+import site.utnpf.odontolink.application.port.out.IChatbotTurnMetricsPort;
+import site.utnpf.odontolink.application.port.out.IChatbotTurnMetricsPort.Outcome;
+import site.utnpf.odontolink.application.port.out.IChatbotTurnMetricsPort.Phase;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.AgentInvocationResult;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.ChatMessage;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
 import site.utnpf.odontolink.application.service.security.EmergencyDetector;
 import site.utnpf.odontolink.application.service.security.PiiSanitizer;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
+import site.utnpf.odontolink.application.service.support.ChatbotConversationWindow;
+import site.utnpf.odontolink.application.service.support.ChatbotRequestCoalescer;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
+import site.utnpf.odontolink.domain.exception.LlmConcurrencyLimitException;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
 import site.utnpf.odontolink.domain.model.AiAgentAccessMode;
 import site.utnpf.odontolink.domain.model.AiAgentConfiguration;
 import site.utnpf.odontolink.domain.model.AiAgentLifecycle;
@@ -18,27 +31,34 @@ import site.utnpf.odontolink.domain.model.AiRetrievalMethod;
 import site.utnpf.odontolink.domain.model.ChatbotMessage;
 import site.utnpf.odontolink.domain.model.ChatbotMessageRole;
 import site.utnpf.odontolink.domain.model.ChatbotSession;
+import site.utnpf.odontolink.domain.model.EmergencyKeyword;
 import site.utnpf.odontolink.domain.repository.AiAgentConfigurationRepository;
 import site.utnpf.odontolink.domain.repository.ChatbotMessageRepository;
 import site.utnpf.odontolink.domain.repository.ChatbotSessionRepository;
 import site.utnpf.odontolink.domain.repository.EmergencyKeywordRepository;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -60,6 +80,9 @@ class ChatbotInteractionServiceTest {
     private EmergencyKeywordRepository emergencyKeywordRepo;
     private ILlmAgentInvokerPort invokerPort;
     private ILlmAgentProviderPort providerPort;
+    private TrackingTransactionManager txManager;
+    private ChatbotConversationWindow window;
+    private RecordingTurnMetrics turnMetrics;
     private ChatbotInteractionService service;
 
     @BeforeEach
@@ -70,6 +93,9 @@ class ChatbotInteractionServiceTest {
         emergencyKeywordRepo = mock(EmergencyKeywordRepository.class);
         invokerPort = mock(ILlmAgentInvokerPort.class);
         providerPort = mock(ILlmAgentProviderPort.class);
+        txManager = new TrackingTransactionManager();
+        window = new ChatbotConversationWindow(100);
+        turnMetrics = new RecordingTurnMetrics();
 
         // Calculator real (no mockeado): es un servicio puro y barato; nos
         // interesa que los tests del servicio reflejen la composicion real
@@ -90,18 +116,26 @@ class ChatbotInteractionServiceTest {
         site.utnpf.odontolink.domain.service.ConfidenceCalculator calculator =
                 new site.utnpf.odontolink.domain.service.ConfidenceCalculator(confidenceConfig, refusal);
 
+        // El holder abre sus propias transacciones: otro manager para no
+        // mezclarlas con las que cuentan los tests del turno.
+        ChatbotConfigSnapshotHolder configSnapshot = new ChatbotConfigSnapshotHolder(
+                configRepo, providerPort, "https://test.agents.do-ai.run", "agent-uuid",
+                new TrackingTransactionManager());
+
         service = new ChatbotInteractionService(
-                configRepo,
+                configSnapshot,
                 sessionRepo,
                 messageRepo,
                 emergencyKeywordRepo,
                 new PiiSanitizer(),
                 new EmergencyDetector(),
                 invokerPort,
-                providerPort,
                 calculator,
-                "https://test.agents.do-ai.run",
-                "agent-uuid"
+                txManager,
+                new ChatbotResponseCache(100, Duration.ofMinutes(10), 200, null, 0.9),
+                new ChatbotRequestCoalescer(Duration.ofSeconds(5)),
+                window,
+                turnMetrics
         );
     }
 
@@ -114,9 +148,6 @@ class ChatbotInteractionServiceTest {
 
         ChatbotSession session = ChatbotSession.forAnonymous();
         when(sessionRepo.save(any())).thenReturn(session);
-        when(messageRepo.findLastNBySessionId(any(), anyInt()))
-                .thenReturn(List.of(ChatbotMessage.createNew(session.getId(),
-                        ChatbotMessageRole.USER, "hola")));
 
         when(invokerPort.invoke(anyString(), any()))
                 .thenReturn(new AgentInvocationResult("hola, ¿en qué te ayudo?", List.of(), 5));
@@ -159,12 +190,12 @@ class ChatbotInteractionServiceTest {
         when(sessionRepo.findById(sid)).thenReturn(Optional.of(session));
         when(sessionRepo.save(any())).thenReturn(session);
 
-        // Buffer rolling: alternancia user/assistant historica.
+        // Buffer rolling persistido: alternancia user/assistant historica. El
+        // mensaje nuevo se agrega al final de la ventana.
         Instant t0 = Instant.now().minusSeconds(30);
         when(messageRepo.findLastNBySessionId(eq(sid), anyInt())).thenReturn(List.of(
                 new ChatbotMessage(1L, sid, ChatbotMessageRole.USER, "anterior 1", t0),
-                new ChatbotMessage(2L, sid, ChatbotMessageRole.ASSISTANT, "respuesta 1", t0.plusSeconds(1)),
-                new ChatbotMessage(3L, sid, ChatbotMessageRole.USER, "hola de nuevo", t0.plusSeconds(2))
+                new ChatbotMessage(2L, sid, ChatbotMessageRole.ASSISTANT, "respuesta 1", t0.plusSeconds(1))
         ));
 
         when(invokerPort.invoke(anyString(), any()))
@@ -191,6 +222,347 @@ class ChatbotInteractionServiceTest {
         assertEquals("user", wire.get(2).role());
     }
 
+    @Test
+    void invocacionDelProveedorCorreFueraDeTransaccion() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+
+        UUID sid = UUID.randomUUID();
+        ChatbotSession session = new ChatbotSession(sid, null, UUID.randomUUID(),
+                Instant.now().minusSeconds(60), Instant.now().minusSeconds(10), 2);
+        when(sessionRepo.findById(sid)).thenReturn(Optional.of(session));
+        when(messageRepo.findLastNBySessionId(eq(sid), anyInt())).thenReturn(List.of());
+
+        // El invocador observa el estado transaccional en el momento de la llamada.
+        int[] openDuringInvoke = {-1};
+        when(invokerPort.invoke(anyString(), any())).thenAnswer(inv -> {
+            openDuringInvoke[0] = txManager.open;
+            return new AgentInvocationResult("ok", List.of(), 5);
+        });
+
+        service.sendMessage(new ChatbotMessageCommand(
+                "hola",
+                Optional.of(sid),
+                Optional.of(session.getAnonymousToken()),
+                Optional.empty(),
+                "1.2.3.4"
+        ));
+
+        assertEquals(0, openDuringInvoke[0], "El proveedor no debe invocarse con una transaccion abierta.");
+        assertEquals(2, txManager.begun, "Una tx corta antes y otra despues de la invocacion.");
+        assertEquals(0, txManager.open);
+        assertEquals(3, session.getMessageCount());
+        verify(messageRepo, never()).save(any());
+        assertEquals(2, window.pendingCount());
+    }
+
+    @Test
+    void flushPersisteLosMensajesDelTurnoEnUnSoloCommit() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+
+        UUID sid = UUID.randomUUID();
+        ChatbotSession session = new ChatbotSession(sid, null, UUID.randomUUID(),
+                Instant.now().minusSeconds(60), Instant.now().minusSeconds(10), 2);
+        when(sessionRepo.findById(sid)).thenReturn(Optional.of(session));
+        when(messageRepo.findLastNBySessionId(eq(sid), anyInt())).thenReturn(List.of());
+        when(invokerPort.invoke(anyString(), any()))
+                .thenReturn(new AgentInvocationResult("ok", List.of(), 5));
+        ChatbotMessageCommand cmd = new ChatbotMessageCommand(
+                "hola", Optional.of(sid), Optional.of(session.getAnonymousToken()), Optional.empty(), "1.2.3.4");
+
+        service.sendMessage(cmd);
+        service.sendMessage(cmd);
+        int begunBeforeFlush = txManager.begun;
+        int flushed = service.flushConversationWrites();
+
+        // La segunda vuelta ya encontro la ventana en memoria.
+        verify(messageRepo, times(1)).findLastNBySessionId(eq(sid), anyInt());
+        assertEquals(4, flushed);
+        assertEquals(begunBeforeFlush + 1, txManager.begun);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatbotMessage>> batch =
+                ArgumentCaptor.forClass((Class<List<ChatbotMessage>>) (Class<?>) List.class);
+        verify(messageRepo).saveAll(batch.capture());
+        assertEquals(List.of(ChatbotMessageRole.USER, ChatbotMessageRole.ASSISTANT,
+                        ChatbotMessageRole.USER, ChatbotMessageRole.ASSISTANT),
+                batch.getValue().stream().map(ChatbotMessage::getRole).toList());
+        assertEquals(0, window.pendingCount());
+    }
+
+    @Test
+    void flushFallidoReencolaLosMensajes() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+        ChatbotSession session = ChatbotSession.forAnonymous();
+        when(sessionRepo.save(any())).thenReturn(session);
+        when(sessionRepo.findById(session.getId())).thenReturn(Optional.of(session));
+        when(invokerPort.invoke(anyString(), any()))
+                .thenReturn(new AgentInvocationResult("ok", List.of(), 5));
+        service.sendMessage(new ChatbotMessageCommand(
+                "hola", Optional.empty(), Optional.empty(), Optional.empty(), "1.2.3.4"));
+        org.mockito.Mockito.doThrow(new IllegalStateException("db caida")).when(messageRepo).saveAll(any());
+
+        org.junit.jupiter.api.Assertions.assertThrows(IllegalStateException.class,
+                () -> service.flushConversationWrites());
+
+        assertEquals(2, window.pendingCount());
+    }
+
+    @Test
+    void recorteTocaSoloLasSesionesConFilasNuevasFueraDelPeriodoDeGracia() {
+        when(configRepo.findSingleton()).thenReturn(Optional.of(publishedConfig()));
+        UUID stale = UUID.randomUUID();
+        UUID fresh = UUID.randomUUID();
+        window.requeueTrimCandidates(List.of(stale));
+        window.markFlushed(List.of(ChatbotMessage.createNew(fresh, ChatbotMessageRole.USER, "hola")));
+        when(messageRepo.trimSessionKeepingLast(eq(stale), anyInt())).thenReturn(3);
+        when(messageRepo.deleteOrphanedBySessionIds(List.of(stale))).thenReturn(1);
+
+        assertEquals(4, service.trimConversationBuffers());
+
+        verify(messageRepo, never()).trimSessionKeepingLast(eq(fresh), anyInt());
+        assertEquals(1, txManager.begun, "Un lote, una transaccion.");
+        assertEquals(1, window.trimCandidateCount(), "La sesion reciente espera a la proxima corrida.");
+    }
+
+    @Test
+    void sesionCerradaDuranteLaInvocacionNoSeResucita() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+
+        UUID sid = UUID.randomUUID();
+        ChatbotSession session = new ChatbotSession(sid, null, UUID.randomUUID(),
+                Instant.now().minusSeconds(60), Instant.now().minusSeconds(10), 2);
+        // Fase 1 la encuentra; para la fase 3 ya fue borrada.
+        when(sessionRepo.findById(sid)).thenReturn(Optional.of(session), Optional.empty());
+        when(messageRepo.findLastNBySessionId(eq(sid), anyInt())).thenReturn(List.of());
+        when(invokerPort.invoke(anyString(), any()))
+                .thenReturn(new AgentInvocationResult("ok", List.of(), 5));
+
+        var result = service.sendMessage(new ChatbotMessageCommand(
+                "hola",
+                Optional.of(sid),
+                Optional.of(session.getAnonymousToken()),
+                Optional.empty(),
+                "1.2.3.4"
+        ));
+
+        assertEquals("ok", result.reply());
+        assertEquals(1, window.pendingCount(), "Solo el mensaje del usuario queda para persistir.");
+        verify(sessionRepo, never()).save(any());
+    }
+
+    @Test
+    void streamingEmiteBannerPrimeroYPersisteElTextoEnsamblado() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of(
+                new EmergencyKeyword(1L, "sangrado", true, Instant.now(), Instant.now())));
+
+        UUID sid = UUID.randomUUID();
+        ChatbotSession session = new ChatbotSession(sid, null, UUID.randomUUID(),
+                Instant.now().minusSeconds(60), Instant.now().minusSeconds(10), 2);
+        when(sessionRepo.findById(sid)).thenReturn(Optional.of(session));
+        when(messageRepo.findLastNBySessionId(eq(sid), anyInt())).thenReturn(List.of());
+        when(invokerPort.invokeStreaming(anyString(), any(), any())).thenAnswer(inv -> {
+            java.util.function.Consumer<String> sink = inv.getArgument(2);
+            sink.accept("Acudi ");
+            sink.accept("a la guardia.");
+            return new AgentInvocationResult("Acudi a la guardia.", List.of(), 7);
+        });
+
+        List<String> deltas = new java.util.ArrayList<>();
+        var result = service.sendMessageStreaming(new ChatbotMessageCommand(
+                "tengo sangrado",
+                Optional.of(sid),
+                Optional.of(session.getAnonymousToken()),
+                Optional.empty(),
+                "1.2.3.4"
+        ), deltas::add);
+
+        assertEquals(List.of("*** Emergencia ***", "Acudi ", "a la guardia."), deltas);
+        assertEquals(String.join("", deltas), result.reply());
+        service.flushConversationWrites();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatbotMessage>> saved =
+                ArgumentCaptor.forClass((Class<List<ChatbotMessage>>) (Class<?>) List.class);
+        verify(messageRepo).saveAll(saved.capture());
+        assertEquals(result.reply(), saved.getValue().get(1).getContent());
+        verify(invokerPort, never()).invoke(anyString(), any());
+    }
+
+    @Test
+    void preguntaFrecuenteRepetidaSeRespondeDesdeElCache() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+
+        ChatbotSession first = ChatbotSession.forAnonymous();
+        ChatbotSession second = ChatbotSession.forAnonymous();
+        when(sessionRepo.save(any())).thenReturn(first, second);
+        when(sessionRepo.findById(any())).thenReturn(Optional.empty());
+        when(invokerPort.invoke(anyString(), any()))
+                .thenReturn(new AgentInvocationResult("Atendemos de 8 a 20.", List.of(), 5));
+
+        service.sendMessage(new ChatbotMessageCommand(
+                "¿Cuáles son los HORARIOS?", Optional.empty(), Optional.empty(), Optional.empty(), "1.2.3.4"));
+        var cached = service.sendMessage(new ChatbotMessageCommand(
+                "cuales son los horarios", Optional.empty(), Optional.empty(), Optional.empty(), "1.2.3.5"));
+
+        verify(invokerPort, times(1)).invoke(anyString(), any());
+        assertEquals("Atendemos de 8 a 20.", cached.reply());
+        assertEquals(second.getId(), cached.sessionId());
+        assertFalse(cached.fallbackTriggered());
+    }
+
+    @Test
+    void losTurnosNoLeenNiEscribenLaConfiguracion() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+        when(sessionRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(sessionRepo.findById(any())).thenReturn(Optional.empty());
+        when(invokerPort.invoke(anyString(), any()))
+                .thenReturn(new AgentInvocationResult("ok", List.of(), 5));
+
+        for (int i = 0; i < 3; i++) {
+            service.sendMessage(new ChatbotMessageCommand(
+                    "consulta " + i, Optional.empty(), Optional.empty(), Optional.empty(), "1.2.3.4"));
+        }
+
+        // Una sola lectura: la carga inicial del snapshot.
+        verify(configRepo, times(1)).findSingleton();
+        verify(configRepo, never()).save(any());
+        verify(providerPort, never()).getAgent(anyString());
+    }
+
+    @Test
+    void conversacionEnCursoNoUsaElCache() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+
+        UUID sid = UUID.randomUUID();
+        ChatbotSession session = new ChatbotSession(sid, null, UUID.randomUUID(),
+                Instant.now().minusSeconds(60), Instant.now().minusSeconds(10), 2);
+        when(sessionRepo.findById(sid)).thenReturn(Optional.of(session));
+        Instant t0 = Instant.now().minusSeconds(30);
+        when(messageRepo.findLastNBySessionId(eq(sid), anyInt())).thenReturn(List.of(
+                new ChatbotMessage(1L, sid, ChatbotMessageRole.USER, "hola", t0),
+                new ChatbotMessage(2L, sid, ChatbotMessageRole.ASSISTANT, "hola!", t0.plusSeconds(1))));
+        when(invokerPort.invoke(anyString(), any()))
+                .thenReturn(new AgentInvocationResult("De 8 a 20.", List.of(), 5));
+
+        for (int i = 0; i < 2; i++) {
+            service.sendMessage(new ChatbotMessageCommand(
+                    "horarios", Optional.of(sid), Optional.of(session.getAnonymousToken()),
+                    Optional.empty(), "1.2.3.4"));
+        }
+
+        verify(invokerPort, times(2)).invoke(anyString(), any());
+    }
+
+    @Test
+    void turnoPublicaElDesglosePorFase() {
+        when(configRepo.findSingleton()).thenReturn(Optional.of(publishedConfig()));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+        when(sessionRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(sessionRepo.findById(any())).thenAnswer(inv -> Optional.of(ChatbotSession.forAnonymous()));
+        when(invokerPort.invoke(anyString(), any()))
+                .thenReturn(new AgentInvocationResult("ok", List.of(), 5));
+
+        service.sendMessage(new ChatbotMessageCommand(
+                "consulta", Optional.empty(), Optional.empty(), Optional.empty(), "1.2.3.4"));
+
+        assertEquals(1, turnMetrics.turns.size());
+        RecordedTurn turn = turnMetrics.turns.get(0);
+        assertEquals(Outcome.OK, turn.outcome());
+        assertEquals(EnumSet.of(Phase.PREPARE_TX, Phase.SESSION, Phase.PII_SCAN, Phase.EMERGENCY_DETECTION,
+                Phase.HISTORY, Phase.PROVIDER, Phase.CONFIDENCE, Phase.RECORD_TX), turn.phases().keySet());
+        assertTrue(turn.totalNanos() >= turn.phases().get(Phase.PREPARE_TX));
+    }
+
+    @Test
+    void circuitoAbiertoSeDistingueDelFallbackComun() {
+        when(configRepo.findSingleton()).thenReturn(Optional.of(publishedConfig()));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+        when(sessionRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(invokerPort.invoke(anyString(), any()))
+                .thenThrow(new LlmProviderException("abierto", null, "AI_PROVIDER_CIRCUIT_OPEN"))
+                .thenThrow(new LlmProviderException("caido", null, "AI_PROVIDER_UNAVAILABLE"));
+
+        for (int i = 0; i < 2; i++) {
+            var result = service.sendMessage(new ChatbotMessageCommand(
+                    "consulta " + i, Optional.empty(), Optional.empty(), Optional.empty(), "1.2.3.4"));
+            assertTrue(result.fallbackTriggered());
+        }
+
+        assertEquals(Outcome.CIRCUIT_OPEN, turnMetrics.turns.get(0).outcome());
+        assertEquals(Outcome.FALLBACK, turnMetrics.turns.get(1).outcome());
+        assertTrue(turnMetrics.turns.get(0).phases().containsKey(Phase.PROVIDER));
+        assertFalse(turnMetrics.turns.get(0).phases().containsKey(Phase.RECORD_TX));
+    }
+
+    @Test
+    void limiteDeConcurrenciaRespondeFallbackConOutcomePropio() {
+        when(configRepo.findSingleton()).thenReturn(Optional.of(publishedConfig()));
+        when(emergencyKeywordRepo.findAllActive()).thenReturn(List.of());
+        when(sessionRepo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(invokerPort.invoke(anyString(), any()))
+                .thenThrow(new LlmConcurrencyLimitException("lleno", "AI_PROVIDER_CONCURRENCY_LIMITED"));
+
+        var result = service.sendMessage(new ChatbotMessageCommand(
+                "consulta", Optional.empty(), Optional.empty(), Optional.empty(), "1.2.3.4"));
+
+        assertTrue(result.fallbackTriggered());
+        assertEquals(Outcome.CONCURRENCY_LIMITED, turnMetrics.turns.get(0).outcome());
+    }
+
+    private record RecordedTurn(Outcome outcome, long totalNanos, Map<Phase, Long> phases) {
+    }
+
+    private static class RecordingTurnMetrics implements IChatbotTurnMetricsPort {
+
+        private final List<RecordedTurn> turns = new ArrayList<>();
+
+        @Override
+        public void recordTurn(Outcome outcome, long totalNanos, Map<Phase, Long> phaseNanos) {
+            turns.add(new RecordedTurn(outcome, totalNanos, Map.copyOf(phaseNanos)));
+        }
+    }
+
+    /**
+     * Stub de PlatformTransactionManager que cuenta transacciones abiertas y
+     * totales; suficiente para TransactionTemplate sin BD.
+     */
+    private static class TrackingTransactionManager implements PlatformTransactionManager {
+
+        private int open;
+        private int begun;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            open++;
+            begun++;
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            open--;
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            open--;
+        }
+    }
+
     /** Helper: configuracion publicada con accessMode PUBLIC para que el flujo no rechace. */
     private AiAgentConfiguration publishedConfig() {
         AiAgentConfiguration cfg = new AiAgentConfiguration(
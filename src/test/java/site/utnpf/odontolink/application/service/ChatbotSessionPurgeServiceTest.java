@@ -0,0 +1,145 @@
+package site.utnpf.odontolink.application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import site.utnpf.odontolink.application.port.in.dto.ChatbotSessionPurgeResult;
+import site.utnpf.odontolink.domain.repository.ChatbotMessageRepository;
+import site.utnpf.odontolink.domain.repository.ChatbotSessionRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests de la purga por lotes de sesiones inactivas del chatbot (RF29).
+ */
+class ChatbotSessionPurgeServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-03-10T12:00:00Z");
+    private static final Instant ANON_CUTOFF = NOW.minus(Duration.ofHours(24));
+    private static final Instant AUTH_CUTOFF = NOW.minus(Duration.ofDays(30));
+
+    private ChatbotSessionRepository sessionRepo;
+    private ChatbotMessageRepository messageRepo;
+    private CountingTransactionManager txManager;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepo = mock(ChatbotSessionRepository.class);
+        messageRepo = mock(ChatbotMessageRepository.class);
+        txManager = new CountingTransactionManager();
+        when(sessionRepo.deleteIdleByIds(any(), any())).thenAnswer(inv -> ((List<?>) inv.getArgument(0)).size());
+        when(messageRepo.deleteOrphanedBySessionIds(any())).thenAnswer(inv -> ((List<?>) inv.getArgument(0)).size() * 4);
+    }
+
+    @Test
+    void purgaEnLotesHastaUnLoteCortoConElTtlDeCadaTipo() {
+        when(sessionRepo.findIdleIds(true, ANON_CUTOFF, 3))
+                .thenReturn(ids(3))
+                .thenReturn(ids(3))
+                .thenReturn(ids(1));
+        when(sessionRepo.findIdleIds(false, AUTH_CUTOFF, 3)).thenReturn(ids(2));
+
+        ChatbotSessionPurgeResult result = service(3, 100).purgeIdleSessions(NOW);
+
+        assertEquals(4, result.batches().size());
+        assertEquals(9, result.sessions());
+        assertEquals(36, result.messages());
+        // Los tipos alternan: anonimas, autenticadas (lote corto), anonimas...
+        assertTrue(result.batches().get(0).anonymous());
+        assertFalse(result.batches().get(1).anonymous());
+        assertEquals(2, result.batches().get(1).sessions());
+        assertEquals(1, result.batches().get(3).sessions());
+        // El lote corto cierra cada tipo sin una busqueda vacia extra.
+        assertEquals(4, txManager.commits, "Una transaccion por lote.");
+        verify(sessionRepo, times(3)).deleteIdleByIds(any(), eq(ANON_CUTOFF));
+        verify(sessionRepo, times(1)).deleteIdleByIds(any(), eq(AUTH_CUTOFF));
+    }
+
+    @Test
+    void maxBatchesAcotaLaCorrida() {
+        when(sessionRepo.findIdleIds(anyBoolean(), any(), anyInt())).thenAnswer(inv -> ids(2));
+
+        ChatbotSessionPurgeResult result = service(2, 5).purgeIdleSessions(NOW);
+
+        assertEquals(5, result.batches().size());
+        assertEquals(10, result.sessions());
+        verify(sessionRepo, times(3)).findIdleIds(eq(true), any(), anyInt());
+        verify(sessionRepo, times(2)).findIdleIds(eq(false), any(), anyInt());
+    }
+
+    @Test
+    void avalanchaDeAnonimasNoDejaSinPurgarALasAutenticadas() {
+        when(sessionRepo.findIdleIds(eq(true), any(), anyInt())).thenAnswer(inv -> ids(2));
+        when(sessionRepo.findIdleIds(eq(false), any(), anyInt())).thenReturn(ids(1));
+
+        ChatbotSessionPurgeResult result = service(2, 3).purgeIdleSessions(NOW);
+
+        assertEquals(3, result.batches().size());
+        assertEquals(1, result.batches().stream().filter(b -> !b.anonymous()).count());
+        verify(sessionRepo, times(1)).deleteIdleByIds(any(), eq(AUTH_CUTOFF));
+    }
+
+    @Test
+    void sinSesionesVencidasNoBorraNada() {
+        when(sessionRepo.findIdleIds(anyBoolean(), any(), anyInt())).thenReturn(List.of());
+
+        ChatbotSessionPurgeResult result = service(500, 100).purgeIdleSessions(NOW);
+
+        assertTrue(result.batches().isEmpty());
+        verify(sessionRepo, never()).deleteIdleByIds(any(), any());
+        verify(messageRepo, never()).deleteOrphanedBySessionIds(any());
+    }
+
+    private ChatbotSessionPurgeService service(int batchSize, int maxBatches) {
+        return new ChatbotSessionPurgeService(sessionRepo, messageRepo, txManager,
+                Duration.ofHours(24), Duration.ofDays(30), batchSize, maxBatches);
+    }
+
+    private static List<UUID> ids(int n) {
+        List<UUID> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        return ids;
+    }
+
+    private static class CountingTransactionManager implements PlatformTransactionManager {
+
+        private int commits;
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            commits++;
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            // no-op
+        }
+    }
+}
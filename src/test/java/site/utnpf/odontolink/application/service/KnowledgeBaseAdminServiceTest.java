@@ -0,0 +1,246 @@
+package site.utnpf.odontolink.application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseIngestionQueuePort;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseStagingPort;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseAdminUseCase.DocumentStream;
+import site.utnpf.odontolink.application.port.in.IKnowledgeBaseAdminUseCase.RangeRequest;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.ByteRange;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.ObjectStream;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
+import site.utnpf.odontolink.application.service.support.KnowledgeBaseReindexDebouncer;
+import site.utnpf.odontolink.domain.exception.DuplicateResourceException;
+import site.utnpf.odontolink.domain.exception.RangeNotSatisfiableException;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocument;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentKind;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentStatus;
+import site.utnpf.odontolink.domain.repository.KnowledgeBaseDocumentRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests de la deteccion de contenido duplicado en la administracion de la
+ * KB (RF33): altas repetidas y ediciones de FAQ que no cambian el texto.
+ * Cubre tambien la descarga streameada con rangos y la redireccion a URLs
+ * prefirmadas.
+ */
+class KnowledgeBaseAdminServiceTest {
+
+    private static final String FAQ_TEXT = "Atendemos de lunes a viernes.";
+
+    private KnowledgeBaseDocumentRepository repo;
+    private IObjectStoragePort storage;
+    private IKnowledgeBaseStagingPort staging;
+    private IKnowledgeBaseIngestionQueuePort queue;
+    private KnowledgeBaseReindexDebouncer debouncer;
+    private KnowledgeBaseAdminService service;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(KnowledgeBaseDocumentRepository.class);
+        storage = mock(IObjectStoragePort.class);
+        staging = mock(IKnowledgeBaseStagingPort.class);
+        queue = mock(IKnowledgeBaseIngestionQueuePort.class);
+        debouncer = new KnowledgeBaseReindexDebouncer(5_000, 60_000);
+        when(repo.save(any())).thenAnswer(inv -> {
+            KnowledgeBaseDocument doc = inv.getArgument(0);
+            if (doc.getId() == null) {
+                doc.setId(99L);
+            }
+            return doc;
+        });
+        service = new KnowledgeBaseAdminService(repo, mock(IKnowledgeBaseProviderPort.class), storage, staging,
+                queue, "kb-uuid", "bucket", "sfo3", 1024, mock(ChatbotResponseCache.class), debouncer,
+                0, Duration.ZERO);
+    }
+
+    @Test
+    void faqConElMismoContenidoQueOtraSeRechazaSinEncolar() {
+        String sha256 = KnowledgeBaseDocument.sha256Hex(FAQ_TEXT);
+        when(repo.findByContentSha256(sha256))
+                .thenReturn(List.of(doc(1L, KnowledgeBaseDocumentStatus.INDEXED, sha256)));
+
+        assertThrows(DuplicateResourceException.class, () -> service.addFaqDocument("Horarios", FAQ_TEXT));
+
+        verify(repo, never()).save(any());
+        verify(queue, never()).enqueue(any());
+    }
+
+    @Test
+    void unDuplicadoEnFailedNoBloqueaElReintento() {
+        String sha256 = KnowledgeBaseDocument.sha256Hex(FAQ_TEXT);
+        when(repo.findByContentSha256(sha256))
+                .thenReturn(List.of(doc(1L, KnowledgeBaseDocumentStatus.FAILED, sha256)));
+
+        KnowledgeBaseDocument created = service.addFaqDocument("Horarios", FAQ_TEXT);
+
+        assertEquals(sha256, created.getContentSha256());
+        verify(queue).enqueue(99L);
+    }
+
+    @Test
+    void archivoDuplicadoDescartaElStagingYNoSeEncola() {
+        when(staging.stage(eq(99L), any(), eq(3L))).thenReturn("hash-pdf");
+        when(repo.findByContentSha256("hash-pdf"))
+                .thenReturn(List.of(doc(1L, KnowledgeBaseDocumentStatus.REINDEX_QUEUED, "hash-pdf")));
+
+        assertThrows(DuplicateResourceException.class, () -> service.addFileDocument(
+                "Protocolo", "protocolo.pdf", new ByteArrayInputStream(new byte[3]), 3, "application/pdf"));
+
+        verify(staging).discard(99L);
+        verify(queue, never()).enqueue(any());
+    }
+
+    @Test
+    void archivoNuevoGuardaElHashDelStaging() {
+        when(staging.stage(eq(99L), any(), eq(3L))).thenReturn("hash-pdf");
+        when(repo.findByContentSha256("hash-pdf")).thenReturn(List.of());
+
+        KnowledgeBaseDocument created = service.addFileDocument(
+                "Protocolo", "protocolo.pdf", new ByteArrayInputStream(new byte[3]), 3, "application/pdf");
+
+        assertEquals("hash-pdf", created.getContentSha256());
+        verify(queue).enqueue(99L);
+    }
+
+    @Test
+    void editarUnaFaqConElMismoTextoNoResubeNiReindexa() {
+        KnowledgeBaseDocument indexed = doc(7L, KnowledgeBaseDocumentStatus.INDEXED, null);
+        when(repo.findById(7L)).thenReturn(Optional.of(indexed));
+
+        KnowledgeBaseDocument saved = service.updateDocument(7L, "Horarios de atencion", FAQ_TEXT);
+
+        assertEquals("Horarios de atencion", saved.getTitle());
+        assertEquals(KnowledgeBaseDocumentStatus.INDEXED, saved.getStatus());
+        verify(storage, never()).upload(anyString(), any(byte[].class), anyString());
+        verify(storage, never()).upload(anyString(), any(), anyLong(), any());
+        assertEquals(0, debouncer.pendingCount());
+    }
+
+    @Test
+    void editarUnaFaqConTextoNuevoResubeYEncolaElReindex() {
+        KnowledgeBaseDocument indexed = doc(8L, KnowledgeBaseDocumentStatus.INDEXED,
+                KnowledgeBaseDocument.sha256Hex(FAQ_TEXT));
+        when(repo.findById(8L)).thenReturn(Optional.of(indexed));
+
+        KnowledgeBaseDocument saved = service.updateDocument(8L, null, FAQ_TEXT + " Y sabados.");
+
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, saved.getStatus());
+        assertEquals(KnowledgeBaseDocument.sha256Hex(FAQ_TEXT + " Y sabados."), saved.getContentSha256());
+        verify(storage).upload(eq("ai-kb/8/faq.txt"), any(byte[].class), eq("text/plain"));
+        assertEquals(1, debouncer.pendingCount());
+    }
+
+    @Test
+    void elReindexDeUnaEdicionSePideRecienAlCommitear() {
+        KnowledgeBaseDocument indexed = doc(8L, KnowledgeBaseDocumentStatus.INDEXED,
+                KnowledgeBaseDocument.sha256Hex(FAQ_TEXT));
+        when(repo.findById(8L)).thenReturn(Optional.of(indexed));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.updateDocument(8L, null, FAQ_TEXT + " Y sabados.");
+            // Un flush antes del commit no debe ver el pedido.
+            assertEquals(0, debouncer.pendingCount());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, debouncer.pendingCount());
+    }
+
+    @Test
+    void faqConRangoDevuelveSoloLosBytesPedidos() throws IOException {
+        when(repo.findById(1L)).thenReturn(Optional.of(doc(1L, KnowledgeBaseDocumentStatus.INDEXED, null)));
+
+        DocumentStream download = service.streamDocument(1L, new RangeRequest(0L, 8L));
+
+        assertEquals("Atendemos", new String(download.content().readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals(new ByteRange(0, 8), download.range());
+        assertEquals(9, download.contentLength());
+        assertEquals(FAQ_TEXT.length(), download.totalSize());
+    }
+
+    @Test
+    void rangoFueraDelDocumentoSeRechazaSinTocarElStorage() {
+        when(repo.findById(5L)).thenReturn(Optional.of(file(5L, 4_000)));
+
+        RangeNotSatisfiableException ex = assertThrows(RangeNotSatisfiableException.class,
+                () -> service.streamDocument(5L, new RangeRequest(5_000L, null)));
+
+        assertEquals(4_000, ex.getTotalSize());
+        verify(storage, never()).openStream(anyString(), any());
+    }
+
+    @Test
+    void archivoSeStreameaDesdeElStorageConElRangoResuelto() throws IOException {
+        when(repo.findById(5L)).thenReturn(Optional.of(file(5L, 4_000)));
+        when(storage.openStream("ai-kb/5/protocolo.pdf", new ByteRange(3_000, 3_999)))
+                .thenReturn(new ObjectStream(new ByteArrayInputStream(new byte[1_000]),
+                        "binary/octet-stream", 1_000));
+
+        DocumentStream download = service.streamDocument(5L, new RangeRequest(null, 1_000L));
+
+        assertEquals(1_000, download.content().readAllBytes().length);
+        assertEquals("application/pdf", download.contentType());
+        assertEquals(new ByteRange(3_000, 3_999), download.range());
+        assertEquals(4_000, download.totalSize());
+    }
+
+    @Test
+    void archivoGrandeRedirigeAUnaUrlPrefirmada() {
+        service = new KnowledgeBaseAdminService(repo, mock(IKnowledgeBaseProviderPort.class), storage, staging,
+                queue, "kb-uuid", "bucket", "sfo3", 1024, mock(ChatbotResponseCache.class), debouncer,
+                1_000, Duration.ofMinutes(5));
+        when(repo.findById(5L)).thenReturn(Optional.of(file(5L, 4_000)));
+        when(storage.presignDownload("ai-kb/5/protocolo.pdf", Duration.ofMinutes(5),
+                "application/pdf", "protocolo.pdf")).thenReturn("https://bucket.example/signed");
+
+        DocumentStream download = service.streamDocument(5L, null);
+
+        assertTrue(download.isRedirect());
+        assertEquals("https://bucket.example/signed", download.redirectUrl());
+        assertNull(download.content());
+        verify(storage, never()).openStream(anyString(), any());
+    }
+
+    private static KnowledgeBaseDocument file(Long id, long sizeBytes) {
+        Instant now = Instant.now();
+        return new KnowledgeBaseDocument(id, "Protocolo", KnowledgeBaseDocumentKind.UPLOADED_FILE, null,
+                "protocolo.pdf", "ai-kb/" + id + "/protocolo.pdf", sizeBytes, "application/pdf", "hash-pdf",
+                "ds-" + id, KnowledgeBaseDocumentStatus.INDEXED, null, null, null, now, now);
+    }
+
+    private static KnowledgeBaseDocument doc(Long id, KnowledgeBaseDocumentStatus status, String sha256) {
+        Instant now = Instant.now();
+        return new KnowledgeBaseDocument(id, "Horarios", KnowledgeBaseDocumentKind.FAQ_TEXT, FAQ_TEXT,
+                "Horarios.txt", "ai-kb/" + id + "/faq.txt", FAQ_TEXT.length(), "text/plain", sha256,
+                "ds-" + id, status, null, null, null, now, now);
+    }
+}
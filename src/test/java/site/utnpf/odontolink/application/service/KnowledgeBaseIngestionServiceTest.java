@@ -0,0 +1,433 @@
+package site.utnpf.odontolink.application.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort.IndexingJobSnapshot;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseProviderPort.RegisteredDataSource;
+import site.utnpf.odontolink.application.port.out.IKnowledgeBaseStagingPort;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.UploadedObject;
+import site.utnpf.odontolink.application.port.out.StorageException;
+import site.utnpf.odontolink.application.service.support.ChatbotResponseCache;
+import site.utnpf.odontolink.application.service.support.KnowledgeBaseReindexDebouncer;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocument;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentKind;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocumentStatus;
+import site.utnpf.odontolink.domain.repository.KnowledgeBaseDocumentRepository;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests del pipeline de ingesta en background de la KB (RF33). El
+ * repositorio es un mapa en memoria para seguir el estado persistido entre
+ * etapas; {@code save} compara la version como lo hace {@code @Version}.
+ */
+class KnowledgeBaseIngestionServiceTest {
+
+    private static final UploadedObject UPLOADED = new UploadedObject("https://cdn/x", 3, "abc");
+
+    private final Map<Long, KnowledgeBaseDocument> stored = new HashMap<>();
+    private KnowledgeBaseDocumentRepository repo;
+    private IKnowledgeBaseProviderPort kbProvider;
+    private IObjectStoragePort storage;
+    private IKnowledgeBaseStagingPort staging;
+    private ChatbotResponseCache cache;
+    private KnowledgeBaseReindexDebouncer debouncer;
+    private KnowledgeBaseIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(KnowledgeBaseDocumentRepository.class);
+        kbProvider = mock(IKnowledgeBaseProviderPort.class);
+        storage = mock(IObjectStoragePort.class);
+        staging = mock(IKnowledgeBaseStagingPort.class);
+        cache = mock(ChatbotResponseCache.class);
+        when(repo.findById(any())).thenAnswer(inv -> Optional.ofNullable(stored.get(inv.<Long>getArgument(0))));
+        when(repo.save(any())).thenAnswer(inv -> {
+            KnowledgeBaseDocument doc = inv.getArgument(0);
+            KnowledgeBaseDocument current = stored.get(doc.getId());
+            if (current == null || current.getVersion() != doc.getVersion()) {
+                throw new OptimisticLockingFailureException("Documento " + doc.getId() + " desactualizado");
+            }
+            doc.setVersion(doc.getVersion() + 1);
+            stored.put(doc.getId(), doc);
+            return doc;
+        });
+        when(repo.findByStatusIn(any())).thenAnswer(inv -> {
+            Collection<KnowledgeBaseDocumentStatus> statuses = inv.getArgument(0);
+            return stored.values().stream().filter(doc -> statuses.contains(doc.getStatus())).toList();
+        });
+        when(kbProvider.registerSpacesDataSource(any(), any(), any(), any()))
+                .thenReturn(new RegisteredDataSource("ds-1", Instant.now()));
+        when(kbProvider.startIndexing(any(), any()))
+                .thenReturn(new IndexingJobSnapshot("job-1", "INDEX_JOB_STATUS_PENDING", Instant.now(), null));
+        // Sin ventana de quietud: cada flush drena lo pedido hasta ese momento.
+        debouncer = new KnowledgeBaseReindexDebouncer(0, 0);
+        service = new KnowledgeBaseIngestionService(repo, kbProvider, storage, staging, cache, debouncer,
+                "kb-uuid", "bucket", "sfo3", "ai-kb", 3, Duration.ZERO);
+    }
+
+    @Test
+    void archivoRecorreLasTresEtapasDesdeElStaging() {
+        stored.put(1L, doc(1L, KnowledgeBaseDocumentKind.UPLOADED_FILE, KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null));
+        when(staging.open(1L)).thenReturn(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        when(storage.upload(anyString(), any(), eq(3L), eq("application/pdf"))).thenReturn(UPLOADED);
+
+        service.ingest(1L);
+
+        KnowledgeBaseDocument doc = stored.get(1L);
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, doc.getStatus());
+        assertEquals("ds-1", doc.getProviderDataSourceId());
+        assertTrue(doc.getStoredObjectKey().startsWith("ai-kb/") && doc.getStoredObjectKey().endsWith("/doc.pdf"));
+        verify(kbProvider).registerSpacesDataSource("kb-uuid", "bucket", "sfo3", doc.getStoredObjectKey());
+        assertEquals("abc", doc.getContentSha256());
+        verify(staging).discard(1L);
+        verify(kbProvider, never()).startIndexing(any(), any());
+
+        assertEquals(1, service.flushQueuedReindex());
+
+        assertEquals(KnowledgeBaseDocumentStatus.INDEXING, doc.getStatus());
+        assertEquals("job-1", doc.getLastIndexingJobId());
+        verify(kbProvider).startIndexing("kb-uuid", List.of("ds-1"));
+        verify(cache).invalidateAll();
+    }
+
+    @Test
+    void faqSeSubeDesdeElContenidoInline() {
+        stored.put(2L, doc(2L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null));
+        when(storage.upload(anyString(), any(), eq(3L), eq("text/plain"))).thenReturn(UPLOADED);
+
+        service.ingest(2L);
+
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, stored.get(2L).getStatus());
+        verify(staging, never()).open(any());
+    }
+
+    @Test
+    void retomaDesdeElEstadoPersistido() {
+        KnowledgeBaseDocument registered = doc(3L, KnowledgeBaseDocumentKind.UPLOADED_FILE,
+                KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null);
+        registered.markUploaded("ai-kb/x/doc.pdf");
+        registered.markRegistered("ds-9");
+        stored.put(3L, registered);
+
+        service.ingest(3L);
+
+        verify(storage, never()).upload(anyString(), any(), anyLong(), any());
+        verify(kbProvider, never()).registerSpacesDataSource(any(), any(), any(), any());
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, stored.get(3L).getStatus());
+        assertEquals(1, debouncer.pendingCount());
+    }
+
+    @Test
+    void fallaTransitoriaSeReintentaYSigue() {
+        stored.put(4L, doc(4L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null));
+        when(storage.upload(anyString(), any(), anyLong(), any())).thenReturn(UPLOADED);
+        when(kbProvider.registerSpacesDataSource(any(), any(), any(), any()))
+                .thenThrow(new LlmProviderException("503", 503, "AI_PROVIDER_UNAVAILABLE"))
+                .thenReturn(new RegisteredDataSource("ds-2", Instant.now()));
+
+        service.ingest(4L);
+
+        verify(kbProvider, times(2)).registerSpacesDataSource(any(), any(), any(), any());
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, stored.get(4L).getStatus());
+    }
+
+    @Test
+    void errorDelClienteNoSeReintentaYDejaFailed() {
+        stored.put(5L, doc(5L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null));
+        when(storage.upload(anyString(), any(), anyLong(), any())).thenReturn(UPLOADED);
+        when(kbProvider.registerSpacesDataSource(any(), any(), any(), any()))
+                .thenThrow(new LlmProviderException("bad request", 400, "AI_PROVIDER_ERROR"));
+
+        service.ingest(5L);
+
+        verify(kbProvider, times(1)).registerSpacesDataSource(any(), any(), any(), any());
+        KnowledgeBaseDocument doc = stored.get(5L);
+        assertEquals(KnowledgeBaseDocumentStatus.FAILED, doc.getStatus());
+        assertTrue(doc.getErrorMessage().startsWith("Falla al registrar el data source"));
+        assertEquals(0, debouncer.pendingCount());
+    }
+
+    @Test
+    void uploadQueAgotaLosIntentosDejaFailedYLiberaElStaging() {
+        stored.put(6L, doc(6L, KnowledgeBaseDocumentKind.UPLOADED_FILE, KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null));
+        when(staging.open(6L)).thenAnswer(inv -> new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        when(storage.upload(anyString(), any(), anyLong(), any())).thenThrow(new StorageException("down"));
+
+        service.ingest(6L);
+
+        verify(storage, times(3)).upload(anyString(), any(), anyLong(), any());
+        assertEquals(KnowledgeBaseDocumentStatus.FAILED, stored.get(6L).getStatus());
+        verify(staging).discard(6L);
+        verify(kbProvider, never()).registerSpacesDataSource(any(), any(), any(), any());
+    }
+
+    @Test
+    void documentoBorradoDuranteElUploadBorraElObjeto() {
+        stored.put(7L, doc(7L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null));
+        when(storage.upload(anyString(), any(), anyLong(), any())).thenAnswer(inv -> {
+            stored.remove(7L);
+            return UPLOADED;
+        });
+
+        service.ingest(7L);
+
+        verify(storage).delete(argThat(key -> key.startsWith("ai-kb/")));
+        verify(kbProvider, never()).registerSpacesDataSource(any(), any(), any(), any());
+        verify(repo, never()).save(any());
+    }
+
+    @Test
+    void reconciliaConsultandoUnaVezPorJobYGuardaLosTerminados() {
+        KnowledgeBaseDocument a = doc(10L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.INDEXING, "job-a");
+        KnowledgeBaseDocument b = doc(11L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.INDEXING, "job-a");
+        KnowledgeBaseDocument c = doc(12L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.INDEXING, "job-b");
+        KnowledgeBaseDocument d = doc(13L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.INDEXING, "job-c");
+        List.of(a, b, c, d).forEach(doc -> stored.put(doc.getId(), doc));
+        when(kbProvider.getIndexingJobStatus("job-a"))
+                .thenReturn(new IndexingJobSnapshot("job-a", "INDEX_JOB_STATUS_COMPLETED", Instant.now(), null));
+        when(kbProvider.getIndexingJobStatus("job-b"))
+                .thenReturn(new IndexingJobSnapshot("job-b", "INDEX_JOB_STATUS_RUNNING", Instant.now(), null));
+        when(kbProvider.getIndexingJobStatus("job-c"))
+                .thenReturn(new IndexingJobSnapshot("job-c", "INDEX_JOB_STATUS_FAILED", Instant.now(), "boom"));
+
+        int finished = service.reconcileIndexingJobs();
+
+        assertEquals(3, finished);
+        verify(kbProvider, times(1)).getIndexingJobStatus("job-a");
+        verify(repo).save(a);
+        verify(repo).save(b);
+        verify(repo).save(d);
+        verify(repo, never()).save(c);
+        assertEquals(KnowledgeBaseDocumentStatus.INDEXED, a.getStatus());
+        assertEquals(KnowledgeBaseDocumentStatus.INDEXING, c.getStatus());
+        assertEquals("boom", d.getErrorMessage());
+        verify(cache).invalidateAll();
+    }
+
+    @Test
+    void jobQueNoSePuedeConsultarNoFrenaAlResto() {
+        KnowledgeBaseDocument a = doc(20L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.INDEXING, "job-a");
+        KnowledgeBaseDocument b = doc(21L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.INDEXING, "job-b");
+        stored.put(a.getId(), a);
+        stored.put(b.getId(), b);
+        when(kbProvider.getIndexingJobStatus("job-a")).thenThrow(new LlmProviderException("timeout", null, "X"));
+        when(kbProvider.getIndexingJobStatus("job-b"))
+                .thenReturn(new IndexingJobSnapshot("job-b", "INDEX_JOB_STATUS_COMPLETED", Instant.now(), null));
+
+        assertEquals(1, service.reconcileIndexingJobs());
+        verify(repo).save(b);
+        verify(repo, never()).save(a);
+    }
+
+    @Test
+    void demoradosSeFiltranEnLaConsultaPorEstadosIntermediosYCorte() {
+        Instant cutoff = Instant.now().minusSeconds(600);
+        when(repo.findIdsByStatusInAndUpdatedAtBefore(List.of(KnowledgeBaseDocumentStatus.PENDING_UPLOAD,
+                KnowledgeBaseDocumentStatus.UPLOADED, KnowledgeBaseDocumentStatus.REGISTERED,
+                KnowledgeBaseDocumentStatus.REINDEX_QUEUED), cutoff))
+                .thenReturn(List.of(30L));
+
+        assertEquals(List.of(30L), service.findStalledDocumentIds(cutoff));
+        verify(repo, never()).findByStatusIn(any());
+    }
+
+    @Test
+    void flushAgrupaLosDocumentosEnColaEnUnSoloJob() {
+        KnowledgeBaseDocument a = queued(40L, "ds-a");
+        KnowledgeBaseDocument b = queued(41L, "ds-b");
+        KnowledgeBaseDocument other = queued(42L, "ds-c");
+        debouncer.request("ds-a");
+        debouncer.request("ds-b");
+        debouncer.request("ds-a");
+
+        assertEquals(2, service.flushQueuedReindex());
+
+        verify(kbProvider, times(1)).startIndexing(any(), any());
+        verify(kbProvider).startIndexing("kb-uuid", List.of("ds-a", "ds-b"));
+        verify(repo).save(a);
+        verify(repo).save(b);
+        verify(repo, never()).save(other);
+        assertEquals("job-1", a.getLastIndexingJobId());
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, other.getStatus());
+        assertEquals(1, debouncer.getJobsStarted());
+        assertEquals(0, service.flushQueuedReindex());
+    }
+
+    @Test
+    void flushConReindexCompletoIndexaTodaLaKb() {
+        KnowledgeBaseDocument a = queued(50L, "ds-a");
+        KnowledgeBaseDocument b = queued(51L, "ds-b");
+        debouncer.request("ds-a");
+        debouncer.requestFullReindex();
+
+        assertEquals(2, service.flushQueuedReindex());
+
+        verify(kbProvider).startIndexing("kb-uuid", List.of());
+        assertEquals(KnowledgeBaseDocumentStatus.INDEXING, a.getStatus());
+        assertEquals(KnowledgeBaseDocumentStatus.INDEXING, b.getStatus());
+    }
+
+    @Test
+    void fallaTransitoriaDelFlushDevuelveElLote() {
+        KnowledgeBaseDocument a = queued(60L, "ds-a");
+        debouncer.request("ds-a");
+        when(kbProvider.startIndexing(any(), any()))
+                .thenThrow(new LlmProviderException("503", 503, "AI_PROVIDER_UNAVAILABLE"));
+
+        assertEquals(0, service.flushQueuedReindex());
+
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, a.getStatus());
+        assertEquals(1, debouncer.pendingCount());
+        verify(cache).invalidateAll();
+    }
+
+    @Test
+    void fallaDefinitivaDelFlushDejaFailedLosDocumentosDelLote() {
+        KnowledgeBaseDocument a = queued(70L, "ds-a");
+        debouncer.request("ds-a");
+        when(kbProvider.startIndexing(any(), any()))
+                .thenThrow(new LlmProviderException("bad request", 400, "AI_PROVIDER_ERROR"));
+
+        assertEquals(0, service.flushQueuedReindex());
+
+        assertEquals(KnowledgeBaseDocumentStatus.FAILED, a.getStatus());
+        assertTrue(a.getErrorMessage().startsWith("Falla al iniciar la indexacion"));
+        assertEquals(0, debouncer.pendingCount());
+    }
+
+    @Test
+    void documentoReencoladoMientrasSeDisparaElJobQuedaParaElProximoLote() {
+        queued(90L, "ds-a");
+        debouncer.request("ds-a");
+        when(kbProvider.startIndexing(any(), any())).thenAnswer(inv -> {
+            // El admin edita la FAQ despues del drain, antes de que vuelva el job.
+            KnowledgeBaseDocument edited = copyOf(stored.get(90L));
+            edited.updateFaqContent("nuevo");
+            edited.markReindexQueued();
+            edited.setVersion(edited.getVersion() + 1);
+            stored.put(90L, edited);
+            debouncer.request("ds-a");
+            return new IndexingJobSnapshot("job-1", "INDEX_JOB_STATUS_PENDING", Instant.now(), null);
+        });
+
+        assertEquals(0, service.flushQueuedReindex());
+
+        KnowledgeBaseDocument doc = stored.get(90L);
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, doc.getStatus());
+        assertEquals("nuevo", doc.getInlineContent());
+        assertEquals(1, debouncer.pendingCount());
+    }
+
+    @Test
+    void faqEditadoDuranteElUploadSeVuelveASubirSinPisarLaEdicion() {
+        stored.put(2L, doc(2L, KnowledgeBaseDocumentKind.FAQ_TEXT, KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null));
+        when(storage.upload(anyString(), any(), anyLong(), any()))
+                .thenAnswer(inv -> {
+                    // El admin guarda contenido nuevo mientras sube el anterior.
+                    KnowledgeBaseDocument edited = copyOf(stored.get(2L));
+                    edited.updateFaqContent("nuevo");
+                    edited.setVersion(edited.getVersion() + 1);
+                    stored.put(2L, edited);
+                    return UPLOADED;
+                })
+                .thenReturn(UPLOADED);
+
+        service.ingest(2L);
+
+        KnowledgeBaseDocument doc = stored.get(2L);
+        assertEquals("nuevo", doc.getInlineContent());
+        assertEquals(KnowledgeBaseDocument.sha256Hex("nuevo"), doc.getContentSha256());
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, doc.getStatus());
+        verify(storage, times(2)).upload(anyString(), any(), anyLong(), any());
+        verify(storage, times(1)).delete(argThat(key -> !key.equals(doc.getStoredObjectKey())));
+    }
+
+    @Test
+    void documentoBorradoDuranteElRegistroBorraElDataSource() {
+        KnowledgeBaseDocument uploaded = doc(8L, KnowledgeBaseDocumentKind.FAQ_TEXT,
+                KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null);
+        uploaded.markUploaded("ai-kb/8/doc.txt");
+        stored.put(8L, uploaded);
+        when(kbProvider.registerSpacesDataSource(any(), any(), any(), any())).thenAnswer(inv -> {
+            stored.remove(8L);
+            return new RegisteredDataSource("ds-8", Instant.now());
+        });
+
+        service.ingest(8L);
+
+        verify(kbProvider).deleteDataSource("kb-uuid", "ds-8");
+        assertTrue(stored.isEmpty());
+    }
+
+    @Test
+    void reconcileNoPisaUnDocumentoReencoladoMientrasCorriaElJob() {
+        KnowledgeBaseDocument a = queued(80L, "ds-a");
+        a.markIndexing("job-a");
+        when(kbProvider.getIndexingJobStatus("job-a")).thenAnswer(inv -> {
+            KnowledgeBaseDocument requeued = copyOf(stored.get(80L));
+            requeued.markReindexQueued();
+            requeued.setVersion(requeued.getVersion() + 1);
+            stored.put(80L, requeued);
+            return new IndexingJobSnapshot("job-a", "INDEX_JOB_STATUS_COMPLETED", Instant.now(), null);
+        });
+
+        assertEquals(0, service.reconcileIndexingJobs());
+
+        assertEquals(KnowledgeBaseDocumentStatus.REINDEX_QUEUED, stored.get(80L).getStatus());
+        verify(cache, never()).invalidateAll();
+    }
+
+    private static KnowledgeBaseDocument copyOf(KnowledgeBaseDocument doc) {
+        KnowledgeBaseDocument copy = new KnowledgeBaseDocument(doc.getId(), doc.getTitle(), doc.getKind(),
+                doc.getInlineContent(), doc.getOriginalFileName(), doc.getStoredObjectKey(), doc.getSizeBytes(),
+                doc.getContentType(), doc.getContentSha256(), doc.getProviderDataSourceId(), doc.getStatus(),
+                doc.getLastIndexingJobId(), doc.getLastIndexedAt(), doc.getErrorMessage(),
+                doc.getCreatedAt(), doc.getUpdatedAt());
+        copy.setVersion(doc.getVersion());
+        return copy;
+    }
+
+    private KnowledgeBaseDocument queued(Long id, String dataSourceId) {
+        KnowledgeBaseDocument doc = doc(id, KnowledgeBaseDocumentKind.FAQ_TEXT,
+                KnowledgeBaseDocumentStatus.PENDING_UPLOAD, null);
+        doc.markUploaded("ai-kb/" + id + "/doc.txt");
+        doc.markRegistered(dataSourceId);
+        doc.markReindexQueued();
+        stored.put(id, doc);
+        return doc;
+    }
+
+    private static KnowledgeBaseDocument doc(Long id, KnowledgeBaseDocumentKind kind,
+                                             KnowledgeBaseDocumentStatus status, String jobId) {
+        boolean faq = kind == KnowledgeBaseDocumentKind.FAQ_TEXT;
+        Instant now = Instant.now();
+        return new KnowledgeBaseDocument(id, "Doc " + id, kind, faq ? "abc" : null,
+                faq ? "doc.txt" : "doc.pdf", null, 3, faq ? "text/plain" : "application/pdf",
+                null, null, status, jobId, null, null, now, now);
+    }
+}
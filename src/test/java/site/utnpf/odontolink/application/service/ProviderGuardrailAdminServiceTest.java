@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort.AgentSnapshot;
 import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort.ProviderGuardrailSnapshot;
+import site.utnpf.odontolink.application.service.support.ChatbotConfigSnapshotHolder;
 import site.utnpf.odontolink.domain.model.AiRetrievalMethod;
 import site.utnpf.odontolink.domain.model.ProviderGuardrail;
 import site.utnpf.odontolink.domain.model.ProviderGuardrailType;
@@ -48,7 +49,8 @@ class ProviderGuardrailAdminServiceTest {
         repo = mock(ProviderGuardrailRepository.class);
         configRepo = mock(AiAgentConfigurationRepository.class);
         llm = mock(ILlmAgentProviderPort.class);
-        service = new ProviderGuardrailAdminService(repo, configRepo, llm, AGENT_UUID);
+        service = new ProviderGuardrailAdminService(repo, configRepo, llm, AGENT_UUID,
+                mock(ChatbotConfigSnapshotHolder.class));
     }
 
     @Test
@@ -1,11 +1,17 @@
 package site.utnpf.odontolink.application.service.security;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import site.utnpf.odontolink.domain.model.EmergencyKeyword;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -69,4 +75,76 @@ class EmergencyDetectorTest {
         boolean hit = detector.containsEmergencyTerm("Tengo sangrado", List.of());
         assertFalse(hit);
     }
+
+    @Test
+    void matcherCompiladoSeReutilizaHastaInvalidar() {
+        AtomicInteger loads = new AtomicInteger();
+        AtomicReference<List<EmergencyKeyword>> dictionary = new AtomicReference<>(List.of(kw("sangrado")));
+
+        assertTrue(detector.containsEmergencyTerm("tengo sangrado", () -> {
+            loads.incrementAndGet();
+            return dictionary.get();
+        }));
+        dictionary.set(List.of(kw("fiebre")));
+        assertFalse(detector.containsEmergencyTerm("tengo fiebre", () -> {
+            loads.incrementAndGet();
+            return dictionary.get();
+        }), "Sin invalidar sigue vigente la version anterior.");
+        assertEquals(1, loads.get());
+
+        detector.invalidate();
+
+        assertTrue(detector.containsEmergencyTerm("tengo fiebre", () -> {
+            loads.incrementAndGet();
+            return dictionary.get();
+        }));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void matcherVencidoSeReconstruyeSinInvalidar() {
+        EmergencyDetector shortLived = new EmergencyDetector(Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+
+        shortLived.containsEmergencyTerm("hola", () -> {
+            loads.incrementAndGet();
+            return List.of(kw("sangrado"));
+        });
+        shortLived.containsEmergencyTerm("hola", () -> {
+            loads.incrementAndGet();
+            return List.of(kw("sangrado"));
+        });
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidacionEnTransaccionEsperaAlCommit() {
+        AtomicInteger loads = new AtomicInteger();
+        detector.containsEmergencyTerm("hola", () -> {
+            loads.incrementAndGet();
+            return List.of(kw("sangrado"));
+        });
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            detector.invalidateAfterCommit();
+            // Un turno que recarga antes del commit sigue viendo el matcher vigente.
+            detector.containsEmergencyTerm("hola", () -> {
+                loads.incrementAndGet();
+                return List.of(kw("sangrado"));
+            });
+            assertEquals(1, loads.get());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        detector.containsEmergencyTerm("hola", () -> {
+            loads.incrementAndGet();
+            return List.of(kw("sangrado"));
+        });
+        assertEquals(2, loads.get());
+    }
 }
@@ -0,0 +1,108 @@
+package site.utnpf.odontolink.application.service.security;
+
+import org.junit.jupiter.api.Test;
+import site.utnpf.odontolink.domain.model.EmergencyKeyword;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests del automata de terminos de emergencia (RF32). El test diferencial
+ * compara contra el regex {@code \b term \b} que usaba el detector antes.
+ */
+class EmergencyTermMatcherTest {
+
+    @Test
+    void respetaBordesDePalabra() {
+        EmergencyTermMatcher matcher = compile("dolor", "sangrado");
+
+        assertTrue(matcher.matches("dolor agudo"));
+        assertTrue(matcher.matches("mucho dolor."));
+        assertTrue(matcher.matches("(sangrado)"));
+        assertFalse(matcher.matches("dolores"));
+        assertFalse(matcher.matches("indolor"));
+        assertFalse(matcher.matches("dolor_fuerte"));
+    }
+
+    @Test
+    void terminosSolapadosYPrefijos() {
+        EmergencyTermMatcher matcher = compile("dolor", "dolor intenso", "intenso");
+
+        assertTrue(matcher.matches("siento dolor intensos"));
+        assertTrue(matcher.matches("algo intenso"));
+        assertFalse(matcher.matches("intensos dolores"));
+    }
+
+    @Test
+    void unTerminoSufijoDeOtroSeDetectaPorElEnlaceDeFalla() {
+        EmergencyTermMatcher matcher = compile("abscesos", "sos");
+
+        assertTrue(matcher.matches("pido abce sos"));
+        assertFalse(matcher.matches("absceso"));
+    }
+
+    @Test
+    void diccionarioVacioOInactivoNoMatchea() {
+        assertFalse(EmergencyTermMatcher.compile(List.of()).matches("sangrado"));
+        EmergencyKeyword inactive = new EmergencyKeyword(1L, "sangrado", false, Instant.now(), Instant.now());
+        assertFalse(EmergencyTermMatcher.compile(List.of(inactive)).matches("sangrado"));
+        assertEquals(1, EmergencyTermMatcher.compile(List.of(inactive)).stateCount());
+    }
+
+    @Test
+    void coincideConElRegexAnteriorEnInputsAleatorios() {
+        Random random = new Random(42);
+        String alphabet = "abcdeno _.-1ñ";
+        for (int round = 0; round < 200; round++) {
+            List<EmergencyKeyword> keywords = new ArrayList<>();
+            for (int k = 0; k < 1 + random.nextInt(8); k++) {
+                keywords.add(kw(randomText(random, alphabet, 1 + random.nextInt(4))));
+            }
+            EmergencyTermMatcher matcher = EmergencyTermMatcher.compile(keywords);
+            for (int m = 0; m < 20; m++) {
+                String input = EmergencyKeyword.normalize(randomText(random, alphabet, random.nextInt(30)));
+                assertEquals(regexMatches(keywords, input), matcher.matches(input),
+                        () -> "keywords=" + keywords.stream().map(EmergencyKeyword::getNormalizedTerm).toList()
+                                + " input='" + input + "'");
+            }
+        }
+    }
+
+    private static boolean regexMatches(List<EmergencyKeyword> keywords, String normalizedInput) {
+        for (EmergencyKeyword kw : keywords) {
+            String term = kw.getNormalizedTerm();
+            if (!term.isEmpty()
+                    && Pattern.compile("\\b" + Pattern.quote(term) + "\\b").matcher(normalizedInput).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+    private static EmergencyTermMatcher compile(String... terms) {
+        List<EmergencyKeyword> keywords = new ArrayList<>();
+        for (String term : terms) {
+            keywords.add(kw(term));
+        }
+        return EmergencyTermMatcher.compile(keywords);
+    }
+
+    private static EmergencyKeyword kw(String term) {
+        return new EmergencyKeyword(1L, term, true, Instant.now(), Instant.now());
+    }
+}
@@ -0,0 +1,159 @@
+package site.utnpf.odontolink.application.service.security;
+
+import org.junit.jupiter.api.Test;
+import site.utnpf.odontolink.application.service.security.PiiSanitizer.PiiScanResult;
+import site.utnpf.odontolink.domain.model.ChatbotPiiType;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Test diferencial del sanitizador de PII (RF31/RF32): la pasada unica por
+ * clusters tiene que producir exactamente lo mismo que la cascada original
+ * de seis regex sobre el texto completo, que se conserva aca como oraculo.
+ */
+class PiiSanitizerDifferentialTest {
+
+    private final PiiSanitizer sanitizer = new PiiSanitizer();
+
+    /** Casos reales y bordes de precedencia entre patrones. */
+    private static final List<String> CORPUS = List.of(
+            "Hola, queria saber el horario de la clinica.",
+            "Mi DNI es 12.345.678 y quiero turno",
+            "DNI 1234567, CUIT 20-12345678-9 y CUIL 27123456789",
+            "Te paso mi tarjeta 4111 1111 1111 1111 vence 12/27",
+            "tarjeta 4111-1111-1111-1111 o 4111111111111111",
+            "El codigo es 1234 5678 9012 3456 pero no es nada",
+            "CBU 0170120220000012345678 para transferir",
+            "CBU 01701202200000123456789 (23 digitos)",
+            "Llamame al +54 9 11 12345678 o al 011 4567-8901",
+            "cel 15 12345678, fijo 0054 11 45678901",
+            "mail juan.perez@example.com o JUAN_99@mail.com.ar",
+            "tel 01112345678@gmail.com",
+            "12345678@x.com y 20-12345678-9@y.org",
+            "a12345678 12345678b _12345678 12345678_",
+            "[12.345.678] (12345678) 12.345.678.",
+            "2012345678912345678 y 4111111111111111 1",
+            "+5491112345678 +54-11-12345678",
+            "numeros 1 2 3 4 5 6 7 8 9 0 1 2 3",
+            "ñ12345678 12345678ñ á4111111111111111",
+            "línea 1\n12.345.678\r\n+54\t11\t12345678"
+    );
+
+    @Test
+    void corpusCoincideConLaCascadaOriginal() {
+        for (String input : CORPUS) {
+            assertSameAsLegacy(input);
+        }
+    }
+
+    @Test
+    void inputsAleatoriosCoincidenConLaCascadaOriginal() {
+        Random random = new Random(7);
+        String[] fragments = {
+                "0", "1", "2", "4", "5", "9", "54", "15", "20", "011", "0054", "+54",
+                "4111", "12345678", "1234567", "0170120220000012345678",
+                " ", " ", "  ", "-", ".", "+", "@", "_", "%", "\n", "\t",
+                "a", "Z", "x", "com", "ar", "mail", "ñ", "á", ",", "(", ")", "[", "]"
+        };
+        for (int round = 0; round < 20_000; round++) {
+            StringBuilder sb = new StringBuilder();
+            int parts = random.nextInt(16);
+            for (int i = 0; i < parts; i++) {
+                sb.append(fragments[random.nextInt(fragments.length)]);
+            }
+            assertSameAsLegacy(sb.toString());
+        }
+    }
+
+    @Test
+    void sinPiiDevuelveElMismoString() {
+        String input = "Hola, tengo 2 caries y 1 consulta sobre la clinica.".repeat(50);
+
+        assertSame(input, sanitizer.scan(input).sanitized());
+    }
+
+    @Test
+    void textoLargoConPiiDispersaCoincideConLaCascadaOriginal() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("Parrafo ").append(i).append(": el paciente consulta por un turno. ");
+            if (i % 17 == 0) {
+                sb.append("DNI 12.345.678, mail p").append(i).append("@mail.com, tel +54 9 11 1234567").append(i % 10);
+                sb.append(". ");
+            }
+        }
+        assertSameAsLegacy(sb.toString());
+    }
+
+    private void assertSameAsLegacy(String input) {
+        PiiScanResult expected = LegacyCascade.scan(input);
+        PiiScanResult actual = sanitizer.scan(input);
+        assertEquals(expected.sanitized(), actual.sanitized(), () -> "input='" + input + "'");
+        assertEquals(expected.detected(), actual.detected(), () -> "input='" + input + "'");
+    }
+
+    /** Implementacion previa a la pasada unica, sin cambios. */
+    private static final class LegacyCascade {
+
+        private static final Pattern DNI = Pattern.compile("\\b\\d{1,2}\\.?\\d{3}\\.?\\d{3}\\b");
+        private static final Pattern CUIT = Pattern.compile("\\b(20|23|24|27|30|33|34)-?\\d{8}-?\\d\\b");
+        private static final Pattern CBU = Pattern.compile("\\b\\d{22}\\b");
+        private static final Pattern CREDIT_CARD_CANDIDATE = Pattern.compile("\\b(?:\\d[ -]?){12,18}\\d\\b");
+        private static final Pattern EMAIL = Pattern.compile(
+                "\\b[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}\\b");
+        private static final Pattern PHONE_AR = Pattern.compile(
+                "(?:\\+54|0054)[\\s-]?(?:9[\\s-]?)?\\d{2,4}[\\s-]?\\d{6,8}\\b"
+                        + "|\\b0\\d{2,4}[\\s-]?\\d{6,8}\\b"
+                        + "|\\b15\\s?\\d{6,8}\\b");
+
+        static PiiScanResult scan(String input) {
+            Set<ChatbotPiiType> detected = EnumSet.noneOf(ChatbotPiiType.class);
+            String result = input;
+            result = replaceAllValidCreditCards(result, detected);
+            result = replaceAll(result, CBU, "[CBU_REDACTADO]", detected, ChatbotPiiType.CBU);
+            result = replaceAll(result, CUIT, "[CUIT_REDACTADO]", detected, ChatbotPiiType.CUIT);
+            result = replaceAll(result, PHONE_AR, "[TELEFONO_REDACTADO]", detected, ChatbotPiiType.PHONE_AR);
+            result = replaceAll(result, EMAIL, "[EMAIL_REDACTADO]", detected, ChatbotPiiType.EMAIL);
+            result = replaceAll(result, DNI, "[DNI_REDACTADO]", detected, ChatbotPiiType.DNI);
+            return new PiiScanResult(input, result, detected);
+        }
+
+        private static String replaceAll(String text, Pattern pattern, String replacement,
+                                         Set<ChatbotPiiType> detected, ChatbotPiiType type) {
+            Matcher m = pattern.matcher(text);
+            if (!m.find()) {
+                return text;
+            }
+            detected.add(type);
+            return m.replaceAll(replacement);
+        }
+
+        private static String replaceAllValidCreditCards(String text, Set<ChatbotPiiType> detected) {
+            Matcher m = CREDIT_CARD_CANDIDATE.matcher(text);
+            StringBuilder out = new StringBuilder(text.length());
+            int cursor = 0;
+            while (m.find()) {
+                String digits = m.group().replaceAll("[^0-9]", "");
+                if (digits.length() >= 13 && digits.length() <= 19 && PiiSanitizer.luhnValid(digits)) {
+                    out.append(text, cursor, m.start());
+                    out.append("[TARJETA_REDACTADA]");
+                    cursor = m.end();
+                    detected.add(ChatbotPiiType.CREDIT_CARD);
+                }
+            }
+            if (cursor == 0) {
+                return text;
+            }
+            out.append(text, cursor, text.length());
+            return out.toString();
+        }
+    }
+}
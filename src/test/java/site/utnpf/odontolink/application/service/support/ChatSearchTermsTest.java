@@ -0,0 +1,34 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatSearchTermsTest {
+
+    @Test
+    void descartaOperadoresYTerminosCortos() {
+        assertEquals(List.of("alergia", "penicilina"),
+                ChatSearchTerms.parse("+Alergia -a la \"penicilina*\" (y)"));
+    }
+
+    @Test
+    void conservaAcentosYDeduplica() {
+        assertEquals(List.of("encía", "dolor"), ChatSearchTerms.parse("Encía dolor ENCÍA"));
+    }
+
+    @Test
+    void acotaLaCantidadDeTerminos() {
+        assertEquals(ChatSearchTerms.MAX_TERMS,
+                ChatSearchTerms.parse("uno dos tres cuatro cinco seis siete ocho nueve diez").size());
+    }
+
+    @Test
+    void textoVacioNoProduceTerminos() {
+        assertTrue(ChatSearchTerms.parse("   ").isEmpty());
+        assertTrue(ChatSearchTerms.parse(null).isEmpty());
+    }
+}
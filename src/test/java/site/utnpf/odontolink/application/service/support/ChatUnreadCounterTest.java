@@ -0,0 +1,43 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatUnreadCounterTest {
+
+    private final ChatUnreadCounter counter = new ChatUnreadCounter();
+
+    @Test
+    void reconciliaContraElCountCuandoNadieLoTocaEnElMedio() {
+        counter.get(1L, () -> 3, Instant.EPOCH);
+
+        assertEquals(4, counter.reconcile(1L, () -> 7));
+
+        assertEquals(7, counter.get(1L, () -> -1, Instant.EPOCH));
+        assertEquals(4, counter.getDriftCorrected());
+    }
+
+    @Test
+    void unIncrementoDuranteElCountSalteaLaCorreccion() {
+        counter.get(1L, () -> 3, Instant.EPOCH);
+
+        // El COUNT ya ve el mensaje nuevo y el incremento llega antes de publicar.
+        long drift = counter.reconcile(1L, () -> {
+            counter.increment(1L);
+            return 4;
+        });
+
+        assertEquals(0, drift);
+        assertEquals(4, counter.get(1L, () -> -1, Instant.EPOCH));
+        assertEquals(0, counter.getDriftCorrected());
+    }
+
+    @Test
+    void usuarioNoCargadoNoSeReconcilia() {
+        assertEquals(0, counter.reconcile(9L, () -> 5));
+        assertEquals(0, counter.size());
+    }
+}
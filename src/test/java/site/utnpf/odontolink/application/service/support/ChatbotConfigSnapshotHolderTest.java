@@ -0,0 +1,209 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort;
+import site.utnpf.odontolink.application.port.out.ILlmAgentProviderPort.AgentSnapshot;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.domain.model.AiAgentAccessMode;
+import site.utnpf.odontolink.domain.model.AiAgentConfiguration;
+import site.utnpf.odontolink.domain.model.AiPiiPolicy;
+import site.utnpf.odontolink.domain.model.AiRetrievalMethod;
+import site.utnpf.odontolink.domain.repository.AiAgentConfigurationRepository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests de {@link ChatbotConfigSnapshotHolder}: la URL se resuelve al
+ * refrescar (no en el turno), el refresh post-commit espera al commit y la
+ * llamada remota no bloquea a otros refresh ni a los turnos.
+ */
+class ChatbotConfigSnapshotHolderTest {
+
+    private static final String DISCOVERED = "https://discovered.agents.do-ai.run";
+
+    private AiAgentConfigurationRepository configRepo;
+    private ILlmAgentProviderPort providerPort;
+    private ChatbotConfigSnapshotHolder holder;
+
+    @BeforeEach
+    void setUp() {
+        configRepo = mock(AiAgentConfigurationRepository.class);
+        providerPort = mock(ILlmAgentProviderPort.class);
+        holder = new ChatbotConfigSnapshotHolder(configRepo, providerPort, null, "agent-uuid",
+                new StubTransactionManager());
+    }
+
+    @Test
+    void sinConfiguracionQuedaUnconfigured() {
+        when(configRepo.findSingleton()).thenReturn(Optional.empty());
+
+        assertSame(ChatbotConfigSnapshot.UNCONFIGURED, holder.current());
+        assertFalse(holder.current().isConfigured());
+    }
+
+    @Test
+    void laUrlSeDescubreAlRefrescarYSePersiste() {
+        AiAgentConfiguration cfg = publishedConfig();
+        when(configRepo.findSingleton()).thenReturn(Optional.of(cfg));
+        when(providerPort.getAgent("agent-uuid")).thenReturn(agentWithEndpoint(DISCOVERED));
+
+        holder.refresh();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(DISCOVERED, holder.current().agentInvocationUrl());
+        }
+
+        verify(providerPort, times(1)).getAgent("agent-uuid");
+        verify(configRepo, times(1)).save(cfg);
+        assertEquals(DISCOVERED, cfg.getAgentInvocationUrl());
+        // Refresh + relectura antes de persistir; current() no vuelve a la base.
+        verify(configRepo, times(2)).findSingleton();
+    }
+
+    @Test
+    void descubrimientoFallidoDejaLaUrlVaciaYElTurnoReintenta() {
+        when(configRepo.findSingleton()).thenReturn(Optional.of(publishedConfig()));
+        when(providerPort.getAgent("agent-uuid"))
+                .thenThrow(new LlmProviderException("timeout", null, null))
+                .thenReturn(agentWithEndpoint(DISCOVERED));
+
+        assertNull(holder.refresh().agentInvocationUrl());
+
+        assertEquals(DISCOVERED, holder.discoverInvocationUrl());
+        assertEquals(DISCOVERED, holder.current().agentInvocationUrl());
+        assertEquals(DISCOVERED, holder.discoverInvocationUrl());
+        verify(providerPort, times(2)).getAgent("agent-uuid");
+    }
+
+    @Test
+    void unRefreshColgadoEnElProveedorNoBloqueaNiPisaAUnoPosterior() throws Exception {
+        CountDownLatch remoteCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseRemoteCall = new CountDownLatch(1);
+        when(configRepo.findSingleton()).thenReturn(Optional.of(publishedConfig()));
+        when(providerPort.getAgent("agent-uuid")).thenAnswer(inv -> {
+            remoteCallStarted.countDown();
+            releaseRemoteCall.await(5, TimeUnit.SECONDS);
+            return agentWithEndpoint(DISCOVERED);
+        });
+        CompletableFuture<ChatbotConfigSnapshot> slow = CompletableFuture.supplyAsync(holder::refresh);
+        remoteCallStarted.await(5, TimeUnit.SECONDS);
+
+        AiAgentConfiguration edited = publishedConfig();
+        edited.cacheAgentInvocationUrl("https://newer.agents.do-ai.run");
+        when(configRepo.findSingleton()).thenReturn(Optional.of(edited));
+        ChatbotConfigSnapshot newer = CompletableFuture.supplyAsync(holder::refresh).get(2, TimeUnit.SECONDS);
+        releaseRemoteCall.countDown();
+
+        assertEquals("https://newer.agents.do-ai.run", newer.agentInvocationUrl());
+        assertEquals("https://newer.agents.do-ai.run", slow.get(5, TimeUnit.SECONDS).agentInvocationUrl());
+        assertEquals("https://newer.agents.do-ai.run", holder.current().agentInvocationUrl());
+    }
+
+    @Test
+    void turnosConcurrentesCompartenElDescubrimientoEnVuelo() throws Exception {
+        CountDownLatch remoteCallStarted = new CountDownLatch(1);
+        CountDownLatch releaseRemoteCall = new CountDownLatch(1);
+        when(configRepo.findSingleton()).thenReturn(Optional.of(publishedConfig()));
+        when(providerPort.getAgent("agent-uuid"))
+                .thenThrow(new LlmProviderException("timeout", null, null))
+                .thenAnswer(inv -> {
+                    remoteCallStarted.countDown();
+                    releaseRemoteCall.await(5, TimeUnit.SECONDS);
+                    return agentWithEndpoint(DISCOVERED);
+                });
+        assertNull(holder.refresh().agentInvocationUrl());
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(holder::discoverInvocationUrl);
+        remoteCallStarted.await(5, TimeUnit.SECONDS);
+        CompletableFuture<String> followerResult = new CompletableFuture<>();
+        Thread follower = new Thread(() -> followerResult.complete(holder.discoverInvocationUrl()));
+        follower.start();
+        while (follower.getState() != Thread.State.WAITING && follower.isAlive()) {
+            Thread.sleep(5);
+        }
+        releaseRemoteCall.countDown();
+
+        assertEquals(DISCOVERED, leader.get(5, TimeUnit.SECONDS));
+        assertEquals(DISCOVERED, followerResult.get(5, TimeUnit.SECONDS));
+        assertEquals(DISCOVERED, holder.current().agentInvocationUrl());
+        verify(providerPort, times(2)).getAgent("agent-uuid");
+    }
+
+    @Test
+    void refreshAfterCommitEsperaAlCommit() {
+        when(configRepo.findSingleton()).thenReturn(Optional.empty());
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            holder.refreshAfterCommit();
+            verify(configRepo, never()).findSingleton();
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+            verify(configRepo, times(1)).findSingleton();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verify(configRepo, never()).save(any());
+    }
+
+    private static AiAgentConfiguration publishedConfig() {
+        AiAgentConfiguration cfg = AiAgentConfiguration.createNew(
+                "Asistente OdontoLink",
+                "Eres el asistente virtual de la clinica.",
+                "Hola! Que necesitas?",
+                new BigDecimal("0.7"),
+                new BigDecimal("0.9"),
+                256,
+                10,
+                AiRetrievalMethod.REWRITE);
+        cfg.applyChatbotConfig(AiAgentAccessMode.PUBLIC, Set.of(), AiPiiPolicy.BLOCK,
+                20, 20, 60, "*** Emergencia ***", false, true);
+        cfg.markPublished("agent-uuid", Instant.now());
+        return cfg;
+    }
+
+    private static AgentSnapshot agentWithEndpoint(String endpoint) {
+        return new AgentSnapshot("agent-uuid", null, null, null, 0, 0, null, null, endpoint, false, List.of());
+    }
+
+    private static class StubTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            // no-op
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            // no-op
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.junit.jupiter.api.Test;
+import site.utnpf.odontolink.domain.model.ChatbotMessage;
+import site.utnpf.odontolink.domain.model.ChatbotMessageRole;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatbotConversationWindowTest {
+
+    @Test
+    void reconstruyeUnaVezYLuegoSirveDesdeMemoria() {
+        ChatbotConversationWindow window = new ChatbotConversationWindow(10);
+        UUID sid = UUID.randomUUID();
+        AtomicInteger loads = new AtomicInteger();
+
+        window.append(user(sid, "uno"), 4, () -> {
+            loads.incrementAndGet();
+            return List.of(assistant(sid, "previo"));
+        });
+        List<ChatbotMessage> snapshot = window.append(assistant(sid, "dos"), 4, () -> {
+            loads.incrementAndGet();
+            return List.of();
+        });
+
+        assertEquals(1, loads.get());
+        assertEquals(List.of("previo", "uno", "dos"), contents(snapshot));
+        assertEquals(1, window.getHits());
+        assertEquals(1, window.getLoads());
+    }
+
+    @Test
+    void elRingBufferConservaLosUltimosN() {
+        ChatbotConversationWindow window = new ChatbotConversationWindow(10);
+        UUID sid = UUID.randomUUID();
+
+        List<ChatbotMessage> snapshot = null;
+        for (int i = 1; i <= 5; i++) {
+            snapshot = window.append(user(sid, "m" + i), 3, List::of);
+        }
+
+        assertEquals(List.of("m3", "m4", "m5"), contents(snapshot));
+        assertEquals(5, window.pendingCount(), "La cola de escritura no se recorta con la ventana.");
+    }
+
+    @Test
+    void drenaEnOrdenYReencolaSiFalla() {
+        ChatbotConversationWindow window = new ChatbotConversationWindow(10);
+        UUID sid = UUID.randomUUID();
+        window.append(user(sid, "a"), 4, List::of);
+        window.append(assistant(sid, "b"), 4, List::of);
+        window.append(user(sid, "c"), 4, List::of);
+
+        List<ChatbotMessage> first = window.drainPending(2);
+        assertEquals(List.of("a", "b"), contents(first));
+        window.requeue(first);
+
+        assertEquals(3, window.pendingCount());
+        window.markFlushed(window.drainPending(10));
+        assertEquals(0, window.pendingCount());
+        assertEquals(3, window.getMessagesFlushed());
+    }
+
+    @Test
+    void noDesalojaSesionesConMensajesSinPersistir() {
+        ChatbotConversationWindow window = new ChatbotConversationWindow(1);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        window.append(user(first, "a"), 4, List::of);
+        window.append(user(second, "b"), 4, List::of);
+
+        assertEquals(2, window.size(), "Ambas tienen mensajes pendientes.");
+
+        window.markFlushed(window.drainPending(10));
+
+        assertEquals(1, window.size());
+        assertEquals(1, window.getEvictions());
+        // La sesion desalojada se reconstruye desde la base en el proximo turno.
+        AtomicInteger loads = new AtomicInteger();
+        window.append(user(first, "c"), 4, () -> {
+            loads.incrementAndGet();
+            return List.of(user(first, "a"));
+        });
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void descartarSesionSacaSusPendientes() {
+        ChatbotConversationWindow window = new ChatbotConversationWindow(10);
+        UUID closed = UUID.randomUUID();
+        UUID open = UUID.randomUUID();
+        window.append(user(closed, "a"), 4, List::of);
+        window.append(user(open, "b"), 4, List::of);
+
+        window.discard(closed);
+
+        List<ChatbotMessage> drained = window.drainPending(10);
+        assertEquals(List.of("b"), contents(drained));
+        assertTrue(drained.stream().noneMatch(m -> m.getSessionId().equals(closed)));
+        assertEquals(1, window.size());
+    }
+
+    @Test
+    void elFlushYElCierreDejanLaSesionComoCandidataAlRecorte() {
+        ChatbotConversationWindow window = new ChatbotConversationWindow(10);
+        UUID flushed = UUID.randomUUID();
+        UUID closed = UUID.randomUUID();
+        window.append(user(flushed, "a"), 4, List::of);
+        window.markFlushed(window.drainPending(10));
+        window.discard(closed);
+
+        assertEquals(List.of(), window.drainTrimCandidates(Instant.EPOCH, 10), "Todavia en gracia.");
+
+        List<UUID> drained = window.drainTrimCandidates(Instant.now().plusSeconds(1), 1);
+        assertEquals(1, drained.size());
+        assertEquals(1, window.trimCandidateCount());
+
+        window.requeueTrimCandidates(drained);
+        assertEquals(Set.of(flushed, closed),
+                Set.copyOf(window.drainTrimCandidates(Instant.now().plusSeconds(1), 10)));
+        assertEquals(0, window.trimCandidateCount());
+    }
+
+    private static ChatbotMessage user(UUID sid, String text) {
+        return ChatbotMessage.createNew(sid, ChatbotMessageRole.USER, text);
+    }
+
+    private static ChatbotMessage assistant(UUID sid, String text) {
+        return ChatbotMessage.createNew(sid, ChatbotMessageRole.ASSISTANT, text);
+    }
+
+    private static List<String> contents(List<ChatbotMessage> messages) {
+        return messages.stream().map(ChatbotMessage::getContent).toList();
+    }
+}
@@ -0,0 +1,142 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.AgentInvocationResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatbotRequestCoalescerTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void turnosIdenticosConcurrentesCompartenUnaInvocacion() throws Exception {
+        ChatbotRequestCoalescer coalescer = new ChatbotRequestCoalescer(Duration.ofSeconds(5));
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger upstream = new AtomicInteger();
+
+        Future<ChatbotRequestCoalescer.Outcome> leader = pool.submit(() -> coalescer.execute("v1\nhorarios", () -> {
+            upstream.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return reply("De 8 a 20.");
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        List<Future<ChatbotRequestCoalescer.Outcome>> followers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            followers.add(pool.submit(() -> coalescer.execute("v1\nhorarios", () -> {
+                upstream.incrementAndGet();
+                return reply("independiente");
+            })));
+        }
+        // Margen para que los seguidores queden esperando al lider.
+        sleep(200);
+        release.countDown();
+
+        assertFalse(leader.get(5, TimeUnit.SECONDS).shared());
+        for (Future<ChatbotRequestCoalescer.Outcome> follower : followers) {
+            ChatbotRequestCoalescer.Outcome outcome = follower.get(5, TimeUnit.SECONDS);
+            assertTrue(outcome.shared());
+            assertEquals("De 8 a 20.", outcome.result().reply());
+        }
+        assertEquals(1, upstream.get());
+        assertEquals(3, coalescer.getCallsSaved());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void agotadaLaEsperaElSeguidorInvocaPorSuCuenta() throws Exception {
+        ChatbotRequestCoalescer coalescer = new ChatbotRequestCoalescer(Duration.ofMillis(50));
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.submit(() -> coalescer.execute("k", () -> {
+            leaderStarted.countDown();
+            await(release);
+            return reply("lider");
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        ChatbotRequestCoalescer.Outcome outcome = coalescer.execute("k", () -> reply("propia"));
+
+        release.countDown();
+        assertFalse(outcome.shared());
+        assertEquals("propia", outcome.result().reply());
+        assertEquals(1, coalescer.getWaitTimeouts());
+        assertEquals(0, coalescer.getCallsSaved());
+    }
+
+    @Test
+    void siElLiderFallaElSeguidorInvocaPorSuCuenta() throws Exception {
+        ChatbotRequestCoalescer coalescer = new ChatbotRequestCoalescer(Duration.ofSeconds(5));
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch followerWaiting = new CountDownLatch(1);
+        Future<ChatbotRequestCoalescer.Outcome> leader = pool.submit(() -> coalescer.execute("k", () -> {
+            leaderStarted.countDown();
+            await(followerWaiting);
+            sleep(100);
+            throw new IllegalStateException("proveedor caido");
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        followerWaiting.countDown();
+
+        ChatbotRequestCoalescer.Outcome outcome = coalescer.execute("k", () -> reply("propia"));
+
+        assertEquals("propia", outcome.result().reply());
+        assertEquals(1, coalescer.getLeaderFailures());
+        Exception leaderFailure = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertTrue(leaderFailure.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void turnosSucesivosNoSeCoalescen() {
+        ChatbotRequestCoalescer coalescer = new ChatbotRequestCoalescer(Duration.ofSeconds(5));
+        AtomicInteger upstream = new AtomicInteger();
+
+        coalescer.execute("k", () -> reply("uno " + upstream.incrementAndGet()));
+        ChatbotRequestCoalescer.Outcome second = coalescer.execute("k", () -> reply("dos " + upstream.incrementAndGet()));
+
+        assertFalse(second.shared());
+        assertEquals(2, upstream.get());
+        assertEquals(2, coalescer.getUpstreamCalls());
+    }
+
+    private static AgentInvocationResult reply(String text) {
+        return new AgentInvocationResult(text, List.of(), 10);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
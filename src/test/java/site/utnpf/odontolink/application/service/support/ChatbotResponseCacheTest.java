@@ -0,0 +1,132 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.junit.jupiter.api.Test;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.AgentInvocationResult;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.RetrievalDocument;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatbotResponseCacheTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-10T12:00:00Z");
+
+    @Test
+    void normalizaMayusculasTildesYSignos() {
+        assertEquals("cuales son los horarios", ChatbotResponseCache.normalize("  ¿Cuáles son   los HORARIOS?? "));
+        assertEquals("como saco turno", ChatbotResponseCache.normalize("cómo saco turno"));
+        assertEquals("", ChatbotResponseCache.normalize("¿?"));
+    }
+
+    @Test
+    void hitPorTextoNormalizadoYMetricas() {
+        ChatbotResponseCache cache = exactCache(10, Duration.ofMinutes(5));
+        ChatbotResponseCache.Lookup miss = cache.lookup("v1", "¿Horarios?", T0);
+        assertFalse(miss.isHit());
+        cache.store(miss, reply("De 8 a 20."), 1200, T0);
+
+        ChatbotResponseCache.Lookup hit = cache.lookup("v1", "horarios", T0.plusSeconds(1));
+
+        assertTrue(hit.isHit());
+        assertEquals("De 8 a 20.", hit.hit().reply());
+        assertEquals("ds-1", hit.hit().retrievedDocuments().get(0).dataSourceId());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1200, cache.getLatencySavedMs());
+        assertEquals(0.5, cache.hitRatio());
+    }
+
+    @Test
+    void otraVersionPublicadaNoComparteEntradas() {
+        ChatbotResponseCache cache = exactCache(10, Duration.ofMinutes(5));
+        cache.store(cache.lookup("v1", "horarios", T0), reply("viejo"), 100, T0);
+
+        assertFalse(cache.lookup("v2", "horarios", T0).isHit());
+    }
+
+    @Test
+    void entradaVencidaNoSeSirve() {
+        ChatbotResponseCache cache = exactCache(10, Duration.ofMinutes(5));
+        cache.store(cache.lookup("v1", "horarios", T0), reply("De 8 a 20."), 100, T0);
+
+        assertFalse(cache.lookup("v1", "horarios", T0.plus(Duration.ofMinutes(5))).isHit());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void desalojaLaMenosUsadaAlSuperarElMaximo() {
+        ChatbotResponseCache cache = exactCache(2, Duration.ofMinutes(5));
+        cache.store(cache.lookup("v1", "a", T0), reply("A"), 1, T0);
+        cache.store(cache.lookup("v1", "b", T0), reply("B"), 1, T0);
+        cache.lookup("v1", "a", T0);
+        cache.store(cache.lookup("v1", "c", T0), reply("C"), 1, T0);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.lookup("v1", "a", T0).isHit());
+        assertFalse(cache.lookup("v1", "b", T0).isHit());
+    }
+
+    @Test
+    void invalidacionDescartaLoGuardadoPorTurnosEnVuelo() {
+        ChatbotResponseCache cache = exactCache(10, Duration.ofMinutes(5));
+        ChatbotResponseCache.Lookup before = cache.lookup("v1", "horarios", T0);
+
+        cache.invalidateAll();
+        cache.store(before, reply("respuesta con la KB anterior"), 100, T0);
+
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    void consultaLargaNoEsCacheable() {
+        ChatbotResponseCache cache = new ChatbotResponseCache(10, Duration.ofMinutes(5), 10, null, 0.9);
+
+        assertNull(cache.lookup("v1", "una consulta bastante mas larga que el limite", T0));
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    void tierSemanticoUsaLaEntradaMasSimilarSobreElUmbral() {
+        ChatbotResponseCache cache = new ChatbotResponseCache(10, Duration.ofMinutes(5), 200,
+                text -> text.contains("turno") ? new float[]{1f, 0.1f} : new float[]{0f, 1f}, 0.9);
+        cache.store(cache.lookup("v1", "como saco turno", T0), reply("Desde la app."), 800, T0);
+
+        ChatbotResponseCache.Lookup similar = cache.lookup("v1", "como pido un turno", T0);
+        ChatbotResponseCache.Lookup unrelated = cache.lookup("v1", "que cuesta", T0);
+
+        assertTrue(similar.isHit());
+        assertEquals("Desde la app.", similar.hit().reply());
+        assertFalse(unrelated.isHit());
+        assertEquals(1, cache.getSemanticHits());
+    }
+
+    @Test
+    void fallaDelTierSemanticoEsUnMiss() {
+        ChatbotResponseCache cache = new ChatbotResponseCache(10, Duration.ofMinutes(5), 200,
+                text -> {
+                    throw new IllegalStateException("embeddings caidos");
+                }, 0.9);
+
+        ChatbotResponseCache.Lookup lookup = cache.lookup("v1", "horarios", T0);
+
+        assertFalse(lookup.isHit());
+        cache.store(lookup, reply("De 8 a 20."), 100, T0);
+        assertTrue(cache.lookup("v1", "horarios", T0).isHit());
+    }
+
+    private static ChatbotResponseCache exactCache(int maxEntries, Duration ttl) {
+        return new ChatbotResponseCache(maxEntries, ttl, 200, null, 0.9);
+    }
+
+    private static AgentInvocationResult reply(String text) {
+        return new AgentInvocationResult(text, List.of(new RetrievalDocument("ds-1", 5.0)), 10);
+    }
+}
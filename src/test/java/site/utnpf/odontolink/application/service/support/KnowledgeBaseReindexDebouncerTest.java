@@ -0,0 +1,84 @@
+package site.utnpf.odontolink.application.service.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KnowledgeBaseReindexDebouncerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final KnowledgeBaseReindexDebouncer debouncer =
+            new KnowledgeBaseReindexDebouncer(5_000, 20_000, clock::get);
+
+    @Test
+    void esperaLaVentanaDeQuietudYFusionaLosPedidos() {
+        debouncer.request("ds-a");
+        advance(3_000);
+        debouncer.request("ds-b");
+        debouncer.request("ds-a");
+        advance(3_000);
+
+        assertNull(debouncer.drainIfQuiet());
+
+        advance(2_000);
+        KnowledgeBaseReindexDebouncer.Batch batch = debouncer.drainIfQuiet();
+
+        assertEquals(List.of("ds-a", "ds-b"), batch.dataSourceIds());
+        assertFalse(batch.fullReindex());
+        assertEquals(3, debouncer.getRequests());
+        assertEquals(0, debouncer.pendingCount());
+        assertNull(debouncer.drainIfQuiet());
+    }
+
+    @Test
+    void unaRafagaContinuaSeDrenaAlCumplirLaDemoraMaxima() {
+        for (int i = 0; i < 6; i++) {
+            debouncer.request("ds-" + i);
+            advance(4_000);
+            if (i < 4) {
+                assertNull(debouncer.drainIfQuiet());
+            }
+        }
+
+        assertEquals(6, debouncer.drainIfQuiet().dataSourceIds().size());
+    }
+
+    @Test
+    void reindexCompletoMandaListaVaciaAlProveedor() {
+        debouncer.request("ds-a");
+        debouncer.requestFullReindex();
+        advance(5_000);
+
+        KnowledgeBaseReindexDebouncer.Batch batch = debouncer.drainIfQuiet();
+
+        assertTrue(batch.fullReindex());
+        assertEquals(List.of("ds-a"), batch.dataSourceIds());
+        assertEquals(List.of(), batch.providerDataSourceIds());
+    }
+
+    @Test
+    void requeueFusionaYReiniciaLaVentana() {
+        debouncer.request("ds-a");
+        advance(5_000);
+        KnowledgeBaseReindexDebouncer.Batch batch = debouncer.drainIfQuiet();
+        debouncer.request("ds-b");
+
+        debouncer.requeue(batch);
+
+        assertEquals(2, debouncer.pendingCount());
+        assertNull(debouncer.drainIfQuiet());
+        advance(5_000);
+        assertEquals(List.of("ds-b", "ds-a"), debouncer.drainIfQuiet().dataSourceIds());
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
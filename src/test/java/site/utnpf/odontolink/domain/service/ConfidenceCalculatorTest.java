@@ -6,7 +6,9 @@ import site.utnpf.odontolink.domain.model.ConfidenceAssessment;
 import site.utnpf.odontolink.domain.model.ConfidenceCalculatorConfig;
 import site.utnpf.odontolink.domain.model.ConfidenceCategory;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -216,4 +218,46 @@ class ConfidenceCalculatorTest {
         assertNotNull(a.label());
         assertNotNull(a.message());
     }
+
+    @Test
+    void seleccionTopKCoincideConOrdenarLaListaCompleta() {
+        ConfidenceCalculatorConfig config = defaultConfig(NO_REFUSAL_PATTERNS);
+        ConfidenceCalculator calc = new ConfidenceCalculator(config, new RefusalDetector(config));
+        Random random = new Random(7);
+        double[] pool = {-9.5e9, 0.0, 0.69, 3.0, 4.0, 4.0, 8.0, 12.87, 25.0};
+        for (int n = 0; n < 2_000; n++) {
+            List<RetrievalDocument> chunks = new ArrayList<>();
+            int size = random.nextInt(9);
+            for (int i = 0; i < size; i++) {
+                double raw = random.nextBoolean()
+                        ? pool[random.nextInt(pool.length)]
+                        : random.nextDouble() * 14 - 1;
+                chunks.add(chunk(raw));
+            }
+            ConfidenceAssessment a = calc.assess(
+                    "Respuesta de longitud normal sobre el tema consultado.", chunks);
+            assertEquals(legacyRetrieval(config, chunks), a.signalRetrieval(), 0.0, chunks::toString);
+        }
+    }
+
+    /** S_A como se calculaba antes: normalizar, ordenar todo y tomar los ultimos K. */
+    private static double legacyRetrieval(ConfidenceCalculatorConfig config, List<RetrievalDocument> chunks) {
+        if (chunks.isEmpty()) {
+            return 0.0;
+        }
+        double[] normalized = chunks.stream()
+                .mapToDouble(c -> c.score() < 0 ? 0.0
+                        : Math.max(0.0, Math.min(1.0, c.score() / config.normalizationFactor())))
+                .sorted()
+                .toArray();
+        int take = Math.min(config.topKWeights().size(), normalized.length);
+        double totalWeight = 0;
+        double weighted = 0;
+        for (int i = 0; i < take; i++) {
+            double w = config.topKWeights().get(i);
+            totalWeight += w;
+            weighted += w * normalized[normalized.length - 1 - i];
+        }
+        return Math.max(0.0, Math.min(1.0, weighted / totalWeight));
+    }
 }
@@ -4,7 +4,9 @@ import org.junit.jupiter.api.Test;
 import site.utnpf.odontolink.domain.model.ConfidenceCalculatorConfig;
 
 import java.util.List;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -109,4 +111,52 @@ class RefusalDetectorTest {
         assertTrue(detector.isRefusal(
                 "Lo siento, por razones de seguridad no puedo responder."));
     }
+
+    @Test
+    void patronesSolapadosSeEncuentranPorFailLink() {
+        // "no puedo" falla en la 'x' y el texto sigue con un patron que
+        // empieza a mitad del intento anterior.
+        RefusalDetector detector = new RefusalDetector(configWith(List.of(
+                "no puedo responder", "do ayudar")));
+        assertTrue(detector.isRefusal("Lo siento, no puedo ayudar con eso."));
+        assertFalse(detector.isRefusal("No pude responder."));
+    }
+
+    @Test
+    void mismoResultadoQueNormalizarYBuscarPorSubstring() {
+        // Incluye los casos donde toLowerCase del String entero no es por
+        // caracter (I con punto, sigma final) y un code point suplementario.
+        String alphabet = "abnopuedyÑñÁáÚúÜüİIiΣσς \uD835\uDC00.";
+        List<List<String>> patternSets = List.of(
+                List.of("no puedo", "puedo ayudar", "Ñandú", "ab", "bab"),
+                List.of("i", "σ", "ς", "aia"));
+        Random random = new Random(42);
+        for (List<String> patterns : patternSets) {
+            RefusalDetector detector = new RefusalDetector(configWith(patterns));
+            for (int n = 0; n < 5_000; n++) {
+                StringBuilder reply = new StringBuilder();
+                int length = 1 + random.nextInt(24);
+                for (int i = 0; i < length; i++) {
+                    reply.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                String text = reply.toString();
+                assertEquals(legacyIsRefusal(patterns, text), detector.isRefusal(text), text);
+            }
+        }
+    }
+
+    /** Implementacion anterior: normalizar el reply entero y un contains por patron. */
+    private static boolean legacyIsRefusal(List<String> patterns, String reply) {
+        if (reply == null || reply.isBlank()) {
+            return false;
+        }
+        String normalized = ConfidenceCalculatorConfig.normalize(reply);
+        for (String pattern : patterns) {
+            String p = ConfidenceCalculatorConfig.normalize(pattern);
+            if (!p.isBlank() && normalized.contains(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,57 @@
+package site.utnpf.odontolink.domain.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link SubstringAutomaton}.
+ *
+ * <p>Foco: los enlaces de falla (patrones solapados o contenidos en otros)
+ * y los inicios de match que expone {@link SubstringAutomaton#anyMatch}.
+ */
+class SubstringAutomatonTest {
+
+    @Test
+    void encuentraPatronesSolapadosPorEnlaceDeFalla() {
+        SubstringAutomaton automaton = SubstringAutomaton.compile(List.of("he", "she", "his", "hers"));
+
+        assertTrue(automaton.containsAny("ushers"));
+        assertTrue(automaton.containsAny("ahis"));
+        assertFalse(automaton.containsAny("hsx"));
+    }
+
+    @Test
+    void sinPatronesUsablesNoMatcheaNada() {
+        SubstringAutomaton automaton = SubstringAutomaton.compile(Arrays.asList(null, ""));
+
+        assertTrue(automaton.isEmpty());
+        assertEquals(1, automaton.stateCount());
+        assertFalse(automaton.containsAny("cualquier texto"));
+    }
+
+    @Test
+    void anyMatchInformaElInicioDeCadaPatronQueTerminaEnElEstado() {
+        SubstringAutomaton automaton = SubstringAutomaton.compile(List.of("dolor", "olor"));
+        String text = "un dolor";
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = automaton.next(state, text.charAt(i));
+        }
+
+        List<Integer> starts = new ArrayList<>();
+        automaton.anyMatch(state, text.length(), start -> {
+            starts.add(start);
+            return false;
+        });
+
+        assertEquals(List.of(3, 4), starts);
+        assertTrue(automaton.anyMatch(state, text.length(), start -> start == 4));
+    }
+}
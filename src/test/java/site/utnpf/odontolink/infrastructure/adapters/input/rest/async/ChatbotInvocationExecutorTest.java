@@ -0,0 +1,127 @@
+package site.utnpf.odontolink.infrastructure.adapters.input.rest.async;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+import site.utnpf.odontolink.domain.exception.ServiceOverloadedException;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests del pool acotado del chatbot: back-pressure con 503 rapido, metricas
+ * y descarte de turnos vencidos en cola.
+ */
+class ChatbotInvocationExecutorTest {
+
+    private SimpleMeterRegistry registry;
+    private ChatbotInvocationExecutor executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        // 1 hilo + 1 lugar en cola: el tercer turno ya no entra.
+        executor = new ChatbotInvocationExecutor(registry, 1, 1, 60_000, 7);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void conLaColaLlenaRechazaEnElActoConRetryAfter() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(this::awaitRelease);
+
+        ServiceOverloadedException ex = assertThrows(ServiceOverloadedException.class,
+                () -> executor.defer(() -> "no entra"));
+
+        assertEquals(AiAgentErrorCodes.AI_AGENT_BUSY, ex.getErrorCode());
+        assertEquals(7, ex.getRetryAfterSeconds());
+        assertEquals(1.0, registry.get("chatbot.invocation.rejected").counter().count());
+        assertEquals(1.0, registry.get("chatbot.invocation.in_flight").gauge().value());
+        assertEquals(1.0, registry.get("chatbot.invocation.queue_depth").gauge().value());
+    }
+
+    @Test
+    void deferCompletaConElResultadoYMideLaEspera() throws InterruptedException {
+        DeferredResult<String> deferred = executor.defer(() -> "ok");
+
+        assertTrue(awaitSet(deferred));
+        assertEquals("ok", deferred.getResult());
+        assertEquals(1, registry.get("chatbot.invocation.queue_wait").timer().count());
+    }
+
+    @Test
+    void laExcepcionDelTurnoViajaComoErrorResult() throws InterruptedException {
+        IllegalStateException boom = new IllegalStateException("boom");
+        DeferredResult<String> deferred = executor.defer(() -> {
+            throw boom;
+        });
+
+        assertTrue(awaitSet(deferred));
+        assertEquals(boom, deferred.getResult());
+    }
+
+    @Test
+    void turnoVencidoEnColaNoSeEjecuta() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AtomicBoolean ran = new AtomicBoolean();
+        DeferredResult<String> deferred = executor.defer(() -> {
+            ran.set(true);
+            return "tarde";
+        });
+        // Simula el timeout de MVC mientras el turno sigue en cola.
+        deferred.setErrorResult(new IllegalStateException("timeout"));
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((registry.get("chatbot.invocation.queue_depth").gauge().value() > 0
+                || registry.get("chatbot.invocation.in_flight").gauge().value() > 0)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, registry.get("chatbot.invocation.queue_wait").timer().count(),
+                "El turno vencido salio de la cola...");
+        assertFalse(ran.get(), "...pero no llego a invocar al use case.");
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean awaitSet(DeferredResult<?> deferred) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!deferred.hasResult() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return deferred.hasResult();
+    }
+}
@@ -0,0 +1,105 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests del limite adaptativo. Las muestras de RTT se inyectan con
+ * {@code onSample} para no depender del reloj.
+ */
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void conLimiteLlenoRechazaYCuentaElRechazo() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4, registry);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire();
+        AdaptiveConcurrencyLimiter.Permit second = limiter.tryAcquire();
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limiter.tryAcquire());
+        assertEquals(1, registry.get("chatbot.provider.concurrency.rejected").counter().count());
+
+        first.release();
+        assertNotNull(limiter.tryAcquire());
+    }
+
+    @Test
+    void liberarDosVecesNoDevuelveDosLugares() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4, registry);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        limiter.tryAcquire();
+
+        permit.dropped();
+        permit.release();
+
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    void latenciaEnAumentoAchicaElLimite() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, 2, 16, registry);
+        for (int i = 0; i < 200; i++) {
+            limiter.onSample(SECOND, 16);
+        }
+        assertEquals(16, limiter.getLimit());
+
+        for (int i = 0; i < 30; i++) {
+            limiter.onSample(4 * SECOND, 16);
+        }
+
+        assertTrue(limiter.getLimit() < 12, "limite: " + limiter.getLimit());
+        assertEquals(registry.get("chatbot.provider.concurrency.limit").gauge().value(), limiter.getLimit());
+    }
+
+    @Test
+    void latenciaEstableHaceCrecerElLimiteHastaElMaximo() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 2, 16, registry);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(SECOND, limiter.getLimit());
+        }
+
+        assertEquals(16, limiter.getLimit());
+    }
+
+    @Test
+    void sinCargaElLimiteNoSeMueve() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 2, 16, registry);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(SECOND, 1);
+        }
+
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void fallasSucesivasBajanHastaElMinimo() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(16, 3, 16, registry);
+        List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            limiter.onDrop();
+        }
+        for (int i = 0; i < 5; i++) {
+            permits.add(limiter.tryAcquire());
+        }
+
+        assertEquals(3, limiter.getLimit());
+        assertEquals(3, permits.stream().filter(p -> p != null).count());
+    }
+}
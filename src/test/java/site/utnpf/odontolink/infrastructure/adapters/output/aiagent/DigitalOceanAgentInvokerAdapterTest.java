@@ -1,14 +1,19 @@
 package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
 
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.web.client.ResourceAccessException;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.ChatMessage;
 import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.ProbeResult;
+import site.utnpf.odontolink.domain.exception.LlmConcurrencyLimitException;
 import site.utnpf.odontolink.domain.exception.LlmProviderException;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoChatCompletionRequest;
 import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoChatCompletionResponse;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.dto.DoUsage;
 
 import java.net.SocketTimeoutException;
 import java.util.List;
@@ -22,6 +27,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -43,13 +49,18 @@ class DigitalOceanAgentInvokerAdapterTest {
 
     private DigitalOceanGradientClient invocationClient;
     private DigitalOceanGradientClient probeClient;
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
     private DigitalOceanAgentInvokerAdapter adapter;
 
     @BeforeEach
     void setUp() {
         invocationClient = mock(DigitalOceanGradientClient.class);
         probeClient = mock(DigitalOceanGradientClient.class);
-        adapter = new DigitalOceanAgentInvokerAdapter(invocationClient, probeClient, "");
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(16, 2, 16, meterRegistry);
+        adapter = new DigitalOceanAgentInvokerAdapter(invocationClient, invocationClient, probeClient, "",
+                meterRegistry, limiter);
     }
 
     @Test
@@ -132,7 +143,8 @@ class DigitalOceanAgentInvokerAdapterTest {
     @Test
     void invokeIncluyeModelSiHayOverride() {
         DigitalOceanAgentInvokerAdapter adapterConModelo =
-                new DigitalOceanAgentInvokerAdapter(invocationClient, probeClient, "llama3-8b-instruct");
+                new DigitalOceanAgentInvokerAdapter(invocationClient, invocationClient, probeClient, "llama3-8b-instruct",
+                        meterRegistry, limiter);
         when(invocationClient.postAbsolute(anyString(), any(), eq(DoChatCompletionResponse.class)))
                 .thenReturn(emptyResponse());
 
@@ -183,6 +195,86 @@ class DigitalOceanAgentInvokerAdapterTest {
         assertEquals("URL del agente no configurada.", result.errorDetail());
     }
 
+    @Test
+    void invokePublicaDuracionYTokens() {
+        when(invocationClient.postAbsolute(anyString(), any(), eq(DoChatCompletionResponse.class)))
+                .thenReturn(new DoChatCompletionResponse("test-id", "test-model", List.of(),
+                        new DoUsage(120, 30, 150), null));
+
+        adapter.invoke("https://abc.agents.do-ai.run", List.of(new ChatMessage("user", "hola")));
+
+        assertEquals(1, meterRegistry.get("chatbot.provider.invoke")
+                .tags("mode", "sync", "outcome", "ok").timer().count());
+        assertEquals(120, meterRegistry.get("chatbot.provider.tokens").tag("type", "prompt").counter().count());
+        assertEquals(30, meterRegistry.get("chatbot.provider.tokens").tag("type", "completion").counter().count());
+    }
+
+    @Test
+    void invokeConExcepcionInesperadaIgualRegistraLaDuracion() {
+        when(invocationClient.postAbsolute(anyString(), any(), eq(DoChatCompletionResponse.class)))
+                .thenThrow(new IllegalStateException("respuesta ilegible"));
+
+        assertThrows(IllegalStateException.class,
+                () -> adapter.invoke("https://abc.agents.do-ai.run", List.of(new ChatMessage("user", "hola"))));
+
+        assertEquals(1, meterRegistry.get("chatbot.provider.invoke")
+                .tags("mode", "sync", "outcome", "error").timer().count());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void fallbackConCircuitoAbiertoUsaCodigoPropio() {
+        CircuitBreaker breaker = CircuitBreaker.ofDefaults("doAgentInvoke");
+        breaker.transitionToOpenState();
+
+        LlmProviderException ex = assertThrows(LlmProviderException.class,
+                () -> adapter.invokeFallback("https://abc.agents.do-ai.run", List.of(),
+                        CallNotPermittedException.createCallNotPermittedException(breaker)));
+
+        assertEquals("AI_PROVIDER_CIRCUIT_OPEN", ex.getErrorCode());
+        assertEquals(1, meterRegistry.get("chatbot.provider.circuit_open").tag("mode", "sync").counter().count());
+    }
+
+    @Test
+    void invokeConLimiteLlenoFallaSinLlamarAlProveedor() {
+        AdaptiveConcurrencyLimiter full = new AdaptiveConcurrencyLimiter(1, 1, 1, meterRegistry);
+        DigitalOceanAgentInvokerAdapter limited =
+                new DigitalOceanAgentInvokerAdapter(invocationClient, invocationClient, probeClient, "",
+                        meterRegistry, full);
+        AdaptiveConcurrencyLimiter.Permit held = full.tryAcquire();
+
+        LlmProviderException ex = assertThrows(LlmConcurrencyLimitException.class,
+                () -> limited.invoke("https://abc.agents.do-ai.run", List.of(new ChatMessage("user", "hola"))));
+
+        assertEquals("AI_PROVIDER_CONCURRENCY_LIMITED", ex.getErrorCode());
+        verify(invocationClient, never()).postAbsolute(anyString(), any(), any());
+        held.release();
+    }
+
+    @Test
+    void invokeConTimeoutLiberaElPermisoYAchicaElLimite() {
+        when(invocationClient.postAbsolute(anyString(), any(), eq(DoChatCompletionResponse.class)))
+                .thenThrow(new ResourceAccessException("read timed out", new SocketTimeoutException()));
+
+        assertThrows(LlmProviderException.class,
+                () -> adapter.invoke("https://abc.agents.do-ai.run", List.of(new ChatMessage("user", "hola"))));
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(14, limiter.getLimit());
+    }
+
+    @Test
+    void invokeCon4xxLiberaElPermisoSinTocarElLimite() {
+        when(invocationClient.postAbsolute(anyString(), any(), eq(DoChatCompletionResponse.class)))
+                .thenThrow(new LlmProviderException("bad request", 400, "AI_PROVIDER_BAD_REQUEST"));
+
+        assertThrows(LlmProviderException.class,
+                () -> adapter.invoke("https://abc.agents.do-ai.run", List.of(new ChatMessage("user", "hola"))));
+
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(16, limiter.getLimit());
+    }
+
     private DoChatCompletionResponse emptyResponse() {
         return new DoChatCompletionResponse(
                 "test-id", "test-model", List.of(), null, null);
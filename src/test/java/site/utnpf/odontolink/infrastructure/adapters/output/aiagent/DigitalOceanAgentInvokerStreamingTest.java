@@ -0,0 +1,156 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.AgentInvocationResult;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.ChatMessage;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de {@link DigitalOceanAgentInvokerAdapter#invokeStreaming} contra un
+ * servidor HTTP local que responde {@code text/event-stream} con
+ * transfer-encoding chunked, igual que DO Gradient con {@code stream=true}.
+ *
+ * <p>Se usa el stack HTTP real (RestClient + SimpleClientHttpRequestFactory)
+ * para cubrir el parseo de lineas {@code data:} y que los fragmentos lleguen
+ * antes de que el servidor cierre la respuesta.
+ */
+class DigitalOceanAgentInvokerStreamingTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void reenviaFragmentosYEnsamblaElResultado() {
+        serve(200, ex -> {
+            writeChunk(ex, "data: {\"choices\":[{\"delta\":{\"role\":\"assistant\"}}]}\n\n");
+            writeChunk(ex, "data: {\"choices\":[{\"delta\":{\"content\":\"Hola, \"}}]}\n\n");
+            writeChunk(ex, ": keep-alive\n\n");
+            writeChunk(ex, "data: {\"choices\":[{\"delta\":{\"content\":\"la clinica abre a las 8.\"}}]}\n\n");
+            writeChunk(ex, "data: {\"choices\":[{\"delta\":{},\"finish_reason\":\"stop\"}],"
+                    + "\"usage\":{\"total_tokens\":42},"
+                    + "\"retrieval\":{\"retrieved_data\":[{\"data_source_uuid\":\"ds-1\",\"score\":7.5}]}}\n\n");
+            writeChunk(ex, "data: [DONE]\n\n");
+        });
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        AgentInvocationResult result = adapter().invokeStreaming(baseUrl,
+                List.of(new ChatMessage("user", "horarios?")), deltas::add);
+
+        assertEquals(List.of("Hola, ", "la clinica abre a las 8."), deltas);
+        assertEquals("Hola, la clinica abre a las 8.", result.reply());
+        assertEquals(42, result.totalTokens());
+        assertEquals(1, result.retrievedDocuments().size());
+        assertEquals("ds-1", result.retrievedDocuments().get(0).dataSourceId());
+        assertTrue(requestBody.get().contains("\"stream\":true"), requestBody.get());
+        assertTrue(requestBody.get().contains("\"include_retrieval_info\":true"), requestBody.get());
+    }
+
+    @Test
+    void elPrimerFragmentoLlegaAntesDeQueTermineLaGeneracion() {
+        CountDownLatch firstDeltaSeen = new CountDownLatch(1);
+        serve(200, ex -> {
+            writeChunk(ex, "data: {\"choices\":[{\"delta\":{\"content\":\"uno \"}}]}\n\n");
+            // El servidor no sigue hasta que el cliente haya recibido el primer
+            // fragmento: si el adapter esperara el body completo, esto vence.
+            try {
+                if (!firstDeltaSeen.await(5, TimeUnit.SECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            writeChunk(ex, "data: {\"choices\":[{\"delta\":{\"content\":\"dos\"}}]}\n\n");
+            writeChunk(ex, "data: [DONE]\n\n");
+        });
+
+        AgentInvocationResult result = adapter().invokeStreaming(baseUrl,
+                List.of(new ChatMessage("user", "hola")), d -> firstDeltaSeen.countDown());
+
+        assertEquals("uno dos", result.reply());
+    }
+
+    @Test
+    void errorDelProveedorSeTraduceALlmProviderException() {
+        serve(503, ex -> writeChunk(ex, "{\"error\":\"overloaded\"}"));
+
+        LlmProviderException ex = assertThrows(LlmProviderException.class, () -> adapter().invokeStreaming(
+                baseUrl, List.of(new ChatMessage("user", "hola")), d -> { }));
+        assertEquals(503, ex.getStatusCode());
+    }
+
+    private DigitalOceanAgentInvokerAdapter adapter() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(2000);
+        factory.setReadTimeout(10000);
+        DigitalOceanGradientClient client = new DigitalOceanGradientClient(
+                RestClient.builder().requestFactory(factory).build(), "invocation-test");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        return new DigitalOceanAgentInvokerAdapter(client, client, client, "", registry,
+                new AdaptiveConcurrencyLimiter(16, 2, 16, registry));
+    }
+
+    private void serve(int status, StreamWriter writer) {
+        server.createContext("/api/v1/chat/completions", ex -> {
+            requestBody.set(new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            ex.getResponseHeaders().add("Content-Type",
+                    status == 200 ? "text/event-stream" : "application/json");
+            // Largo 0 = transfer-encoding chunked.
+            ex.sendResponseHeaders(status, 0);
+            try {
+                writer.write(ex);
+            } finally {
+                ex.close();
+            }
+        });
+    }
+
+    private static void writeChunk(HttpExchange ex, String text) {
+        try {
+            OutputStream out = ex.getResponseBody();
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface StreamWriter {
+        void write(HttpExchange exchange);
+    }
+}
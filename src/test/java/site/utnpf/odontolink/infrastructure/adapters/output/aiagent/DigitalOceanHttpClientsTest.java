@@ -0,0 +1,175 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests del stack HTTP compartido de los RestClient de DO contra un servidor
+ * local: las llamadas sucesivas reutilizan la conexion, el read timeout se
+ * sigue aplicando y el streaming solo corta por silencio entre chunks.
+ */
+class DigitalOceanHttpClientsTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ping", ex -> {
+            clientPorts.add(ex.getRemoteAddress().getPort());
+            byte[] body = "pong".getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/slow", ex -> {
+            try {
+                Thread.sleep(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ex.sendResponseHeaders(200, -1);
+            ex.close();
+        });
+        // 6 chunks cada 100 ms: el stream dura mas que el limite de silencio.
+        server.createContext("/stream", ex -> {
+            ex.sendResponseHeaders(200, 0);
+            try (OutputStream os = ex.getResponseBody()) {
+                for (int i = 0; i < 6; i++) {
+                    os.write(("data: {\"n\":" + i + "}\n\n").getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                    pause(100);
+                }
+                os.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        // Un chunk y despues silencio.
+        server.createContext("/stall", ex -> {
+            ex.sendResponseHeaders(200, 0);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write("data: {\"n\":0}\n\n".getBytes(StandardCharsets.UTF_8));
+                os.flush();
+                pause(2_000);
+            } catch (IOException ignored) {
+                // El cliente corto la conexion.
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void llamadasSucesivasReutilizanLaConexion() {
+        RestClient client = restClient(pooledProps(), 5_000);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("pong", client.get().uri(baseUrl + "/ping").retrieve().body(String.class));
+        }
+
+        assertEquals(1, clientPorts.size(), "Un solo puerto de origen: la conexion se reutilizo.");
+    }
+
+    @Test
+    void readTimeoutSeSigueAplicando() {
+        RestClient client = restClient(pooledProps(), 200);
+
+        assertThrows(ResourceAccessException.class,
+                () -> client.get().uri(baseUrl + "/slow").retrieve().toBodilessEntity());
+    }
+
+    @Test
+    void sinPoolVuelveAHttpUrlConnection() {
+        DigitalOceanAgentPlatformProperties props = pooledProps();
+        props.getHttp().setPooled(false);
+
+        assertInstanceOf(SimpleClientHttpRequestFactory.class,
+                DigitalOceanHttpClients.requestFactory(null, props, 1_000));
+        assertInstanceOf(JdkClientHttpRequestFactory.class,
+                DigitalOceanHttpClients.requestFactory(HttpClient.newHttpClient(), pooledProps(), 1_000));
+    }
+
+    @Test
+    void streamMasLargoQueElLimiteDeSilencioNoSeCorta() {
+        List<Map<?, ?>> events = new CopyOnWriteArrayList<>();
+
+        streamClient(300).postAbsoluteStream(baseUrl + "/stream", Map.of(), Map.class, events::add);
+
+        assertEquals(6, events.size());
+    }
+
+    @Test
+    void silencioEntreChunksCortaElStream() {
+        List<Map<?, ?>> events = new CopyOnWriteArrayList<>();
+        long startedAt = System.currentTimeMillis();
+
+        ResourceAccessException ex = assertThrows(ResourceAccessException.class, () -> streamClient(300)
+                .postAbsoluteStream(baseUrl + "/stall", Map.of(), Map.class, events::add));
+
+        assertInstanceOf(SocketTimeoutException.class, ex.getCause());
+        assertEquals(1, events.size());
+        assertTrue(System.currentTimeMillis() - startedAt < 1_500, "Corta por silencio, no al cerrar el server.");
+    }
+
+    private DigitalOceanGradientClient streamClient(int idleTimeoutMs) {
+        DigitalOceanAgentPlatformProperties props = pooledProps();
+        HttpClient httpClient = DigitalOceanHttpClients.create(props);
+        RestClient restClient = RestClient.builder()
+                .requestFactory(DigitalOceanHttpClients.streamingRequestFactory(httpClient, props, idleTimeoutMs))
+                .build();
+        return new DigitalOceanGradientClient(restClient, "stream-test", Duration.ofMillis(idleTimeoutMs));
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DigitalOceanAgentPlatformProperties pooledProps() {
+        DigitalOceanAgentPlatformProperties props = new DigitalOceanAgentPlatformProperties();
+        // El servidor de prueba es HTTP/1.1 plano (sin TLS ni ALPN).
+        props.getHttp().setVersion("HTTP_1_1");
+        return props;
+    }
+
+    private static RestClient restClient(DigitalOceanAgentPlatformProperties props, int readTimeoutMs) {
+        HttpClient httpClient = DigitalOceanHttpClients.create(props);
+        return RestClient.builder()
+                .requestFactory(DigitalOceanHttpClients.requestFactory(httpClient, props, readTimeoutMs))
+                .build();
+    }
+}
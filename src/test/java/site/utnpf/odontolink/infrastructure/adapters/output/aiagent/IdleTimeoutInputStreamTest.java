@@ -0,0 +1,129 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests del limite de silencio entre lecturas del body en streaming: un
+ * stream colgado se corta con {@link SocketTimeoutException} y uno lento
+ * pero constante llega entero, porque el watchdog se re-arma en cada read.
+ */
+class IdleTimeoutInputStreamTest {
+
+    private static final long IDLE_TIMEOUT_MS = 150;
+
+    @Test
+    void streamColgadoSeCortaPorSilencio() throws IOException {
+        HangingInputStream hanging = new HangingInputStream();
+        long start = System.nanoTime();
+
+        try (IdleTimeoutInputStream in = new IdleTimeoutInputStream(hanging, IDLE_TIMEOUT_MS)) {
+            SocketTimeoutException ex = assertThrows(SocketTimeoutException.class, () -> in.read(new byte[16]));
+
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMs >= IDLE_TIMEOUT_MS, "Corto antes del limite: " + elapsedMs + " ms");
+            assertTrue(elapsedMs < 2_000, "El watchdog no desbloqueo la lectura: " + elapsedMs + " ms");
+            assertTrue(ex.getMessage().contains(IDLE_TIMEOUT_MS + " ms"));
+            assertEquals(0, hanging.closed.getCount(), "El watchdog tiene que cerrar el stream subyacente.");
+        }
+    }
+
+    @Test
+    void streamLentoPeroConstanteNoSeCorta() throws IOException, InterruptedException {
+        // 10 chunks cada 50 ms: el total supera varias veces el limite, el silencio nunca.
+        TricklingInputStream trickling = new TricklingInputStream(10, 50);
+
+        try (IdleTimeoutInputStream in = new IdleTimeoutInputStream(trickling, IDLE_TIMEOUT_MS)) {
+            byte[] body = in.readAllBytes();
+            assertEquals(10, body.length);
+
+            // Timers cancelados al volver cada read: pasado el limite nadie cierra el stream.
+            Thread.sleep(IDLE_TIMEOUT_MS * 2);
+            assertFalse(trickling.closed, "Un timer vencido cerro un stream que ya habia respondido.");
+        }
+    }
+
+    /** Bloquea cada lectura hasta que lo cierran, como un socket sin datos. */
+    private static final class HangingInputStream extends InputStream {
+
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public int read() throws IOException {
+            return read(new byte[1], 0, 1);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Stream cerrado");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+
+    /** Entrega un byte por lectura con una pausa fija antes de cada uno. */
+    private static final class TricklingInputStream extends InputStream {
+
+        private final long pauseMs;
+        private int remaining;
+        private volatile boolean closed;
+
+        TricklingInputStream(int chunks, long pauseMs) {
+            this.remaining = chunks;
+            this.pauseMs = pauseMs;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (closed) {
+                throw new IOException("Stream cerrado");
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            remaining--;
+            return 'x';
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int c = read();
+            if (c < 0) {
+                return -1;
+            }
+            b[off] = (byte) c;
+            return 1;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
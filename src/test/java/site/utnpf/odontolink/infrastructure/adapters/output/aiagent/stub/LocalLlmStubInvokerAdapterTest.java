@@ -0,0 +1,128 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.aiagent.stub;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.AgentInvocationResult;
+import site.utnpf.odontolink.application.port.out.ILlmAgentInvokerPort.ChatMessage;
+import site.utnpf.odontolink.domain.exception.LlmProviderException;
+import site.utnpf.odontolink.infrastructure.adapters.input.rest.error.AiAgentErrorCodes;
+import site.utnpf.odontolink.infrastructure.adapters.output.aiagent.AdaptiveConcurrencyLimiter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests del agente local de pruebas de carga. La latencia se apaga
+ * ({@code latency-median-ms=0}) para que corran al instante.
+ */
+class LocalLlmStubInvokerAdapterTest {
+
+    private static final List<ChatMessage> MESSAGES = List.of(
+            new ChatMessage("system", "Sos el asistente de OdontoLink."),
+            new ChatMessage("user", "Como cancelo un turno?"));
+
+    private LocalLlmStubProperties props;
+
+    @BeforeEach
+    void setUp() {
+        props = new LocalLlmStubProperties();
+        props.setLatencyMedianMs(0);
+        props.setTimeoutMs(0);
+    }
+
+    private LocalLlmStubInvokerAdapter stub(long seed) {
+        return new LocalLlmStubInvokerAdapter(props, new Random(seed),
+                new AdaptiveConcurrencyLimiter(16, 2, 16, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void mismaPreguntaDevuelveMismaRespuestaYChunks() {
+        AgentInvocationResult first = stub(1).invoke("u", MESSAGES);
+        AgentInvocationResult second = stub(2).invoke("u", MESSAGES);
+
+        assertFalse(first.reply().isBlank());
+        assertEquals(first, second);
+        assertEquals(3, first.retrievedDocuments().size());
+        first.retrievedDocuments().forEach(doc ->
+                assertTrue(doc.score() >= 0.69 && doc.score() <= 12.87, "score fuera de escala: " + doc.score()));
+    }
+
+    @Test
+    void timeoutInyectadoLanzaProviderUnavailableSinStatus() {
+        props.setTimeoutRate(1.0);
+        LocalLlmStubInvokerAdapter adapter = stub(1);
+
+        LlmProviderException ex = assertThrows(LlmProviderException.class, () -> adapter.invoke("u", MESSAGES));
+        assertEquals(AiAgentErrorCodes.AI_PROVIDER_UNAVAILABLE, ex.getErrorCode());
+        assertNull(ex.getStatusCode());
+    }
+
+    @Test
+    void errorDeServidorInyectadoLanza503() {
+        props.setServerErrorRate(1.0);
+        LocalLlmStubInvokerAdapter adapter = stub(1);
+
+        LlmProviderException ex = assertThrows(LlmProviderException.class, () -> adapter.invoke("u", MESSAGES));
+        assertEquals(503, ex.getStatusCode());
+    }
+
+    @Test
+    void emptyChoicesDevuelveReplyVacioSinChunks() {
+        props.setEmptyChoicesRate(1.0);
+        AgentInvocationResult result = stub(1).invoke("u", MESSAGES);
+
+        assertEquals("", result.reply());
+        assertTrue(result.retrievedDocuments().isEmpty());
+    }
+
+    @Test
+    void streamingEmitePalabrasQueRecomponenElReply() {
+        LocalLlmStubInvokerAdapter adapter = stub(1);
+        List<String> deltas = new ArrayList<>();
+
+        AgentInvocationResult result = adapter.invokeStreaming("u", MESSAGES, deltas::add);
+
+        assertTrue(deltas.size() > 1);
+        assertEquals(result.reply(), String.join("", deltas));
+    }
+
+    @Test
+    void latenciaRespetaMedianaYTopeDeTimeout() {
+        props.setLatencyMedianMs(1000);
+        props.setLatencyP99Ms(5000);
+        props.setTimeoutMs(4000);
+        LocalLlmStubInvokerAdapter adapter = stub(7);
+
+        long[] samples = new long[10_000];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = adapter.sampleLatencyMs();
+        }
+        Arrays.sort(samples);
+
+        long median = samples[samples.length / 2];
+        assertTrue(median > 900 && median < 1100, "mediana: " + median);
+        assertEquals(4000, samples[samples.length - 1]);
+    }
+
+    @Test
+    void fallbackConCircuitoAbiertoUsaCodigoPropio() {
+        LocalLlmStubInvokerAdapter adapter = stub(1);
+        CallNotPermittedException open = CallNotPermittedException
+                .createCallNotPermittedException(CircuitBreaker.ofDefaults("doAgentInvoke"));
+
+        LlmProviderException ex = assertThrows(LlmProviderException.class,
+                () -> adapter.invokeFallback("u", MESSAGES, open));
+        assertEquals(AiAgentErrorCodes.AI_PROVIDER_CIRCUIT_OPEN, ex.getErrorCode());
+    }
+}
@@ -0,0 +1,54 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import site.utnpf.odontolink.application.port.out.StorageException;
+import site.utnpf.odontolink.domain.model.KnowledgeBaseDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests del staging en disco de los archivos de la KB (RF33).
+ */
+class LocalDiskKnowledgeBaseStagingAdapterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void guardaYDevuelveElContenidoConSuHash() throws Exception {
+        LocalDiskKnowledgeBaseStagingAdapter staging = new LocalDiskKnowledgeBaseStagingAdapter(dir.resolve("kb"));
+        byte[] content = "hola".getBytes();
+
+        String sha256 = staging.stage(1L, new ByteArrayInputStream(content), content.length);
+
+        assertEquals(KnowledgeBaseDocument.sha256Hex("hola"), sha256);
+
+        try (InputStream in = staging.open(1L)) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        staging.discard(1L);
+        assertThrows(StorageException.class, () -> staging.open(1L));
+    }
+
+    @Test
+    void tamanioDistintoAlDeclaradoNoDejaArchivo() throws Exception {
+        LocalDiskKnowledgeBaseStagingAdapter staging = new LocalDiskKnowledgeBaseStagingAdapter(dir);
+
+        assertThrows(StorageException.class,
+                () -> staging.stage(2L, new ByteArrayInputStream(new byte[10]), 11));
+        assertThrows(StorageException.class,
+                () -> staging.stage(3L, new ByteArrayInputStream(new byte[10]), 9));
+
+        try (var files = Files.list(dir)) {
+            assertArrayEquals(new Object[0], files.toArray());
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package site.utnpf.odontolink.infrastructure.adapters.output.storage;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.ByteRange;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.ObjectStream;
+import site.utnpf.odontolink.application.port.out.IObjectStoragePort.UploadedObject;
+import site.utnpf.odontolink.application.port.out.StorageException;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests de la subida y descarga por stream de
+ * {@link S3CompatibleObjectStorageAdapter} contra un servidor S3-compatible
+ * minimo en memoria (PUT, multipart upload y abort con validacion de
+ * {@code Content-MD5} como hace Spaces, y GET con {@code Range}). Se usa el
+ * SDK real con la misma configuracion de checksums que produccion.
+ */
+class S3CompatibleObjectStorageAdapterTest {
+
+    private static final String BUCKET = "kb-bucket";
+    private static final int PART_SIZE = S3CompatibleObjectStorageAdapter.MIN_PART_SIZE_BYTES;
+
+    private HttpServer server;
+    private S3Client s3Client;
+    private S3CompatibleObjectStorageAdapter adapter;
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, Map<Integer, byte[]>> pendingUploads = new ConcurrentHashMap<>();
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+    private volatile boolean corruptParts;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        s3Client = S3Client.builder()
+                .endpointOverride(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+                .httpClient(UrlConnectionHttpClient.create())
+                .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED)
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+        adapter = new S3CompatibleObjectStorageAdapter(s3Client, BUCKET, "https://cdn.test", PART_SIZE);
+    }
+
+    @AfterEach
+    void stopStub() {
+        s3Client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void archivoChicoVaEnUnSoloPut() throws Exception {
+        byte[] content = randomBytes(300_000);
+
+        UploadedObject uploaded = adapter.upload("kb/a.pdf", new ByteArrayInputStream(content),
+                content.length, "application/pdf");
+
+        assertArrayEquals(content, objects.get("kb/a.pdf"));
+        assertEquals(List.of("PUT"), calls);
+        assertEquals(sha256Hex(content), uploaded.sha256Hex());
+        assertEquals(content.length, uploaded.size());
+        assertEquals("https://cdn.test/kb/a.pdf", uploaded.publicUrl());
+    }
+
+    @Test
+    void archivoGrandeVaComoMultipartConPartesDelTamanioConfigurado() throws Exception {
+        byte[] content = randomBytes(2 * PART_SIZE + 123_456);
+
+        UploadedObject uploaded = adapter.upload("kb/big.pdf", new ByteArrayInputStream(content),
+                content.length, "application/pdf");
+
+        assertArrayEquals(content, objects.get("kb/big.pdf"));
+        assertEquals(List.of("CREATE", "PART 5242880", "PART 5242880", "PART 123456", "COMPLETE"), calls);
+        assertEquals(sha256Hex(content), uploaded.sha256Hex());
+        assertTrue(pendingUploads.isEmpty());
+    }
+
+    @Test
+    void streamMasCortoQueLoDeclaradoAbortaSinDejarObjeto() {
+        byte[] content = randomBytes(PART_SIZE + 10);
+
+        assertThrows(StorageException.class, () -> adapter.upload("kb/short.pdf",
+                new ByteArrayInputStream(content), content.length + 1_000L, "application/pdf"));
+
+        assertFalse(objects.containsKey("kb/short.pdf"));
+        assertEquals("ABORT", calls.get(calls.size() - 1));
+        assertTrue(pendingUploads.isEmpty());
+    }
+
+    @Test
+    void streamMasLargoQueLoDeclaradoNoSeSube() {
+        byte[] content = randomBytes(1_000);
+
+        assertThrows(StorageException.class, () -> adapter.upload("kb/long.txt",
+                new ByteArrayInputStream(content), 999, "text/plain"));
+
+        assertFalse(objects.containsKey("kb/long.txt"));
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void parteCorruptaEnElCaminoAbortaElMultipart() {
+        corruptParts = true;
+        byte[] content = randomBytes(PART_SIZE + 10);
+
+        assertThrows(StorageException.class, () -> adapter.upload("kb/corrupt.pdf",
+                new ByteArrayInputStream(content), content.length, "application/pdf"));
+
+        assertFalse(objects.containsKey("kb/corrupt.pdf"));
+        assertEquals("ABORT", calls.get(calls.size() - 1));
+    }
+
+    @Test
+    void leeElStreamDeAUnaParte() throws Exception {
+        byte[] content = randomBytes(2 * PART_SIZE + 1);
+        int[] largestRead = {0};
+        InputStream tracking = new ByteArrayInputStream(content) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                largestRead[0] = Math.max(largestRead[0], len);
+                return super.read(b, off, len);
+            }
+        };
+
+        adapter.upload("kb/tracked.pdf", tracking, content.length, "application/pdf");
+
+        assertTrue(largestRead[0] <= PART_SIZE, "lectura mas grande: " + largestRead[0]);
+    }
+
+    @Test
+    void descargaCompletaSeLeeComoStream() throws Exception {
+        byte[] content = randomBytes(70_000);
+        objects.put("kb/doc.pdf", content);
+
+        ObjectStream stream = adapter.openStream("kb/doc.pdf", null);
+
+        try (InputStream in = stream.content()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        assertEquals(content.length, stream.contentLength());
+        assertEquals(List.of("GET"), calls);
+    }
+
+    @Test
+    void descargaParcialPideSoloElRango() throws Exception {
+        byte[] content = randomBytes(70_000);
+        objects.put("kb/doc.pdf", content);
+
+        ObjectStream stream = adapter.openStream("kb/doc.pdf", new ByteRange(1_000, 1_999));
+
+        try (InputStream in = stream.content()) {
+            assertArrayEquals(Arrays.copyOfRange(content, 1_000, 2_000), in.readAllBytes());
+        }
+        assertEquals(1_000, stream.contentLength());
+        assertEquals(List.of("GET bytes=1000-1999"), calls);
+    }
+
+    @Test
+    void descargaDeUnObjetoInexistenteFallaConStorageException() {
+        assertThrows(StorageException.class, () -> adapter.openStream("kb/missing.pdf", null));
+    }
+
+    @Test
+    void urlPrefirmadaIncluyeLaClaveYLaFirma() {
+        URI endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+        try (S3Presigner presigner = S3Presigner.builder()
+                .endpointOverride(endpoint)
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build()) {
+            S3CompatibleObjectStorageAdapter signing = new S3CompatibleObjectStorageAdapter(
+                    s3Client, presigner, BUCKET, "https://cdn.test", PART_SIZE);
+
+            String url = signing.presignDownload("kb/doc.pdf", Duration.ofMinutes(5),
+                    "application/pdf", "protocolo clinico.pdf");
+
+            assertTrue(url.startsWith(endpoint + "/" + BUCKET + "/kb/doc.pdf?"), url);
+            assertTrue(url.contains("X-Amz-Signature="), url);
+            assertTrue(url.contains("X-Amz-Expires=300"), url);
+            assertTrue(url.contains("response-content-disposition="), url);
+        }
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    void sinPresignerLaDescargaDirectaNoEstaDisponible() {
+        assertThrows(StorageException.class, () -> adapter.presignDownload("kb/doc.pdf",
+                Duration.ofMinutes(5), "application/pdf", "doc.pdf"));
+    }
+
+    // --- Stub S3 ---------------------------------------------------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String key = path.substring(("/" + BUCKET + "/").length());
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String method = exchange.getRequestMethod();
+        byte[] body = readBody(exchange);
+
+        if ("POST".equals(method) && query.containsKey("uploads")) {
+            String uploadId = "upload-" + pendingUploads.size();
+            pendingUploads.put(uploadId, new TreeMap<>());
+            calls.add("CREATE");
+            respondXml(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>"
+                    + key + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+        } else if ("PUT".equals(method) && query.containsKey("uploadId")) {
+            calls.add("PART " + body.length);
+            if (corruptParts) {
+                body[0] ^= 1;
+            }
+            if (!md5Matches(exchange, body)) {
+                respondXml(exchange, 400, "<Error><Code>BadDigest</Code><Message>md5</Message></Error>");
+                return;
+            }
+            pendingUploads.get(query.get("uploadId")).put(Integer.parseInt(query.get("partNumber")), body);
+            exchange.getResponseHeaders().add("ETag", "\"etag-" + query.get("partNumber") + "\"");
+            respond(exchange, 200, new byte[0]);
+        } else if ("POST".equals(method) && query.containsKey("uploadId")) {
+            calls.add("COMPLETE");
+            Map<Integer, byte[]> parts = pendingUploads.remove(query.get("uploadId"));
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            parts.values().forEach(joined::writeBytes);
+            objects.put(key, joined.toByteArray());
+            respondXml(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + BUCKET + "</Bucket><Key>"
+                    + key + "</Key><ETag>\"final\"</ETag></CompleteMultipartUploadResult>");
+        } else if ("DELETE".equals(method) && query.containsKey("uploadId")) {
+            calls.add("ABORT");
+            pendingUploads.remove(query.get("uploadId"));
+            respond(exchange, 204, null);
+        } else if ("PUT".equals(method)) {
+            calls.add("PUT");
+            if (!md5Matches(exchange, body)) {
+                respondXml(exchange, 400, "<Error><Code>BadDigest</Code><Message>md5</Message></Error>");
+                return;
+            }
+            objects.put(key, body);
+            exchange.getResponseHeaders().add("ETag", "\"etag\"");
+            respond(exchange, 200, new byte[0]);
+        } else if ("GET".equals(method)) {
+            serveObject(exchange, key);
+        } else {
+            respondXml(exchange, 400, "<Error><Code>NotImplemented</Code><Message>stub</Message></Error>");
+        }
+    }
+
+    /** GET con soporte de un solo rango {@code bytes=first-last}, como Spaces. */
+    private void serveObject(HttpExchange exchange, String key) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        calls.add(range == null ? "GET" : "GET " + range);
+        byte[] content = objects.get(key);
+        if (content == null) {
+            respondXml(exchange, 404, "<Error><Code>NoSuchKey</Code><Message>missing</Message></Error>");
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/pdf");
+        if (range == null) {
+            respond(exchange, 200, content);
+            return;
+        }
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int first = Integer.parseInt(bounds[0]);
+        int last = Integer.parseInt(bounds[1]);
+        exchange.getResponseHeaders().add("Content-Range",
+                "bytes " + first + "-" + last + "/" + content.length);
+        respond(exchange, 206, Arrays.copyOfRange(content, first, last + 1));
+    }
+
+    /** Decodifica {@code aws-chunked} si el SDK firmo el payload por chunks. */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] raw = exchange.getRequestBody().readAllBytes();
+        String sha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (sha == null || !sha.startsWith("STREAMING-")) {
+            return raw;
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int pos = 0;
+        while (pos < raw.length) {
+            int lineEnd = indexOfCrlf(raw, pos);
+            String header = new String(raw, pos, lineEnd - pos, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";")[0], 16);
+            if (size == 0) {
+                break;
+            }
+            decoded.write(raw, lineEnd + 2, size);
+            pos = lineEnd + 2 + size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static int indexOfCrlf(byte[] raw, int from) {
+        for (int i = from; i < raw.length - 1; i++) {
+            if (raw[i] == '\r' && raw[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return raw.length;
+    }
+
+    private static boolean md5Matches(HttpExchange exchange, byte[] body) {
+        String expected = exchange.getRequestHeaders().getFirst("Content-MD5");
+        if (expected == null) {
+            return true;
+        }
+        try {
+            return expected.equals(Base64.getEncoder().encodeToString(
+                    MessageDigest.getInstance("MD5").digest(body)));
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new TreeMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            String[] kv = pair.split("=", 2);
+            query.put(kv[0], kv.length > 1 ? kv[1] : "");
+        }
+        return query;
+    }
+
+    private static void respondXml(HttpExchange exchange, int status, String xml) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        respond(exchange, status, xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body == null ? -1 : body.length);
+        if (body != null) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String sha256Hex(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
@@ -0,0 +1,223 @@
+package site.utnpf.odontolink.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Harness de carga del chatbot: usuarios virtuales que conversan contra
+ * {@code POST /api/chatbot/messages} por HTTP, pasando por el filtro de rate
+ * limiting, el controller, el pool de invocaciones y el circuit breaker.
+ *
+ * <p>No es un test (surefire no lo levanta): se corre a mano contra una
+ * instancia con el agente local, por ejemplo
+ * <pre>
+ *   SPRING_PROFILES_ACTIVE=dev,llm-stub mvn spring-boot:run
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=site.utnpf.odontolink.loadtest.ChatbotLoadHarness \
+ *       -Dloadtest.users=64 -Dloadtest.duration-seconds=120
+ * </pre>
+ * Cada usuario manda un {@code X-Forwarded-For} propio, asi el cap anonimo
+ * por IP aplica por usuario virtual; con corridas largas conviene subir
+ * {@code anonymousPerHour} en la politica de gobernanza.
+ *
+ * <p>Propiedades ({@code -D}): {@code loadtest.base-url},
+ * {@code loadtest.users}, {@code loadtest.duration-seconds},
+ * {@code loadtest.turns-per-session}, {@code loadtest.think-time-ms}.
+ *
+ * <p>Al terminar imprime throughput, percentiles de latencia, la cuenta por
+ * resultado ({@code 503 AI_AGENT_BUSY} = pool saturado, {@code fallback} =
+ * proveedor fallado o circuito abierto) y las series de Prometheus del
+ * chatbot, el circuit breaker y Hikari.
+ */
+public final class ChatbotLoadHarness {
+
+    private static final List<String> QUESTIONS = List.of(
+            "Cual es el horario de atencion de la clinica?",
+            "Como cancelo un turno?",
+            "Quien realiza los tratamientos?",
+            "Cuanto cuesta una limpieza dental?",
+            "Que tengo que llevar al primer turno?",
+            "Me sangran las encias al cepillarme, es normal?",
+            "Atienden a ninos?",
+            "Como reservo un turno de ortodoncia?"
+    );
+
+    private static final String[] PROMETHEUS_PREFIXES = {
+            "chatbot_invocation_", "chatbot_turn", "chatbot_provider_",
+            "resilience4j_circuitbreaker_state", "resilience4j_circuitbreaker_calls",
+            "hikaricp_connections_active", "hikaricp_connections_pending"
+    };
+
+    private final String baseUrl;
+    private final int users;
+    private final Duration duration;
+    private final int turnsPerSession;
+    private final long thinkTimeMs;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    private ChatbotLoadHarness(String baseUrl, int users, Duration duration, int turnsPerSession,
+                               long thinkTimeMs) {
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.duration = duration;
+        this.turnsPerSession = turnsPerSession;
+        this.thinkTimeMs = thinkTimeMs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ChatbotLoadHarness harness = new ChatbotLoadHarness(
+                System.getProperty("loadtest.base-url", "http://localhost:8080"),
+                Integer.getInteger("loadtest.users", 32),
+                Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 60L)),
+                Integer.getInteger("loadtest.turns-per-session", 5),
+                Long.getLong("loadtest.think-time-ms", 0L));
+        harness.run();
+    }
+
+    private void run() throws Exception {
+        System.out.printf("Chatbot load: %d usuarios, %ds, %d turnos por sesion contra %s%n",
+                users, duration.toSeconds(), turnsPerSession, baseUrl);
+
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(users);
+        List<Future<long[]>> futures = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            int user = i;
+            futures.add(executor.submit(() -> runUser(user, deadline)));
+        }
+        List<long[]> perUser = new ArrayList<>(users);
+        for (Future<long[]> future : futures) {
+            perUser.add(future.get());
+        }
+        executor.shutdown();
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+
+        long[] latencies = perUser.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        report(latencies, elapsedSeconds);
+        printPrometheus();
+    }
+
+    /** Conversa en sesiones de {@code turnsPerSession} turnos hasta el deadline. */
+    private long[] runUser(int user, long deadline) {
+        String clientIp = "10.%d.%d.%d".formatted((user >> 16) & 0xff, (user >> 8) & 0xff, user & 0xff);
+        long[] latencies = new long[64];
+        int count = 0;
+        int turn = 0;
+        JsonNode session = null;
+        while (System.nanoTime() < deadline) {
+            if (turn % turnsPerSession == 0) {
+                session = null;
+            }
+            String question = QUESTIONS.get((user + turn) % QUESTIONS.size());
+            long start = System.nanoTime();
+            session = sendTurn(clientIp, question, session);
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = (System.nanoTime() - start) / 1_000_000L;
+            turn++;
+            if (thinkTimeMs > 0) {
+                try {
+                    Thread.sleep(thinkTimeMs);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * Manda un turno y devuelve la sesion a reutilizar en el siguiente
+     * ({@code null} si el turno fallo: el proximo abre una nueva).
+     */
+    private JsonNode sendTurn(String clientIp, String question, JsonNode session) {
+        ObjectNode body = mapper.createObjectNode().put("message", question);
+        if (session != null) {
+            body.set("sessionId", session.get("sessionId"));
+            body.set("anonymousToken", session.get("anonymousToken"));
+        }
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/chatbot/messages"))
+                    .timeout(Duration.ofSeconds(90))
+                    .header("Content-Type", "application/json")
+                    .header("X-Forwarded-For", clientIp)
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)))
+                    .build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            JsonNode json = response.body().isBlank() ? null : mapper.readTree(response.body());
+            if (response.statusCode() == 200 && json != null) {
+                count(json.path("fallbackTriggered").asBoolean() ? "200 fallback" : "200 ok");
+                return json;
+            }
+            String errorCode = json == null ? "" : json.path("errorCode").asText("");
+            count((response.statusCode() + " " + errorCode).trim());
+            return null;
+        } catch (Exception ex) {
+            count("client " + ex.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    private void count(String outcome) {
+        outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+    }
+
+    private void report(long[] latencies, double elapsedSeconds) {
+        System.out.printf("%nTurnos: %d en %.1fs (%.1f turnos/s)%n",
+                latencies.length, elapsedSeconds, latencies.length / elapsedSeconds);
+        if (latencies.length > 0) {
+            System.out.printf("Latencia ms: p50=%d p90=%d p99=%d max=%d%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.90),
+                    percentile(latencies, 0.99), latencies[latencies.length - 1]);
+        }
+        System.out.println("Resultados:");
+        new TreeMap<>(outcomes).forEach((outcome, n) -> System.out.printf("  %-40s %d%n", outcome, n.sum()));
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private void printPrometheus() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/prometheus"))
+                    .timeout(Duration.ofSeconds(10))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            System.out.println("\nPrometheus:");
+            response.body().lines()
+                    .filter(line -> !line.startsWith("#") && !line.contains("_bucket{"))
+                    .filter(line -> Arrays.stream(PROMETHEUS_PREFIXES).anyMatch(line::startsWith))
+                    .forEach(line -> System.out.println("  " + line));
+        } catch (Exception ex) {
+            System.out.println("\nNo se pudo leer /actuator/prometheus: " + ex.getMessage());
+        }
+    }
+}